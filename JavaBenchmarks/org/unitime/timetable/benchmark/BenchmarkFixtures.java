@@ -0,0 +1,204 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.benchmark;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.RoomLocation;
+import org.cpsolver.coursett.model.TimeLocation;
+import org.cpsolver.studentsct.model.Config;
+import org.cpsolver.studentsct.model.Course;
+import org.cpsolver.studentsct.model.Instructor;
+import org.cpsolver.studentsct.model.Offering;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Subpart;
+import org.unitime.timetable.model.CourseOffering;
+import org.unitime.timetable.model.InstructionalOffering;
+import org.unitime.timetable.model.Student;
+import org.unitime.timetable.onlinesectioning.model.XAreaClassificationMajor;
+import org.unitime.timetable.onlinesectioning.model.XConfig;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XSection;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.model.XSubpart;
+
+/**
+ * Synthetic, database-free data for the online student scheduling benchmarks.
+ * Offerings are created as the solver model and converted using {@link XOffering#XOffering(Offering, java.util.Collection)},
+ * the same way the online sectioning solver does it. All the data are generated from a fixed seed, so that the
+ * individual runs are comparable.
+ *
+ * @author Tomas Muller
+ */
+public class BenchmarkFixtures {
+	private static final String[] sSubjects = new String[] { "MA", "CS", "PHYS", "CHEM", "BIOL", "ENGL", "HIST", "ECON", "PSY", "STAT", "ME", "ECE" };
+	private static final String[] sWords = new String[] { "Introduction", "to", "Advanced", "Calculus", "Programming", "Physics", "Chemistry",
+			"Biology", "Writing", "History", "Economics", "Psychology", "Statistics", "Methods", "Analysis", "Design", "Systems", "Theory", "Laboratory", "Seminar" };
+	private static final int[] sDays = new int[] { 84, 40, 64, 32, 16, 8, 4, 124 };
+	private static final String[] sAreas = new String[] { "A", "E", "S", "M", "L" };
+	private static final String[] sClassifications = new String[] { "01", "02", "03", "04" };
+	private static final String[] sMajors = new String[] { "CS", "MA", "ME", "ECE", "BIOL", "HIST" };
+
+	private Random iRandom;
+	private BitSet iWeeks;
+	private long iId = 1;
+
+	public BenchmarkFixtures(long seed) {
+		iRandom = new Random(seed);
+		iWeeks = new BitSet(112);
+		for (int w = 0; w < 16; w++)
+			for (int d = 0; d < 5; d++)
+				iWeeks.set(7 * w + d);
+	}
+
+	public BenchmarkFixtures() {
+		this(1234l);
+	}
+
+	protected String title() {
+		int words = 2 + iRandom.nextInt(3);
+		StringBuffer title = new StringBuffer();
+		for (int i = 0; i < words; i++)
+			title.append(i == 0 ? "" : " ").append(sWords[iRandom.nextInt(sWords.length)]);
+		return title.toString();
+	}
+
+	protected Placement placement() {
+		int days = sDays[iRandom.nextInt(sDays.length)];
+		int slot = 90 + 6 * iRandom.nextInt(18);
+		TimeLocation time = new TimeLocation(days, slot, days == 84 ? 12 : 18, 0, 0.0, 0, 1l, "Full Term", iWeeks, 2);
+		List<RoomLocation> rooms = new ArrayList<RoomLocation>();
+		long roomId = 1 + iRandom.nextInt(200);
+		rooms.add(new RoomLocation(roomId, "ROOM " + roomId, null, 0, 50, null, null, false, null));
+		return new Placement(null, time, rooms);
+	}
+
+	/**
+	 * Create a solver course offering with the given number of configurations, each having a lecture subpart with the given number of sections
+	 * and a recitation subpart with two recitations for each lecture.
+	 */
+	public Offering solverOffering(int nrConfigs, int nrLectures) {
+		String subject = sSubjects[iRandom.nextInt(sSubjects.length)];
+		String number = String.valueOf(10000 + iRandom.nextInt(50000));
+		Offering offering = new Offering(iId++, subject + " " + number);
+		Course course = new Course(iId++, subject, number, offering, -1, 0);
+		for (int c = 0; c < nrConfigs; c++) {
+			Config config = new Config(iId++, 40 * nrLectures, "Config " + (1 + c), offering);
+			Subpart lec = new Subpart(iId++, "1", "Lec", config, null);
+			Subpart rec = new Subpart(iId++, "2", "Rec", config, lec);
+			for (int l = 0; l < nrLectures; l++) {
+				List<Instructor> instructors = new ArrayList<Instructor>();
+				long instructorId = 1 + iRandom.nextInt(500);
+				instructors.add(new Instructor(instructorId, "I" + instructorId, "Instructor " + instructorId, null));
+				Section lecture = new Section(iId++, 30 + 10 * iRandom.nextInt(10), String.valueOf(1 + l), lec, placement(), instructors, null);
+				lecture.setName(course.getId(), "L" + (1 + l));
+				for (int r = 0; r < 2; r++) {
+					Section recitation = new Section(iId++, 15 + 5 * iRandom.nextInt(5), String.valueOf(1 + 2 * l + r), rec, placement(), new ArrayList<Instructor>(), lecture);
+					recitation.setName(course.getId(), "R" + (1 + 2 * l + r));
+				}
+			}
+		}
+		return offering;
+	}
+
+	/**
+	 * Create a course offering, see {@link BenchmarkFixtures#solverOffering(int, int)}
+	 */
+	public XOffering offering(int nrConfigs, int nrLectures) {
+		return new XOffering(solverOffering(nrConfigs, nrLectures), null);
+	}
+
+	public List<XOffering> offerings(int count) {
+		List<XOffering> offerings = new ArrayList<XOffering>(count);
+		for (int i = 0; i < count; i++)
+			offerings.add(offering(1 + iRandom.nextInt(2), 2 + iRandom.nextInt(6)));
+		return offerings;
+	}
+
+	/**
+	 * Course names and titles, as used by the course lookup
+	 */
+	public List<XCourseId> courses(int count) {
+		List<XCourseId> courses = new ArrayList<XCourseId>(count);
+		for (int i = 0; i < count; i++) {
+			InstructionalOffering io = new InstructionalOffering();
+			io.setUniqueId(iId++);
+			CourseOffering co = new CourseOffering();
+			co.setUniqueId(iId++);
+			co.setInstructionalOffering(io);
+			co.setSubjectAreaAbbv(sSubjects[iRandom.nextInt(sSubjects.length)]);
+			co.setCourseNbr(String.valueOf(10000 + iRandom.nextInt(50000)));
+			co.setTitle(title());
+			courses.add(new XCourseId(co));
+		}
+		return courses;
+	}
+
+	/**
+	 * Random (but valid) enrollment of the given student into the first course of the given offering
+	 */
+	public XEnrollment enrollment(Long studentId, XOffering offering) {
+		Student student = new Student();
+		student.setUniqueId(studentId);
+		XConfig config = offering.getConfigs().get(iRandom.nextInt(offering.getConfigs().size()));
+		List<Long> sectionIds = new ArrayList<Long>();
+		XSection parent = null;
+		for (XSubpart subpart: config.getSubparts()) {
+			List<XSection> candidates = new ArrayList<XSection>();
+			for (XSection section: subpart.getSections())
+				if (parent == null || section.getParentId() == null || section.getParentId().equals(parent.getSectionId()))
+					candidates.add(section);
+			XSection section = candidates.get(iRandom.nextInt(candidates.size()));
+			sectionIds.add(section.getSectionId());
+			if (parent == null) parent = section;
+		}
+		XEnrollment enrollment = new XEnrollment(student, new XCourseId(offering.getCourses().get(0)), config.getConfigId(), sectionIds);
+		if (iRandom.nextBoolean())
+			enrollment.setTimeStamp(new Date(System.currentTimeMillis() - iRandom.nextInt(1000000)));
+		return enrollment;
+	}
+
+	/**
+	 * Student with a few majors and groups, requesting (and being enrolled in) the given offerings
+	 */
+	public XStudent student(List<XOffering> offerings) {
+		long studentId = iId++;
+		XStudent student = new XStudent(studentId, String.valueOf(100000 + studentId), "Student " + studentId);
+		student.getMajors().add(new XAreaClassificationMajor(sAreas[iRandom.nextInt(sAreas.length)], sClassifications[iRandom.nextInt(sClassifications.length)], sMajors[iRandom.nextInt(sMajors.length)]));
+		Student hibStudent = new Student();
+		hibStudent.setUniqueId(studentId);
+		int priority = 0;
+		for (XOffering offering: offerings) {
+			XCourseId course = new XCourseId(offering.getCourses().get(0));
+			student.getRequests().add(new XCourseRequest(hibStudent, course, priority++, iRandom.nextInt(4) == 0 ? null : enrollment(studentId, offering)));
+		}
+		return student;
+	}
+
+	public Random getRandom() { return iRandom; }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.server.CourseComparator;
+import org.unitime.timetable.onlinesectioning.server.CourseIndex;
+import org.unitime.timetable.onlinesectioning.server.SubSet;
+
+/**
+ * Course lookup: the indexed {@link CourseIndex#findCourses(String, Integer, org.unitime.timetable.onlinesectioning.match.CourseMatcher)}
+ * compared with iterating over all the courses, ordered by the {@link CourseComparator}.
+ *
+ * @author Tomas Muller
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CourseSearchBenchmark {
+	@Param({"1000", "10000"})
+	public int nrCourses;
+
+	@Param({"ma", "cs 1", "calc"})
+	public String query;
+
+	private List<XCourseId> iCourses;
+	private CourseIndex iIndex;
+
+	@Setup
+	public void setup() {
+		iCourses = new BenchmarkFixtures().courses(nrCourses);
+		iIndex = new CourseIndex();
+		for (XCourseId course: iCourses)
+			iIndex.add(course);
+	}
+
+	@Benchmark
+	public SubSet<XCourseId> indexed() {
+		return iIndex.findCourses(query, 20, null);
+	}
+
+	@Benchmark
+	public SubSet<XCourseId> linear() {
+		SubSet<XCourseId> ret = new SubSet<XCourseId>(20, new CourseComparator(query));
+		String q = query.toLowerCase();
+		for (XCourseId c: iCourses) {
+			if (c.matchCourseName(q)) ret.add(c);
+		}
+		if (!ret.isLimitReached() && q.length() > 2) {
+			for (XCourseId c: iCourses) {
+				if (c.matchCourseName(q)) continue;
+				if (c.matchTitle(q)) ret.add(c);
+			}
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.unitime.timetable.onlinesectioning.ConcurrentMultiLock;
+import org.unitime.timetable.onlinesectioning.MultiLock;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
+
+/**
+ * Offering locks under contention: eight threads, each locking a few random offerings (out of the given number
+ * of offerings), doing a little bit of work, and releasing the lock. Compares the {@link MultiLock} with the
+ * {@link ConcurrentMultiLock}.
+ *
+ * @author Tomas Muller
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class LockBenchmark {
+	@Param({"100", "10000"})
+	public int nrOfferings;
+
+	@Param({"5"})
+	public int nrLocked;
+
+	private MultiLock iMultiLock;
+	private ConcurrentMultiLock iConcurrentMultiLock;
+
+	@Setup
+	public void setup() {
+		iMultiLock = new MultiLock();
+		iConcurrentMultiLock = new ConcurrentMultiLock();
+	}
+
+	protected List<Long> offeringIds() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		List<Long> ids = new ArrayList<Long>(nrLocked);
+		for (int i = 0; i < nrLocked; i++)
+			ids.add((long)random.nextInt(nrOfferings));
+		return ids;
+	}
+
+	@Benchmark
+	public void multiLock() {
+		Lock lock = iMultiLock.lock(offeringIds());
+		try {
+			Blackhole.consumeCPU(100);
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Benchmark
+	public void concurrentMultiLock() {
+		Lock lock = iConcurrentMultiLock.lock(offeringIds());
+		try {
+			Blackhole.consumeCPU(100);
+		} finally {
+			lock.release();
+		}
+	}
+}
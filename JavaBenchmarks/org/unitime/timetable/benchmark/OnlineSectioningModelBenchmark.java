@@ -0,0 +1,140 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.cpsolver.studentsct.model.Student.StudentPriority;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XEnrollments;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XRequest;
+import org.unitime.timetable.onlinesectioning.model.XSection;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.solver.SectioningRequest;
+import org.unitime.timetable.onlinesectioning.solver.SectioningRequestComparator;
+
+/**
+ * Online sectioning model: enrollment checks of an {@link XOffering} (sections of an enrollment, unreserved space),
+ * ordering of the re-scheduling requests using the {@link SectioningRequestComparator}, and the externalization
+ * of an {@link XStudent} (which is what the replicated server does on every student read and write).
+ *
+ * @author Tomas Muller
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OnlineSectioningModelBenchmark {
+	@Param({"100", "1000"})
+	public int nrStudents;
+
+	private XOffering iOffering;
+	private List<XCourseRequest> iRequests = new ArrayList<XCourseRequest>();
+	private XEnrollments iEnrollments;
+	private List<SectioningRequest> iSectioningRequests = new ArrayList<SectioningRequest>();
+	private XStudent iStudent;
+	private byte[] iStudentBytes;
+
+	@Setup
+	public void setup() throws IOException {
+		BenchmarkFixtures fixtures = new BenchmarkFixtures();
+		iOffering = fixtures.offering(2, 6);
+		List<XOffering> offerings = fixtures.offerings(5);
+		offerings.add(iOffering);
+		for (int i = 0; i < nrStudents; i++) {
+			XStudent student = fixtures.student(offerings);
+			for (XRequest request: student.getRequests()) {
+				XCourseRequest cr = (XCourseRequest)request;
+				if (!cr.getCourseIds().get(0).getOfferingId().equals(iOffering.getOfferingId())) continue;
+				SectioningRequest sr = new SectioningRequest(iOffering, cr, cr.getCourseIds().get(0), student, null,
+						StudentPriority.values()[fixtures.getRandom().nextInt(StudentPriority.values().length)], null);
+				if (cr.getEnrollment() != null) {
+					iRequests.add(cr);
+					if (fixtures.getRandom().nextBoolean()) sr.setLastEnrollment(cr.getEnrollment());
+				}
+				iSectioningRequests.add(sr);
+			}
+			if (iStudent == null) iStudent = student;
+		}
+		iEnrollments = new XEnrollments(iOffering.getOfferingId(), iRequests);
+		iStudentBytes = write(iStudent);
+	}
+
+	private static byte[] write(XStudent student) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		student.writeExternal(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	@Benchmark
+	public void sections(Blackhole bh) {
+		for (XCourseRequest request: iRequests) {
+			List<XSection> sections = iOffering.getSections(request.getEnrollment());
+			bh.consume(sections);
+		}
+	}
+
+	@Benchmark
+	public int unreservedSpace() {
+		return iOffering.getUnreservedSpace(iEnrollments);
+	}
+
+	@Benchmark
+	public List<SectioningRequest> sortRequests() {
+		List<SectioningRequest> requests = new ArrayList<SectioningRequest>(iSectioningRequests);
+		Collections.sort(requests, new SectioningRequestComparator());
+		return requests;
+	}
+
+	@Benchmark
+	public byte[] writeStudent() throws IOException {
+		return write(iStudent);
+	}
+
+	@Benchmark
+	public XStudent readStudent() throws IOException, ClassNotFoundException {
+		return new XStudent(new ObjectInputStream(new ByteArrayInputStream(iStudentBytes)));
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.cpsolver.studentsct.model.Config;
+import org.cpsolver.studentsct.model.Course;
+import org.cpsolver.studentsct.model.Offering;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Subpart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.unitime.timetable.gwt.server.Query;
+import org.unitime.timetable.onlinesectioning.solver.SuggestionsFilter;
+
+/**
+ * Filter queries: parsing of the {@link Query} and matching of the {@link SuggestionsFilter} against all the sections
+ * of a few hundred courses (which is what happens for each of the suggestions computed with a filter).
+ *
+ * @author Tomas Muller
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+	@Param({"MA", "day:MWF after:9:30", "(course:MA or course:CS) and not day:F", "room:\"ROOM 1\" or time:10:30"})
+	public String filter;
+
+	private List<Course> iCourses = new ArrayList<Course>();
+	private List<Section> iSections = new ArrayList<Section>();
+	private Date iFirstDate = new Date();
+
+	@Setup
+	public void setup() {
+		BenchmarkFixtures fixtures = new BenchmarkFixtures();
+		for (int i = 0; i < 200; i++) {
+			Offering offering = fixtures.solverOffering(1, 2 + fixtures.getRandom().nextInt(6));
+			Course course = offering.getCourses().get(0);
+			for (Config config: offering.getConfigs())
+				for (Subpart subpart: config.getSubparts())
+					for (Section section: subpart.getSections()) {
+						iCourses.add(course);
+						iSections.add(section);
+					}
+		}
+	}
+
+	@Benchmark
+	public Query parse() {
+		return new Query(filter);
+	}
+
+	@Benchmark
+	public int match() {
+		SuggestionsFilter sf = new SuggestionsFilter(filter, iFirstDate);
+		int matched = 0;
+		for (int i = 0; i < iSections.size(); i++)
+			if (sf.match(iCourses.get(i), iSections.get(i))) matched ++;
+		return matched;
+	}
+}
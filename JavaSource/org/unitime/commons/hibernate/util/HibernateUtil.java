@@ -66,6 +66,7 @@ import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.base._BaseRootDAO;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.util.RoomAvailabilityInvalidator;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
@@ -302,6 +303,9 @@ public class HibernateUtil {
         
         addReplaceToDialect();
         
+        InsertedRowsCounter.register(sSessionFactory);
+        RoomAvailabilityInvalidator.register(sSessionFactory);
+        
         DatabaseUpdate.update();
     }
     
@@ -0,0 +1,77 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.commons.hibernate.util;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Counts rows inserted by the current thread, e.g., to report the number of rows created by a long running task.<br>
+ * The listener is registered with the session factory once, when it is created (see {@link HibernateUtil#configureHibernate(java.util.Properties)}),
+ * so every insert goes through it. Unless {@link InsertedRowsCounter#start()} was called on the inserting thread, it only does one thread local lookup.
+ *
+ * @author Tomas Muller
+ */
+public class InsertedRowsCounter implements PostInsertEventListener {
+	private static final long serialVersionUID = 1L;
+	private static ThreadLocal<long[]> sInsertedRows = new ThreadLocal<long[]>();
+	
+	private InsertedRowsCounter() {}
+	
+	/**
+	 * Register the counter with the given session factory
+	 */
+	public static void register(SessionFactory factory) {
+		((SessionFactoryImplementor)factory).getServiceRegistry().getService(EventListenerRegistry.class).appendListeners(EventType.POST_INSERT, new InsertedRowsCounter());
+	}
+	
+	/**
+	 * Start counting rows inserted by the current thread
+	 */
+	public static void start() {
+		sInsertedRows.set(new long[] {0l});
+	}
+	
+	/**
+	 * Stop counting rows inserted by the current thread
+	 * @return number of rows inserted since {@link InsertedRowsCounter#start()} was called
+	 */
+	public static long stop() {
+		long[] counter = sInsertedRows.get();
+		sInsertedRows.remove();
+		return (counter == null ? 0l : counter[0]);
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		long[] counter = sInsertedRows.get();
+		if (counter != null) counter[0] ++;
+	}
+
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+}
@@ -359,6 +359,12 @@ public class ApplicationProperties {
 		return dir;
 	}
 	
+	public static File getSnapshotFolder() {
+		File dir = new File(getDataFolder(),"snapshot");
+		dir.mkdir();
+		return dir;
+	}
+	
 	public static File getTempFolder() {
         File dir = new File(new File(getBasePath()).getParentFile(), "temp");
 		dir.mkdir();
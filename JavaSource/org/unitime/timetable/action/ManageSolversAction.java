@@ -839,6 +839,7 @@ public class ManageSolversAction extends UniTimeAction<BlankForm> {
                     String disb = (info == null ? null : info.get("Average disbalance"));
                     String disb10 = (info == null ? null : info.get("Sections disbalanced by 10% or more"));
                     String choice1 = (info == null ? null : info.get("Assigned priority course requests"));
+                    String log = (info == null ? null : info.get("Sectioning log"));
                     Date loaded = new Date(solver.getConfig().getPropertyLong("General.StartUpDate", 0));
 
                     String op = "";
@@ -871,7 +872,7 @@ public class ManageSolversAction extends UniTimeAction<BlankForm> {
                                 (loaded.getTime() <= 0 ? MESSAGES.itemNotApplicable() : sDF.format(loaded)),
                                 sessionLabel,
                                 solver.getHost() + (solver.isMaster() ? " (master)" : ""),
-                                mode,
+                                (log == null ? mode : "<span title='" + log + "'>" + mode + "</span>"),
                                 "<span name='UniTimeGWT:SolverAllocatedMem' style='display: none;'>O" + server.getHost() + ":" + sessionId + "</span>",
                                 (totVal==null?"":totVal),
                                 (assigned==null?"":assigned),
@@ -902,7 +903,7 @@ public class ManageSolversAction extends UniTimeAction<BlankForm> {
                                 (loaded.getTime() <= 0 ? MESSAGES.itemNotApplicable() : sDF.format(loaded)),
                                 sessionLabel,
                                 solver.getHost() + (solver.isMaster() ? " " + MESSAGES.serverFlagMaster() : ""),
-                                mode,
+                                (log == null ? mode : "<span title='" + log + "'>" + mode + "</span>"),
                                 (totVal==null?"":totVal),
                                 (assigned==null?"":assigned),
                                 (choice1==null?"":choice1),
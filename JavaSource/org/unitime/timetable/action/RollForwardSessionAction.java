@@ -30,10 +30,13 @@ import org.apache.struts2.convention.annotation.Action;
 import org.apache.struts2.convention.annotation.Result;
 import org.apache.struts2.tiles.annotation.TilesDefinition;
 import org.apache.struts2.tiles.annotation.TilesPutAttribute;
+import org.unitime.commons.hibernate.util.InsertedRowsCounter;
 import org.unitime.commons.web.WebTable;
 import org.unitime.commons.web.WebTable.WebTableLine;
 import org.unitime.localization.impl.Localization;
 import org.unitime.localization.messages.CourseMessages;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.form.RollForwardSessionForm;
 import org.unitime.timetable.gwt.command.server.GwtRpcServlet;
 import org.unitime.timetable.gwt.shared.ReservationInterface;
@@ -43,6 +46,7 @@ import org.unitime.timetable.model.Session;
 import org.unitime.timetable.model.SubjectArea;
 import org.unitime.timetable.model.dao.PointInTimeDataDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
+import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.security.UserContext;
 import org.unitime.timetable.security.rights.Right;
 import org.unitime.timetable.util.Formats;
@@ -248,153 +252,200 @@ public class RollForwardSessionAction extends UniTimeAction<RollForwardSessionFo
 				iForm.validateDepartmentRollForward(toAcadSession, iErrors);
 			}
         	if (iErrors.isEmpty() && iForm.getRollForwardDepartments()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardDepartments() + " ...");
-	        	sessionRollForward.rollDepartmentsForward(iErrors, iForm);	
+	        	sessionRollForward.rollDepartmentsForward(iErrors, iForm);
+	        	endStage(MSG.rollForwardDepartments(), t0);
 	        }
 	        iProgress++;
         	if (iErrors.isEmpty() && iForm.getRollForwardSessionConfig()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardSessionConfiguration() + " ...");
         	    sessionRollForward.rollSessionConfigurationForward(iErrors, iForm);
+        	    endStage(MSG.rollForwardSessionConfiguration(), t0);
         	}
 	        iProgress++;
-			if (iErrors.isEmpty()){
-				iForm.validateManagerRollForward(toAcadSession, iErrors);
-			}
-        	if (iErrors.isEmpty() && iForm.getRollForwardManagers()) {
-				setStatus(MSG.rollForwardManagers() + " ...");
-        		sessionRollForward.rollManagersForward(iErrors, iForm);
-        	}
-	        iProgress++;
-			if (iErrors.isEmpty()){
-				iForm.validateBuildingAndRoomRollForward(toAcadSession, iErrors);
-			}
-        	if (iErrors.isEmpty() && iForm.getRollForwardRoomData()) {
-				setStatus(MSG.rollForwardRooms() + " ...");
-        		sessionRollForward.rollBuildingAndRoomDataForward(iErrors, iForm);
-        	}
-	        iProgress++;
-			if (iErrors.isEmpty()){
-				iForm.validateDatePatternRollForward(toAcadSession, iErrors);
-			}
-	        if (iErrors.isEmpty() && iForm.getRollForwardDatePatterns()) {
-				setStatus(MSG.rollForwardDatePatterns() + " ...");
-	        	sessionRollForward.rollDatePatternsForward(iErrors, iForm);
-	        }
-	        iProgress++;
-			if (iErrors.isEmpty()){
-				iForm.validateTimePatternRollForward(toAcadSession, iErrors);
-			}
-            if (iErrors.isEmpty() && iForm.getRollForwardTimePatterns()) {
-				setStatus(MSG.rollForwardTimePatterns() + " ...");
-	        	sessionRollForward.rollTimePatternsForward(iErrors, iForm);
-	        }
-	        iProgress++;
-			if (iErrors.isEmpty()){
-				iForm.validateSubjectAreaRollForward(toAcadSession, iErrors);
-			}
-			if (iErrors.isEmpty()){
-				iForm.validateLearningManagementSystemRollForward(toAcadSession, iErrors);
-			}
-	        if (iErrors.isEmpty() && iForm.getRollForwardLearningManagementSystems()) {
-				setStatus(MSG.rollForwardLMSInfo() + " ...");
-	        	sessionRollForward.rollLearningManagementSystemInfoForward(iErrors, iForm);
+	        if (ApplicationProperty.RollForwardParallel.isTrue()) {
+	        	rollForwardInParallel(sessionRollForward, toAcadSession);
+	        	iProgress += 5;
+	        } else {
+				if (iErrors.isEmpty()){
+					iForm.validateManagerRollForward(toAcadSession, iErrors);
+				}
+	        	if (iErrors.isEmpty() && iForm.getRollForwardManagers()) {
+					long t0 = startStage();
+					setStatus(MSG.rollForwardManagers() + " ...");
+	        		sessionRollForward.rollManagersForward(iErrors, iForm);
+	        		endStage(MSG.rollForwardManagers(), t0);
+	        	}
+		        iProgress++;
+				if (iErrors.isEmpty()){
+					iForm.validateBuildingAndRoomRollForward(toAcadSession, iErrors);
+				}
+	        	if (iErrors.isEmpty() && iForm.getRollForwardRoomData()) {
+					long t0 = startStage();
+					setStatus(MSG.rollForwardRooms() + " ...");
+	        		sessionRollForward.rollBuildingAndRoomDataForward(iErrors, iForm);
+	        		endStage(MSG.rollForwardRooms(), t0);
+	        	}
+		        iProgress++;
+				if (iErrors.isEmpty()){
+					iForm.validateDatePatternRollForward(toAcadSession, iErrors);
+				}
+		        if (iErrors.isEmpty() && iForm.getRollForwardDatePatterns()) {
+					long t0 = startStage();
+					setStatus(MSG.rollForwardDatePatterns() + " ...");
+		        	sessionRollForward.rollDatePatternsForward(iErrors, iForm);
+		        	endStage(MSG.rollForwardDatePatterns(), t0);
+		        }
+		        iProgress++;
+				if (iErrors.isEmpty()){
+					iForm.validateTimePatternRollForward(toAcadSession, iErrors);
+				}
+	            if (iErrors.isEmpty() && iForm.getRollForwardTimePatterns()) {
+					long t0 = startStage();
+					setStatus(MSG.rollForwardTimePatterns() + " ...");
+		        	sessionRollForward.rollTimePatternsForward(iErrors, iForm);
+		        	endStage(MSG.rollForwardTimePatterns(), t0);
+		        }
+		        iProgress++;
+				if (iErrors.isEmpty()){
+					iForm.validateSubjectAreaRollForward(toAcadSession, iErrors);
+				}
+				if (iErrors.isEmpty()){
+					iForm.validateLearningManagementSystemRollForward(toAcadSession, iErrors);
+				}
+		        if (iErrors.isEmpty() && iForm.getRollForwardLearningManagementSystems()) {
+					long t0 = startStage();
+					setStatus(MSG.rollForwardLMSInfo() + " ...");
+		        	sessionRollForward.rollLearningManagementSystemInfoForward(iErrors, iForm);
+		        	endStage(MSG.rollForwardLMSInfo(), t0);
+		        }
+		        iProgress++;
 	        }
-	        iProgress++;
 	        if (iErrors.isEmpty() && iForm.getRollForwardSubjectAreas()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardSubjectAreas() + " ...");
 	    		sessionRollForward.rollSubjectAreasForward(iErrors, iForm);
+	    		endStage(MSG.rollForwardSubjectAreas(), t0);
 	    	}
 	        iProgress++;
 	    	if (iErrors.isEmpty() && iForm.getRollForwardInstructorData()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardInstructors() + " ...");
 	    		sessionRollForward.rollInstructorDataForward(iErrors, iForm);
+	    		endStage(MSG.rollForwardInstructors(), t0);
 	    	}
 	        iProgress++;
 			if (iErrors.isEmpty()){
 				iForm.validateCourseOfferingRollForward(toAcadSession, iErrors);
 			}
 			if (iErrors.isEmpty() && iForm.getRollForwardCourseOfferings()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardCourseOfferings() + " ...");
 	    		sessionRollForward.rollCourseOfferingsForward(iErrors, iForm);
+	    		endStage(MSG.rollForwardCourseOfferings(), t0);
 	    	}
 	        iProgress++;
 			if (iErrors.isEmpty()){
 				iForm.validateClassInstructorRollForward(toAcadSession, iErrors);
 			}
 	    	if (iErrors.isEmpty() && iForm.getRollForwardClassInstructors()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardClassInstructors() + " ...");
 	    		sessionRollForward.rollClassInstructorsForward(iErrors, iForm);
+	    		endStage(MSG.rollForwardClassInstructors(), t0);
 	    	}
 	        iProgress++;
 	        if (iErrors.isEmpty()){
 				iForm.validateOfferingCoordinatorsRollForward(toAcadSession, iErrors);
 			}
 	    	if (iErrors.isEmpty() && iForm.getRollForwardOfferingCoordinators()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardOfferingCoordinators() + " ...");
 	    		sessionRollForward.rollOfferingCoordinatorsForward(iErrors, iForm);
+	    		endStage(MSG.rollForwardOfferingCoordinators(), t0);
 	    	}
 			iProgress++;
 			if (iErrors.isEmpty()){
 				iForm.validateTeachingRequestsRollForward(toAcadSession, iErrors);
 			}
 	    	if (iErrors.isEmpty() && iForm.getRollForwardTeachingRequests()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardTeachingRequests() + " ...");
 	    		sessionRollForward.rollTeachingRequestsForward(iErrors, iForm);
+	    		endStage(MSG.rollForwardTeachingRequests(), t0);
 	    	}
 	        iProgress++;
 	    	if (iErrors.isEmpty() && iForm.getAddNewCourseOfferings()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardNewCourses() + " ...");
 	    		sessionRollForward.addNewCourseOfferings(iErrors, iForm);
+	    		endStage(MSG.rollForwardNewCourses(), t0);
 	    	}
 	        iProgress++;
 			if (iErrors.isEmpty()){
 				iForm.validateExamConfigurationRollForward(toAcadSession, iErrors);
 			}
 			if (iErrors.isEmpty() && iForm.getRollForwardExamConfiguration()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardExamConfiguration() + " ...");
 	    		sessionRollForward.rollExamConfigurationDataForward(iErrors, iForm);
+	    		endStage(MSG.rollForwardExamConfiguration(), t0);
 	    	}
 	        iProgress++;
 			if (iErrors.isEmpty()){
 				iForm.validateMidtermExamRollForward(toAcadSession, iErrors);
 			}
 	    	if (iErrors.isEmpty() && iForm.getRollForwardMidtermExams()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardMidtermExams() + " ...");
 	    		sessionRollForward.rollMidtermExamsForward(iErrors, iForm);
+	    		endStage(MSG.rollForwardMidtermExams(), t0);
 	    	}
 	        iProgress++;
 			if (iErrors.isEmpty()){
 				iForm.validateFinalExamRollForward(toAcadSession, iErrors);
 			}
 	    	if (iErrors.isEmpty() && iForm.getRollForwardFinalExams()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardFinalExams() + " ...");
 	    		sessionRollForward.rollFinalExamsForward(iErrors, iForm);
+	    		endStage(MSG.rollForwardFinalExams(), t0);
 	    	}
 	        iProgress++;
 			if (iErrors.isEmpty()){
 				iForm.validateLastLikeDemandRollForward(toAcadSession, iErrors);
 			}
 			if (iErrors.isEmpty() && iForm.getRollForwardStudents()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardStudents() + " ...");
 	    	    sessionRollForward.rollStudentsForward(iErrors, iForm);
+	    	    endStage(MSG.rollForwardStudents(), t0);
 	    	}
 	        iProgress++;
 			if (iErrors.isEmpty()){
 				iForm.validateCurriculaRollForward(toAcadSession, iErrors);
 			}
 	    	if (iErrors.isEmpty() && iForm.getRollForwardCurricula()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardCurricula() + " ...");
 	    	    sessionRollForward.rollCurriculaForward(iErrors, iForm);
+	    	    endStage(MSG.rollForwardCurricula(), t0);
 	    	}
 	        iProgress++;
 	    	if (iErrors.isEmpty() && iForm.getRollForwardReservations()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardReservations() + " ...");
 	    	    sessionRollForward.rollReservationsForward(iErrors, iForm);
+	    	    endStage(MSG.rollForwardReservations(), t0);
 	    	}
 	        iProgress++;
 	        if (iErrors.isEmpty() && iForm.getRollForwardPeriodicTasks()) {
+				long t0 = startStage();
 				setStatus(MSG.rollForwardScheduledTasks() + " ...");
 	    	    sessionRollForward.rollPeriodicTasksForward(iErrors, iForm);
+	    	    endStage(MSG.rollForwardScheduledTasks(), t0);
 	    	}
 	        iProgress++;
 	        if (!iErrors.isEmpty()) {
@@ -403,6 +454,127 @@ public class RollForwardSessionAction extends UniTimeAction<RollForwardSessionFo
 	        	log(MSG.logAllDone());
 	        }
 		}
+		
+		protected long startStage() {
+			InsertedRowsCounter.start();
+			return System.currentTimeMillis();
+		}
+		
+		protected void endStage(String stage, long t0) {
+			long rows = InsertedRowsCounter.stop();
+			info(stage + ": " + rows + " rows created in " + Formats.getNumberFormat("0.00").format((System.currentTimeMillis() - t0) / 1000.0) + " s");
+		}
+		
+		/**
+		 * Roll forward managers, buildings and rooms, date patterns, time patterns, and learning management systems, all the validations are done first.
+		 * Managers, rooms, and date patterns all update the departments of the target session (and their collections), so they are rolled forward
+		 * one after the other. Time patterns and learning management systems do not share any rows, so these two run in parallel.
+		 */
+		protected void rollForwardInParallel(SessionRollForward sessionRollForward, Session toAcadSession) {
+			if (iErrors.isEmpty()) iForm.validateManagerRollForward(toAcadSession, iErrors);
+			if (iErrors.isEmpty()) iForm.validateBuildingAndRoomRollForward(toAcadSession, iErrors);
+			if (iErrors.isEmpty()) iForm.validateDatePatternRollForward(toAcadSession, iErrors);
+			if (iErrors.isEmpty()) iForm.validateTimePatternRollForward(toAcadSession, iErrors);
+			if (iErrors.isEmpty()) iForm.validateSubjectAreaRollForward(toAcadSession, iErrors);
+			if (iErrors.isEmpty()) iForm.validateLearningManagementSystemRollForward(toAcadSession, iErrors);
+			if (!iErrors.isEmpty()) return;
+			
+			if (iForm.getRollForwardManagers()) {
+				long t0 = startStage();
+				setStatus(MSG.rollForwardManagers() + " ...");
+				sessionRollForward.rollManagersForward(iErrors, iForm);
+				endStage(MSG.rollForwardManagers(), t0);
+			}
+			if (iErrors.isEmpty() && iForm.getRollForwardRoomData()) {
+				long t0 = startStage();
+				setStatus(MSG.rollForwardRooms() + " ...");
+				sessionRollForward.rollBuildingAndRoomDataForward(iErrors, iForm);
+				endStage(MSG.rollForwardRooms(), t0);
+			}
+			if (iErrors.isEmpty() && iForm.getRollForwardDatePatterns()) {
+				long t0 = startStage();
+				setStatus(MSG.rollForwardDatePatterns() + " ...");
+				sessionRollForward.rollDatePatternsForward(iErrors, iForm);
+				endStage(MSG.rollForwardDatePatterns(), t0);
+			}
+			if (!iErrors.isEmpty()) return;
+			
+			List<RollForwardStage> stages = new ArrayList<RollForwardStage>();
+			if (iForm.getRollForwardTimePatterns())
+				stages.add(new RollForwardStage(MSG.rollForwardTimePatterns()) {
+					@Override
+					protected void rollForward(SessionRollForward sessionRollForward, RollForwardErrors errors) {
+						sessionRollForward.rollTimePatternsForward(errors, iForm);
+					}
+				});
+			if (iForm.getRollForwardLearningManagementSystems())
+				stages.add(new RollForwardStage(MSG.rollForwardLMSInfo()) {
+					@Override
+					protected void rollForward(SessionRollForward sessionRollForward, RollForwardErrors errors) {
+						sessionRollForward.rollLearningManagementSystemInfoForward(errors, iForm);
+					}
+				});
+			if (stages.isEmpty()) return;
+			
+			String status = "";
+			for (RollForwardStage stage: stages)
+				status += (status.isEmpty() ? "" : ", ") + stage.getStage();
+			setStatus(status + " ...");
+			long t0 = System.currentTimeMillis();
+			for (RollForwardStage stage: stages)
+				stage.start();
+			// keep waiting for all the stages to finish (they share the roll forward state), restore the interrupt flag afterwards
+			boolean interrupted = false;
+			for (RollForwardStage stage: stages) {
+				while (stage.isAlive()) {
+					try {
+						stage.join();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				iErrors.addAll(stage.getErrors());
+			}
+			if (interrupted) Thread.currentThread().interrupt();
+			info(status + ": done in " + Formats.getNumberFormat("0.00").format((System.currentTimeMillis() - t0) / 1000.0) + " s");
+		}
+		
+		/**
+		 * Roll forward stage running in its own thread (and hence using its own hibernate session)
+		 */
+		abstract class RollForwardStage extends Thread {
+			private String iStage;
+			private RollForwardErrors iStageErrors = new RollForwardErrors();
+			
+			RollForwardStage(String stage) {
+				super("RollForward-" + stage);
+				iStage = stage;
+				setDaemon(true);
+			}
+			
+			public String getStage() { return iStage; }
+			public RollForwardErrors getErrors() { return iStageErrors; }
+			
+			protected abstract void rollForward(SessionRollForward sessionRollForward, RollForwardErrors errors);
+			
+			@Override
+			public void run() {
+				ApplicationProperties.setSessionId(getSessionId());
+				Localization.setLocale(getLocale());
+				long t0 = startStage();
+				try {
+					rollForward(new SessionRollForward(RollForwardQueueItem.this), iStageErrors);
+				} catch (Exception e) {
+					error(iStage + ": " + e.getMessage(), e);
+					iStageErrors.addFieldError("rollForward", e.getMessage());
+				} finally {
+					endStage(iStage, t0);
+					ApplicationProperties.setSessionId(null);
+					_RootDAO.closeCurrentThreadSessions();
+					Localization.removeLocale();
+				}
+			}
+		}
 
 		@Override
 		public String name() {
@@ -25,6 +25,7 @@ import org.apache.struts2.tiles.annotation.TilesDefinition;
 import org.apache.struts2.tiles.annotation.TilesPutAttribute;
 import org.unitime.commons.web.WebTable;
 import org.unitime.timetable.form.BlankForm;
+import org.unitime.timetable.gwt.command.server.GwtRpcMetrics;
 import org.unitime.timetable.model.QueryLog;
 import org.unitime.timetable.security.rights.Right;
 
@@ -45,6 +46,7 @@ public class StatsAction extends UniTimeAction<BlankForm> {
 	public String execute() {
 		sessionContext.checkPermission(Right.PageStatistics);
 		WebTable.setOrder(sessionContext,"pageStats.ord",request.getParameter("ord"), 1);
+		WebTable.setOrder(sessionContext,"pageStats.rpcOrd",request.getParameter("rpcOrd"), 1);
 		return "show";
 	}
 	
@@ -63,4 +65,8 @@ public class StatsAction extends UniTimeAction<BlankForm> {
 	public String getQueryTable() {
 		return QueryLog.getTopQueries(7).printTable(WebTable.getOrder(sessionContext, "pageStats.ord"));
 	}
+	
+	public String getRpcTable() {
+		return GwtRpcMetrics.getMetricsTable().printTable(WebTable.getOrder(sessionContext, "pageStats.rpcOrd"));
+	}
 }
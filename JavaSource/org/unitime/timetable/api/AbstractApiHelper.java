@@ -20,7 +20,9 @@
 package org.unitime.timetable.api;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
@@ -72,6 +74,30 @@ public abstract class AbstractApiHelper implements ApiHelper {
 		iResponse.sendError(code, message);
 	}
 	
+	@Override
+	public <R> void setStreamingResponse(Iterator<R> response) throws IOException {
+		List<R> list = new ArrayList<R>();
+		try {
+			while (response.hasNext())
+				list.add(response.next());
+		} finally {
+			closeIfNeeded(response);
+		}
+		setResponse(list);
+	}
+	
+	protected void closeIfNeeded(Object response) throws IOException {
+		if (response instanceof AutoCloseable) {
+			try {
+				((AutoCloseable)response).close();
+			} catch (IOException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+	}
+	
 	@Override
 	public void sendError(int code) throws IOException {
 		iResponse.sendError(code);
@@ -22,6 +22,7 @@ package org.unitime.timetable.api;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.Enumeration;
+import java.util.Iterator;
 
 import org.unitime.timetable.security.SessionContext;
 
@@ -37,6 +38,11 @@ public interface ApiHelper {
 	
 	public <R> void setResponse(R response) throws IOException;
 	
+	/**
+	 * Write the response as a list, one item at a time. The iterator is closed at the end when it implements {@link AutoCloseable}.
+	 */
+	public <R> void setStreamingResponse(Iterator<R> response) throws IOException;
+	
 	public void sendError(int code) throws IOException;
 	
 	public void sendError(int code, String message) throws IOException;
@@ -26,6 +26,7 @@ import java.lang.reflect.Type;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,11 +44,13 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * @author Tomas Muller
@@ -146,9 +149,7 @@ public class JsonApiHelper extends AbstractApiHelper {
 		}
 	}
 	
-	@Override
-	public <R> void setResponse(R response) throws IOException {
-		if (iGson == null) iGson = createGson();
+	protected void setupResponse() {
 		iResponse.setContentType("application/json");
 		iResponse.setCharacterEncoding("UTF-8");
 		iResponse.setHeader("Pragma", "no-cache" );
@@ -158,10 +159,46 @@ public class JsonApiHelper extends AbstractApiHelper {
 		iResponse.setDateHeader("Date", new Date().getTime());
 		iResponse.setDateHeader("Expires", 0);
 		iResponse.setHeader("Content-Disposition", "attachment; filename=\"response.json\"" );
+	}
+	
+	@Override
+	public <R> void setResponse(R response) throws IOException {
+		if (iGson == null) iGson = createGson();
+		setupResponse();
+		Writer writer = iResponse.getWriter();
+		try {
+			// serialize directly into the response, without creating the whole JSON string in memory
+			JsonWriter out = iGson.newJsonWriter(writer);
+			if (response == null)
+				iGson.toJson(JsonNull.INSTANCE, out);
+			else
+				iGson.toJson(response, response.getClass(), out);
+			out.flush();
+		} finally {
+			writer.flush();
+			writer.close();
+		}
+	}
+	
+	@Override
+	public <R> void setStreamingResponse(Iterator<R> response) throws IOException {
+		if (iGson == null) iGson = createGson();
+		setupResponse();
 		Writer writer = iResponse.getWriter();
 		try {
-			writer.write(iGson.toJson(response));
+			JsonWriter out = iGson.newJsonWriter(writer);
+			out.beginArray();
+			while (response.hasNext()) {
+				R item = response.next();
+				if (item == null)
+					out.nullValue();
+				else
+					iGson.toJson(item, item.getClass(), out);
+			}
+			out.endArray();
+			out.flush();
 		} finally {
+			closeIfNeeded(response);
 			writer.flush();
 			writer.close();
 		}
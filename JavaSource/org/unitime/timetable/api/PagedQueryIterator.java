@@ -0,0 +1,111 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.api;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.hibernate.Query;
+
+/**
+ * Iterator over the results of a Hibernate query that is executed in pages of the given size, converting the results one by one.
+ * Pages are selected by the unique id (keyset pagination: the query must be ordered by the unique id and, when the after parameter
+ * is set, only return results with a greater id), so that a page does not depend on the size of the previous pages. Each page is
+ * listed (not scrolled), which does not depend on the JDBC driver being able to stream a result set (MySQL and PostgreSQL
+ * drivers read the whole result set into memory unless special settings are used).<br>
+ * The Hibernate session is cleared between the pages, so only the entities of the current page are kept in memory. The query
+ * should fetch join the associations that are needed by {@link PagedQueryIterator#convert(Object)}, collections are loaded
+ * lazily in batches (see hibernate.default_batch_fetch_size) as all the entities of the page are in the session.
+ * Use together with {@link ApiHelper#setStreamingResponse(Iterator)}.
+ *
+ * @author Tomas Muller
+ */
+public abstract class PagedQueryIterator<T, R> implements Iterator<R> {
+	private org.hibernate.Session iHibSession;
+	private int iPageSize;
+	private Integer iLimit;
+	private Long iAfter;
+	private Iterator<T> iPage = null;
+	private boolean iLastPage = false;
+	private int iCount = 0;
+	
+	/**
+	 * @param hibSession hibernate session (cleared between the pages)
+	 * @param pageSize number of results that are retrieved at once
+	 * @param after only return results with a greater unique id (null to start from the beginning)
+	 * @param limit maximal number of results to return (null or zero for no limit)
+	 */
+	public PagedQueryIterator(org.hibernate.Session hibSession, int pageSize, Long after, Integer limit) {
+		iHibSession = hibSession;
+		iPageSize = pageSize;
+		iAfter = after;
+		iLimit = (limit == null || limit <= 0 ? null : limit);
+	}
+	
+	public PagedQueryIterator(org.hibernate.Session hibSession, Long after, Integer limit) {
+		this(hibSession, 1000, after, limit);
+	}
+	
+	/**
+	 * Create query returning the results ordered by the unique id
+	 * @param after when not null, only results with a greater unique id are to be returned
+	 */
+	protected abstract Query createQuery(Long after);
+	
+	/**
+	 * Unique id of a result
+	 */
+	protected abstract Long getUniqueId(T result);
+	
+	protected abstract R convert(T result);
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean hasNext() {
+		if (iPage != null && iPage.hasNext()) return true;
+		if (iLastPage) return false;
+		int size = (iLimit == null ? iPageSize : Math.min(iPageSize, iLimit - iCount));
+		if (size <= 0) {
+			iLastPage = true;
+			return false;
+		}
+		// entities of the previous page are no longer needed
+		if (iPage != null) iHibSession.clear();
+		List<T> page = createQuery(iAfter).setMaxResults(size).setReadOnly(true).list();
+		if (page.size() < size) iLastPage = true;
+		iPage = page.iterator();
+		return iPage.hasNext();
+	}
+	
+	@Override
+	public R next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		T result = iPage.next();
+		iAfter = getUniqueId(result);
+		iCount ++;
+		return convert(result);
+	}
+	
+	/**
+	 * Number of results returned so far
+	 */
+	public int getCount() { return iCount; }
+}
@@ -25,9 +25,11 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
+import org.hibernate.Query;
 import org.springframework.stereotype.Service;
 import org.unitime.timetable.api.ApiConnector;
 import org.unitime.timetable.api.ApiHelper;
+import org.unitime.timetable.api.PagedQueryIterator;
 import org.unitime.timetable.model.Class_;
 import org.unitime.timetable.model.CourseOffering;
 import org.unitime.timetable.model.Event;
@@ -48,6 +50,11 @@ import org.unitime.timetable.model.dao.InstructionalOfferingDAO;
 import org.unitime.timetable.security.rights.Right;
 
 /**
+ * Class enrollments of an event, a class, an examination, a course, an offering, a configuration, or (when none of these
+ * is given, but the term parameter is) of the whole academic session.<br>
+ * Enrollments that are retrieved by a query are streamed into the response ordered by their unique id, use the limit
+ * and after (last enrollment id of the previous page) parameters to retrieve them in pages.
+ * 
  * @author Tomas Muller
  */
 @Service("/api/enrollments")
@@ -93,9 +100,7 @@ public class EnrollmentsConnector extends ApiConnector {
 			
 			helper.getSessionContext().checkPermissionAnyAuthority(course.getInstructionalOffering().getSession(), Right.ApiRetrieveEnrollments);
 
-			helper.setResponse(convert(CourseOfferingDAO.getInstance().getSession().createQuery(
-					"from StudentClassEnrollment e where e.courseOffering.uniqueId = :courseId"
-					).setLong("courseId", course.getUniqueId()).list()));
+			streamEnrollments(helper, "e.courseOffering.uniqueId = :courseId", "courseId", course.getUniqueId());
 		}
 		String offeringId = helper.getParameter("offeringId");
 		if (offeringId != null) {
@@ -105,9 +110,7 @@ public class EnrollmentsConnector extends ApiConnector {
 			
 			helper.getSessionContext().checkPermissionAnyAuthority(offering.getSession(), Right.ApiRetrieveEnrollments);
 
-			helper.setResponse(convert(CourseOfferingDAO.getInstance().getSession().createQuery(
-					"from StudentClassEnrollment e where e.courseOffering.instructionalOffering.uniqueId = :offeringId"
-					).setLong("offeringId", offering.getUniqueId()).list()));
+			streamEnrollments(helper, "e.courseOffering.instructionalOffering.uniqueId = :offeringId", "offeringId", offering.getUniqueId());
 		}
 		String configurationId = helper.getParameter("configurationId");
 		if (configurationId != null) {
@@ -117,12 +120,50 @@ public class EnrollmentsConnector extends ApiConnector {
 			
 			helper.getSessionContext().checkPermissionAnyAuthority(config.getInstructionalOffering().getSession(), Right.ApiRetrieveEnrollments);
 
-			helper.setResponse(convert(CourseOfferingDAO.getInstance().getSession().createQuery(
-					"from StudentClassEnrollment e where e.clazz.schedulingSubpart.instrOfferingConfig.uniqueId = :configId"
-					).setLong("configId", config.getUniqueId()).list()));
+			streamEnrollments(helper, "e.clazz.schedulingSubpart.instrOfferingConfig.uniqueId = :configId", "configId", config.getUniqueId());
+		}
+		if (eventId == null && classId == null && examId == null && courseId == null && offeringId == null && configurationId == null &&
+			(helper.getParameter("term") != null || helper.getParameter("sid") != null)) {
+			Long sessionId = helper.getAcademicSessionId();
+			if (sessionId == null)
+				throw new IllegalArgumentException("Academic session not provided, please set the term parameter.");
+			
+			helper.getSessionContext().checkPermissionAnyAuthority(sessionId, "Session", Right.ApiRetrieveEnrollments);
+			
+			streamEnrollments(helper, "e.student.session.uniqueId = :sessionId", "sessionId", sessionId);
 		}
 	}
 	
+	protected void streamEnrollments(final ApiHelper helper, final String condition, final String parameter, final Long value) throws IOException {
+		Long after = helper.getOptinalParameterLong("after", null);
+		Integer limit = helper.getOptinalParameterInteger("limit", null);
+		helper.setStreamingResponse(new PagedQueryIterator<StudentClassEnrollment, ClassEnrollmentInfo>(helper.getHibSession(), after, limit) {
+			@Override
+			protected Query createQuery(Long after) {
+				// fetch the student, course, class, and request of each enrollment with the same query
+				Query query = helper.getHibSession().createQuery(
+						"select e from StudentClassEnrollment e " +
+						"inner join fetch e.student s inner join fetch e.courseOffering co " +
+						"inner join fetch e.clazz c inner join fetch c.schedulingSubpart ss " +
+						"left join fetch e.courseRequest cr left join fetch cr.courseDemand cd " +
+						"where " + condition + (after == null ? "" : " and e.uniqueId > :after") + " order by e.uniqueId"
+						).setLong(parameter, value);
+				if (after != null) query.setLong("after", after);
+				return query;
+			}
+			
+			@Override
+			protected Long getUniqueId(StudentClassEnrollment enrollment) {
+				return enrollment.getUniqueId();
+			}
+			
+			@Override
+			protected ClassEnrollmentInfo convert(StudentClassEnrollment enrollment) {
+				return new ClassEnrollmentInfo(enrollment);
+			}
+		});
+	}
+	
 	protected List<ClassEnrollmentInfo> convert(Collection<StudentClassEnrollment> enrollments) {
 		List<ClassEnrollmentInfo> converted = new ArrayList<ClassEnrollmentInfo>();
 		if (enrollments != null)
@@ -176,8 +217,10 @@ public class EnrollmentsConnector extends ApiConnector {
 		String iClassSuffix;
 		String iClassExternalId;
 		Date iRequestDate, iEnrollmentDate;
+		Long iEnrollmentId;
 		
 		ClassEnrollmentInfo(StudentClassEnrollment enrollment) {
+			iEnrollmentId = enrollment.getUniqueId();
 			iStudentId = enrollment.getStudent().getUniqueId();
 			iExternalId = enrollment.getStudent().getExternalUniqueId();
 			iFirstName = enrollment.getStudent().getFirstName();
@@ -19,10 +19,14 @@
 */
 package org.unitime.timetable.backup;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.io.StringWriter;
 import java.util.ArrayList;
@@ -37,6 +41,10 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 import org.apache.commons.logging.Log;
@@ -48,6 +56,8 @@ import org.dom4j.Document;
 import org.dom4j.io.OutputFormat;
 import org.dom4j.io.XMLWriter;
 import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.engine.spi.SessionImplementor;
@@ -90,7 +100,9 @@ import org.unitime.timetable.model.TimetableManager;
 import org.unitime.timetable.model.dao._RootDAO;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
 
 /**
  * @author Tomas Muller
@@ -104,12 +116,34 @@ public class SessionBackup implements SessionBackupInterface {
 	private PrintWriter iDebug = null;
 	private Long iSessionId = null;
 	private BackupProgress iProgress = null;
+	// ids of all the records that have been written (or that were already in the file when a backup is being resumed), for the whole
+	// run: records that are reachable through multiple relations are only written once; only the ids are kept, not the records
+	private Map<String, Set<String>> iWrittenIds = new HashMap<String, Set<String>>();
+	private boolean iParallel = false;
 	
 	public BackupProgress getProgress() {
 		return iProgress;
 	}
 	
-	private void add(TableData.Table table) throws IOException {
+	private synchronized void add(TableData.Table table) throws IOException {
+		Set<String> written = iWrittenIds.get(table.getName());
+		if (written == null) {
+			written = new HashSet<String>();
+			iWrittenIds.put(table.getName(), written);
+		}
+		boolean duplicates = false;
+		for (TableData.Record record: table.getRecordList())
+			if (written.contains(record.getId())) { duplicates = true; break; }
+		if (duplicates) {
+			TableData.Table.Builder filtered = TableData.Table.newBuilder().setName(table.getName());
+			for (TableData.Record record: table.getRecordList())
+				if (written.add(record.getId())) filtered.addRecord(record);
+			if (filtered.getRecordCount() == 0) return;
+			table = filtered.build();
+		} else {
+			for (TableData.Record record: table.getRecordList())
+				written.add(record.getId());
+		}
 		iProgress.info("Writing " + table.getName().substring(table.getName().lastIndexOf('.') + 1) + " [" + table.getRecordCount() + " records, " + table.getSerializedSize() + " bytes]");
 		iOut.writeInt32NoTag(table.getSerializedSize());
 		table.writeTo(iOut);
@@ -132,6 +166,7 @@ public class SessionBackup implements SessionBackupInterface {
 		iSessionId = sessionId;
         iHibSession = new _RootDAO().createNewSession(); 
         iHibSession.setCacheMode(CacheMode.IGNORE);
+        iHibSession.setDefaultReadOnly(true);
         iHibSessionFactory = iHibSession.getSessionFactory();
         try {
     		iProgress.setStatus("Exporting Session");
@@ -273,162 +308,29 @@ public class SessionBackup implements SessionBackupInterface {
             }
             iProgress.incProgress();
             
-            Map<String, Set<Serializable>> allExportedIds = new HashMap<String, Set<Serializable>>();
-            for (String name: new TreeSet<String>(data.keySet())) {
-            	List<QueueItem> list = data.get(name);
-            	Map<String, TableData.Table.Builder> tables = new HashMap<String, TableData.Table.Builder>();
-            	for (QueueItem current: list) {
-            		if (current.size() == 0) continue;
-            		iProgress.info("Loading " + current);
-            		List<Object> objects = current.list();
-            		if (objects == null || objects.isEmpty()) continue;
-            		iProgress.setPhase(current.abbv() + " [" + objects.size() + "]", objects.size());
-            		objects: for (Object object: objects) {
-            			iProgress.incProgress();
-            			
-            			// Get meta data (check for sub-classes)
-            			ClassMetadata meta = iHibSessionFactory.getClassMetadata(object.getClass());
-            			if (meta == null) meta = current.meta();
-            			if (meta.hasSubclasses()) {
-            	            for (Iterator i=iHibSessionFactory.getAllClassMetadata().entrySet().iterator();i.hasNext();) {
-            	                Map.Entry entry = (Map.Entry)i.next();
-            	                ClassMetadata classMetadata = (ClassMetadata)entry.getValue();
-            	                if (classMetadata.getMappedClass().isInstance(object) && !classMetadata.hasSubclasses()) {
-            	                	meta = classMetadata; break;
-            	                }
-            	            }
-            			}
-            			
-            			// Get unique identifier
-            			Serializable id = meta.getIdentifier(object, (SessionImplementor)iHibSession);
-            			if (meta.getIdentifierType().isComponentType()) {
-            				ComponentType cid = (ComponentType)meta.getIdentifierType();
-            				Object[] ids = new Object[cid.getPropertyNames().length];
-            				for (int i = 0; i < cid.getPropertyNames().length; i++) {
-            					Type type = meta.getPropertyType(cid.getPropertyNames()[i]);
-                				Object value = cid.getPropertyValue(object, i);
-                				if (value == null) continue;
-                				if (type.isEntityType()) {
-                					ids[i] = iHibSessionFactory.getClassMetadata(type.getReturnedClass()).getIdentifier(value, (SessionImplementor)iHibSession); 
-                				} else {
-                					ids[i] = value;
-                				}
-            				}
-            				id = new CompositeId(ids);
-            			}
-            			
-            			// Check if already exported
-            			Set<Serializable> exportedIds = allExportedIds.get(meta.getEntityName());
-            			if (exportedIds == null) {
-            				exportedIds = new HashSet<Serializable>();
-            				allExportedIds.put(meta.getEntityName(), exportedIds);
-            			}
-            			if (!exportedIds.add(id)) continue;
-            			
-            			// Check relation to an academic session (if exists)
-            			for (String property: meta.getPropertyNames()) {
-            				Type type = meta.getPropertyType(property);
-                        	if (type instanceof EntityType && type.getReturnedClass().equals(Session.class)) {
-                        		Session s = (Session)meta.getPropertyValue(object, property);
-                        		if (s != null && !s.getUniqueId().equals(iSessionId)) {
-                        			iProgress.warn(meta.getEntityName().substring(meta.getEntityName().lastIndexOf('.') + 1) + "@" + id + " belongs to a different academic session (" + s + ")");
-                        			continue objects; // wrong session
-                        		}
-                        	}
-            			}
-
-            			// Get appropriate table
-            			TableData.Table.Builder table = tables.get(meta.getEntityName());
-            			if (table == null) {
-            				table = TableData.Table.newBuilder();
-            				tables.put(meta.getEntityName(), table);
-            				table.setName(meta.getEntityName());
-            			}
-
-            			// Export object
-            			TableData.Record.Builder record = TableData.Record.newBuilder();
-            			record.setId(id.toString());
-            			for (String property: meta.getPropertyNames()) {
-            				Type type = meta.getPropertyType(property);
-            				Object value = meta.getPropertyValue(object, property);
-            				if (value == null) continue;
-            				TableData.Element.Builder element = TableData.Element.newBuilder();
-            				element.setName(property);
-            				if (type instanceof PrimitiveType) {
-            					element.addValue(((PrimitiveType)type).toString(value));
-            				} else if (type instanceof StringType) {	
-            					element.addValue(((StringType)type).toString((String)value));
-            				} else if (type instanceof BinaryType) {	
-            					element.addValueBytes(ByteString.copyFrom((byte[])value));
-            				} else if (type instanceof TimestampType) {
-            					element.addValue(((TimestampType)type).toString((Date)value));
-            				} else if (type instanceof DateType) {
-            					element.addValue(((DateType)type).toString((Date)value));
-            				} else if (type instanceof EntityType) {
-    							List<Object> ids = current.relation(property, id, false);
-    							if (ids != null)
-    								for (Object i: ids)
-    									element.addValue(i.toString());
-    							iHibSession.evict(value);
-            				} else if (type instanceof CustomType && value instanceof Document) {
-            					if (object instanceof CurriculumClassification && property.equals("students")) continue;
-            					StringWriter w = new StringWriter();
-            					XMLWriter x = new XMLWriter(w, OutputFormat.createCompactFormat());
-            					x.write((Document)value);
-            					x.flush(); x.close();
-            					element.addValue(w.toString());
-            				} else if (type instanceof CollectionType) {
-    							List<Object> ids = current.relation(property, id, false);
-    							if (ids != null)
-    								for (Object i: ids)
-    									element.addValue(i.toString());
-            				} else if (type instanceof EmbeddedComponentType && property.equalsIgnoreCase("uniqueCourseNbr")) {
-            					continue;
-            				} else {
-            					iProgress.warn("Unknown data type: " + type + " (property " + meta.getEntityName() + "." + property + ", class " + value.getClass() + ")");
-            					continue;
-            				}
-            				record.addElement(element.build());
-            			}
-            			if (meta.getIdentifierType().isComponentType()) {
-            				ComponentType cid = (ComponentType)meta.getIdentifierType();
-            				for (int i = 0; i < cid.getPropertyNames().length; i++) {
-            					String property = cid.getPropertyNames()[i];
-            					Type type = cid.getSubtypes()[i];
-                				Object value = ((CompositeId)id).iId[i];
-                				if (value == null) continue;
-                				TableData.Element.Builder element = TableData.Element.newBuilder();
-                				element.setName(property);
-                				if (type instanceof PrimitiveType) {
-                					element.addValue(((PrimitiveType)type).toString(value));
-                				} else if (type instanceof StringType) {	
-                					element.addValue(((StringType)type).toString((String)value));
-                				} else if (type instanceof BinaryType) {	
-                					element.addValueBytes(ByteString.copyFrom((byte[])value));
-                				} else if (type instanceof TimestampType) {
-                					element.addValue(((TimestampType)type).toString((Date)value));
-                				} else if (type instanceof DateType) {
-                					element.addValue(((DateType)type).toString((Date)value));
-                				} else if (type instanceof EntityType) {
-                    				element.addValue(value.toString());
-                				} else {
-                					iProgress.warn("Not-supported composite key data type: " + type + " (property " + meta.getEntityName() + "." + property + ", class " + value.getClass() + ")");
-                					continue;
-                				}
-                				record.addElement(element.build());
-            				}
-            			}
-            			table.addRecord(record.build());
-            			iHibSession.evict(object);
+            if (!iWrittenIds.isEmpty()) {
+            	for (Iterator<Map.Entry<String, List<QueueItem>>> i = data.entrySet().iterator(); i.hasNext(); ) {
+            		Map.Entry<String, List<QueueItem>> e = i.next();
+            		if (isWritten(e.getKey())) {
+            			iProgress.info("Skipping " + e.getKey().substring(e.getKey().lastIndexOf('.') + 1) + " (already written)");
+            			i.remove();
             		}
-            		current.clearCache();
-            	}
-            	
-            	for (TableData.Table.Builder table: tables.values()) {
-            		add(table.build());
             	}
             }
             
+            int nrThreads = ApplicationProperty.SessionBackupNrThreads.intValue();
+            if (nrThreads > 1) {
+            	exportInParallel(data, nrThreads);
+            } else {
+            	for (String name: new TreeSet<String>(data.keySet()))
+            		export(iHibSession, data.get(name), new ChunkWriter() {
+    					@Override
+    					public void write(TableData.Table table) throws IOException {
+    						add(table);
+    					}
+    				});
+            }
+            
             /*
             // Skip ConstraintInfo
             if (!iData.containsKey(ConstraintInfo.class.getName()))
@@ -458,6 +360,318 @@ public class SessionBackup implements SessionBackupInterface {
         }
 	}
 	
+	protected interface ChunkWriter {
+		public void write(TableData.Table table) throws IOException;
+	}
+	
+	private void info(String message) {
+		synchronized (iProgress) {
+			iProgress.info(message);
+		}
+	}
+	
+	private void warn(String message) {
+		synchronized (iProgress) {
+			iProgress.warn(message);
+		}
+	}
+	
+	/**
+	 * Check whether a record has been already written (when a partially written backup is being resumed, or the same record
+	 * is reachable through multiple relations)
+	 */
+	private synchronized boolean isWritten(String entityName, String id) {
+		Set<String> ids = iWrittenIds.get(entityName);
+		return ids != null && ids.contains(id);
+	}
+	
+	/**
+	 * Check whether all the records of the given entity (as counted by {@link QueueItem#size()}) have been already written
+	 */
+	private synchronized boolean isWritten(String name) {
+		Set<Serializable> ids = iExclude.get(name);
+		if (ids == null || ids.isEmpty()) return false;
+		Class clazz = iHibSessionFactory.getClassMetadata(name).getMappedClass();
+		Set<String> written = new HashSet<String>();
+		for (Map.Entry<String, Set<String>> e: iWrittenIds.entrySet()) {
+			ClassMetadata meta = iHibSessionFactory.getClassMetadata(e.getKey());
+			if (meta != null && clazz.isAssignableFrom(meta.getMappedClass()))
+				written.addAll(e.getValue());
+		}
+		for (Serializable id: ids)
+			if (!written.contains(id.toString())) return false;
+		return true;
+	}
+	
+	/**
+	 * Load tables in parallel (each using its own read-only hibernate session), the tables are written in the same order
+	 * as when exported using a single thread. The loaded chunks are handed to the writer through a bounded queue of each table,
+	 * so at most {@link ExportTask#sMaxChunksAhead} chunks per running thread are kept in memory (a thread waits when the writer
+	 * has not yet consumed them).
+	 */
+	protected void exportInParallel(Map<String, List<QueueItem>> data, int nrThreads) throws IOException {
+		iParallel = true;
+		iProgress.setPhase("Exporting [" + data.size() + " tables, " + nrThreads + " threads]", data.size());
+		ExecutorService executor = Executors.newFixedThreadPool(nrThreads);
+		try {
+			Iterator<String> names = new TreeSet<String>(data.keySet()).iterator();
+			Queue<ExportTask> tasks = new LinkedList<ExportTask>();
+			while (true) {
+				while (tasks.size() < 2 * nrThreads && names.hasNext()) {
+					ExportTask task = new ExportTask(data.get(names.next()));
+					executor.execute(task);
+					tasks.add(task);
+				}
+				ExportTask task = tasks.poll();
+				if (task == null) break;
+				TableData.Table table = null;
+				while ((table = task.take()) != null)
+					add(table);
+				iProgress.incProgress();
+			}
+		} finally {
+			executor.shutdownNow();
+			iParallel = false;
+		}
+	}
+	
+	class ExportTask implements Runnable {
+		static final int sMaxChunksAhead = 2;
+		private List<QueueItem> iItems;
+		private BlockingQueue<Object> iChunks = new ArrayBlockingQueue<Object>(sMaxChunksAhead);
+		
+		ExportTask(List<QueueItem> items) {
+			iItems = items;
+		}
+		
+		private void put(Object chunk) throws InterruptedException {
+			iChunks.put(chunk);
+		}
+		
+		/**
+		 * Wait for the next chunk of the exported table(s)
+		 * @return null when the export is done
+		 */
+		TableData.Table take() throws IOException {
+			Object chunk = null;
+			try {
+				chunk = iChunks.take();
+			} catch (InterruptedException e) {
+				throw new IOException("Export interrupted.", e);
+			}
+			if (chunk instanceof TableData.Table) return (TableData.Table)chunk;
+			if (chunk instanceof IOException) throw (IOException)chunk;
+			if (chunk instanceof RuntimeException) throw (RuntimeException)chunk;
+			if (chunk instanceof Throwable) throw new IOException(((Throwable)chunk).getMessage(), (Throwable)chunk);
+			return null;
+		}
+
+		@Override
+		public void run() {
+			try {
+				org.hibernate.Session hibSession = new _RootDAO().createNewSession();
+				hibSession.setCacheMode(CacheMode.IGNORE);
+				hibSession.setDefaultReadOnly(true);
+				try {
+					export(hibSession, iItems, new ChunkWriter() {
+						@Override
+						public void write(TableData.Table table) throws IOException {
+							try {
+								put(table);
+							} catch (InterruptedException e) {
+								// keep the flag, so that the thread does not wait to report the failure
+								Thread.currentThread().interrupt();
+								throw new IOException("Export interrupted.", e);
+							}
+						}
+					});
+				} finally {
+					hibSession.close();
+				}
+				put(Boolean.TRUE);
+			} catch (InterruptedException e) {
+				// the writer has been stopped
+			} catch (Throwable t) {
+				try {
+					put(t);
+				} catch (InterruptedException e) {}
+			}
+		}
+	}
+	
+	/**
+	 * Export all records of the given queue items, the records are passed to the writer in chunks
+	 * of at most {@link ApplicationProperty#SessionBackupChunkSize} records.
+	 */
+	protected void export(org.hibernate.Session hibSession, List<QueueItem> list, ChunkWriter writer) throws IOException {
+		int chunkSize = ApplicationProperty.SessionBackupChunkSize.intValue();
+		Map<String, Set<Serializable>> allExportedIds = new HashMap<String, Set<Serializable>>();
+		Map<String, TableData.Table.Builder> tables = new HashMap<String, TableData.Table.Builder>();
+		for (QueueItem current: list) {
+			if (current.size() == 0) continue;
+			info("Loading " + current);
+			ScrollableResults objects = current.scroll(hibSession);
+			if (objects == null) continue;
+			if (!iParallel)
+				iProgress.setPhase(current.abbv() + " [" + current.size() + "]", current.size());
+			try {
+				objects: while (objects.next()) {
+					Object object = objects.get(0);
+					if (!iParallel) iProgress.incProgress();
+					try {
+						// Get meta data (check for sub-classes)
+						ClassMetadata meta = iHibSessionFactory.getClassMetadata(object.getClass());
+						if (meta == null) meta = current.meta();
+						if (meta.hasSubclasses()) {
+							for (Iterator i=iHibSessionFactory.getAllClassMetadata().entrySet().iterator();i.hasNext();) {
+								Map.Entry entry = (Map.Entry)i.next();
+								ClassMetadata classMetadata = (ClassMetadata)entry.getValue();
+								if (classMetadata.getMappedClass().isInstance(object) && !classMetadata.hasSubclasses()) {
+									meta = classMetadata; break;
+								}
+							}
+						}
+						
+						// Get unique identifier
+						Serializable id = meta.getIdentifier(object, (SessionImplementor)hibSession);
+						if (meta.getIdentifierType().isComponentType()) {
+							ComponentType cid = (ComponentType)meta.getIdentifierType();
+							Object[] ids = new Object[cid.getPropertyNames().length];
+							for (int i = 0; i < cid.getPropertyNames().length; i++) {
+								Type type = meta.getPropertyType(cid.getPropertyNames()[i]);
+								Object value = cid.getPropertyValue(object, i);
+								if (value == null) continue;
+								if (type.isEntityType()) {
+									ids[i] = iHibSessionFactory.getClassMetadata(type.getReturnedClass()).getIdentifier(value, (SessionImplementor)hibSession); 
+								} else {
+									ids[i] = value;
+								}
+							}
+							id = new CompositeId(ids);
+						}
+						
+						// Check if already exported
+						Set<Serializable> exportedIds = allExportedIds.get(meta.getEntityName());
+						if (exportedIds == null) {
+							exportedIds = new HashSet<Serializable>();
+							allExportedIds.put(meta.getEntityName(), exportedIds);
+						}
+						if (!exportedIds.add(id) || isWritten(meta.getEntityName(), id.toString())) continue;
+						
+						// Check relation to an academic session (if exists)
+						for (String property: meta.getPropertyNames()) {
+							Type type = meta.getPropertyType(property);
+							if (type instanceof EntityType && type.getReturnedClass().equals(Session.class)) {
+								Session s = (Session)meta.getPropertyValue(object, property);
+								if (s != null && !s.getUniqueId().equals(iSessionId)) {
+									warn(meta.getEntityName().substring(meta.getEntityName().lastIndexOf('.') + 1) + "@" + id + " belongs to a different academic session (" + s + ")");
+									continue objects; // wrong session
+								}
+							}
+						}
+						
+						// Get appropriate table
+						TableData.Table.Builder table = tables.get(meta.getEntityName());
+						if (table == null) {
+							table = TableData.Table.newBuilder();
+							tables.put(meta.getEntityName(), table);
+							table.setName(meta.getEntityName());
+						}
+						
+						// Export object
+						TableData.Record.Builder record = TableData.Record.newBuilder();
+						record.setId(id.toString());
+						for (String property: meta.getPropertyNames()) {
+							Type type = meta.getPropertyType(property);
+							Object value = meta.getPropertyValue(object, property);
+							if (value == null) continue;
+							TableData.Element.Builder element = TableData.Element.newBuilder();
+							element.setName(property);
+							if (type instanceof PrimitiveType) {
+								element.addValue(((PrimitiveType)type).toString(value));
+							} else if (type instanceof StringType) {	
+								element.addValue(((StringType)type).toString((String)value));
+							} else if (type instanceof BinaryType) {	
+								element.addValueBytes(ByteString.copyFrom((byte[])value));
+							} else if (type instanceof TimestampType) {
+								element.addValue(((TimestampType)type).toString((Date)value));
+							} else if (type instanceof DateType) {
+								element.addValue(((DateType)type).toString((Date)value));
+							} else if (type instanceof EntityType) {
+								List<Object> ids = current.relation(hibSession, property, id, false);
+								if (ids != null)
+									for (Object i: ids)
+										element.addValue(i.toString());
+								hibSession.evict(value);
+							} else if (type instanceof CustomType && value instanceof Document) {
+								if (object instanceof CurriculumClassification && property.equals("students")) continue;
+								StringWriter w = new StringWriter();
+								XMLWriter x = new XMLWriter(w, OutputFormat.createCompactFormat());
+								x.write((Document)value);
+								x.flush(); x.close();
+								element.addValue(w.toString());
+							} else if (type instanceof CollectionType) {
+								List<Object> ids = current.relation(hibSession, property, id, false);
+								if (ids != null)
+									for (Object i: ids)
+										element.addValue(i.toString());
+							} else if (type instanceof EmbeddedComponentType && property.equalsIgnoreCase("uniqueCourseNbr")) {
+								continue;
+							} else {
+								warn("Unknown data type: " + type + " (property " + meta.getEntityName() + "." + property + ", class " + value.getClass() + ")");
+								continue;
+							}
+							record.addElement(element.build());
+						}
+						if (meta.getIdentifierType().isComponentType()) {
+							ComponentType cid = (ComponentType)meta.getIdentifierType();
+							for (int i = 0; i < cid.getPropertyNames().length; i++) {
+								String property = cid.getPropertyNames()[i];
+								Type type = cid.getSubtypes()[i];
+								Object value = ((CompositeId)id).iId[i];
+								if (value == null) continue;
+								TableData.Element.Builder element = TableData.Element.newBuilder();
+								element.setName(property);
+								if (type instanceof PrimitiveType) {
+									element.addValue(((PrimitiveType)type).toString(value));
+								} else if (type instanceof StringType) {	
+									element.addValue(((StringType)type).toString((String)value));
+								} else if (type instanceof BinaryType) {	
+									element.addValueBytes(ByteString.copyFrom((byte[])value));
+								} else if (type instanceof TimestampType) {
+									element.addValue(((TimestampType)type).toString((Date)value));
+								} else if (type instanceof DateType) {
+									element.addValue(((DateType)type).toString((Date)value));
+								} else if (type instanceof EntityType) {
+									element.addValue(value.toString());
+								} else {
+									warn("Not-supported composite key data type: " + type + " (property " + meta.getEntityName() + "." + property + ", class " + value.getClass() + ")");
+									continue;
+								}
+								record.addElement(element.build());
+							}
+						}
+						table.addRecord(record.build());
+						if (chunkSize > 0 && table.getRecordCount() >= chunkSize) {
+							writer.write(table.build());
+							table.clearRecord();
+						}
+					} finally {
+						hibSession.evict(object);
+					}
+				}
+			} finally {
+				objects.close();
+			}
+			current.clearCache();
+		}
+		
+		for (TableData.Table.Builder table: tables.values()) {
+			if (table.getRecordCount() > 0)
+				writer.write(table.build());
+		}
+	}
+	
 	enum Relation {
 		None, Parent, One, Many, Empty
 	}
@@ -607,19 +821,19 @@ public class SessionBackup implements SessionBackupInterface {
 			}
 		}
 		
-		List<Object> list() {
+		ScrollableResults scroll(org.hibernate.Session hibSession) {
 			if (relation() == Relation.Empty) return null;
 			if (AssignmentInfo.class.getName().equals(name())) return null;
 			if (ConstraintInfo.class.getName().equals(name())) return null;
 			if (ChangeLog.class.getName().equals(name())) return null;
-			return iHibSession.createQuery(
+			return hibSession.createQuery(
 					"select " + (distinct() ? "" : "distinct ") + hqlName() + " from " + hqlFrom() + " where " + hqlWhere()
-					).setLong("sessionId", iSessionId).list();
+					).setLong("sessionId", iSessionId).setReadOnly(true).setFetchSize(1000).scroll(ScrollMode.FORWARD_ONLY);
 		}
 		
 		Map<String, Map<Serializable, List<Object>>> iRelationCache = new HashMap<String, Map<Serializable,List<Object>>>();
 		
-		List<Object> relation(String property, Serializable id, boolean data) {
+		List<Object> relation(org.hibernate.Session hibSession, String property, Serializable id, boolean data) {
 			Map<Serializable, List<Object>> relation = iRelationCache.get(property);
 			if (relation == null) {
 				Type type = meta().getPropertyType(property);
@@ -661,7 +875,7 @@ public class SessionBackup implements SessionBackupInterface {
 						else
 							select += (i > 0 ? ", " : "") + hqlName() + "." + idtype.getPropertyNames()[i] + "." + meta.getIdentifierPropertyName();
 					}
-					for (Object[] o: (List<Object[]>)iHibSession.createQuery(
+					for (Object[] o: (List<Object[]>)hibSession.createQuery(
 							"select distinct " + select + (data ? ", p" : ", p." + idProperty) + " from " + hqlFrom() + " inner join " + hqlName() + "." + property + " p where " + hqlWhere()
 							).setLong("sessionId", iSessionId).list()) {
 						Object[] cid = new Object[idtype.getPropertyNames().length];
@@ -682,7 +896,7 @@ public class SessionBackup implements SessionBackupInterface {
 						}
 					}
 				} else {
-					for (Object[] o: (List<Object[]>)iHibSession.createQuery(
+					for (Object[] o: (List<Object[]>)hibSession.createQuery(
 							"select distinct " + hqlName() + "." + meta().getIdentifierPropertyName() + (data ? ", p" : ", p." + idProperty) + 
 							" from " + hqlFrom() + " inner join " + hqlName() + "." + property + " p where " + hqlWhere()
 							).setLong("sessionId", iSessionId).list()) {
@@ -709,6 +923,94 @@ public class SessionBackup implements SessionBackupInterface {
 		private void clearCache() { iRelationCache.clear(); }
 	}
 	
+	/**
+	 * Resume a partially written backup: the file is verified, truncated after the last complete table,
+	 * and the export continues (tables and records that are already in the file are not written again).
+	 */
+	public void resume(File file, BackupProgress progress, Long sessionId) throws IOException {
+		BackupContent content = null;
+		FileInputStream in = new FileInputStream(file);
+		try {
+			content = verify(in, progress);
+		} finally {
+			in.close();
+		}
+		if (content.getError() != null) {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(content.getLength());
+			} finally {
+				raf.close();
+			}
+		}
+		progress.info("Resuming backup " + file + " (" + content + ")");
+		iWrittenIds.putAll(content.getRecordIds());
+		FileOutputStream out = new FileOutputStream(file, true);
+		try {
+			backup(out, progress, sessionId);
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Read the given backup and check that all the tables are complete. The returned content contains the number of tables and records,
+	 * the length of the valid part of the backup and the ids of all the written records.
+	 */
+	public static BackupContent verify(InputStream input, BackupProgress progress) throws IOException {
+		BackupContent content = new BackupContent();
+		CodedInputStream cin = CodedInputStream.newInstance(input);
+		cin.setSizeLimit(1024*1024*1024); // 1 GB
+		try {
+			while (!cin.isAtEnd()) {
+				int size = cin.readInt32();
+				int limit = cin.pushLimit(size);
+				TableData.Table table = TableData.Table.parseFrom(cin);
+				if (cin.getBytesUntilLimit() > 0)
+					throw new InvalidProtocolBufferException("Table " + table.getName() + " is truncated.");
+				cin.popLimit(limit);
+				cin.resetSizeCounter();
+				content.add(table, CodedOutputStream.computeInt32SizeNoTag(size) + size);
+			}
+		} catch (IOException e) {
+			content.iError = e.getMessage();
+			if (progress != null)
+				progress.warn("Backup is not complete, only the first " + content.getLength() + " bytes are valid: " + e.getMessage());
+		}
+		return content;
+	}
+	
+	public static class BackupContent {
+		private long iLength = 0;
+		private int iTables = 0, iRecords = 0;
+		private String iError = null;
+		private Map<String, Set<String>> iRecordIds = new HashMap<String, Set<String>>();
+		
+		private void add(TableData.Table table, int size) {
+			iLength += size;
+			iTables ++;
+			iRecords += table.getRecordCount();
+			Set<String> ids = iRecordIds.get(table.getName());
+			if (ids == null) {
+				ids = new HashSet<String>();
+				iRecordIds.put(table.getName(), ids);
+			}
+			for (TableData.Record record: table.getRecordList())
+				ids.add(record.getId());
+		}
+		
+		public long getLength() { return iLength; }
+		public int getNrTables() { return iTables; }
+		public int getNrRecords() { return iRecords; }
+		public String getError() { return iError; }
+		public Map<String, Set<String>> getRecordIds() { return iRecordIds; }
+		
+		@Override
+		public String toString() {
+			return iTables + " tables, " + iRecords + " records, " + iLength + " bytes" + (iError == null ? "" : ", " + iError);
+		}
+	}
+	
 	public static void main(String[] args) {
 		try {
             HibernateUtil.configureHibernate(ApplicationProperties.getProperties());
@@ -727,7 +1029,7 @@ public class SessionBackup implements SessionBackupInterface {
             }
             
             
-            FileOutputStream out = new FileOutputStream(args.length == 0
+            File file = new File(args.length == 0
             		? session.getAcademicTerm() + session.getAcademicYear() + session.getAcademicInitiative() + ".dat"
             		: args[0]);
             
@@ -743,7 +1045,7 @@ public class SessionBackup implements SessionBackupInterface {
             
             progress.addProgressListener(new ProgressWriter(System.out));
             
-            backup.backup(out, new BackupProgress() {
+            BackupProgress backupProgress = new BackupProgress() {
 				@Override
 				public void setStatus(String status) {
 					progress.setStatus(status);
@@ -773,9 +1075,26 @@ public class SessionBackup implements SessionBackupInterface {
 				public void error(String message) {
 					progress.error(message);
 				}
-			}, session.getUniqueId());
+			};
             
-            out.close();
+            if ("true".equals(ApplicationProperties.getProperty("verify"))) {
+            	FileInputStream in = new FileInputStream(file);
+            	try {
+            		BackupContent content = verify(in, backupProgress);
+            		sLog.info("Backup " + file + ": " + content);
+            	} finally {
+            		in.close();
+            	}
+            } else if ("true".equals(ApplicationProperties.getProperty("resume")) && file.exists()) {
+            	backup.resume(file, backupProgress, session.getUniqueId());
+            } else {
+            	FileOutputStream out = new FileOutputStream(file);
+            	try {
+            		backup.backup(out, backupProgress, session.getUniqueId());
+            	} finally {
+            		out.close();
+            	}
+            }
             if (debug != null) debug.close();
             
 		} catch (Exception e) {
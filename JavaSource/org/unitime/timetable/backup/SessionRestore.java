@@ -28,7 +28,11 @@ import java.io.StringReader;
 import java.lang.reflect.InvocationTargetException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
@@ -130,10 +134,19 @@ import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 /**
+ * Restore of an academic session from a backup created by {@link SessionBackup}.<br>
+ * The restore reads all the tables first, then saves the entities in the order of their not-null dependencies
+ * (see {@link SessionRestore#computeSaveOrder()}), and finally updates them with the remaining relations and collections.<br>
+ * The restored entities are not kept in memory: the Hibernate session is flushed and cleared every {@link SessionRestore#sFlushInterval}
+ * saved (or updated) entities, after which an entity only remembers its new identifier (backup id &rarr; saved id). Relations to such
+ * entities are resolved by {@link org.hibernate.Session#load(String, Serializable)}, and the second pass reloads each entity by its id.
+ * The backup records themselves are kept, as they are needed by both passes.
+ *
  * @author Tomas Muller
  */
 public class SessionRestore implements SessionRestoreInterface {
     private static Log sLog = LogFactory.getLog(SessionBackup.class);
+    private static DecimalFormat sDF = new DecimalFormat("0.0");
     private SessionFactory iHibSessionFactory = null;
 	private org.hibernate.Session iHibSession = null;
 	private BackupProgress iProgress = null;
@@ -141,9 +154,14 @@ public class SessionRestore implements SessionRestoreInterface {
 
 	private Map<String, Map<String, Entity>> iEntities = new Hashtable<String, Map<String, Entity>>();
 	private List<Entity> iAllEntitites = new ArrayList<Entity>();
-	private Map<String, Student> iStudents = new Hashtable<String, Student>();
+	private Map<String, Entity> iStudents = new Hashtable<String, Entity>();
+	private List<Entity> iAttached = new ArrayList<Entity>();
+	private static final int sFlushInterval = 1000;
 	private PrintWriter iDebug = null;
-	private Map<String, TableData.Table> iSkippedTables = new Hashtable<String, TableData.Table>();
+	private Map<String, Map<String, TableData.Record>> iSkippedTables = new Hashtable<String, Map<String, TableData.Record>>();
+	private String iPhase = null;
+	private long iPhaseStart = 0;
+	private int iPhaseRecords = 0;
 
 	private InputStream iIn;
 
@@ -238,6 +256,8 @@ public class SessionRestore implements SessionRestoreInterface {
 		}
 		if (save)
 			iAllEntitites.add(entity);
+		else if (lookup)
+			iAttached.add(entity);
 		if (lookup) {
 			Map<String, Entity> entityOfThisType = iEntities.get(entity.getName());
 			if (entityOfThisType == null) {
@@ -248,23 +268,28 @@ public class SessionRestore implements SessionRestoreInterface {
 		}
 		if (entity.getObject() instanceof Student) {
 			Student student = (Student)entity.getObject();
-			iStudents.put(student.getExternalUniqueId(), student);
+			iStudents.put(student.getExternalUniqueId(), entity);
 		}
 	}
 	
 	protected Entity lookupSkippedRecord(String tableName, String id) {
-		TableData.Table table = iSkippedTables.get(tableName);
-		if (table == null) return null;
-		for (TableData.Record record: table.getRecordList()) {
-			if (id.equals(record.getId()) && record.getElementCount() > 0) return new Entity(null, record, null, id);
-		}
-		return null;
+		Map<String, TableData.Record> records = iSkippedTables.get(tableName);
+		if (records == null) return null;
+		TableData.Record record = records.get(id);
+		return (record == null ? null : new Entity(null, record, null, id));
 	}
 	
 	public void create(TableData.Table table) throws InstantiationException, IllegalAccessException, DocumentException, InvocationTargetException, NoSuchMethodException {
 		ClassMetadata metadata = iHibSessionFactory.getClassMetadata(table.getName());
 		if (metadata == null) {
-			iSkippedTables.put(table.getName(), table);
+			Map<String, TableData.Record> records = iSkippedTables.get(table.getName());
+			if (records == null) {
+				records = new HashMap<String, TableData.Record>();
+				iSkippedTables.put(table.getName(), records);
+			}
+			for (TableData.Record record: table.getRecordList())
+				if (record.getElementCount() > 0 && !records.containsKey(record.getId()))
+					records.put(record.getId(), record);
 			return;
 		}
 		PersistentClass mapping = _RootDAO.getConfiguration().getClassMapping(table.getName());
@@ -284,7 +309,7 @@ public class SessionRestore implements SessionRestoreInterface {
 					break;
 				}
 		}
-		iProgress.setPhase(metadata.getEntityName().substring(metadata.getEntityName().lastIndexOf('.') + 1) + " [" + table.getRecordCount() + "]", table.getRecordCount());
+		setPhase(metadata.getEntityName().substring(metadata.getEntityName().lastIndexOf('.') + 1) + " [" + table.getRecordCount() + "]", table.getRecordCount());
 		for (TableData.Record record: table.getRecordList()) {
 			iProgress.incProgress();
 			Object object = metadata.getMappedClass().getDeclaredConstructor().newInstance();
@@ -412,8 +437,10 @@ public class SessionRestore implements SessionRestoreInterface {
 		}
         if (clazz.equals(Session.class))
         	return ((Entity)iEntities.get(Session.class.getName()).values().iterator().next()).getObject();
-        if (clazz.equals(Student.class))
-        	return checkUnknown(clazz, id, iStudents.get(id));
+        if (clazz.equals(Student.class)) {
+        	Entity student = iStudents.get(id);
+        	return checkUnknown(clazz, id, student == null ? null : student.getObject());
+        }
         if (iIsClone)
         	return checkUnknown(clazz, id,
         			iHibSession.get(clazz, clazz.equals(ItypeDesc.class) ? (Serializable) Integer.valueOf(id) : (Serializable) Long.valueOf(id)));
@@ -433,6 +460,7 @@ public class SessionRestore implements SessionRestoreInterface {
 					if (list.size() > 1) 
 						message("Multiple results for SolverParameterDef (name=" + def.getName() + ", group=" + group.getName() + ")", "");
 					entity.setObject(list.get(0));
+					iAttached.add(entity);
 					return false;
 				}
 			}
@@ -446,6 +474,7 @@ public class SessionRestore implements SessionRestoreInterface {
 					.add(Restrictions.eq("timetableManager", manager)).uniqueResult();
 				if (object != null) {
 					entity.setObject(object);
+					iAttached.add(entity);
 					return false;
 				}
 			}
@@ -470,6 +499,85 @@ public class SessionRestore implements SessionRestoreInterface {
 	}
 	
 	
+	/**
+	 * Save the given objects (if any), flush the Hibernate session and clear it, so that the entities saved so far are not kept in memory.
+	 * The entities that were attached to the session only remember their identifiers afterwards (see {@link Entity#getObject()}).
+	 */
+	protected void checkpoint(List<Object> otherObjectsToSave) {
+		if (otherObjectsToSave != null) {
+			for (Object object: otherObjectsToSave)
+				iHibSession.save(object);
+			otherObjectsToSave.clear();
+		}
+		iHibSession.flush();
+		for (Entity e: iAttached)
+			e.detach();
+		iAttached.clear();
+		iHibSession.clear();
+	}
+	
+	protected void setPhase(String phase, int records) {
+		phaseDone();
+		iPhase = phase;
+		iPhaseStart = System.currentTimeMillis();
+		iPhaseRecords = records;
+		iProgress.setPhase(phase, records);
+	}
+	
+	/**
+	 * Report the throughput of the last phase (only for phases that took at least a second)
+	 */
+	protected void phaseDone() {
+		if (iPhase != null) {
+			long time = System.currentTimeMillis() - iPhaseStart;
+			if (time >= 1000 && iPhaseRecords > 1)
+				iProgress.info(iPhase + ": " + iPhaseRecords + " records in " + sDF.format(time / 1000.0) + " s (" + sDF.format(1000.0 * iPhaseRecords / time) + " records/s)");
+		}
+		iPhase = null;
+	}
+	
+	/**
+	 * Compute save order of all the mapped entities: an entity is ranked one above the highest ranked entity it references through
+	 * a not-null relation (or a relation that is part of its composite identifier). Cycles are ignored, entities that cannot be saved
+	 * in the computed order are retried afterwards.
+	 */
+	protected Map<String, Integer> computeSaveOrder() {
+		Map<String, ClassMetadata> metadata = iHibSessionFactory.getAllClassMetadata();
+		Map<String, Integer> ranks = new HashMap<String, Integer>();
+		for (String name: metadata.keySet())
+			computeRank(name, metadata, ranks, new HashSet<String>());
+		return ranks;
+	}
+	
+	private int computeRank(String name, Map<String, ClassMetadata> metadata, Map<String, Integer> ranks, Set<String> visited) {
+		Integer rank = ranks.get(name);
+		if (rank != null) return rank;
+		if (!visited.add(name)) return 0;
+		ClassMetadata meta = metadata.get(name);
+		Set<Class> dependencies = new HashSet<Class>();
+		for (int i = 0; i < meta.getPropertyNames().length; i++) {
+			if (meta.getPropertyNullability()[i]) continue;
+			Type type = meta.getPropertyTypes()[i];
+			if (type instanceof EntityType) dependencies.add(type.getReturnedClass());
+		}
+		if (meta.getIdentifierType().isComponentType()) {
+			for (Type type: ((ComponentType)meta.getIdentifierType()).getSubtypes())
+				if (type instanceof EntityType) dependencies.add(type.getReturnedClass());
+		}
+		int ret = 0;
+		for (Map.Entry<String, ClassMetadata> e: metadata.entrySet()) {
+			if (e.getKey().equals(name)) continue;
+			for (Class dependency: dependencies)
+				if (dependency.isAssignableFrom(e.getValue().getMappedClass())) {
+					ret = Math.max(ret, 1 + computeRank(e.getKey(), metadata, ranks, visited));
+					break;
+				}
+		}
+		visited.remove(name);
+		ranks.put(name, ret);
+		return ret;
+	}
+	
 	public void restore(InputStream input, BackupProgress progress) throws IOException, InstantiationException, IllegalAccessException, DocumentException, InvocationTargetException, NoSuchMethodException {
 		iIn = input;
         iProgress = progress;
@@ -480,7 +588,7 @@ public class SessionRestore implements SessionRestoreInterface {
             CodedInputStream cin = CodedInputStream.newInstance(iIn);
             cin.setSizeLimit(1024*1024*1024); // 1 GB
             
-            iProgress.setPhase("Loading data", 1);
+            setPhase("Loading data", 1);
             TableData.Table t = null;
             while ((t = readTable(cin)) != null) {
         		if (iDebug != null) {
@@ -490,57 +598,88 @@ public class SessionRestore implements SessionRestoreInterface {
         		}
             	create(t);
             }
+            phaseDone();
             iProgress.incProgress();
             
     		iHibSession.setFlushMode(FlushMode.MANUAL);
-    		iProgress.setPhase("Fixing", iAllEntitites.size());
+    		setPhase("Fixing", iAllEntitites.size());
     		for (Iterator<Entity> i = iAllEntitites.iterator(); i.hasNext(); ) {
     			iProgress.incProgress();
     			if (!fix(i.next())) i.remove();
     		}
     		
-    		iProgress.setPhase("Saving (not-null)", iAllEntitites.size());
+    		setPhase("Saving (not-null)", iAllEntitites.size());
+    		final Map<String, Integer> ranks = computeSaveOrder();
     		List<Entity> save = new ArrayList<Entity>(iAllEntitites);
+    		Collections.sort(save, new Comparator<Entity>() {
+				@Override
+				public int compare(Entity e1, Entity e2) {
+					Integer r1 = ranks.get(e1.getName()), r2 = ranks.get(e2.getName());
+					return (r1 == null ? 0 : r1.intValue()) - (r2 == null ? 0 : r2.intValue());
+				}
+			});
     		List<Object> otherObjectsToSave = new ArrayList<Object>();
-    		boolean saved = true;
-    		while (!save.isEmpty() && saved) {
-    			saved = false;
+    		List<Entity> postponed = new ArrayList<Entity>();
+    		Integer lastRank = null;
+    		int saved = 0;
+    		for (Entity e: save) {
+    			// flush once all the entities of a dependency level are saved
+    			Integer rank = ranks.get(e.getName());
+    			if (lastRank != null && !lastRank.equals(rank)) checkpoint(null);
+    			lastRank = rank;
+    			if (e.canSave() == null) {
+    				iProgress.incProgress();
+    				e.fixRelationsNullOnly(otherObjectsToSave);
+    				iHibSession.save(e.getObject());
+    				iAttached.add(e);
+    				if (++saved % sFlushInterval == 0) checkpoint(null);
+    			} else {
+    				postponed.add(e);
+    			}
+    		}
+    		checkpoint(null);
+    		// entities with cyclic not-null dependencies: keep saving whatever can be saved
+    		save = postponed;
+    		boolean changed = true;
+    		while (!save.isEmpty() && changed) {
+    			changed = false;
     			for (Iterator<Entity> i = save.iterator(); i.hasNext(); ) {
     				Entity e = i.next();
     				if (e.canSave() == null) {
     					iProgress.incProgress();
     					e.fixRelationsNullOnly(otherObjectsToSave);
     					iHibSession.save(e.getObject());
+    					iAttached.add(e);
     					i.remove();
-    					saved = true;
+    					changed = true;
+    					if (++saved % sFlushInterval == 0) checkpoint(null);
     				}
     			}
-    			iHibSession.flush();
+    			checkpoint(null);
     		}
-    		for (Object object: otherObjectsToSave)
-    			iHibSession.save(object);
-    		otherObjectsToSave.clear();
-    		iHibSession.flush();
+    		checkpoint(otherObjectsToSave);
 
-    		iProgress.setPhase("Saving (all)", iAllEntitites.size());
+    		setPhase("Saving (all)", iAllEntitites.size());
+    		int updated = 0;
     		for (Entity e: iAllEntitites) {
     			iProgress.incProgress();
     			String property = e.canSave();
-    			if (property == null) {
-    				e.fixRelations(otherObjectsToSave);
-    				iHibSession.update(e.getObject());
-    			} else {
+    			if (property != null) {
     				message("Skipping " + e.getAbbv() + " (missing not-null relation " + property + ")", e.getId());
     				continue;
     			}
+    			if (e.reload() == null) {
+    				message("Skipping " + e.getAbbv() + " (not saved)", e.getId());
+    				continue;
+    			}
+    			e.fixRelations(otherObjectsToSave);
+    			if (++updated % sFlushInterval == 0) checkpoint(otherObjectsToSave);
     		}
-    		for (Object object: otherObjectsToSave)
-    			iHibSession.save(object);
-    		otherObjectsToSave.clear();
     		
-    		iProgress.setPhase("Flush", 1);
-    		iHibSession.flush();
+    		setPhase("Flush", 1);
+    		checkpoint(otherObjectsToSave);
     		iProgress.incProgress();
+    		phaseDone();
     		
     		printMessages();
     		
@@ -554,6 +693,7 @@ public class SessionRestore implements SessionRestoreInterface {
 		private ClassMetadata iMetaData;
 		private TableData.Record iRecord;
 		private Object iObject;
+		private Serializable iSavedId = null;
 		private String iId;
 		
 		protected Entity(ClassMetadata metadata, TableData.Record record, Object object, String id) {
@@ -566,8 +706,37 @@ public class SessionRestore implements SessionRestoreInterface {
 		public ClassMetadata getMetaData() { return iMetaData; }
 		public String getName() { return getMetaData().getEntityName(); }
 		public String getAbbv() { return getName().substring(getName().lastIndexOf('.') + 1); }
-		public Object getObject() { return iObject; }
+		/**
+		 * The restored object. When the entity has been saved and the session cleared since, a proxy loaded by the saved id is returned.
+		 */
+		public Object getObject() {
+			if (iObject == null && iSavedId != null)
+				return iHibSession.load(getName(), iSavedId);
+			return iObject;
+		}
 		public void setObject(Object object) { iObject = object; }
+		
+		/**
+		 * Forget the object (it is about to be cleared from the session), only remember its identifier
+		 */
+		protected void detach() {
+			if (iObject != null && iHibSession.contains(iObject)) {
+				iSavedId = iHibSession.getIdentifier(iObject);
+				iObject = null;
+			}
+		}
+		
+		/**
+		 * Load the saved object back into the session (so that its relations can be updated)
+		 * @return null if the entity has not been saved
+		 */
+		protected Object reload() {
+			if (iObject == null && iSavedId != null) {
+				iObject = iHibSession.get(getName(), iSavedId);
+				if (iObject != null) iAttached.add(this);
+			}
+			return (iObject != null && iHibSession.contains(iObject) ? iObject : null);
+		}
 		public String getId() { return iId; }
 		public TableData.Record getRecord() { return iRecord; }
 		public TableData.Element getElement(String property) {
@@ -817,6 +986,21 @@ public class SessionRestore implements SessionRestoreInterface {
 			}			
 		}
 		
+		/**
+		 * Update the collection in place when the (reloaded) object already has one, replacing a collection of a persistent
+		 * object would break the collections with orphan removal
+		 */
+		@SuppressWarnings("unchecked")
+		private void setCollection(String property, Collection<Object> values) {
+			Object current = getMetaData().getPropertyValue(getObject(), property);
+			if (current != null && current instanceof Collection) {
+				((Collection<Object>)current).clear();
+				((Collection<Object>)current).addAll(values);
+			} else {
+				getMetaData().setPropertyValue(getObject(), property, values);
+			}
+		}
+		
 		public void fixRelations() {
 			for (int i = 0; i < getMetaData().getPropertyNames().length; i++) {
 				String property = getMetaData().getPropertyNames()[i];
@@ -848,7 +1032,7 @@ public class SessionRestore implements SessionRestoreInterface {
 									set.add(v);
 							}
 						}
-						getMetaData().setPropertyValue(getObject(), property, set);
+						setCollection(property, set);
 					} else if (type instanceof ListType) {
 						List<Object> set = new ArrayList<Object>();
 						for (String id: element.getValueList()) {
@@ -860,7 +1044,7 @@ public class SessionRestore implements SessionRestoreInterface {
 									set.add(v);
 							}
 						}
-						getMetaData().setPropertyValue(getObject(), property, set);
+						setCollection(property, set);
 					} else {
 						message("Unimplemented collection type: " + type.getClass().getName() + " (" + getAbbv() + "." + property + ")", "");
 					}
@@ -423,6 +423,12 @@ public enum ApplicationProperty {
 	@Description("Solver: minimal amount of free memory (in MB) for the solver to load")
 	SolverMemoryLimit("tmtbl.solver.mem_limit"),
 
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Solver: maximal number of class assignments of the course timetabling solvers that are cached between requests (0 to disable the shared cache)")
+	@Since(4.7)
+	SolverClassAssignmentCacheSize("tmtbl.solver.assignmentCache.size"),
+
 	@Values({"fatal", "error", "warn", "info", "debug", "trace"})
 	@Description("Solver: log level for %")
 	@Parameter("operation")
@@ -676,6 +682,30 @@ public enum ApplicationProperty {
 	@Parameter("operation")
 	OnlineSchedulingLogOperation("unitime.sectioning.log.enabled.%"),
 
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("Online Student Scheduling Log: persist the log records as soon as there is the given number of them waiting (flush size)")
+	@Since(4.7)
+	OnlineSchedulingLogFlushSize("unitime.sectioning.log.flushSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("60")
+	@Description("Online Student Scheduling Log: maximal time in seconds a log record can wait before it is persisted (flush latency)")
+	@Since(4.7)
+	OnlineSchedulingLogFlushInterval("unitime.sectioning.log.flushInterval"),
+
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("Online Student Scheduling Log: when the limit on the number of records held in memory is reached, wait up to the given number of milliseconds for the logger to catch up before a record is dropped")
+	@Since(4.7)
+	OnlineSchedulingLogBlockTimeout("unitime.sectioning.log.blockTimeout"),
+
+	@Type(Integer.class)
+	@DefaultValue("500")
+	@Description("Online Student Scheduling Log: number of records saved between two Hibernate session flushes (should be a multiple of hibernate.jdbc.batch_size)")
+	@Since(4.7)
+	OnlineSchedulingLogSaveBatch("unitime.sectioning.log.saveBatch"),
+
 	@Description("Online Student Scheduling: override for the solver parameter %")
 	@Parameter("solver parameter")
 	OnlineSchedulingParameter("unitime.sectioning.config.%"),
@@ -1629,6 +1659,37 @@ public enum ApplicationProperty {
 	@Description("Query Log: record request object/parameters as JSON message")
 	QueryLogJSON("unitime.query.log.json"),
 
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("GWT RPC: maximal number of concurrent executions of the given command (fully qualified or simple request class name, 0 for no limit)")
+	@Parameter("command")
+	@Since(4.7)
+	GwtRpcMaxConcurrentExecutions("unitime.rpc.maxConcurrent.%"),
+
+	@Type(Integer.class)
+	@DefaultValue("60")
+	@Description("GWT RPC: how long (in seconds) to wait for an execution slot when the concurrency limit of a command is reached")
+	@Since(4.7)
+	GwtRpcMaxConcurrentWait("unitime.rpc.maxConcurrent.wait"),
+
+	@Type(Integer.class)
+	@DefaultValue("20")
+	@Description("GWT RPC: number of threads executing the asynchronous requests (e.g., exports, long running solver requests)")
+	@Since(4.7)
+	GwtRpcAsyncThreads("unitime.rpc.async.threads"),
+
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("GWT RPC: maximal number of asynchronous requests waiting for an execution thread, further requests are rejected with a server busy error")
+	@Since(4.7)
+	GwtRpcAsyncQueueSize("unitime.rpc.async.queueSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("GWT RPC: timeout (in seconds) of an asynchronous execution, counted from its submission, after which it is cancelled (0 for no timeout)")
+	@Since(4.7)
+	GwtRpcAsyncTimeout("unitime.rpc.async.timeout"),
+
 	@Type(Boolean.class)
 	@DefaultValue("false")
 	@Description("Classes: if there are two or more scheduling subparts in a parent-child relation with the same instructional type (e.g., Lec - Lec a - Lec b stacked underneath), inherit preferences and the date pattern from the parent subpart whenever possible")
@@ -1867,6 +1928,12 @@ public enum ApplicationProperty {
 	@Description("Solver: passivate solution after given number of minutes of inactivity (disable passivation by setting to zero)")
 	SolverPasivationTime("unitime.solver.passivation.time"),
 
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Solver: passivate (and backup) solutions into a compressed (gzipped) compact XML file instead of a pretty-printed XML file")
+	@Since(4.7)
+	SolverPassivationCompressed("unitime.solver.passivation.compress"),
+
 	@Type(Integer.class)
 	@DefaultValue("300")
 	@Description("Online Student Scheduling: sectioning queue load interval in seconds")
@@ -1877,6 +1944,18 @@ public enum ApplicationProperty {
 	@Description("Online Student Scheduling: sectioning queue update interval in seconds")
 	OnlineSchedulingQueueUpdateInterval("unitime.sectioning.queue.updateInterval"),
 
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Online Student Scheduling: notify the sectioning queue updaters (on all the nodes of the cluster) when a new item is added to the queue, so that it is processed right away (the update interval is then only used as a fallback)")
+	@Since(4.7)
+	OnlineSchedulingQueueNotify("unitime.sectioning.queue.notify"),
+
+	@Type(Integer.class)
+	@DefaultValue("500")
+	@Description("Online Student Scheduling: delay in milliseconds between a sectioning queue notification and the queue check, changes made within this delay are processed (and coalesced) together")
+	@Since(4.7)
+	OnlineSchedulingQueueNotifyDelay("unitime.sectioning.queue.notifyDelay"),
+
 	@Description("Online Student Scheduling: only academic sessions matching this year (regular expression) are loaded in")
 	OnlineSchedulingAcademicYear("unitime.enrollment.year"),
 
@@ -1901,6 +1980,35 @@ public enum ApplicationProperty {
 	@Description("Online Student Scheduling: asynchronous execution thread pool size")
 	OnlineSchedulingServerAsyncPoolSize("unitime.enrollment.server.asyncPoolSize"),
 
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Online Student Scheduling: maximal number of waiting asynchronous jobs of each priority class (interactive, background), 0 for no limit")
+	@Since(4.7)
+	OnlineSchedulingServerAsyncQueueSize("unitime.enrollment.server.asyncQueueSize"),
+
+	@DefaultValue("check-offering|persist-expectations|expire-reservations|reload-.*|critical-courses")
+	@Description("Online Student Scheduling: regular expression matching names of the asynchronous actions that are executed with the background priority")
+	@Since(4.7)
+	OnlineSchedulingServerAsyncBackgroundActions("unitime.enrollment.server.asyncBackgroundActions"),
+
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Online Student Scheduling: maximal number of offerings (and courses, expectations) kept in the local near-cache of a replicated server, 0 to disable the near-cache")
+	@Since(4.7)
+	OnlineSchedulingServerNearCacheSize("unitime.enrollment.server.nearCacheSize"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Online Student Scheduling: write a binary snapshot of the server data when the server is unloaded and use it (instead of reloading all the data from the database) when the server is loaded again")
+	@Since(4.7)
+	OnlineSchedulingServerSnapshot("unitime.enrollment.server.snapshot"),
+
+	@Type(Integer.class)
+	@DefaultValue("72")
+	@Description("Online Student Scheduling: maximal age of a server snapshot in hours (older snapshots are ignored, it should be lower than unitime.cleanup.sectioningQueue so that all the changes made since the snapshot can be replayed)")
+	@Since(4.7)
+	OnlineSchedulingServerSnapshotMaxAge("unitime.enrollment.server.snapshot.maxAge"),
+
 	@Type(Integer.class)
 	@DefaultValue("366")
 	@Description("Change Log: automatically remove records after the given number of days")
@@ -2164,6 +2272,18 @@ public enum ApplicationProperty {
 	@DefaultValue("false")
 	@Description("Session Roll Forward: reset class suffixes and external ids")
 	RollForwardResetClassSuffix("unitime.rollforward.resetClassSufix"),
+	
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Session Roll Forward: roll forward time patterns and learning management systems in parallel (each using its own hibernate session), after managers, buildings and rooms, and date patterns (which all update the departments)")
+	@Since(4.7)
+	RollForwardParallel("unitime.rollforward.parallel"),
+	
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("Session Roll Forward: number of objects saved in one transaction (instructors, date patterns, time patterns, and learning management systems)")
+	@Since(4.7)
+	RollForwardBatchSize("unitime.rollforward.batchSize"),
 
 	@Type(Boolean.class)
 	@DefaultValue("false")
@@ -2690,6 +2810,18 @@ public enum ApplicationProperty {
 	@Description("Session Backup: include point in time data")
 	SessionBackupPointInTime("unitime.session_backup.pointInTimeData"),
 	
+	@Type(Integer.class)
+	@DefaultValue("1")
+	@Description("Session Backup: number of threads loading the exported tables (each using its own read-only hibernate session), the tables are still written in the same order")
+	@Since(4.7)
+	SessionBackupNrThreads("unitime.session_backup.nrThreads"),
+	
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Session Backup: maximal number of records in a written table chunk (larger tables are written in multiple chunks)")
+	@Since(4.7)
+	SessionBackupChunkSize("unitime.session_backup.chunkSize"),
+	
 	@Type(Integer.class)
 	@DefaultValue("1")
 	@Description("Instructional Offerings / Classes: maximal number of selected subject areas for the search to start automatically")
@@ -2765,6 +2897,12 @@ public enum ApplicationProperty {
 	@Description("Time Grid XLS Export: font name")
 	TimeGridXLSFontName("unitime.timeGrid.xls.fontName"),
 
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("XLSX Export: number of rows kept in memory by the streaming workbook (older rows are flushed into a temporary file)")
+	@Since(4.7)
+	ExportXLSXRowWindow("unitime.export.xlsx.rowWindow"),
+
 	@Type(Integer.class)
 	@DefaultValue("1")
 	@Description("Task Scheduler: task execution service check interval in minutes")
@@ -34,32 +34,43 @@ import java.util.regex.Pattern;
 
 import javax.imageio.ImageIO;
 
-import org.apache.poi.hssf.usermodel.HSSFClientAnchor;
 import org.apache.poi.hssf.usermodel.HSSFPalette;
-import org.apache.poi.hssf.usermodel.HSSFPatriarch;
-import org.apache.poi.hssf.usermodel.HSSFRichTextString;
-import org.apache.poi.hssf.usermodel.HSSFRow;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.hssf.util.HSSFColor;
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.ClientAnchor;
 import org.apache.poi.ss.usermodel.ClientAnchor.AnchorType;
+import org.apache.poi.ss.usermodel.Drawing;
 import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.HorizontalAlignment;
 import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.PrintSetup;
+import org.apache.poi.ss.usermodel.RichTextString;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.VerticalAlignment;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.Units;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.export.Exporter.Printer;
 import org.unitime.timetable.export.PDFPrinter.A;
 import org.unitime.timetable.export.PDFPrinter.F;
 
 /**
+ * Excel printer. By default, an in-memory XLS workbook is created (limited to 65k rows).
+ * In the XLSX mode, a streaming workbook is used instead: only a window of the last rows is kept in memory
+ * (see {@link ApplicationProperty#ExportXLSXRowWindow}), older rows are flushed into a compressed temporary file,
+ * and the document is streamed into the output when the printer is closed.
+ * 
  * @author Tomas Muller
  */
 public class XLSPrinter implements Printer {
@@ -74,13 +85,28 @@ public class XLSPrinter implements Printer {
 	private Map<String, CellStyle> iStyles;
 	private Map<String, Font> iFonts = new HashMap<String, Font>();
 	private Map<String, Short> iColors = new HashMap<String, Short>();
-	
+	private boolean iXLSX = false;
+	private int iLastColumn = 0;
 	
 	public XLSPrinter(OutputStream output, boolean checkLast) {
+		this(output, checkLast, false);
+	}
+	
+	public XLSPrinter(OutputStream output, boolean checkLast, boolean xlsx) {
 		iOutput = output;
 		iCheckLast = checkLast;
-		iWorkbook = new HSSFWorkbook();
-		iSheet = iWorkbook.createSheet();
+		iXLSX = xlsx;
+		if (iXLSX) {
+			SXSSFWorkbook workbook = new SXSSFWorkbook(ApplicationProperty.ExportXLSXRowWindow.intValue());
+			workbook.setCompressTempFiles(true);
+			iWorkbook = workbook;
+			iSheet = iWorkbook.createSheet();
+			// column widths are computed as the rows are flushed from the window
+			((SXSSFSheet)iSheet).trackAllColumnsForAutoSizing();
+		} else {
+			iWorkbook = new HSSFWorkbook();
+			iSheet = iWorkbook.createSheet();
+		}
 		iSheet.setDisplayGridlines(false);
 		iSheet.setPrintGridlines(false);
 		iSheet.setFitToPage(true);
@@ -121,7 +147,11 @@ public class XLSPrinter implements Printer {
 	
 	@Override
 	public String getContentType() {
-		return "application/vnd.ms-excel";
+		return iXLSX ? "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet" : "application/vnd.ms-excel";
+	}
+	
+	public String getExtension() {
+		return iXLSX ? "xlsx" : "xls";
 	}
 	
 	@Override
@@ -143,6 +173,7 @@ public class XLSPrinter implements Printer {
 			if (fields[idx] != null)
 				nrLines = Math.max(nrLines, fields[idx].split("\n").length);
 		}
+		iLastColumn = Math.max(iLastColumn, cellIdx);
 		if (nrLines > 1)
 			headerRow.setHeightInPoints(nrLines * iSheet.getDefaultRowHeightInPoints() + 1f);
 	}
@@ -175,6 +206,7 @@ public class XLSPrinter implements Printer {
 				cell.setCellValue(f);
 			}
 		}
+		iLastColumn = Math.max(iLastColumn, cellIdx);
 		if (nrLines > 1)
 			row.setHeightInPoints(nrLines * iSheet.getDefaultRowHeightInPoints() + 1f);
 		iLastLine = fields;
@@ -199,7 +231,7 @@ public class XLSPrinter implements Printer {
 			
 			if (f.hasBufferedImage()) {
 				try {
-					addImageToSheet(cellIdx - 1, iRowNum - 1, (HSSFSheet)iSheet, f.getBufferedImage(), EXPAND_ROW_AND_COLUMN);
+					addImageToSheet(cellIdx - 1, iRowNum - 1, iSheet, f.getBufferedImage(), EXPAND_ROW_AND_COLUMN);
 				} catch (IOException e) {
 					e.printStackTrace();
 				}
@@ -227,27 +259,28 @@ public class XLSPrinter implements Printer {
 				for (A g: f.getChunks()) {
 					if (g.hasText()) {
 						if (text.length() > 0) text.append(f.has(F.INLINE) ? " " : "\n");
-						font.add(new Object[] {text.length(), getFont(g.has(F.BOLD), g.has(F.ITALIC), g.has(F.UNDERLINE), g.getColor()).getIndex()});
+						font.add(new Object[] {text.length(), getFont(g.has(F.BOLD), g.has(F.ITALIC), g.has(F.UNDERLINE), g.getColor()).getIndexAsInt()});
 						text.append(g.getText());
 					}
 					if (g.hasChunks()) {
 						for (A h: g.getChunks()) {
 							if (h.hasText()) {
 								if (text.length() > 0) text.append(" ");
-								font.add(new Object[] {text.length(), getFont(h.has(F.BOLD), h.has(F.ITALIC), h.has(F.UNDERLINE), h.getColor()).getIndex()});
+								font.add(new Object[] {text.length(), getFont(h.has(F.BOLD), h.has(F.ITALIC), h.has(F.UNDERLINE), h.getColor()).getIndexAsInt()});
 								text.append(h.getText());
 							}
 						}
 					}
 				}
 				nrLines = Math.max(nrLines, text.toString().split("\n").length);
-				font.add(new Object[] {text.length(), (short)0});
-				HSSFRichTextString value = new HSSFRichTextString(text.toString());
+				font.add(new Object[] {text.length(), 0});
+				RichTextString value = iWorkbook.getCreationHelper().createRichTextString(text.toString());
 				for (int i = 0; i < font.size() - 1; i++)
-					value.applyFont((Integer)font.get(i)[0], (Integer)font.get(1 + i)[0], (Short)font.get(i)[1]);
+					value.applyFont((Integer)font.get(i)[0], (Integer)font.get(1 + i)[0], ((Integer)font.get(i)[1]).shortValue());
 				cell.setCellValue(value);
 			}
 		}
+		iLastColumn = Math.max(iLastColumn, cellIdx);
 		if (nrLines > 1)
 			row.setHeightInPoints(Math.max(nrLines * iSheet.getDefaultRowHeightInPoints() + 1f, row.getHeightInPoints()));
 		iLastLine = fields;
@@ -266,16 +299,24 @@ public class XLSPrinter implements Printer {
 		return color;
 	}
 	
+	protected XSSFColor colorToXSSF(Color c) {
+		if (c == null) c = Color.black;
+		return new XSSFColor(new byte[] {(byte)c.getRed(), (byte)c.getGreen(), (byte)c.getBlue()}, null);
+	}
+	
 	protected Font getFont(boolean bold, boolean italic, boolean underline, Color c) {
-		Short color = colorToShort(c);
-		String fontId = (bold ? "b" : "") + (italic ? "i" : "") + (underline ? "u" : "") + (color == null ? "" : color);
+		String fontId = (bold ? "b" : "") + (italic ? "i" : "") + (underline ? "u" : "") +
+				(iXLSX ? Integer.toHexString((c == null ? Color.black : c).getRGB()) : String.valueOf(colorToShort(c)));
 		Font font = iFonts.get(fontId);
 		if (font == null) {
 			font = iWorkbook.createFont();
 			font.setBold(bold);
 			font.setItalic(italic);
 			font.setUnderline(underline ? Font.U_SINGLE : Font.U_NONE);
-			font.setColor(color);
+			if (iXLSX)
+				((XSSFFont)font).setColor(colorToXSSF(c));
+			else
+				font.setColor(colorToShort(c));
 			font.setFontHeightInPoints((short)10);
 			font.setFontName("Arial");
 			iFonts.put(fontId, font);
@@ -300,8 +341,12 @@ public class XLSPrinter implements Printer {
 			style.setAlignment(f.has(F.RIGHT) ? HorizontalAlignment.RIGHT : f.has(F.CENTER) ? HorizontalAlignment.CENTER : HorizontalAlignment.LEFT);
 			style.setVerticalAlignment(VerticalAlignment.TOP);
 			style.setFont(getFont(f.has(F.BOLD), f.has(F.ITALIC), f.has(F.UNDERLINE), f.getColor()));
-			if (f.hasBackground())
-				style.setFillBackgroundColor(colorToShort(f.getBackground()));
+			if (f.hasBackground()) {
+				if (iXLSX)
+					((XSSFCellStyle)style).setFillBackgroundColor(colorToXSSF(f.getBackground()));
+				else
+					style.setFillBackgroundColor(colorToShort(f.getBackground()));
+			}
         	style.setWrapText(true);
         	if (format != null)
         		style.setDataFormat(iWorkbook.createDataFormat().getFormat(format));
@@ -315,37 +360,45 @@ public class XLSPrinter implements Printer {
     public static final int EXPAND_ROW_AND_COLUMN = 3;
     public static final int OVERLAY_ROW_AND_COLUMN = 7;
     
-    protected void addImageToSheet(int colNumber, int rowNumber, HSSFSheet sheet, BufferedImage image, int resizeBehaviour) throws IOException {
+    protected void addImageToSheet(int colNumber, int rowNumber, Sheet sheet, BufferedImage image, int resizeBehaviour) throws IOException {
         double reqImageWidthMM = image.getWidth() / ConvertImageUnits.PIXELS_PER_MILLIMETRES;
         double reqImageHeightMM = image.getHeight() / ConvertImageUnits.PIXELS_PER_MILLIMETRES;
         addImageToSheet(colNumber, rowNumber, sheet, image, reqImageWidthMM, reqImageHeightMM, resizeBehaviour);
     }
     
-    protected void addImageToSheet(int colNumber, int rowNumber, HSSFSheet sheet, BufferedImage image, double reqImageWidthMM, double reqImageHeightMM, int resizeBehaviour) throws IOException {
+    protected void addImageToSheet(int colNumber, int rowNumber, Sheet sheet, BufferedImage image, double reqImageWidthMM, double reqImageHeightMM, int resizeBehaviour) throws IOException {
         ClientAnchorDetail colClientAnchorDetail = fitImageToColumns(sheet, colNumber, reqImageWidthMM, resizeBehaviour);
         ClientAnchorDetail rowClientAnchorDetail = fitImageToRows(sheet, rowNumber, reqImageHeightMM, resizeBehaviour);
 
-        HSSFClientAnchor anchor = new HSSFClientAnchor(0,
-                                      0,
-                                      colClientAnchorDetail.getInset(),
-                                      rowClientAnchorDetail.getInset(),
-                                      (short)colClientAnchorDetail.getFromIndex(),
-                                      rowClientAnchorDetail.getFromIndex(),
-                                      (short)colClientAnchorDetail.getToIndex(),
-                                      rowClientAnchorDetail.getToIndex());
+        ClientAnchor anchor = sheet.getWorkbook().getCreationHelper().createClientAnchor();
+        anchor.setCol1(colClientAnchorDetail.getFromIndex());
+        anchor.setRow1(rowClientAnchorDetail.getFromIndex());
+        anchor.setCol2(colClientAnchorDetail.getToIndex());
+        anchor.setRow2(rowClientAnchorDetail.getToIndex());
+        if (sheet instanceof HSSFSheet) {
+        	anchor.setDx2(colClientAnchorDetail.getInset());
+        	anchor.setDy2(rowClientAnchorDetail.getInset());
+        } else {
+        	// XSSF anchor offsets are in EMUs, not in fractions of the cell
+        	double colWidthMM = ConvertImageUnits.widthUnits2Millimetres((short)sheet.getColumnWidth(colClientAnchorDetail.getToIndex()));
+        	Row row = sheet.getRow(rowClientAnchorDetail.getToIndex());
+        	double rowHeightMM = (row == null ? sheet.getDefaultRowHeightInPoints() : row.getHeightInPoints()) / ConvertImageUnits.POINTS_PER_MILLIMETRE;
+        	anchor.setDx2((int)Math.round(colWidthMM * Units.EMU_PER_CENTIMETER / 10.0 * colClientAnchorDetail.getInset() / ConvertImageUnits.TOTAL_COLUMN_COORDINATE_POSITIONS));
+        	anchor.setDy2((int)Math.round(rowHeightMM * Units.EMU_PER_CENTIMETER / 10.0 * rowClientAnchorDetail.getInset() / ConvertImageUnits.TOTAL_ROW_COORDINATE_POSITIONS));
+        }
 
         anchor.setAnchorType(AnchorType.MOVE_AND_RESIZE);
         
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
 		ImageIO.write(image, "PNG", bytes);
 
-        int index = sheet.getWorkbook().addPicture(bytes.toByteArray(), HSSFWorkbook.PICTURE_TYPE_PNG);
+        int index = sheet.getWorkbook().addPicture(bytes.toByteArray(), Workbook.PICTURE_TYPE_PNG);
 
-        HSSFPatriarch patriarch = sheet.createDrawingPatriarch();
-        patriarch.createPicture(anchor, index);
+        Drawing<?> drawing = sheet.createDrawingPatriarch();
+        drawing.createPicture(anchor, index);
     }
     
-    private ClientAnchorDetail fitImageToColumns(HSSFSheet sheet, int colNumber, double reqImageWidthMM, int resizeBehaviour) {
+    private ClientAnchorDetail fitImageToColumns(Sheet sheet, int colNumber, double reqImageWidthMM, int resizeBehaviour) {
         double colWidthMM;
         double colCoordinatesPerMM;
         int pictureWidthCoordinates;
@@ -371,7 +424,7 @@ public class XLSPrinter implements Printer {
         return(colClientAnchorDetail);
     }
     
-    private ClientAnchorDetail calculateColumnLocation(HSSFSheet sheet, int startingColumn, double reqImageWidthMM) {
+    private ClientAnchorDetail calculateColumnLocation(Sheet sheet, int startingColumn, double reqImageWidthMM) {
     	ClientAnchorDetail anchorDetail;
     	double totalWidthMM = 0.0D;
     	double colWidthMM = 0.0D;
@@ -401,12 +454,12 @@ public class XLSPrinter implements Printer {
     	return(anchorDetail);
     }
     
-    private ClientAnchorDetail fitImageToRows(HSSFSheet sheet, int rowNumber, double reqImageHeightMM, int resizeBehaviour) {
+    private ClientAnchorDetail fitImageToRows(Sheet sheet, int rowNumber, double reqImageHeightMM, int resizeBehaviour) {
         double rowCoordinatesPerMM;
         int pictureHeightCoordinates;
         ClientAnchorDetail rowClientAnchorDetail = null;
 
-        HSSFRow row = sheet.getRow(rowNumber);
+        Row row = sheet.getRow(rowNumber);
         if (row == null) {
         	row = sheet.createRow(rowNumber);
         }
@@ -432,9 +485,9 @@ public class XLSPrinter implements Printer {
         return rowClientAnchorDetail;
     }
     
-    private ClientAnchorDetail calculateRowLocation(HSSFSheet sheet, int startingRow, double reqImageHeightMM) {
+    private ClientAnchorDetail calculateRowLocation(Sheet sheet, int startingRow, double reqImageHeightMM) {
         ClientAnchorDetail clientAnchorDetail;
-        HSSFRow row;
+        Row row;
         double rowHeightMM = 0.0D;
         double totalRowHeightMM = 0.0D;
         double overlapMM;
@@ -525,10 +578,15 @@ public class XLSPrinter implements Printer {
 	
 	@Override
 	public void close() throws IOException {
-		for (short col = 0; col <= iSheet.getRow(0).getLastCellNum(); col++)
+		for (int col = 0; col <= iLastColumn; col++)
 			if (iSheet.getColumnWidth(col) == 256 * iSheet.getDefaultColumnWidth())
 				iSheet.autoSizeColumn(col);
-		iWorkbook.write(iOutput);
-		iWorkbook.close();
+		try {
+			iWorkbook.write(iOutput);
+		} finally {
+			if (iWorkbook instanceof SXSSFWorkbook)
+				((SXSSFWorkbook)iWorkbook).dispose();
+			iWorkbook.close();
+		}
 	}
 }
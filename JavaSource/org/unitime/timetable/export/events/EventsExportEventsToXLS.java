@@ -40,11 +40,15 @@ public class EventsExportEventsToXLS extends EventsExportEventsToPDF {
 	public String reference() {
 		return "events.xls";
 	}
+	
+	protected boolean isXLSX() {
+		return false;
+	}
 
 	@Override
 	protected void print(ExportHelper helper, EventLookupRpcRequest request, List<EventInterface> events, int eventCookieFlags, EventMeetingSortBy sort, boolean asc) throws IOException {
 		sort(events, sort, asc);
-		Printer printer = new XLSPrinter(helper.getOutputStream(), false);
+		Printer printer = new XLSPrinter(helper.getOutputStream(), false, isXLSX());
 		helper.setup(printer.getContentType(), reference(), true);
 		hideColumns(printer, events, eventCookieFlags);
 		print(printer, events, EventFlag.SHOW_MEETING_CONTACTS.in(eventCookieFlags));
@@ -39,10 +39,14 @@ public class EventsExportMeetingsToXLS extends EventsExportMeetingsToPDF {
 	public String reference() {
 		return "meetings.xls";
 	}
+	
+	protected boolean isXLSX() {
+		return false;
+	}
 
 	@Override
 	protected void print(ExportHelper helper, EventLookupRpcRequest request, List<EventInterface> events, int eventCookieFlags, EventMeetingSortBy sort, boolean asc) throws IOException {
-		Printer printer = new XLSPrinter(helper.getOutputStream(), false);
+		Printer printer = new XLSPrinter(helper.getOutputStream(), false, isXLSX());
 		helper.setup(printer.getContentType(), reference(), true);
 		hideColumns(printer, events, eventCookieFlags);
 		print(printer, meetings(events, sort, asc));
@@ -50,6 +50,10 @@ public class SavedHqlExportToXLS extends SavedHqlExportToCSV {
 	public String reference() {
 		return "hql-report.xls";
 	}
+	
+	protected boolean isXLSX() {
+		return false;
+	}
 
 	@Override
 	public void export(ExportHelper helper) throws IOException {
@@ -147,8 +151,9 @@ public class SavedHqlExportToXLS extends SavedHqlExportToCSV {
 		}
 		if (!hasAppearancePermission) throw new AccessDeniedException();
 		
-		BufferedPrinter out = new BufferedPrinter(new XLSPrinter(helper.getOutputStream(), false));
-		helper.setup(out.getContentType(), hql.getName().replace('/', '-').replace('\\', '-').replace(':', '-') + ".xls", true);
+		XLSPrinter printer = new XLSPrinter(helper.getOutputStream(), false, isXLSX());
+		BufferedPrinter out = new BufferedPrinter(printer);
+		helper.setup(out.getContentType(), hql.getName().replace('/', '-').replace('\\', '-').replace(':', '-') + "." + printer.getExtension(), true);
 		
 		execute(context.getUser(), out, hql.getQuery(), params, 0, -1, hql.getParameters());
 		
@@ -45,6 +45,8 @@ public class RoomsExportXLS extends RoomsExportPDF {
 	@Override
 	public String reference() { return "rooms.xls"; }
 	
+	protected boolean isXLSX() { return false; }
+	
 	@Override
 	protected void print(ExportHelper helper, List<RoomDetailInterface> rooms, ExportContext context) throws IOException {
 		helper.getSessionContext().hasPermission(Right.RoomsExportCsv);
@@ -61,7 +63,7 @@ public class RoomsExportXLS extends RoomsExportPDF {
 		
 		context.setGridAsText(true);
 		
-		XLSPrinter printer = new XLSPrinter(helper.getOutputStream(), false);
+		XLSPrinter printer = new XLSPrinter(helper.getOutputStream(), false, isXLSX());
 		helper.setup(printer.getContentType(), reference(), true);
 		
 		String[] header = new String[columns.size()];
@@ -0,0 +1,206 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.gwt.command.server;
+
+import java.text.DecimalFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.unitime.commons.web.WebTable;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.command.client.GwtRpcException;
+
+/**
+ * Per command (request class) statistics of the GWT RPC executions (number of calls, failures, currently running calls,
+ * a latency histogram) and a per command concurrency limit (see {@link ApplicationProperty#GwtRpcMaxConcurrentExecutions}).
+ *
+ * @author Tomas Muller
+ */
+public class GwtRpcMetrics {
+	private static final long[] sBuckets = new long[] { 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000 };
+	private static Map<String, CommandMetrics> sMetrics = new ConcurrentHashMap<String, CommandMetrics>();
+	
+	public static CommandMetrics getMetrics(String command) {
+		return sMetrics.computeIfAbsent(command, c -> new CommandMetrics(c));
+	}
+	
+	/**
+	 * Statistics of the given request class, keyed by the fully qualified class name (simple names are not unique across packages)
+	 */
+	public static CommandMetrics getMetrics(Class<?> requestClass) {
+		return getMetrics(requestClass.getName());
+	}
+	
+	/**
+	 * Statistics of all the commands that have been executed, ordered by the command name
+	 */
+	public static Map<String, CommandMetrics> getMetrics() {
+		return new TreeMap<String, CommandMetrics>(sMetrics);
+	}
+	
+	/**
+	 * Statistics of all the commands as a table, used by the Page Statistics page
+	 */
+	public static WebTable getMetricsTable() {
+		WebTable table = new WebTable(9, "GWT RPC Statistics (since the last restart)", "stats.action?rpcOrd=%%",
+				new String[] {"Command", "Calls", "Errors", "Rejected", "Running", "AvgTime [ms]", "50% [ms]", "95% [ms]", "MaxTime [ms]"},
+				new String[] {"left", "right", "right", "right", "right", "right", "right", "right", "right"},
+				new boolean[] {true, false, false, false, false, false, false, false, false});
+		DecimalFormat df = new DecimalFormat("#,##0.00");
+		for (CommandMetrics m: getMetrics().values()) {
+			long p50 = m.getPercentile(0.5), p95 = m.getPercentile(0.95);
+			table.addLine(new String[] {
+					m.getCommand(),
+					String.valueOf(m.getCount()),
+					String.valueOf(m.getErrors()),
+					String.valueOf(m.getRejected()),
+					String.valueOf(m.getRunning()),
+					df.format(m.getAverageTime()),
+					String.valueOf(p50),
+					String.valueOf(p95),
+					String.valueOf(m.getMaxTime())},
+					new Comparable<?>[] {
+						m.getCommand(),
+						m.getCount(),
+						m.getErrors(),
+						m.getRejected(),
+						m.getRunning(),
+						m.getAverageTime(),
+						p50,
+						p95,
+						m.getMaxTime()});
+		}
+		return table;
+	}
+	
+	public static void reset() {
+		for (CommandMetrics m: sMetrics.values())
+			m.reset();
+	}
+	
+	public static class CommandMetrics {
+		private String iCommand;
+		private Semaphore iLimit = null;
+		private AtomicInteger iRunning = new AtomicInteger(0);
+		private AtomicLong iCount = new AtomicLong(0), iErrors = new AtomicLong(0), iRejected = new AtomicLong(0);
+		private AtomicLong iTotalTime = new AtomicLong(0), iMaxTime = new AtomicLong(0);
+		private AtomicLongArray iHistogram = new AtomicLongArray(sBuckets.length + 1);
+		
+		private CommandMetrics(String command) {
+			iCommand = command;
+			Integer limit = ApplicationProperty.GwtRpcMaxConcurrentExecutions.intValue(command);
+			if ((limit == null || limit <= 0) && command.indexOf('.') >= 0)
+				limit = ApplicationProperty.GwtRpcMaxConcurrentExecutions.intValue(command.substring(command.lastIndexOf('.') + 1));
+			if (limit != null && limit > 0)
+				iLimit = new Semaphore(limit, true);
+		}
+		
+		public String getCommand() { return iCommand; }
+		
+		/**
+		 * Wait for a free execution slot (when there is a concurrency limit for the command)
+		 * @param maxWaitInSeconds maximal time to wait, the call fails when there is no slot available after this time
+		 * @throws GwtRpcException when there is no execution slot available
+		 */
+		public void acquire(int maxWaitInSeconds) throws GwtRpcException {
+			if (iLimit != null) {
+				boolean acquired = false;
+				try {
+					acquired = iLimit.tryAcquire(maxWaitInSeconds, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if (!acquired) {
+					iRejected.incrementAndGet();
+					throw new GwtRpcException("Too many concurrent requests of the same kind, please try again later.");
+				}
+			}
+			iRunning.incrementAndGet();
+		}
+		
+		/**
+		 * Release an execution slot acquired by {@link CommandMetrics#acquire(int)} and record the execution time
+		 */
+		public void release(long time, boolean failed) {
+			iRunning.decrementAndGet();
+			if (iLimit != null) iLimit.release();
+			iCount.incrementAndGet();
+			if (failed) iErrors.incrementAndGet();
+			iTotalTime.addAndGet(time);
+			iMaxTime.accumulateAndGet(time, Math::max);
+			int bucket = 0;
+			while (bucket < sBuckets.length && time > sBuckets[bucket]) bucket++;
+			iHistogram.incrementAndGet(bucket);
+		}
+		
+		public int getRunning() { return iRunning.get(); }
+		public long getCount() { return iCount.get(); }
+		public long getErrors() { return iErrors.get(); }
+		public long getRejected() { return iRejected.get(); }
+		public long getMaxTime() { return iMaxTime.get(); }
+		public double getAverageTime() {
+			long count = iCount.get();
+			return (count == 0 ? 0.0 : ((double)iTotalTime.get()) / count);
+		}
+		
+		/**
+		 * Approximate percentile of the execution time (upper bound of the histogram bucket), in milliseconds
+		 */
+		public long getPercentile(double percentile) {
+			long total = 0;
+			for (int i = 0; i < iHistogram.length(); i++) total += iHistogram.get(i);
+			if (total == 0) return 0;
+			long limit = (long)Math.ceil(percentile * total), sum = 0;
+			for (int i = 0; i < sBuckets.length; i++) {
+				sum += iHistogram.get(i);
+				if (sum >= limit) return sBuckets[i];
+			}
+			return iMaxTime.get();
+		}
+		
+		/**
+		 * Latency histogram, the key is the upper bound of the bucket in milliseconds (the last bucket is unbounded)
+		 */
+		public Map<Long, Long> getHistogram() {
+			Map<Long, Long> ret = new TreeMap<Long, Long>();
+			for (int i = 0; i < sBuckets.length; i++)
+				ret.put(sBuckets[i], iHistogram.get(i));
+			ret.put(Long.MAX_VALUE, iHistogram.get(sBuckets.length));
+			return ret;
+		}
+		
+		public void reset() {
+			iCount.set(0); iErrors.set(0); iRejected.set(0); iTotalTime.set(0); iMaxTime.set(0);
+			for (int i = 0; i < iHistogram.length(); i++) iHistogram.set(i, 0);
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%s: %d calls (%d failed, %d rejected, %d running), avg %.1f ms, p50 %d ms, p95 %d ms, max %d ms",
+					iCommand, getCount(), getErrors(), getRejected(), getRunning(), getAverageTime(), getPercentile(0.5), getPercentile(0.95), getMaxTime());
+		}
+	}
+}
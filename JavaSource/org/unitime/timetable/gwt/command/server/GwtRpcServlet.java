@@ -23,8 +23,20 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -73,7 +85,9 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	private static Log sLog = LogFactory.getLog(GwtRpcServlet.class);
 	private QueryLogFilter.Saver iSaver = null;
 	private static IdGenerator sIdGenerator = new IdGenerator();
-	private static Map<Long, Execution> sExecutions = new Hashtable<Long, Execution>();
+	private static Map<Long, Execution> sExecutions = new ConcurrentHashMap<Long, Execution>();
+	private static final long sAbandonedExecutionTimeout = 3600000l;
+	private ExecutorService iExecutor = null;
 	private Gson iGson = null;
 	
 	protected SessionContext getSessionContext() {
@@ -91,6 +105,17 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 		iSaver = new QueryLogFilter.Saver();
 		iSaver.setName("GwtRpcLogSaver");
 		iSaver.start();
+		int nrThreads = Math.max(1, ApplicationProperty.GwtRpcAsyncThreads.intValue());
+		iExecutor = new ThreadPoolExecutor(nrThreads, nrThreads, 0l, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(Math.max(1, ApplicationProperty.GwtRpcAsyncQueueSize.intValue())), new ThreadFactory() {
+			private AtomicInteger iNextThread = new AtomicInteger(1);
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "GwtRpcExecutor-" + iNextThread.getAndIncrement());
+				t.setDaemon(true);
+				return t;
+			}
+		}, new ThreadPoolExecutor.AbortPolicy());
 		iGson = new GsonBuilder()
 				.registerTypeAdapter(java.sql.Timestamp.class, new JsonSerializer<java.sql.Timestamp>() {
 					@Override
@@ -127,6 +152,10 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	@Override
 	public void destroy() {
 		if (iSaver != null) iSaver.interrupt();
+		if (iExecutor != null) iExecutor.shutdownNow();
+		if (sLog.isInfoEnabled())
+			for (GwtRpcMetrics.CommandMetrics m: GwtRpcMetrics.getMetrics().values())
+				sLog.info(m.toString());
 	}
 	
 	public static <T extends GwtRpcResponse> GwtRpcImplementation<GwtRpcRequest<T>, T> getImplementation(Class<? extends GwtRpcRequest<T>> requestClass, ApplicationContext applicationContext) throws BeansException {
@@ -174,6 +203,7 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 		// start time
 		long t0 = JProf.currentTimeMillis();
 		GwtRpcLogging logging = null;
+		GwtRpcMetrics.CommandMetrics metrics = null;
 		// create helper
 		try {
 			// retrieve implementation from given request
@@ -182,15 +212,26 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 			// get logging
 			logging = implementation.getClass().getAnnotation(GwtRpcLogging.class);
 			
+			// wait for an execution slot
+			GwtRpcMetrics.CommandMetrics m = GwtRpcMetrics.getMetrics(request.getClass());
+			m.acquire(ApplicationProperty.GwtRpcMaxConcurrentWait.intValue());
+			metrics = m;
+			
 			// execute request
 			T response = implementation.execute(request, getSessionContext());
 			
+			// record execution time
+			metrics.release(JProf.currentTimeMillis() - t0, false); metrics = null;
+			
 			// log request
 			log(request, response, null, JProf.currentTimeMillis() - t0, getSessionContext(), logging);
 			
 			// return response
 			return response;
 		} catch (Throwable t) {
+			// record execution time
+			if (metrics != null) metrics.release(JProf.currentTimeMillis() - t0, true);
+			
 			// log exception
 			log(request, null, t, JProf.currentTimeMillis() - t0, getSessionContext(), logging);
 			
@@ -265,12 +306,24 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	@Override
 	public <T extends GwtRpcResponse> Long executeAsync(GwtRpcRequest<T> request) throws GwtRpcException {
 		try {
+			// forget executions that have finished a long time ago, but their results were never collected
+			long now = System.currentTimeMillis();
+			for (Iterator<Execution> i = sExecutions.values().iterator(); i.hasNext(); ) {
+				Execution execution = i.next();
+				if (execution.isDone() && now - execution.getDoneTime() > sAbandonedExecutionTimeout) i.remove();
+			}
 			Execution<GwtRpcRequest<T>, T> execution = new Execution<GwtRpcRequest<T>, T>(request);
-			synchronized (sExecutions) {
-				sExecutions.put(execution.getExecutionId(), execution);
+			sExecutions.put(execution.getExecutionId(), execution);
+			try {
+				execution.submit(iExecutor);
+			} catch (RejectedExecutionException e) {
+				sExecutions.remove(execution.getExecutionId());
+				sLog.warn("Execute async rejected: too many asynchronous requests are waiting (" + request.getClass().getSimpleName() + ")");
+				throw new GwtRpcException("Server is busy, please try again later.");
 			}
-			execution.start();
 			return execution.getExecutionId();
+		} catch (GwtRpcException e) {
+			throw e;
 		} catch (Exception e) {
 			sLog.warn("Execute async failed: " + e.getMessage());
 			throw new GwtRpcException(e.getMessage(), e);
@@ -280,18 +333,10 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	@Override
 	public <T extends GwtRpcResponse> T waitForResults(Long executionId) throws GwtRpcException {
 		try {
-			Execution<GwtRpcRequest<T>, T> execution = null;
-			synchronized (sExecutions) {
-				execution = sExecutions.get(executionId);
-			}
+			Execution<GwtRpcRequest<T>, T> execution = sExecutions.get(executionId);
 			if (execution == null) throw new GwtRpcException("No execution with given id found.");
-			try {
-				execution.waitToFinish();
-			} catch (InterruptedException e) {
-			}
-			synchronized (sExecutions) {
-				sExecutions.remove(executionId);
-			}
+			execution.waitToFinish(ApplicationProperty.GwtRpcAsyncTimeout.intValue());
+			sExecutions.remove(executionId);
 			if (execution.getException() != null) throw execution.getException();
 			return execution.getResponse();
 		} catch (GwtRpcCancelledException e) {
@@ -307,18 +352,22 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	@Override
 	public Boolean cancelExecution(Long executionId) throws GwtRpcException {
 		try {
-			Execution execution = null;
-			synchronized (sExecutions) {
-				execution = sExecutions.get(executionId);
-			}
+			Execution execution = sExecutions.get(executionId);
 			if (execution == null) return false;
-			execution.cancelExecution();
+			execution.cancelExecution("Operation cancelled by the user.");
 			return true;
 		} catch (Exception e) {
 			sLog.warn("Cancel execution failed: " + e.getMessage());
 			throw new GwtRpcException(e.getMessage(), e);
 		}
 	}
+	
+	/**
+	 * Execution statistics of the GWT RPC commands
+	 */
+	public static Map<String, GwtRpcMetrics.CommandMetrics> getMetrics() {
+		return GwtRpcMetrics.getMetrics();
+	}
 		
 	private static class IdGenerator {
 		long iNextId = 0;
@@ -327,33 +376,44 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 		}
 	}
 	
-	private class Execution<R extends GwtRpcRequest<T>, T extends GwtRpcResponse> extends Thread {
+	/**
+	 * Asynchronous execution of a request, it is running on the (bounded) executor of the servlet.
+	 * The execution can be cancelled, which interrupts the executing thread (long running implementations should
+	 * check {@link Thread#isInterrupted()} and stop when the execution is no longer needed).
+	 */
+	private class Execution<R extends GwtRpcRequest<T>, T extends GwtRpcResponse> implements Runnable {
 		R iRequest;
 		T iResponse = null;
 		SessionContext iContext = null;
-		GwtRpcException iException = null;
-		Thread iWaitingThread = null;
+		volatile GwtRpcException iException = null;
 		long iExecutionId;
-		boolean iRunning = false;
 		String iLocale = null;
+		Future<?> iFuture = null;
+		long iSubmitTime = 0;
+		volatile long iDoneTime = 0;
 		
 		Execution(R request) {
-			setName("RPC:" + request);
-			setDaemon(true);
 			iRequest = request;
 			iExecutionId = sIdGenerator.generatedId();
 			iContext = new GwtRpcHelper(getSessionContext(), getPermissionCheck());
 			iLocale = Localization.getLocale();
 		}
+		
+		void submit(ExecutorService executor) {
+			iSubmitTime = System.currentTimeMillis();
+			iFuture = executor.submit(this);
+		}
 
 		@Override
 		public void run() {
-			iRunning = true;
+			String name = Thread.currentThread().getName();
+			Thread.currentThread().setName("RPC:" + iRequest);
 			Localization.setLocale(iLocale);
 			ApplicationProperties.setSessionId(iContext.getUser() == null ? null : iContext.getUser().getCurrentAcademicSessionId());
 			// start time
 			long t0 = JProf.currentTimeMillis();
 			GwtRpcLogging logging = null;
+			GwtRpcMetrics.CommandMetrics metrics = null;
 			try {
 				// retrieve implementation from given request
 				GwtRpcImplementation<GwtRpcRequest<T>, T> implementation = getImplementation(iRequest);
@@ -361,17 +421,30 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 				// get logging
 				logging = implementation.getClass().getAnnotation(GwtRpcLogging.class);
 				
+				// wait for an execution slot
+				GwtRpcMetrics.CommandMetrics m = GwtRpcMetrics.getMetrics(iRequest.getClass());
+				m.acquire(ApplicationProperty.GwtRpcMaxConcurrentWait.intValue());
+				metrics = m;
+				
 				// execute request
 				iResponse = implementation.execute(iRequest, iContext);
 				
+				// record execution time
+				metrics.release(JProf.currentTimeMillis() - t0, false); metrics = null;
+				
 				// log request
 				log(iRequest, iResponse, null, JProf.currentTimeMillis() - t0, iContext, logging);
 			} catch (Throwable t) {
+				// record execution time
+				if (metrics != null) metrics.release(JProf.currentTimeMillis() - t0, true);
+				
 				// log exception
 				log(iRequest, null, t, JProf.currentTimeMillis() - t0, iContext, logging);
 				
 				// re-throw exception as GwtRpcException or IsSerializable runtime exception
-				if (t instanceof GwtRpcException) {
+				if (iException != null) {
+					// execution has been cancelled
+				} else if (t instanceof GwtRpcException) {
 					iException = (GwtRpcException)t;
 					if (iException.hasCause())
 						sLog.warn("Seen server exception: " + t.getMessage(), t.getCause());
@@ -392,35 +465,46 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 				Formats.removeFormats();
 				ApplicationProperties.setSessionId(null);
 				_RootDAO.closeCurrentThreadSessions();
-			}
-			synchronized (this) {
-				iWaitingThread = null;
-				iRunning = false;
+				Thread.currentThread().setName(name);
 				iContext = null;
+				iDoneTime = System.currentTimeMillis();
 			}
 		}
 		
-		void waitToFinish() throws InterruptedException {
-			synchronized (this) {
-				if (iRunning) {
-					iWaitingThread = Thread.currentThread();
-					join();
-				}
+		/**
+		 * Wait for the execution to finish, the timeout is counted from the submission of the request (not from this call)
+		 */
+		void waitToFinish(int timeoutInSeconds) {
+			try {
+				if (timeoutInSeconds > 0) {
+					long remaining = 1000l * timeoutInSeconds - (System.currentTimeMillis() - iSubmitTime);
+					if (remaining <= 0 && !iFuture.isDone())
+						throw new TimeoutException();
+					iFuture.get(Math.max(0l, remaining), TimeUnit.MILLISECONDS);
+				} else
+					iFuture.get();
+			} catch (TimeoutException e) {
+				cancelExecution("Operation timed out.");
+			} catch (CancellationException e) {
+			} catch (ExecutionException e) {
+			} catch (InterruptedException e) {
 			}
 		}
 		
-		void cancelExecution() {
-			synchronized (this) {
-				iException = new GwtRpcCancelledException("Operation cancelled by the user.");
-				if (iWaitingThread != null) iWaitingThread.interrupt();
-			}
-			interrupt();
+		void cancelExecution(String message) {
+			iException = new GwtRpcCancelledException(message);
+			if (iFuture.cancel(true) && iDoneTime == 0)
+				iDoneTime = System.currentTimeMillis();
 		}
 		
+		boolean isDone() { return iFuture != null && iFuture.isDone(); }
+		
+		long getDoneTime() { return iDoneTime; }
+		
 		T getResponse() { return iResponse; }
 		
 		GwtRpcException getException() { return iException; }
 		
 		Long getExecutionId() { return iExecutionId; }
 	}
-}
\ No newline at end of file
+}
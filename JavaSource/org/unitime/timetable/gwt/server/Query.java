@@ -198,6 +198,8 @@ public class Query implements Serializable {
 		
 		protected List<Term> terms() { return iTerms; }
 		
+		public List<Term> getTerms() { return iTerms; }
+		
 		public abstract String getOp();
 		
 		public boolean hasAttribute(String attribute) {
@@ -312,6 +314,10 @@ public class Query implements Serializable {
 			iAttr = attr; iBody = body;
 		}
 		
+		public String getAttribute() { return iAttr; }
+		
+		public String getBody() { return iBody; }
+		
 		public boolean match(TermMatcher m) {
 			return m.match(iAttr, iBody);
 		}
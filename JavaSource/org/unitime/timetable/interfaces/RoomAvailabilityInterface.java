@@ -39,6 +39,12 @@ public interface RoomAvailabilityInterface {
     public Collection<TimeBlock> getInstructorAvailability(Long instructorId, Date startTime, Date endTime, String excludeType);
     public void activate(Long sessionId, Date startTime, Date endTime, String excludeType, boolean waitForSync);
     
+    /**
+     * Notify the service that meetings of the given locations (location permanent ids) have changed,
+     * so that the cached availability of these locations can be refreshed.
+     */
+    public default void invalidate(Collection<Long> locationPermanentIds) {}
+    
     public void startService();
     public void stopService();
     
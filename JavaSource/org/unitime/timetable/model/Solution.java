@@ -64,6 +64,7 @@ import org.unitime.timetable.model.dao.InstructionalOfferingDAO;
 import org.unitime.timetable.model.dao.LocationDAO;
 import org.unitime.timetable.model.dao.SolutionDAO;
 import org.unitime.timetable.model.dao.SolutionInfoDAO;
+import org.unitime.timetable.solver.ClassAssignmentCache;
 import org.unitime.timetable.solver.ClassAssignmentProxy;
 import org.unitime.timetable.solver.ui.AssignmentPreferenceInfo;
 import org.unitime.timetable.solver.ui.PropertiesInfo;
@@ -129,6 +130,7 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
 	}
 	
 	public void uncommitSolution(org.hibernate.Session hibSession, String sendNotificationPuid) {
+		ClassAssignmentCache.getInstance().invalidateAll(hibSession);
 		if (DEBUG) sLog.debug("uncommit["+getUniqueId()+","+getOwner().getName()+"] -------------------------------------------------------");
 		setCommitDate(null);
 		setCommited(Boolean.FALSE);
@@ -249,6 +251,7 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
     }
 
 	public boolean commitSolution(List<String> messages, org.hibernate.Session hibSession, String sendNotificationPuid, Long[] ownerIds) {
+		ClassAssignmentCache.getInstance().invalidateAll(hibSession);
 		List solutions = hibSession.createCriteria(Solution.class).add(Restrictions.eq("owner",getOwner())).list();
 		Solution uncommittedSolution = null;
 		for (Iterator i=solutions.iterator();i.hasNext();) {
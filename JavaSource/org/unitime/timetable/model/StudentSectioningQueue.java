@@ -29,6 +29,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.TreeSet;
 
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.DocumentHelper;
@@ -37,15 +42,20 @@ import org.dom4j.io.OutputFormat;
 import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
 import org.hibernate.HibernateException;
+import org.hibernate.Transaction;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.base.BaseStudentSectioningQueue;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningLog;
 import org.unitime.timetable.security.UserContext;
+import org.unitime.timetable.solver.jgroups.SolverServer;
+import org.unitime.timetable.solver.jgroups.SolverServerImplementation;
 
 /**
  * @author Tomas Muller
  */
 public class StudentSectioningQueue extends BaseStudentSectioningQueue implements Comparable<StudentSectioningQueue> {
 	private static final long serialVersionUID = 8492171207847794888L;
+	private static Log sLog = LogFactory.getLog(StudentSectioningQueue.class);
 
 	public StudentSectioningQueue() {
 		super();
@@ -140,6 +150,7 @@ public class StudentSectioningQueue extends BaseStudentSectioningQueue implement
 		}
 		q.setMessage(d);
 		hibSession.save(q);
+		notifyQueueChanged(hibSession, sessionId);
 	}
 	
 	protected static void addItem(org.hibernate.Session hibSession, UserContext user, Long sessionId, Type type, Long... ids) {
@@ -159,6 +170,40 @@ public class StudentSectioningQueue extends BaseStudentSectioningQueue implement
 		}
 		q.setMessage(d);
 		hibSession.save(q);
+		notifyQueueChanged(hibSession, sessionId);
+	}
+	
+	/**
+	 * Notify the sectioning queue updaters that there is a new item in the queue. When called within a transaction,
+	 * the notification is sent after the transaction is committed (so that the new item is visible to the updaters).
+	 */
+	protected static void notifyQueueChanged(org.hibernate.Session hibSession, final Long sessionId) {
+		if (!ApplicationProperty.OnlineSchedulingQueueNotify.isTrue()) return;
+		Transaction tx = hibSession.getTransaction();
+		if (tx != null && tx.isActive()) {
+			tx.registerSynchronization(new Synchronization() {
+				@Override
+				public void beforeCompletion() {}
+				
+				@Override
+				public void afterCompletion(int status) {
+					if (status == Status.STATUS_COMMITTED)
+						fireQueueChanged(sessionId);
+				}
+			});
+		} else {
+			fireQueueChanged(sessionId);
+		}
+	}
+	
+	protected static void fireQueueChanged(Long sessionId) {
+		try {
+			SolverServer server = SolverServerImplementation.getInstance();
+			if (server != null)
+				server.studentSectioningQueueChanged(sessionId);
+		} catch (Exception e) {
+			sLog.warn("Failed to notify sectioning queue updaters: " + e.getMessage(), e);
+		}
 	}
 	
 	public List<Long> getIds() {
@@ -43,7 +43,9 @@ import org.unitime.commons.hibernate.connection.LoggingConnectionProvider;
 import org.unitime.commons.hibernate.connection.LoggingDBCPConnectionProvider;
 import org.unitime.commons.hibernate.util.DatabaseUpdate;
 import org.unitime.commons.hibernate.util.HibernateUtil;
+import org.unitime.commons.hibernate.util.InsertedRowsCounter;
 import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.util.RoomAvailabilityInvalidator;
 
 /**
  * @author Tomas Muller
@@ -91,6 +93,8 @@ public abstract class _BaseRootDAO<T, K extends Serializable> {
         HibernateUtil.addBitwiseOperationsToDialect();
         HibernateUtil.addAddDateToDialect();
         HibernateUtil.addReplaceToDialect();
+        InsertedRowsCounter.register(sSessionFactory);
+        RoomAvailabilityInvalidator.register(sSessionFactory);
         DatabaseUpdate.update();
 	}
 
@@ -21,6 +21,8 @@ package org.unitime.timetable.model.dao;
 
 import java.io.Serializable;
 
+import org.hibernate.Session;
+
 
 /**
  * @author Tomas Muller
@@ -30,4 +32,13 @@ public class _RootDAO<T, K extends Serializable> extends org.unitime.timetable.m
 	public Class<T> getReferenceClass () {
 		return null;
 	}
+	
+	/**
+	 * Is there an open current-thread session (that would be closed by {@link _RootDAO#closeCurrentThreadSessions()})
+	 */
+	public static boolean hasCurrentThreadSession() {
+		if (sSessions == null) return false;
+		Session session = sSessions.get();
+		return session != null && session.isOpen();
+	}
 }
@@ -0,0 +1,227 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cpsolver.ifs.util.ToolBox;
+
+/**
+ * Replacement of the {@link MultiLock} that does not funnel all the lock / unlock calls through a single monitor.
+ * Each locked id has its own (fair) semaphore that only lives while the id is locked or waited for, the ids of
+ * a request are always acquired in the ascending order (so that two overlapping requests cannot deadlock).
+ * There is no lock all: the server-wide exclusion is done by the read / write lock of the
+ * {@link org.unitime.timetable.onlinesectioning.server.AbstractLockingServer}, which is never waited for
+ * while holding a lock of this class (offering locks taken by {@link OnlineSectioningServer#lockOffering(Long)}
+ * can be held for a long time, a lock all waiting for them would block the server).<br>
+ * Locks are not bound to a thread, they can be released from a different thread than the one that acquired them
+ * (this is needed by {@link OnlineSectioningServer#lockOffering(Long)} and {@link OnlineSectioningServer#unlockOffering(Long)}).
+ *
+ * @author Tomas Muller
+ */
+public class ConcurrentMultiLock {
+	private Log iLog;
+	private Map<Long, Entry> iIndividualLocks = new ConcurrentHashMap<Long, Entry>();
+	private Statistics iStatistics = new Statistics();
+
+	public ConcurrentMultiLock() {
+		iLog = LogFactory.getLog(ConcurrentMultiLock.class.getName() + ".lock");
+	}
+
+	public ConcurrentMultiLock(AcademicSessionInfo session) {
+		iLog = LogFactory.getLog(ConcurrentMultiLock.class.getName() + ".lock[" + session.toCompactString() + "]");
+	}
+
+	public Unlock lock(Long... ids) {
+		List<Long> list = new ArrayList<Long>(ids.length);
+		for (Long id: ids)
+			list.add(id);
+		return lock(list);
+	}
+
+	/**
+	 * Lock the given ids. The ids are acquired one by one, keeping the ones that are already acquired while waiting
+	 * for the next one (hold and wait). This cannot deadlock only because every caller acquires its ids in the same
+	 * (ascending) order, so there can be no cycle of threads waiting for each other. Any new way of acquiring the
+	 * individual semaphores must keep this order (and must not wait for anything else while holding some of them).
+	 */
+	public Unlock lock(Collection<Long> ids) {
+		if (ids == null || ids.isEmpty()) return new Unlock(null);
+		// always lock in the same order to avoid deadlocks
+		TreeSet<Long> sorted = new TreeSet<Long>(ids);
+		if (iLog.isDebugEnabled()) iLog.debug("Locking " + sorted + " ...");
+		long t0 = System.nanoTime();
+		boolean contended = false;
+		for (Long id: sorted) {
+			Entry entry = iIndividualLocks.compute(id, (k, e) -> {
+				if (e == null) e = new Entry();
+				e.iReferences ++;
+				return e;
+			});
+			if (!entry.iSemaphore.tryAcquire()) {
+				contended = true;
+				entry.iSemaphore.acquireUninterruptibly();
+			}
+		}
+		iStatistics.record(System.nanoTime() - t0, contended);
+		if (iLog.isDebugEnabled()) iLog.debug("Locked: " + sorted);
+		return new Unlock(sorted);
+	}
+
+	private void unlock(Collection<Long> ids) {
+		if (ids == null || ids.isEmpty()) return;
+		if (iLog.isDebugEnabled()) iLog.debug("Unlocking " + ids + " ...");
+		for (Long id: ids) {
+			Entry entry = iIndividualLocks.get(id);
+			if (entry == null) continue;
+			entry.iSemaphore.release();
+			iIndividualLocks.computeIfPresent(id, (k, e) -> (-- e.iReferences <= 0 ? null : e));
+		}
+		if (iLog.isDebugEnabled()) iLog.debug("Unlocked: " + ids);
+	}
+
+	public Set<Long> locked() {
+		Set<Long> ret = new TreeSet<Long>();
+		for (Map.Entry<Long, Entry> e: iIndividualLocks.entrySet())
+			if (e.getValue().iSemaphore.availablePermits() == 0) ret.add(e.getKey());
+		return ret;
+	}
+
+	public boolean isLocked(Long id) {
+		Entry entry = iIndividualLocks.get(id);
+		return entry != null && entry.iSemaphore.availablePermits() == 0;
+	}
+
+	/**
+	 * Wait times of the individual lock requests ({@link ConcurrentMultiLock#lock(Collection)})
+	 */
+	public Statistics getStatistics() { return iStatistics; }
+
+	private static class Entry {
+		private Semaphore iSemaphore = new Semaphore(1, true);
+		private int iReferences = 0;
+	}
+
+	public class Unlock implements OnlineSectioningServer.Lock {
+		private Collection<Long> iIds;
+		private AtomicBoolean iReleased = new AtomicBoolean(false);
+
+		private Unlock(Collection<Long> ids) {
+			iIds = ids;
+		}
+
+		/**
+		 * Release the locked ids. Only the first call has an effect, so that a lock released twice
+		 * (e.g., explicitly and then again in a finally block) cannot release a semaphore held by somebody else.
+		 */
+		public void release() {
+			if (iReleased.compareAndSet(false, true))
+				unlock(iIds);
+		}
+	}
+
+	/**
+	 * Lock wait time statistics: number of acquired locks, how many of them had to wait, total and maximal wait time.
+	 */
+	public static class Statistics {
+		private AtomicLong iCount = new AtomicLong(0), iContended = new AtomicLong(0);
+		private AtomicLong iTotalWait = new AtomicLong(0), iMaxWait = new AtomicLong(0);
+
+		public void record(long waitNanos, boolean contended) {
+			iCount.incrementAndGet();
+			if (contended) iContended.incrementAndGet();
+			iTotalWait.addAndGet(waitNanos);
+			iMaxWait.accumulateAndGet(waitNanos, Math::max);
+		}
+
+		public long getCount() { return iCount.get(); }
+		public long getContendedCount() { return iContended.get(); }
+		public double getTotalWaitMillis() { return iTotalWait.get() / 1000000.0; }
+		public double getMaxWaitMillis() { return iMaxWait.get() / 1000000.0; }
+		public double getAverageWaitMillis() {
+			long count = iCount.get();
+			return (count == 0 ? 0.0 : iTotalWait.get() / 1000000.0 / count);
+		}
+
+		public void reset() {
+			iCount.set(0); iContended.set(0); iTotalWait.set(0); iMaxWait.set(0);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d locks (%d contended), wait %.3f ms on average, %.3f ms max",
+					getCount(), getContendedCount(), getAverageWaitMillis(), getMaxWaitMillis());
+		}
+	}
+
+	public static void main(String[] args) {
+		try {
+			final ConcurrentMultiLock lock = new ConcurrentMultiLock();
+			for (int i = 1; i <= 1000; i++) {
+				Thread t = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							while (true) {
+								int nrCourses = 2 + ToolBox.random(9);
+								Set<Long> courses = new HashSet<Long>();
+								for (int i = 0; i < nrCourses; i++) {
+									long courseId;
+									do {
+										courseId = ToolBox.random(10000);
+									} while (!courses.add(courseId));
+								}
+								Unlock l = lock.lock(courses);
+								try {
+									Thread.sleep(ToolBox.random(1000));
+								} catch (InterruptedException e) {}
+								l.release();
+							}
+						} catch (Exception e) {
+							System.err.println(Thread.currentThread().getName() + e.getMessage());
+							e.printStackTrace();
+						}
+					}
+				});
+				t.setName("[T" + i + "]: ");
+				t.setDaemon(true);
+				t.start();
+			}
+			while (true) {
+				Thread.sleep(5000);
+				System.out.println("Locks: " + lock.getStatistics() + "; currently locked: " + lock.locked().size());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+}
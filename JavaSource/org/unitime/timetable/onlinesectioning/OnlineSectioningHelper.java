@@ -136,8 +136,43 @@ public class OnlineSectioningHelper {
     }
     
     public OnlineSectioningHelper(OnlineSectioningHelper parent) {
+    	this(parent, true);
+    }
+    
+    /**
+     * Create a helper for the same user as the parent helper.
+     * @param shareLog if false, the new helper has its own log (use this when the helper is to be used in a different thread
+     * than the parent, the log builder is not thread-safe) and {@link OnlineSectioningHelper#mergeLog(OnlineSectioningHelper)}
+     * should be called on the parent when the helper is no longer used
+     */
+    public OnlineSectioningHelper(OnlineSectioningHelper parent, boolean shareLog) {
     	this(null, parent.getUser(), parent.iCacheMode);
-    	iLog = parent.iLog;
+    	if (shareLog) iLog = parent.iLog;
+    }
+    
+    /**
+     * Add the log of a helper created by {@link OnlineSectioningHelper#OnlineSectioningHelper(OnlineSectioningHelper, boolean)}
+     * (with its own log) to the log of this helper. Changes made through {@link OnlineSectioningHelper#getAction()} of the other
+     * helper are merged into the action of this helper, actions added by {@link OnlineSectioningHelper#addAction(OnlineSectioningAction, AcademicSessionInfo)}
+     * are appended, as well as the messages.
+     */
+    public void mergeLog(OnlineSectioningHelper helper) {
+    	if (helper == null || helper.iLog == iLog) return;
+    	OnlineSectioningLog.Log log = helper.iLog.buildPartial();
+    	synchronized (iLog) {
+    		for (OnlineSectioningLog.Action action: log.getActionList()) {
+    			if (action.hasOperation())
+    				iLog.addAction(action);
+    			else
+    				getAction().mergeFrom(action);
+    		}
+    		for (OnlineSectioningLog.Message message: log.getMessageList()) {
+            	if (iLog.getActionCount() > 0)
+            		iLog.getActionBuilder(iLog.getActionCount() - 1).addMessage(message);
+            	else
+            		iLog.addMessage(message);
+    		}
+    	}
     }
     
     public OnlineSectioningLog.Entity getUser() { return iUser; }
@@ -25,9 +25,17 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.Hashtable;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Vector;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -37,10 +45,8 @@ import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.resources.StudentSectioningConstants;
 import org.unitime.timetable.gwt.server.DayCode;
 import org.unitime.timetable.model.Session;
-import org.unitime.timetable.model.Student;
 import org.unitime.timetable.model.dao.OnlineSectioningLogDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
-import org.unitime.timetable.model.dao.StudentDAO;
 
 /**
  * @author Tomas Muller
@@ -48,11 +54,18 @@ import org.unitime.timetable.model.dao.StudentDAO;
 public class OnlineSectioningLogger extends Thread {
 	private static Log sLog = LogFactory.getLog(OnlineSectioningLogger.class);
 	protected static StudentSectioningConstants CONST = Localization.create(StudentSectioningConstants.class);
-	private List<OnlineSectioningLog.Action> iActions = new Vector<OnlineSectioningLog.Action>();
+	private BlockingQueue<OnlineSectioningLog.Action> iActions;
 	private boolean iActive = false;
 	private boolean iEnabled = false;
 	private int iLogLimit = -1;
+	private int iFlushSize = 1000;
+	private long iFlushInterval = 60000;
+	private long iBlockTimeout = 1000;
+	private int iSaveBatch = 500;
 	private PrintWriter iOut = null;
+	private AtomicLong iDropped = new AtomicLong(0), iPersisted = new AtomicLong(0), iFailed = new AtomicLong(0), iFlushes = new AtomicLong(0);
+	private AtomicLong iLastFlushTime = new AtomicLong(0), iMaxFlushTime = new AtomicLong(0), iTotalFlushTime = new AtomicLong(0);
+	private AtomicBoolean iDropWarning = new AtomicBoolean(false);
 	
 	private static OnlineSectioningLogger sInstance = null;
 	
@@ -61,6 +74,14 @@ public class OnlineSectioningLogger extends Thread {
 		return sInstance;
 	}
 	
+	/**
+	 * Logger statistics (queue depth, persisted and dropped counts, flush latency), null if the logger is not running
+	 */
+	public static String getStatistics() {
+		OnlineSectioningLogger logger = sInstance;
+		return (logger == null ? null : logger.toString());
+	}
+	
 	public static void startLogger() {
 		if (sInstance == null) {
 			sInstance = new OnlineSectioningLogger();
@@ -84,6 +105,11 @@ public class OnlineSectioningLogger extends Thread {
 		setDaemon(true);
 		iEnabled = ApplicationProperty.OnlineSchedulingLoggingEnabled.isTrue(); 
 		iLogLimit = ApplicationProperty.OnlineSchedulingLogLimit.intValue();
+		iActions = (iLogLimit > 0 ? new ArrayBlockingQueue<OnlineSectioningLog.Action>(iLogLimit) : new LinkedBlockingQueue<OnlineSectioningLog.Action>());
+		iFlushSize = Math.max(1, ApplicationProperty.OnlineSchedulingLogFlushSize.intValue());
+		iFlushInterval = 1000l * Math.max(1, ApplicationProperty.OnlineSchedulingLogFlushInterval.intValue());
+		iBlockTimeout = ApplicationProperty.OnlineSchedulingLogBlockTimeout.intValue();
+		iSaveBatch = Math.max(1, ApplicationProperty.OnlineSchedulingLogSaveBatch.intValue());
 		try {
 			if (ApplicationProperty.OnlineSchedulingLogFile.value() != null)
 				iOut = new PrintWriter(new FileWriter(new File(ApplicationProperty.OnlineSchedulingLogFile.value()), true));
@@ -95,16 +121,49 @@ public class OnlineSectioningLogger extends Thread {
 	public boolean isEnabled() { return iEnabled; }
 	public void setEnabled(boolean enabled) { iEnabled = enabled; }
 	public boolean isActive() { return iActive; }
+	
+	/** Number of log records waiting to be persisted */
+	public int getQueueSize() { return iActions.size(); }
+	/** Number of log records that have been dropped because the logger was not able to keep up */
+	public long getDroppedCount() { return iDropped.get(); }
+	/** Number of log records that have been persisted */
+	public long getPersistedCount() { return iPersisted.get(); }
+	/** Number of log records that failed to persist */
+	public long getFailedCount() { return iFailed.get(); }
+	/** Number of flushes (persisted batches) */
+	public long getFlushCount() { return iFlushes.get(); }
+	/** Time of the last flush in milliseconds */
+	public long getLastFlushTime() { return iLastFlushTime.get(); }
+	/** Maximal time of a flush in milliseconds */
+	public long getMaxFlushTime() { return iMaxFlushTime.get(); }
+	/** Average time of a flush in milliseconds */
+	public double getAverageFlushTime() {
+		long flushes = iFlushes.get();
+		return (flushes == 0 ? 0.0 : ((double)iTotalFlushTime.get()) / flushes);
+	}
+	
+	/**
+	 * Add an action to the queue. If the queue is full, wait up to {@link ApplicationProperty#OnlineSchedulingLogBlockTimeout}
+	 * milliseconds for the logger to catch up before the action is dropped.
+	 */
+	protected void enqueue(OnlineSectioningLog.Action action) {
+		if (iActions.offer(action)) return;
+		try {
+			if (iBlockTimeout > 0 && iActions.offer(action, iBlockTimeout, TimeUnit.MILLISECONDS)) return;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		iDropped.incrementAndGet();
+		if (iDropWarning.compareAndSet(false, true))
+			sLog.warn("The limit of " + iLogLimit + " unpersisted log messages was reached, some messages are being dropped.");
+	}
 
 	public void record(OnlineSectioningLog.Log log) {
 		if (log == null || !isEnabled() || !isActive()) return;
 		for (OnlineSectioningLog.Action action: log.getActionList()) {
 			if (action.hasStartTime() && action.hasStudent() && action.hasOperation() && action.hasSession() && ApplicationProperty.OnlineSchedulingLogOperation.isTrue(action.getOperation())
 				&& ApplicationProperty.OnlineSchedulingLogOperation.isTrue(action.getOperation() + "." + (action.hasResult() ? action.getResult().name() : "NULL"))) {
-				synchronized (iActions) {
-					if (iLogLimit <= 0 || iActions.size() < iLogLimit)
-						iActions.add(action);
-				}
+				enqueue(action);
 				if (iOut != null) {
 					synchronized (iOut) {
 						iOut.print(OnlineSectioningLog.Log.newBuilder().addAction(action).build().toString());
@@ -248,85 +307,27 @@ public class OnlineSectioningLogger extends Thread {
 		sLog.info("Online Sectioning Logger is up.");
 		try {
 			iActive = true;
+			List<OnlineSectioningLog.Action> actionsToSave = new ArrayList<OnlineSectioningLog.Action>(iFlushSize);
 			while (true) {
+				long deadline = System.currentTimeMillis() + iFlushInterval;
 				try {
-					sleep(60000);
+					while (actionsToSave.size() < iFlushSize) {
+						long wait = deadline - System.currentTimeMillis();
+						if (wait <= 0) break;
+						OnlineSectioningLog.Action action = iActions.poll(wait, TimeUnit.MILLISECONDS);
+						if (action == null) break;
+						actionsToSave.add(action);
+						iActions.drainTo(actionsToSave, iFlushSize - actionsToSave.size());
+					}
 				} catch (InterruptedException e) {
 				}
-				List<OnlineSectioningLog.Action> actionsToSave = null;
-				synchronized (iActions) {
-					if (!iActions.isEmpty()) {
-						actionsToSave = new ArrayList<OnlineSectioningLog.Action>(iActions);
-						iActions.clear();
-					}
+				if (!iActive) {
+					// logger is being stopped: persist everything that is left
+					iActions.drainTo(actionsToSave);
 				}
-				try {
-					if (actionsToSave != null) {
-						sLog.debug("Persisting " + actionsToSave.size() + " actions...");
-						if (iLogLimit > 0 && actionsToSave.size() >= iLogLimit)
-							sLog.warn("The limit of " + iLogLimit + " unpersisted log messages was reached, some messages have been dropped.");
-						org.hibernate.Session hibSession = OnlineSectioningLogDAO.getInstance().createNewSession();
-						hibSession.setCacheMode(CacheMode.IGNORE);
-						try {
-							Hashtable<Long, Session> sessions = new Hashtable<Long, Session>();
-							for (OnlineSectioningLog.Action q: actionsToSave) {
-								org.unitime.timetable.model.OnlineSectioningLog log = new org.unitime.timetable.model.OnlineSectioningLog();
-								log.setAction(q.toByteArray());
-								log.setOperation(q.getOperation());
-								String studentExternalId = (q.getStudent().hasExternalId() ? q.getStudent().getExternalId() : null);
-								if (studentExternalId == null || studentExternalId.isEmpty()) {
-									Student student = StudentDAO.getInstance().get(q.getStudent().getUniqueId(), hibSession);
-									if (student == null) continue;
-									studentExternalId = student.getExternalUniqueId();
-								}
-								log.setStudent(studentExternalId);
-								log.setTimeStamp(new Date(q.getStartTime()));
-								if (q.hasResult())
-									log.setResult(q.getResult().getNumber());
-								if (q.hasUser() && q.getUser().hasExternalId())
-									log.setUser(q.getUser().getExternalId());
-								if (q.hasCpuTime())
-									log.setCpuTime(q.getCpuTime());
-								if (q.hasStartTime() && q.hasEndTime())
-									log.setWallTime(q.getEndTime() - q.getStartTime());
-								if (q.hasApiGetTime())
-									log.setApiGetTime(q.getApiGetTime());
-								if (q.hasApiPostTime())
-									log.setApiPostTime(q.getApiPostTime());
-								if (q.hasApiException())
-									log.setApiException(q.getApiException() != null && q.getApiException().length() > 255 ? q.getApiException().substring(0, 255) : q.getApiException());
-								try {
-									String message = getMessage(q);
-									if (message != null && !message.isEmpty())
-										log.setMessage(message.length() > 255 ? message.substring(0, 252) + "..." : message);
-								} catch (Exception e) {
-									if (!q.getMessageList().isEmpty()) {
-										String message = null; int level = 0;
-										for (OnlineSectioningLog.Message m: q.getMessageList()) {
-											if (message != null && !message.isEmpty() && (!m.hasLevel() || level > m.getLevel().getNumber())) continue;
-											if (m.hasText()) { message = m.getText(); level = m.getLevel().getNumber(); }
-											else if (m.hasException()) { message = m.getException(); level = m.getLevel().getNumber(); }
-										}
-										if (message != null && !message.isEmpty())
-											log.setMessage(message.length() > 255 ? message.substring(0, 252) + "..." : message);
-									}
-								}
-								Long sessionId = q.getSession().getUniqueId();
-								Session session = sessions.get(sessionId);
-								if (session == null) {
-									session = SessionDAO.getInstance().get(sessionId, hibSession);
-									sessions.put(sessionId, session);
-								}
-								log.setSession(session);
-								hibSession.save(log);
-							}
-							hibSession.flush();
-						} finally {
-							hibSession.close();
-						}
-					}
-				} catch (Throwable t) {
-					sLog.warn("Failed to save " + actionsToSave.size() + " log actions: " + t.getMessage(), t);
+				if (!actionsToSave.isEmpty()) {
+					persist(actionsToSave);
+					actionsToSave.clear();
 				}
 				if (!iActive) break;
 			}
@@ -336,6 +337,123 @@ public class OnlineSectioningLogger extends Thread {
 			iActive = false;
 			if (iOut != null) { iOut.flush(); iOut.close(); }
 		}
-		sLog.info("Online Sectioning Logger is down.");	}
+		sLog.info("Online Sectioning Logger is down.");
+	}
+	
+	protected void persist(List<OnlineSectioningLog.Action> actionsToSave) {
+		long t0 = System.currentTimeMillis();
+		int saved = 0;
+		try {
+			sLog.debug("Persisting " + actionsToSave.size() + " actions...");
+			if (iDropWarning.getAndSet(false))
+				sLog.warn("Some log messages have been dropped (" + iDropped.get() + " in total).");
+			org.hibernate.Session hibSession = OnlineSectioningLogDAO.getInstance().createNewSession();
+			hibSession.setCacheMode(CacheMode.IGNORE);
+			try {
+				Map<Long, String> externalIds = getStudentExternalIds(actionsToSave, hibSession);
+				Map<Long, Session> sessions = new HashMap<Long, Session>();
+				for (OnlineSectioningLog.Action q: actionsToSave) {
+					org.unitime.timetable.model.OnlineSectioningLog log = new org.unitime.timetable.model.OnlineSectioningLog();
+					log.setAction(q.toByteArray());
+					log.setOperation(q.getOperation());
+					String studentExternalId = (q.getStudent().hasExternalId() ? q.getStudent().getExternalId() : null);
+					if (studentExternalId == null || studentExternalId.isEmpty()) {
+						studentExternalId = externalIds.get(q.getStudent().getUniqueId());
+						if (studentExternalId == null) continue;
+					}
+					log.setStudent(studentExternalId);
+					log.setTimeStamp(new Date(q.getStartTime()));
+					if (q.hasResult())
+						log.setResult(q.getResult().getNumber());
+					if (q.hasUser() && q.getUser().hasExternalId())
+						log.setUser(q.getUser().getExternalId());
+					if (q.hasCpuTime())
+						log.setCpuTime(q.getCpuTime());
+					if (q.hasStartTime() && q.hasEndTime())
+						log.setWallTime(q.getEndTime() - q.getStartTime());
+					if (q.hasApiGetTime())
+						log.setApiGetTime(q.getApiGetTime());
+					if (q.hasApiPostTime())
+						log.setApiPostTime(q.getApiPostTime());
+					if (q.hasApiException())
+						log.setApiException(q.getApiException() != null && q.getApiException().length() > 255 ? q.getApiException().substring(0, 255) : q.getApiException());
+					try {
+						String message = getMessage(q);
+						if (message != null && !message.isEmpty())
+							log.setMessage(message.length() > 255 ? message.substring(0, 252) + "..." : message);
+					} catch (Exception e) {
+						if (!q.getMessageList().isEmpty()) {
+							String message = null; int level = 0;
+							for (OnlineSectioningLog.Message m: q.getMessageList()) {
+								if (message != null && !message.isEmpty() && (!m.hasLevel() || level > m.getLevel().getNumber())) continue;
+								if (m.hasText()) { message = m.getText(); level = m.getLevel().getNumber(); }
+								else if (m.hasException()) { message = m.getException(); level = m.getLevel().getNumber(); }
+							}
+							if (message != null && !message.isEmpty())
+								log.setMessage(message.length() > 255 ? message.substring(0, 252) + "..." : message);
+						}
+					}
+					Long sessionId = q.getSession().getUniqueId();
+					Session session = sessions.get(sessionId);
+					if (session == null) {
+						session = SessionDAO.getInstance().get(sessionId, hibSession);
+						sessions.put(sessionId, session);
+					}
+					log.setSession(session);
+					hibSession.save(log);
+					saved ++;
+					if ((saved % iSaveBatch) == 0) {
+						// send the pending inserts as JDBC batches, do not let the session grow
+						hibSession.flush();
+						hibSession.clear();
+						sessions.clear();
+					}
+				}
+				hibSession.flush();
+			} finally {
+				hibSession.close();
+			}
+			iPersisted.addAndGet(saved);
+		} catch (Throwable t) {
+			iFailed.addAndGet(actionsToSave.size() - saved);
+			sLog.warn("Failed to save " + (actionsToSave.size() - saved) + " log actions: " + t.getMessage(), t);
+		} finally {
+			long time = System.currentTimeMillis() - t0;
+			iFlushes.incrementAndGet();
+			iLastFlushTime.set(time);
+			iTotalFlushTime.addAndGet(time);
+			iMaxFlushTime.accumulateAndGet(time, Math::max);
+			if (sLog.isDebugEnabled())
+				sLog.debug("Persisted " + saved + " actions in " + time + " ms (" + iActions.size() + " waiting, " + iDropped.get() + " dropped so far).");
+		}
+	}
+	
+	/**
+	 * Lookup external ids of all the students of the given actions that do not have the external id filled in, using a few bulk queries.
+	 */
+	protected Map<Long, String> getStudentExternalIds(List<OnlineSectioningLog.Action> actions, org.hibernate.Session hibSession) {
+		Map<Long, String> externalIds = new HashMap<Long, String>();
+		Set<Long> studentIds = new HashSet<Long>();
+		for (OnlineSectioningLog.Action q: actions)
+			if (!q.getStudent().hasExternalId() || q.getStudent().getExternalId().isEmpty())
+				studentIds.add(q.getStudent().getUniqueId());
+		if (studentIds.isEmpty()) return externalIds;
+		List<Long> ids = new ArrayList<Long>(studentIds);
+		for (int i = 0; i < ids.size(); i += 1000) {
+			for (Object[] o: (List<Object[]>)hibSession.createQuery(
+					"select s.uniqueId, s.externalUniqueId from Student s where s.uniqueId in :studentIds"
+					).setParameterList("studentIds", ids.subList(i, Math.min(i + 1000, ids.size()))).list()) {
+				if (o[1] != null)
+					externalIds.put((Long)o[0], (String)o[1]);
+			}
+		}
+		return externalIds;
+	}
+	
+	@Override
+	public String toString() {
+		return "queue: " + getQueueSize() + (iLogLimit > 0 ? "/" + iLogLimit : "") + ", persisted: " + getPersistedCount() + ", dropped: " + getDroppedCount() +
+				", failed: " + getFailedCount() + ", flushes: " + getFlushCount() + " (last " + getLastFlushTime() + " ms, max " + getMaxFlushTime() + " ms)";
+	}
 
 }
@@ -21,7 +21,9 @@ package org.unitime.timetable.onlinesectioning;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.cpsolver.ifs.util.DataProperties;
@@ -75,6 +77,27 @@ public interface OnlineSectioningServer {
 	public Collection<XCourseRequest> getRequests(Long offeringId);
 	public XEnrollments getEnrollments(Long offeringId);
 	public XExpectations getExpectations(Long offeringId);
+	/**
+	 * Offerings of the given ids (ids of offerings that do not exist are not included in the result).
+	 * Implementations backed by a distributed cache should retrieve all the offerings in bulk.
+	 */
+	public default Map<Long, XOffering> getOfferings(Collection<Long> offeringIds) {
+		Map<Long, XOffering> ret = new HashMap<Long, XOffering>();
+		for (Long offeringId: offeringIds) {
+			XOffering offering = getOffering(offeringId);
+			if (offering != null) ret.put(offeringId, offering);
+		}
+		return ret;
+	}
+	/**
+	 * Expectations of the given offerings (same as calling {@link OnlineSectioningServer#getExpectations(Long)} for each of the ids).
+	 */
+	public default Map<Long, XExpectations> getExpectations(Collection<Long> offeringIds) {
+		Map<Long, XExpectations> ret = new HashMap<Long, XExpectations>();
+		for (Long offeringId: offeringIds)
+			ret.put(offeringId, getExpectations(offeringId));
+		return ret;
+	}
 	public Collection<Long> getInstructedOfferings(String instructorExternalId);
 	public Set<Long> getRequestedCourseIds(Long studentId);
 	
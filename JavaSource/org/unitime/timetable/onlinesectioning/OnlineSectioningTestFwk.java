@@ -28,7 +28,17 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -50,8 +60,18 @@ import org.unitime.timetable.onlinesectioning.server.InMemoryServer;
 import org.unitime.timetable.onlinesectioning.updates.PersistExpectedSpacesAction;
 import org.unitime.timetable.solver.jgroups.DummySolverServer;
 import org.unitime.timetable.solver.jgroups.SolverServer;
+import org.unitime.timetable.util.Constants;
 
 /**
+ * Online student scheduling test framework. The tasks returned by {@link OnlineSectioningTestFwk#operations()} are executed
+ * on the given numbers of concurrent runners (the concurrency is ramped up by listing multiple levels), recording
+ * the latency histograms of the tasks and of the individual actions (executed via
+ * {@link OnlineSectioningTestFwk#execute(OnlineSectioningServer, OnlineSectioningAction)}).<br>
+ * The results (throughput, mean, p50, p90, p95, p99, p99.9, and max latency for each concurrency level and task or action type)
+ * are written into a CSV file (property benchmark.output, defaults to benchmark.csv), together with the build version,
+ * so that the results of two builds on the same academic session can be compared. Property benchmark.warmup can be used to run
+ * the given number of tasks before the measurement starts (results of the warm-up are not recorded).
+ * 
  * @author Tomas Muller
  */
 public abstract class OnlineSectioningTestFwk { 
@@ -60,9 +80,13 @@ public abstract class OnlineSectioningTestFwk {
 	protected OnlineSectioningServer iServer = null;
 	private Pool iTasks;
 	private List<Runner> iRunners;
-	private SynchronizedCounter iFinished = new SynchronizedCounter(), iExec = new SynchronizedCounter(), iQuality = new SynchronizedCounter();
-	private double iT0 = 0;
-	private double iRunTime = 0.0;
+	private SynchronizedCounter iQuality = new SynchronizedCounter();
+	private LongAdder iFinished = new LongAdder(), iFailed = new LongAdder(), iExec = new LongAdder();
+	private long iT0 = 0;
+	private AtomicLong iLastFinished = new AtomicLong(0);
+	private Map<String, LatencyHistogram> iTaskHistograms = new ConcurrentHashMap<String, LatencyHistogram>();
+	private Map<String, LatencyHistogram> iActionHistograms = new ConcurrentHashMap<String, LatencyHistogram>();
+	private List<List<CSVField>> iBenchmark = new ArrayList<List<CSVField>>();
 	private JChannel iChannel = null;
 	protected SolverServer iSolverServer = null;
 	protected Long iSessionId = null;
@@ -160,25 +184,129 @@ public abstract class OnlineSectioningTestFwk {
 	
 	public interface Operation {
 		public double execute(OnlineSectioningServer s);
+		
+		/**
+		 * Task type, used to group the recorded latencies
+		 */
+		public default String name() { return "task"; }
 	}	
 	
 	public class Runner implements Runnable {
 		public void run() {
 			Operation op = null; 
 			while ((op = iTasks.next()) != null) {
-				long t0 = System.currentTimeMillis();
+				long t0 = System.nanoTime();
+				boolean failed = false;
 				try {
 					double val = op.execute(getServer());
 					iQuality.inc(val);
 				} catch (Throwable t) {
+					failed = true;
 					sLog.warn("Task failed: " + t.getMessage(), t);
-				} finally {
-					iFinished.inc(1);
 				}
-				long t1 = System.currentTimeMillis();
-				iRunTime = (t1 - iT0) / 1000.0;
-				iExec.inc(t1 - t0);
+				long t1 = System.nanoTime();
+				histogram(iTaskHistograms, op.name()).record(t1 - t0, failed);
+				if (failed) iFailed.increment();
+				iFinished.increment();
+				iLastFinished.accumulateAndGet(t1, Math::max);
+				iExec.add(t1 - t0);
+			}
+		}
+	}
+	
+	private static LatencyHistogram histogram(Map<String, LatencyHistogram> histograms, String name) {
+		LatencyHistogram histogram = histograms.get(name);
+		if (histogram == null) {
+			histogram = new LatencyHistogram();
+			LatencyHistogram other = ((ConcurrentHashMap<String, LatencyHistogram>)histograms).putIfAbsent(name, histogram);
+			if (other != null) histogram = other;
+		}
+		return histogram;
+	}
+	
+	/**
+	 * Execute an action on the given server, recording its latency (grouped by the action name)
+	 */
+	public <E> E execute(OnlineSectioningServer server, OnlineSectioningAction<E> action) {
+		long t0 = System.nanoTime();
+		boolean failed = true;
+		try {
+			E ret = server.execute(action, user());
+			failed = false;
+			return ret;
+		} finally {
+			histogram(iActionHistograms, action.name()).record(System.nanoTime() - t0, failed);
+		}
+	}
+	
+	/**
+	 * HDR-style latency histogram: values are kept in exponentially growing buckets, each power of two split into
+	 * 32 linear sub-buckets, giving a relative precision of about 3% over the whole range with a fixed amount of memory.
+	 * Recording is lock-free, so the histogram does not influence the concurrency of the measured tasks.
+	 */
+	public static class LatencyHistogram {
+		private static final int sSubBucketBits = 5;
+		private static final int sSubBuckets = 1 << sSubBucketBits;
+		private AtomicLongArray iCounts = new AtomicLongArray(64 * sSubBuckets);
+		private LongAdder iCount = new LongAdder(), iFailed = new LongAdder(), iTotal = new LongAdder();
+		private AtomicLong iMax = new AtomicLong(0);
+		
+		private static int index(long value) {
+			if (value < sSubBuckets) return (int)Math.max(0, value);
+			int shift = (63 - Long.numberOfLeadingZeros(value)) - sSubBucketBits;
+			return (shift + 1) * sSubBuckets + (int)((value >>> shift) & (sSubBuckets - 1));
+		}
+		
+		private static long lowerBound(int index) {
+			if (index < sSubBuckets) return index;
+			int shift = index / sSubBuckets - 1;
+			return ((long)(sSubBuckets + index % sSubBuckets)) << shift;
+		}
+		
+		private static long upperBound(int index) {
+			if (index < sSubBuckets) return index;
+			return lowerBound(index) + (1l << (index / sSubBuckets - 1)) - 1;
+		}
+		
+		public void record(long nanos, boolean failed) {
+			iCounts.incrementAndGet(index(nanos));
+			iCount.increment();
+			if (failed) iFailed.increment();
+			iTotal.add(nanos);
+			iMax.accumulateAndGet(nanos, Math::max);
+		}
+		
+		public long count() { return iCount.sum(); }
+		public long failed() { return iFailed.sum(); }
+		public double meanMillis() {
+			long count = count();
+			return (count == 0 ? 0.0 : iTotal.sum() / 1000000.0 / count);
+		}
+		public double maxMillis() { return iMax.get() / 1000000.0; }
+		
+		/**
+		 * Latency (in milliseconds) that the given percentage of the recorded values does not exceed
+		 */
+		public double percentileMillis(double percentile) {
+			long count = count();
+			if (count == 0) return 0.0;
+			long target = Math.max(1, (long)Math.ceil(percentile * count / 100.0));
+			long cumulative = 0;
+			for (int i = 0; i < iCounts.length(); i++) {
+				cumulative += iCounts.get(i);
+				if (cumulative >= target)
+					return Math.min(upperBound(i), iMax.get()) / 1000000.0;
 			}
+			return maxMillis();
+		}
+		
+		@Override
+		public String toString() {
+			return count() + " (" + failed() + " failed), mean " + sDF.format(meanMillis()) + " ms" +
+					", p50 " + sDF.format(percentileMillis(50.0)) + " ms" +
+					", p95 " + sDF.format(percentileMillis(95.0)) + " ms" +
+					", p99 " + sDF.format(percentileMillis(99.0)) + " ms" +
+					", max " + sDF.format(maxMillis()) + " ms";
 		}
 	}
 	
@@ -226,11 +354,16 @@ public abstract class OnlineSectioningTestFwk {
 	}
 	
 	public int nrFinished() {
-		return iFinished.count();
+		return iFinished.intValue();
+	}
+	
+	public int nrFailed() {
+		return iFailed.intValue();
 	}
 	
 	public double testRunTimeInSeconds() {
-		return iRunTime;
+		long last = iLastFinished.get();
+		return (last <= iT0 ? 0.0 : (last - iT0) / 1000000000.0);
 	}
 	
 	public int nrConcurrent() {
@@ -238,7 +371,7 @@ public abstract class OnlineSectioningTestFwk {
 	}
 	
 	public double totalExecutionTimeInSeconds() {
-		return iExec.value() / 1000.0;
+		return iExec.sum() / 1000000000.0;
 	}
 	
 	public double averageQuality() {
@@ -246,7 +379,7 @@ public abstract class OnlineSectioningTestFwk {
 	}
 	
 	public String toString() {
-		return nrFinished() + " tasks finished (" + nrConcurrent() + " in parallel)." +
+		return nrFinished() + " tasks finished (" + nrConcurrent() + " in parallel, " + nrFailed() + " failed)." +
 			" Running took " + sDF.format(testRunTimeInSeconds()) + " s," +
 			" throughput " + sDF.format(nrFinished() / testRunTimeInSeconds()) + " tasks / s," +
 			" wait " + sDF.format(totalExecutionTimeInSeconds() / nrFinished()) + " s / task," +
@@ -256,27 +389,89 @@ public abstract class OnlineSectioningTestFwk {
 	public synchronized void run(List<Operation> operations, int nrConcurrent) {
 		sLog.info("Running " + operations.size() + " tasks...");
 		iCounters.clear();
+		iTaskHistograms.clear(); iActionHistograms.clear();
 		iRunners = new ArrayList<Runner>();
 		iTasks = new Pool(operations);
-		iFinished.clear(); iExec.clear(); iQuality.clear();
-		iT0 = System.currentTimeMillis();
+		iFinished.reset(); iFailed.reset(); iExec.reset(); iQuality.clear();
+		iT0 = System.nanoTime(); iLastFinished.set(iT0);
+		final AtomicInteger runnerId = new AtomicInteger(0);
+		ExecutorService executor = Executors.newFixedThreadPool(nrConcurrent, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r);
+				t.setDaemon(true); t.setName("Runner #" + runnerId.incrementAndGet());
+				return t;
+			}
+		});
 		for (int i = 0; i < nrConcurrent; i++) {
 			Runner r = new Runner();
-			Thread t = new Thread(r);
-			t.setDaemon(true); t.setName("Runner #" + (1 + i));
-			t.start();
+			executor.execute(r);
 			iRunners.add(r);
 		}
-		do {
-			try {
-				Thread.sleep(10000);
-			} catch (InterruptedException e) {
-				break;
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+				sLog.info(toString());
+				logCounters();
 			}
-			sLog.info(toString());
-			logCounters();
-		} while (nrFinished() < operations.size());
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+		}
 		sLog.info("All " + toString());
+		logHistograms();
+	}
+	
+	protected void logHistograms() {
+		for (Map.Entry<String, LatencyHistogram> e: new TreeMap<String, LatencyHistogram>(iTaskHistograms).entrySet())
+			sLog.info("  task " + e.getKey() + ": " + e.getValue());
+		for (Map.Entry<String, LatencyHistogram> e: new TreeMap<String, LatencyHistogram>(iActionHistograms).entrySet())
+			sLog.info("  action " + e.getKey() + ": " + e.getValue());
+	}
+	
+	/**
+	 * Record the results of the last run into the benchmark table
+	 */
+	protected void recordBenchmark(int nrConcurrent) {
+		double runTime = testRunTimeInSeconds();
+		for (int type = 0; type < 2; type++) {
+			for (Map.Entry<String, LatencyHistogram> e: new TreeMap<String, LatencyHistogram>(type == 0 ? iTaskHistograms : iActionHistograms).entrySet()) {
+				LatencyHistogram h = e.getValue();
+				List<CSVField> line = new ArrayList<CSVField>();
+				line.add(new CSVField(Constants.getVersion()));
+				line.add(new CSVField(String.valueOf(nrConcurrent)));
+				line.add(new CSVField(type == 0 ? "task" : "action"));
+				line.add(new CSVField(e.getKey()));
+				line.add(new CSVField(String.valueOf(h.count())));
+				line.add(new CSVField(String.valueOf(h.failed())));
+				line.add(new CSVField(sDF.format(runTime <= 0.0 ? 0.0 : h.count() / runTime)));
+				line.add(new CSVField(sDF.format(h.meanMillis())));
+				for (double p: new double[] {50.0, 90.0, 95.0, 99.0, 99.9})
+					line.add(new CSVField(sDF.format(h.percentileMillis(p))));
+				line.add(new CSVField(sDF.format(h.maxMillis())));
+				line.add(new CSVField(type == 0 && iQuality.count() > 0 ? sDF.format(averageQuality()) : ""));
+				iBenchmark.add(line);
+			}
+		}
+	}
+	
+	protected void writeBenchmark() {
+		if (iBenchmark.isEmpty()) return;
+		CSVFile csv = new CSVFile();
+		csv.setHeader(new CSVField[] {
+				new CSVField("Build"), new CSVField("Concurrency"), new CSVField("Type"), new CSVField("Name"),
+				new CSVField("Count"), new CSVField("Failed"), new CSVField("Throughput [1/s]"), new CSVField("Mean [ms]"),
+				new CSVField("P50 [ms]"), new CSVField("P90 [ms]"), new CSVField("P95 [ms]"), new CSVField("P99 [ms]"), new CSVField("P99.9 [ms]"),
+				new CSVField("Max [ms]"), new CSVField("Quality")
+		});
+		for (List<CSVField> line: iBenchmark)
+			csv.addLine(line);
+		try {
+			File output = new File(ApplicationProperties.getProperty("benchmark.output", "benchmark.csv"));
+			sLog.info("Writing " + output + " ...");
+			csv.save(output);
+		} catch (IOException e) {
+			sLog.error("Unable to write benchmark results: " + e.getMessage(), e);
+		}
 	}
 	
 	public abstract List<Operation> operations();
@@ -307,14 +502,24 @@ public abstract class OnlineSectioningTestFwk {
 			
 			Collections.shuffle(operations);
 			
+			int warmup = Integer.parseInt(ApplicationProperties.getProperty("benchmark.warmup", "0"));
+			if (warmup > 0 && nrConcurrent.length > 0) {
+				sLog.info("Warming up ...");
+				run(operations.size() <= warmup ? operations : operations.subList(0, warmup), nrConcurrent[0]);
+			}
+			
+			iBenchmark.clear();
 			for (int c: nrConcurrent) {
 				run(nrTasks <= 0 || operations.size() <= nrTasks ? operations : operations.subList(0, nrTasks), c);
+				recordBenchmark(c);
 			}
 			
 			logCounters();
 			
 			writeReports();
 			
+			writeBenchmark();
+			
 			stopServer();
 		} catch (Exception e) {
 			sLog.fatal("Test failed: " + e.getMessage(), e);
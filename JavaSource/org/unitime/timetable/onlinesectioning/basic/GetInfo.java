@@ -65,6 +65,7 @@ import org.unitime.timetable.model.dao.StudentSectioningStatusDAO;
 import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningAction;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningLogger;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
 import org.unitime.timetable.onlinesectioning.match.AnyCourseMatcher;
@@ -90,6 +91,11 @@ import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.model.XStudent.XGroup;
 import org.unitime.timetable.onlinesectioning.model.XStudentId;
 import org.unitime.timetable.onlinesectioning.model.XSubpart;
+import org.unitime.timetable.onlinesectioning.server.AbstractServer;
+import org.unitime.timetable.onlinesectioning.server.AsyncActionExecutor;
+import org.unitime.timetable.onlinesectioning.server.InMemoryServer;
+import org.unitime.timetable.onlinesectioning.server.ReplicatedServer;
+import org.unitime.timetable.onlinesectioning.solver.OfferingCloneCache;
 
 /**
  * @author Tomas Muller
@@ -425,6 +431,27 @@ public class GetInfo implements OnlineSectioningAction<Map<String, String>>{
                 info.put("Average disbalance", df.format(disbWeight / disbSections) + " (" + df.format(assgnVars == 0 ? 0.0 : 100.0 * disbWeight / assgnVars) + "%)");
                 info.put("Sections disbalanced by 10% or more", disb10Sections + " (" + df.format(disbSections == 0 ? 0.0 : 100.0 * disb10Sections / disbSections) + "%)");
             }
+            
+            String log = OnlineSectioningLogger.getStatistics();
+            if (log != null)
+                info.put("Sectioning log", log);
+            
+            if (server instanceof AbstractServer && ((AbstractServer)server).getExecutor() != null) {
+            	AsyncActionExecutor executor = ((AbstractServer)server).getExecutor();
+            	info.put("Asynchronous executor", executor.toString());
+            	for (Map.Entry<String, AsyncActionExecutor.ActionStatistics> e: executor.getStatistics().entrySet())
+            		info.put("Asynchronous " + e.getKey() + " (" + executor.getPriority(e.getKey()).name().toLowerCase() + ")", e.getValue().toString());
+            }
+            
+            if (server instanceof ReplicatedServer)
+            	info.put("Near-cache", ((ReplicatedServer)server).getNearCacheStatistics());
+            
+            if (server instanceof InMemoryServer)
+            	info.put("Offering cache", OfferingCloneCache.getInstance(server).toString());
+            
+            String queueStatistics = server.getProperty("Updater.Statistics", null);
+            if (queueStatistics != null)
+            	info.put("Queue updates", queueStatistics);
 		} finally {
 			lock.release();
 		}
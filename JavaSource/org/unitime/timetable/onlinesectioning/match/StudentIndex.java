@@ -0,0 +1,55 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.match;
+
+import java.util.Set;
+
+/**
+ * Secondary index of the students of an online sectioning server, see {@link IndexedStudentMatcher}.
+ * 
+ * @author Tomas Muller
+ */
+public interface StudentIndex {
+	/** Academic area (of a major or a minor) */
+	public static final String AREA = "area";
+	/** Academic classification (of a major) */
+	public static final String CLASSIFICATION = "classification";
+	/** Major code */
+	public static final String MAJOR = "major";
+	/** Minor code */
+	public static final String MINOR = "minor";
+	/** Student group abbreviation */
+	public static final String GROUP = "group";
+	/** Advisor external id */
+	public static final String ADVISOR = "advisor";
+	/** Student status reference ({@link StudentIndex#NO_STATUS} when the student has no status set) */
+	public static final String STATUS = "status";
+	/** Student external id, full name, or a name token (name split by spaces and commas) */
+	public static final String STUDENT = "student";
+	
+	/** Value of the {@link StudentIndex#STATUS} attribute for students with no status set */
+	public static final String NO_STATUS = "";
+	
+	/**
+	 * Students having the given value (compared ignoring case, see {@link String#equalsIgnoreCase(String)}) of the given attribute.
+	 * @return set of student ids (empty set if there is no such student), null if the attribute is not indexed
+	 */
+	public Set<Long> getStudentIds(String attribute, String value);
+}
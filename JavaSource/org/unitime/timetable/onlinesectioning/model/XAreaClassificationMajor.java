@@ -164,20 +164,20 @@ public class XAreaClassificationMajor implements Serializable, Externalizable, C
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		iAreaCode = (String)in.readObject();
-		iAreaLabel = (String)in.readObject();
-		iClassificationCode = (String)in.readObject();
-		iClassificationLabel = (String)in.readObject();
-		iMajorCode = (String)in.readObject();
-		iMajorLabel = (String)in.readObject();
-		iConcentrationCode = (String)in.readObject();
-		iConcentrationLabel = (String)in.readObject();
-		iDegreeCode = (String)in.readObject();
-		iDegreeLabel = (String)in.readObject();
-		iProgramCode = (String)in.readObject();
-		iProgramLabel = (String)in.readObject();
-		iCampusCode = (String)in.readObject();
-		iCampusLabel = (String)in.readObject();
+		iAreaCode = XInterner.intern((String)in.readObject());
+		iAreaLabel = XInterner.intern((String)in.readObject());
+		iClassificationCode = XInterner.intern((String)in.readObject());
+		iClassificationLabel = XInterner.intern((String)in.readObject());
+		iMajorCode = XInterner.intern((String)in.readObject());
+		iMajorLabel = XInterner.intern((String)in.readObject());
+		iConcentrationCode = XInterner.intern((String)in.readObject());
+		iConcentrationLabel = XInterner.intern((String)in.readObject());
+		iDegreeCode = XInterner.intern((String)in.readObject());
+		iDegreeLabel = XInterner.intern((String)in.readObject());
+		iProgramCode = XInterner.intern((String)in.readObject());
+		iProgramLabel = XInterner.intern((String)in.readObject());
+		iCampusCode = XInterner.intern((String)in.readObject());
+		iCampusLabel = XInterner.intern((String)in.readObject());
 		iWeight = in.readDouble();
 	}
 
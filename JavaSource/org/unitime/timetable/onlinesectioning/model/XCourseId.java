@@ -187,11 +187,11 @@ public class XCourseId implements Serializable, Comparable<XCourseId>, Externali
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 		iOfferingId = in.readLong();
 		iCourseId = in.readLong();
-		iSubjectArea = (String)in.readObject();
-		iCourseNumber = (String)in.readObject();
-		iTitle = (String)in.readObject();
+		iSubjectArea = XInterner.intern((String)in.readObject());
+		iCourseNumber = XInterner.intern((String)in.readObject());
+		iTitle = XInterner.intern((String)in.readObject());
 		iHasUniqueName = in.readBoolean();
-		iType = (String)in.readObject();
+		iType = XInterner.intern((String)in.readObject());
 	}
 
 	@Override
@@ -23,9 +23,10 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 
@@ -48,7 +49,7 @@ public class XEnrollment extends XCourseId implements Serializable {
 	private static final long serialVersionUID = 1L;
 	private Long iStudentId = null;
 	private Long iConfigId = null;
-	private Set<Long> iSectionIds = new HashSet<Long>();
+	private Set<Long> iSectionIds = new XIdSet();
     private Date iTimeStamp = null;
     private XApproval iApproval = null;
     private XReservationId iReservation = null;
@@ -236,10 +237,12 @@ public class XEnrollment extends XCourseId implements Serializable {
 		iStudentId = in.readLong();
 		iConfigId = in.readLong();
 		
-		iSectionIds.clear();
 		int nrSections = in.readInt();
+		List<Long> sectionIds = new ArrayList<Long>(nrSections);
 		for (int i = 0; i < nrSections; i++)
-			iSectionIds.add(in.readLong());
+			sectionIds.add(in.readLong());
+		iSectionIds.clear();
+		iSectionIds.addAll(sectionIds);
 		
 		iTimeStamp = (in.readBoolean() ? new Date(in.readLong()) : null);
 		iApproval = (in.readBoolean() ? new XApproval(in) : null);
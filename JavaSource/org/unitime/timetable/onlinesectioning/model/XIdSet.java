@@ -0,0 +1,149 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.model;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact set of unique ids, backed by a sorted array of primitive longs.<br>
+ * Used instead of a {@link java.util.HashSet} for small sets that are kept for every student (e.g., the section ids
+ * of an {@link XEnrollment}): a hash set of three ids takes about 300 bytes (the hash table, entries, and boxed values),
+ * while this set takes less than 60 bytes. Lookups use binary search, updates copy the array, so the set is not
+ * suitable for large or frequently modified collections. Null values are not permitted. The set is not synchronized.
+ *
+ * @author Tomas Muller
+ */
+public class XIdSet extends AbstractSet<Long> implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final long[] sEmpty = new long[0];
+	private long[] iIds = sEmpty;
+	
+	public XIdSet() {}
+	
+	public XIdSet(Collection<Long> ids) {
+		if (ids != null) addAll(ids);
+	}
+	
+	@Override
+	public int size() { return iIds.length; }
+	
+	@Override
+	public boolean isEmpty() { return iIds.length == 0; }
+	
+	public boolean contains(long id) {
+		return Arrays.binarySearch(iIds, id) >= 0;
+	}
+	
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Long && contains(((Long)o).longValue());
+	}
+	
+	@Override
+	public boolean add(Long id) {
+		int idx = Arrays.binarySearch(iIds, id.longValue());
+		if (idx >= 0) return false;
+		int ins = -idx - 1;
+		long[] ids = new long[iIds.length + 1];
+		System.arraycopy(iIds, 0, ids, 0, ins);
+		ids[ins] = id;
+		System.arraycopy(iIds, ins, ids, ins + 1, iIds.length - ins);
+		iIds = ids;
+		return true;
+	}
+	
+	@Override
+	public boolean addAll(Collection<? extends Long> ids) {
+		if (ids.isEmpty()) return false;
+		long[] merged = Arrays.copyOf(iIds, iIds.length + ids.size());
+		int size = iIds.length;
+		for (Long id: ids) merged[size++] = id;
+		Arrays.sort(merged);
+		// remove duplicates
+		int unique = 0;
+		for (int i = 0; i < merged.length; i++)
+			if (unique == 0 || merged[unique - 1] != merged[i]) merged[unique++] = merged[i];
+		if (unique == iIds.length) return false;
+		iIds = (unique == merged.length ? merged : Arrays.copyOf(merged, unique));
+		return true;
+	}
+	
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof Long)) return false;
+		int idx = Arrays.binarySearch(iIds, ((Long)o).longValue());
+		if (idx < 0) return false;
+		removeAt(idx);
+		return true;
+	}
+	
+	private void removeAt(int idx) {
+		if (iIds.length == 1) { iIds = sEmpty; return; }
+		long[] ids = new long[iIds.length - 1];
+		System.arraycopy(iIds, 0, ids, 0, idx);
+		System.arraycopy(iIds, idx + 1, ids, idx, iIds.length - idx - 1);
+		iIds = ids;
+	}
+	
+	@Override
+	public void clear() { iIds = sEmpty; }
+	
+	/**
+	 * A copy of the ids, in ascending order
+	 */
+	public long[] toLongArray() { return iIds.clone(); }
+	
+	@Override
+	public Iterator<Long> iterator() {
+		return new Iterator<Long>() {
+			private int iIndex = 0;
+			private int iLast = -1;
+			
+			@Override
+			public boolean hasNext() { return iIndex < iIds.length; }
+			
+			@Override
+			public Long next() {
+				if (iIndex >= iIds.length) throw new NoSuchElementException();
+				iLast = iIndex;
+				return iIds[iIndex++];
+			}
+			
+			@Override
+			public void remove() {
+				if (iLast < 0) throw new IllegalStateException();
+				removeAt(iLast);
+				iIndex = iLast; iLast = -1;
+			}
+		};
+	}
+	
+	@Override
+	public int hashCode() {
+		int h = 0;
+		for (long id: iIds) h += (int)(id ^ (id >>> 32));
+		return h;
+	}
+}
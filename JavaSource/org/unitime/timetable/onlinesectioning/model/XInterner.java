@@ -0,0 +1,129 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.model;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Weak canonicalizing pool of the immutable objects that are repeated over and over in the online sectioning model,
+ * like subject areas, course titles, academic area / classification / major codes, date pattern bit sets, or rooms.<br>
+ * The objects loaded from the database usually share these instances already (through the Hibernate session), but each
+ * deserialization (replicated caches, server snapshots) creates a new copy for every student, request, or section.
+ * The pooled instances are only weakly referenced, so they are released once no model object uses them.<br>
+ * The pool is a {@link ConcurrentHashMap} of weak references (no global lock), since it is used by every deserialization
+ * of an offering or a student, which may happen in many threads at once (e.g., the replicated server storing its caches as binary).<br>
+ * Pooled instances must not be modified (e.g., a week bit set that is returned by {@link XTime#getWeeks()}).
+ *
+ * @author Tomas Muller
+ */
+public class XInterner {
+	private static final ConcurrentMap<PoolKey, PoolKey> sPool = new ConcurrentHashMap<PoolKey, PoolKey>();
+	private static final ReferenceQueue<Object> sQueue = new ReferenceQueue<Object>();
+	
+	private XInterner() {}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> T pool(T object) {
+		expunge();
+		PoolKey key = new PoolKey(object);
+		while (true) {
+			PoolKey pooled = sPool.putIfAbsent(key, key);
+			if (pooled == null) return object;
+			Object value = pooled.get();
+			if (value != null) return (T)value;
+			// pooled instance has been released in the mean time
+			sPool.remove(pooled, pooled);
+		}
+	}
+	
+	public static String intern(String text) {
+		if (text == null || text.isEmpty()) return text;
+		return pool(text);
+	}
+	
+	public static BitSet intern(BitSet weeks) {
+		if (weeks == null) return null;
+		return pool(weeks);
+	}
+	
+	/**
+	 * Rooms are equal when they have the same unique id, a pooled room is only used when it has the same name, external id,
+	 * coordinates, and ignore too far distances flag (e.g., a room could have been renamed since the pooled instance was created).
+	 */
+	public static XRoom intern(XRoom room) {
+		if (room == null) return null;
+		expunge();
+		PoolKey key = new PoolKey(room);
+		while (true) {
+			PoolKey pooled = sPool.putIfAbsent(key, key);
+			if (pooled == null) return room;
+			Object value = pooled.get();
+			if (value != null && value instanceof XRoom && ((XRoom)value).isIdentical(room)) return (XRoom)value;
+			// pooled instance has been released or it is outdated, replace it
+			sPool.remove(pooled, pooled);
+		}
+	}
+	
+	/**
+	 * Remove the entries of the instances that have been garbage collected
+	 */
+	private static void expunge() {
+		Reference<?> ref;
+		while ((ref = sQueue.poll()) != null)
+			sPool.remove(ref, ref);
+	}
+	
+	/**
+	 * Number of pooled instances
+	 */
+	public static int size() {
+		expunge();
+		return sPool.size();
+	}
+	
+	/**
+	 * Weak reference to a pooled instance, two keys are equal when their instances are equal
+	 * (a released key is only equal to itself, so that it can be removed from the pool).
+	 */
+	private static class PoolKey extends WeakReference<Object> {
+		private final int iHashCode;
+		
+		PoolKey(Object object) {
+			super(object, sQueue);
+			iHashCode = object.hashCode();
+		}
+		
+		@Override
+		public int hashCode() { return iHashCode; }
+		
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) return true;
+			if (o == null || !(o instanceof PoolKey)) return false;
+			Object a = get(), b = ((PoolKey)o).get();
+			return a != null && b != null && a.equals(b);
+		}
+	}
+}
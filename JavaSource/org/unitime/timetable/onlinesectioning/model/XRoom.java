@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Serializable;
+import java.util.Objects;
 
 
 import org.cpsolver.coursett.model.RoomLocation;
@@ -89,6 +90,14 @@ public class XRoom implements Serializable, Externalizable {
     public int hashCode() {
         return getUniqueId().hashCode();
     }
+    
+    /**
+     * Same unique id, name, external id, coordinates, and ignore too far flag
+     */
+    public boolean isIdentical(XRoom room) {
+    	return equals(room) && iIgnoreTooFar == room.iIgnoreTooFar && Objects.equals(iName, room.iName) &&
+    			Objects.equals(iExternalId, room.iExternalId) && Objects.equals(iX, room.iX) && Objects.equals(iY, room.iY);
+    }
 	
 	public int getDistanceInMinutes(DistanceMetric m, XRoom other) {
 		if (getUniqueId().equals(other.getUniqueId())) return 0;
@@ -131,7 +140,7 @@ public class XRoom implements Serializable, Externalizable {
 
 		@Override
 		public XRoom readObject(ObjectInput input) throws IOException, ClassNotFoundException {
-			return new XRoom(input);
+			return XInterner.intern(new XRoom(input));
 		}
 		
 	}
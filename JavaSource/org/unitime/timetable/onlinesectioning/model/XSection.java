@@ -134,12 +134,12 @@ public class XSection implements Serializable, Comparable<XSection>, Externaliza
         if (assignment != null) {
         	iTime = new XTime(assignment, helper.getExactTimeConversion(), helper.getDatePatternFormat());
         	for (Location room: assignment.getRooms())
-        		iRooms.add(new XRoom(room));
+        		iRooms.add(XInterner.intern(new XRoom(room)));
         } else {
         	for (Iterator<?> i = clazz.effectivePreferences(RoomPref.class).iterator(); i.hasNext(); ) {
         		RoomPref p = (RoomPref)i.next();
         		if (PreferenceLevel.sRequired.equals(p.getPrefLevel().getPrefProlog())) {
-        			iRooms.add(new XRoom(p.getRoom()));
+        			iRooms.add(XInterner.intern(new XRoom(p.getRoom())));
         		}
         	}
         	DatePattern dp = clazz.effectiveDatePattern();
@@ -188,7 +188,7 @@ public class XSection implements Serializable, Comparable<XSection>, Externaliza
     		}
     	if (section.getNrRooms() > 0)
     		for (RoomLocation room: section.getRooms())
-    			iRooms.add(new XRoom(room));
+    			iRooms.add(XInterner.intern(new XRoom(room)));
     	Set<String> instructorExternalIds = new HashSet<String>();
     	if (section.hasInstructors()) {
     		for (Instructor instructor: section.getInstructors()) {
@@ -563,7 +563,7 @@ public class XSection implements Serializable, Comparable<XSection>, Externaliza
 		int nrRooms = in.readInt();
 		iRooms.clear();
 		for (int i = 0; i < nrRooms; i++)
-			iRooms.add(new XRoom(in));
+			iRooms.add(XInterner.intern(new XRoom(in)));
 		
 		int nrInstructors = in.readInt();
 		iInstructors.clear();
@@ -571,8 +571,8 @@ public class XSection implements Serializable, Comparable<XSection>, Externaliza
 			iInstructors.add(new XInstructor(in));
 		
 		iAllowOverlap = in.readBoolean();
-		iInstructionalType = (String)in.readObject();
-		iSubpartName = (String)in.readObject();
+		iInstructionalType = XInterner.intern((String)in.readObject());
+		iSubpartName = XInterner.intern((String)in.readObject());
 		
 		iExternalId = (String)in.readObject();
 		int nrExtIds = in.readInt();
@@ -198,6 +198,15 @@ public class XStudent extends XStudentId implements Externalizable {
         iPin = student.getPin();
         iPinReleased = (student.isPinReleased() != null && student.isPinReleased().booleanValue());
         updatePreferences(student, firstDay);
+        trimToSize();
+    }
+    
+    /**
+     * Trim the lists to their sizes, most of the students only have a few majors, groups, or requests
+     */
+    protected void trimToSize() {
+    	for (List<?> list: new List<?>[] {iMajors, iMinors, iGroups, iAccomodations, iRequests, iAdvisors, iInstructorAssignments, iAdvisorRequests})
+    		if (list instanceof ArrayList) ((ArrayList<?>)list).trimToSize();
     }
     
     public void updatePreferences(Student student, Date firstDay) {
@@ -644,31 +653,31 @@ public class XStudent extends XStudentId implements Externalizable {
 		super.readExternal(in);
 		
 		int nrMajors = in.readInt();
-		iMajors.clear();
+		iMajors = new ArrayList<XAreaClassificationMajor>(nrMajors);
 		for (int i = 0; i < nrMajors; i++)
 			iMajors.add(new XAreaClassificationMajor(in));
 		
 		int nrMinors = in.readInt();
-		iMinors.clear();
+		iMinors = new ArrayList<XAreaClassificationMajor>(nrMinors);
 		for (int i = 0; i < nrMinors; i++)
 			iMinors.add(new XAreaClassificationMajor(in));
 		
 		int nrGroups = in.readInt();
-		iGroups.clear();
+		iGroups = new ArrayList<XGroup>(nrGroups);
 		for (int i = 0; i < nrGroups; i++)
 			iGroups.add(new XGroup(in));
 		
 		int nrAccomodations = in.readInt();
-		iAccomodations.clear();
+		iAccomodations = new ArrayList<XGroup>(nrAccomodations);
 		for (int i = 0; i < nrAccomodations; i++)
 			iAccomodations.add(new XGroup(in));
 		
 		int nrRequests = in.readInt();
-		iRequests.clear();
+		iRequests = new ArrayList<XRequest>(nrRequests);
 		for (int i = 0; i < nrRequests; i++)
 			iRequests.add(in.readBoolean() ? new XCourseRequest(in) : new XFreeTimeRequest(in));
 		
-		iStatus = (String)in.readObject();
+		iStatus = XInterner.intern((String)in.readObject());
 		iEmail = (String)in.readObject();
 		iEmailTimeStamp = (in.readBoolean() ? new Date(in.readLong()) : null);
 		iLastStudentChange = (in.readBoolean() ? new Date(in.readLong()) : null);
@@ -678,7 +687,7 @@ public class XStudent extends XStudentId implements Externalizable {
 		iAllowDisabled = in.readBoolean();
 		
 		int nrAdvisors = in.readInt();
-		iAdvisors.clear();
+		iAdvisors = new ArrayList<XAdvisor>(nrAdvisors);
 		for (int i = 0; i < nrAdvisors; i++)
 			iAdvisors.add(new XAdvisor(in));
 		
@@ -817,11 +826,11 @@ public class XStudent extends XStudentId implements Externalizable {
 		@Override
 		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 			if (in.readBoolean())
-				iType = (String)in.readObject();
+				iType = XInterner.intern((String)in.readObject());
 			else
 				iType = null;
-			iAbbreaviation = (String)in.readObject();
-			iTitle = (String)in.readObject();
+			iAbbreaviation = XInterner.intern((String)in.readObject());
+			iTitle = XInterner.intern((String)in.readObject());
 		}
 
 		@Override
@@ -79,8 +79,8 @@ public class XTime implements Serializable, Externalizable {
 			iBreakTime = assignment.getTimePattern().getBreakTime();
 		}
 		iDatePatternId = assignment.getDatePattern().getUniqueId();
-		iDatePatternName = datePatternName(assignment, datePatternFormat);
-		iWeeks = assignment.getDatePattern().getPatternBitSet();
+		iDatePatternName = XInterner.intern(datePatternName(assignment, datePatternFormat));
+		iWeeks = XInterner.intern(assignment.getDatePattern().getPatternBitSet());
 	}
 	
 	public XTime(DatePattern pattern, String datePatternFormat) {
@@ -98,7 +98,7 @@ public class XTime implements Serializable, Externalizable {
     		Date last = pattern.getEndDate();
     		iDatePatternName = dpf.format(first) + (first.equals(last) ? "" : " - " + dpf.format(last));
     	}
-		iWeeks = pattern.getPatternBitSet();
+		iWeeks = XInterner.intern(pattern.getPatternBitSet());
 	}
 	
 	public XTime(FreeTime free, BitSet freeTimePattern) {
@@ -422,10 +422,10 @@ public class XTime implements Serializable, Externalizable {
 		iLength = in.readInt();
 		iBreakTime = in.readInt();
 		iDays = in.readInt();
-		iWeeks = (BitSet)in.readObject();
+		iWeeks = XInterner.intern((BitSet)in.readObject());
 		iDatePatternId = in.readLong();
 		if (iDatePatternId < 0) iDatePatternId = null;
-		iDatePatternName = (String)in.readObject();
+		iDatePatternName = XInterner.intern((String)in.readObject());
 	}
 
 	@Override
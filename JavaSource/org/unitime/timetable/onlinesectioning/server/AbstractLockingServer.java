@@ -30,7 +30,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.unitime.timetable.gwt.shared.CourseRequestInterface;
 import org.unitime.timetable.gwt.shared.SectioningException;
 import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
-import org.unitime.timetable.onlinesectioning.MultiLock;
+import org.unitime.timetable.onlinesectioning.ConcurrentMultiLock;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
 import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
@@ -42,7 +42,7 @@ import org.unitime.timetable.onlinesectioning.model.XStudent;
  */
 public abstract class AbstractLockingServer extends AbstractServer {
 	private ReentrantReadWriteLock iLock = new ReentrantReadWriteLock();
-	private MultiLock iMultiLock;
+	private ConcurrentMultiLock iMultiLock;
 	private Map<Long, Lock> iOfferingLocks = new Hashtable<Long, Lock>();
 	
 	public AbstractLockingServer(OnlineSectioningServerContext context) throws SectioningException {
@@ -51,15 +51,29 @@ public abstract class AbstractLockingServer extends AbstractServer {
 	
 	protected AbstractLockingServer(AcademicSessionInfo session, boolean allowAsyncCalls) {
 		super(session, allowAsyncCalls);
-		iMultiLock = new MultiLock(getAcademicSession());
+		iMultiLock = new ConcurrentMultiLock(getAcademicSession());
 	}
 	
 	@Override
 	protected void load(OnlineSectioningServerContext context) {
-		iMultiLock = new MultiLock(getAcademicSession());
+		iMultiLock = new ConcurrentMultiLock(getAcademicSession());
 		super.load(context);
 	}
 	
+	/**
+	 * Wait time statistics of the student / offering / request locks
+	 */
+	public ConcurrentMultiLock.Statistics getLockStatistics() {
+		return (iMultiLock == null ? null : iMultiLock.getStatistics());
+	}
+	
+	@Override
+	public void unload() {
+		if (iMultiLock != null)
+			iLog.info("Lock statistics: " + iMultiLock.getStatistics());
+		super.unload();
+	}
+	
 	@Override
 	public Lock readLock() {
 		if (iLock == null)
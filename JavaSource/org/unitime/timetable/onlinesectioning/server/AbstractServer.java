@@ -32,7 +32,6 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
@@ -63,7 +62,6 @@ import org.unitime.timetable.model.SolverPredefinedSetting;
 import org.unitime.timetable.model.StudentClassEnrollment;
 import org.unitime.timetable.model.TravelTime;
 import org.unitime.timetable.model.dao.SessionDAO;
-import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
 import org.unitime.timetable.onlinesectioning.CacheElement;
 import org.unitime.timetable.onlinesectioning.HasCacheMode;
@@ -78,13 +76,13 @@ import org.unitime.timetable.onlinesectioning.custom.CourseDetailsProvider;
 import org.unitime.timetable.onlinesectioning.model.XCourse;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
 import org.unitime.timetable.onlinesectioning.model.XEnrollments;
+import org.unitime.timetable.onlinesectioning.model.XInterner;
 import org.unitime.timetable.onlinesectioning.model.XTime;
 import org.unitime.timetable.onlinesectioning.updates.CheckAllOfferingsAction;
 import org.unitime.timetable.onlinesectioning.updates.PersistExpectedSpacesAction;
 import org.unitime.timetable.onlinesectioning.updates.ReloadAllData;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.DateUtils;
-import org.unitime.timetable.util.Formats;
 import org.unitime.timetable.util.MemoryCounter;
 
 /**
@@ -97,8 +95,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 	private DataProperties iConfig = null;
 	private OnlineSectioningActionFactory iActionFactory = null;
 	
-	protected List<AsyncExecutor> iExecutors = new ArrayList<AsyncExecutor>();
-	private Queue<Runnable> iExecutorQueue = new LinkedList<Runnable>();
+	protected AsyncActionExecutor iExecutor = null;
 	private HashSet<CacheElement<Long>> iOfferingsToPersistExpectedSpaces = new HashSet<CacheElement<Long>>();
 	private static ThreadLocal<LinkedList<OnlineSectioningHelper>> sHelper = new ThreadLocal<LinkedList<OnlineSectioningHelper>>();
 	protected Map<String, Object> iProperties = new HashMap<String, Object>();
@@ -128,8 +125,8 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			iLog = LogFactory.getLog(OnlineSectioningServer.class.getName() + ".server[" + academicSession.toCompactString() + "]");
 			iProperties.put("AcademicSession", academicSession);
 			int asncPoolSize = ApplicationProperty.OnlineSchedulingServerAsyncPoolSize.intValue();
-			for (int i = 0; i < asncPoolSize; i++)
-				new AsyncExecutor(academicSession, 1 + i).start();
+			if (asncPoolSize > 0)
+				iExecutor = createExecutor(academicSession, asncPoolSize);
 		} finally {
 			hibSession.close();
 		}
@@ -152,11 +149,25 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 		iProperties.put("AcademicSession", session);
 		if (allowAsyncCalls) {
 			int asncPoolSize = ApplicationProperty.OnlineSchedulingServerAsyncPoolSize.intValue();
-			for (int i = 0; i < asncPoolSize; i++)
-				new AsyncExecutor(session, 1 + i).start();
+			if (asncPoolSize > 0)
+				iExecutor = createExecutor(session, asncPoolSize);
 		}
 	}
 	
+	/**
+	 * Create executor of the asynchronous actions, can be overridden to provide a different executor
+	 */
+	protected AsyncActionExecutor createExecutor(AcademicSessionInfo session, int poolSize) {
+		return new AsyncActionExecutor(session, poolSize);
+	}
+	
+	/**
+	 * Executor of the asynchronous actions, null if asynchronous calls are not allowed
+	 */
+	public AsyncActionExecutor getExecutor() {
+		return iExecutor;
+	}
+	
 	protected void load(OnlineSectioningServerContext context) throws SectioningException {
 		if (context.getLockService() != null) {
 			iMasterThread = new MasterAcquiringThread(context);
@@ -175,7 +186,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 					.setType(OnlineSectioningLog.Entity.EntityType.OTHER).build();
 			if (context.isWaitTillStarted()) {
 				try {
-					execute(createAction(ReloadAllData.class), user);
+					execute(createAction(ReloadAllData.class).useSnapshot(ServerSnapshot.isEnabled()), user);
 				} catch (Throwable exception) {
 					iLog.error("Failed to load server: " + exception.getMessage(), exception);
 					throw exception;
@@ -196,7 +207,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 					return;
 				}
 				setProperty("ReloadingAllData", Boolean.TRUE);
-				execute(createAction(ReloadAllData.class), user, new ServerCallback<Boolean>() {
+				execute(createAction(ReloadAllData.class).useSnapshot(ServerSnapshot.isEnabled()), user, new ServerCallback<Boolean>() {
 					@Override
 					public void onSuccess(Boolean result) {
 						if (getAcademicSession().isSectioningEnabled())
@@ -250,8 +261,11 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 							Object obj = fields[i].get(this);
 							if (obj != null) {
 								long est = estimate(mc, obj);
-								if (est > 1024)
-									info.put(clazz.getSimpleName() + "." + fields[i].getName(), df.format(est / 1024.0) + " kB" + (obj instanceof Map ? " (" + ((Map)obj).size() + " records)" : obj instanceof Collection ? "(" + ((Collection)obj).size() + " records)" : ""));
+								if (est > 1024) {
+									int records = (obj instanceof Map ? ((Map)obj).size() : obj instanceof Collection ? ((Collection)obj).size() : -1);
+									info.put(clazz.getSimpleName() + "." + fields[i].getName(), df.format(est / 1024.0) + " kB" +
+											(records > 0 ? " (" + records + " records, " + df.format(((double)est) / records) + " bytes per record)" : records == 0 ? " (0 records)" : ""));
+								}
 								total += est;
 							}
 						} catch (IllegalAccessException ex) {
@@ -262,6 +276,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			}
 			clazz = clazz.getSuperclass();
 		}
+		info.put("XInterner", XInterner.size() + " shared instances");
 		iLog.info("Total Allocated " + df.format(total / 1024.0) + " kB (of " + df.format((rt.totalMemory() - rt.freeMemory()) / 1048576.0) + " MB), details: " + ToolBox.dict2string(info, 2));
 		return total;
 	}
@@ -456,7 +471,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 	
 	@Override
 	public <E> void execute(final OnlineSectioningAction<E> action, final OnlineSectioningLog.Entity user, final ServerCallback<E> callback) throws SectioningException {
-		if (iExecutors == null || iExecutors.isEmpty()) {
+		if (iExecutor == null) {
 			try {
 				callback.onSuccess(execute(action, user));
 			} catch (Throwable t) {
@@ -465,81 +480,47 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			return;
 		}
 		final String locale = Localization.getLocale();
-		synchronized (iExecutorQueue) {
-			iExecutorQueue.offer(new Runnable() {
-				@Override
-				public void run() {
-					Localization.setLocale(locale);
-					try {
-						callback.onSuccess(execute(action, user));
-					} catch (Throwable t) {
-						callback.onFailure(t);
-					}
-				}
-				
-				@Override
-				public String toString() {
-					return action.name();
-				}
-			});
-			iExecutorQueue.notify();
-		}
-	}
-	
-	public class AsyncExecutor extends Thread {
-		private boolean iStop = false;
-		private int iId;
-		
-		public AsyncExecutor(AcademicSessionInfo session, int id) {
-			iId = id;
-			setName("AsyncExecutor[" + session + "-" + id + "]");
-			setDaemon(true);
-			iExecutors.add(this);
-		}
-		
-		public void run() {
-			try {
-				ApplicationProperties.setSessionId(getAcademicSession().getUniqueId());
-				Runnable job;
-				while (!iStop) {
-					synchronized (iExecutorQueue) {
-						job = iExecutorQueue.poll();
-						if (job == null) {
-							try {
-								iLog.debug("Executor " + iId + " is waiting for a new job...");
-								iExecutorQueue.wait();
-							} catch (InterruptedException e) {}
-							continue;
-						}		
-					}
-					job.run();
-					if (_RootDAO.closeCurrentThreadSessions())
-						iLog.debug("Job " + job + " did not close current-thread hibernate session.");
+		boolean accepted = iExecutor.execute(action.name(), new Runnable() {
+			@Override
+			public void run() {
+				Localization.setLocale(locale);
+				try {
+					callback.onSuccess(execute(action, user));
+				} catch (Throwable t) {
+					callback.onFailure(t);
 				}
-				iLog.info("Executor " + iId + " stopped.");
-			} finally {
-				ApplicationProperties.setSessionId(null);
-				Localization.removeLocale();
-				Formats.removeFormats();
-				iExecutors.remove(this);
 			}
-		}
-		
+			
+			@Override
+			public String toString() {
+				return action.name();
+			}
+		});
+		if (!accepted)
+			callback.onFailure(new SectioningException("Too many pending asynchronous calls, action " + action.name() + " has been rejected."));
 	}
 	
 	@Override
 	public void unload() {
-		if (iExecutors != null) {
-			for (AsyncExecutor ex: iExecutors)
-				ex.iStop = true;
-			synchronized (iExecutorQueue) {
-				iExecutorQueue.notifyAll();
-			}
-		}
+		if (ServerSnapshot.isEnabled() && isMaster() && isReady())
+			writeSnapshot();
+		if (iExecutor != null)
+			iExecutor.shutdown();
 		if (iMasterThread != null)
 			iMasterThread.dispose();
 	}
 
+	/**
+	 * Write {@link ServerSnapshot} of the server data, called on unload when snapshots are enabled
+	 */
+	protected void writeSnapshot() {
+		try {
+			ServerSnapshot.write(this);
+		} catch (Exception e) {
+			iLog.error("Failed to write server snapshot: " + e.getMessage(), e);
+		}
+	}
+
 	@Override
 	public DataProperties getConfig() {
 		return iConfig;
@@ -752,20 +733,21 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 		}
 		
 		private void executeLoadOnMaster() {
-			synchronized (iExecutorQueue) {
-				iExecutorQueue.offer(new Runnable() {
-					@Override
-					public void run() {
-						loadOnMaster(iContext);
-					}
-					
-					@Override
-					public String toString() {
-						return "load-on-master";
-					}
-				});
-				iExecutorQueue.notify();
+			Runnable job = new Runnable() {
+				@Override
+				public void run() {
+					loadOnMaster(iContext);
+				}
+				
+				@Override
+				public String toString() {
+					return "load-on-master";
+				}
 			};
+			if (iExecutor == null)
+				job.run();
+			else
+				iExecutor.execute("load-on-master", AsyncActionExecutor.Priority.INTERACTIVE, job);
 		}
 		
 		@Override
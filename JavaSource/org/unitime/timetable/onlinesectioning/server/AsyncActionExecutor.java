@@ -0,0 +1,277 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.util.Formats;
+
+/**
+ * Executor of the asynchronous actions of an online sectioning server (see {@link AbstractServer#execute(org.unitime.timetable.onlinesectioning.OnlineSectioningAction, org.unitime.timetable.onlinesectioning.OnlineSectioningLog.Entity, org.unitime.timetable.onlinesectioning.OnlineSectioningServer.ServerCallback)}).<br>
+ * There are two priority classes: interactive (e.g., student notifications) and background maintenance (offering checks, persisting expected spaces, reloads),
+ * with the interactive jobs always taken first. The actions that are considered to be background are matched by
+ * {@link ApplicationProperty#OnlineSchedulingServerAsyncBackgroundActions}. The number of waiting jobs of each priority class is limited
+ * ({@link ApplicationProperty#OnlineSchedulingServerAsyncQueueSize}): when the limit is reached, a background job is rejected, while an interactive job
+ * is executed by the calling thread.<br>
+ * Queue wait and execution times are recorded for each action type.
+ *
+ * @author Tomas Muller
+ */
+public class AsyncActionExecutor {
+	public static enum Priority { INTERACTIVE, BACKGROUND };
+	private Log iLog;
+	private Long iSessionId;
+	private ThreadPoolExecutor iExecutor;
+	private int iQueueLimit;
+	private Pattern iBackgroundActions;
+	private AtomicInteger[] iQueueSize = new AtomicInteger[] { new AtomicInteger(0), new AtomicInteger(0) };
+	private AtomicLong iSequence = new AtomicLong(0);
+	private Map<String, ActionStatistics> iStatistics = new ConcurrentHashMap<String, ActionStatistics>();
+	
+	public AsyncActionExecutor(final AcademicSessionInfo session, int poolSize) {
+		iLog = LogFactory.getLog(AsyncActionExecutor.class.getName() + "[" + session.toCompactString() + "]");
+		iSessionId = session.getUniqueId();
+		iQueueLimit = ApplicationProperty.OnlineSchedulingServerAsyncQueueSize.intValue();
+		String background = ApplicationProperty.OnlineSchedulingServerAsyncBackgroundActions.value();
+		iBackgroundActions = (background == null || background.isEmpty() ? null : Pattern.compile(background));
+		iExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0l, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+			private AtomicInteger iNextId = new AtomicInteger(1);
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "AsyncExecutor[" + session + "-" + iNextId.getAndIncrement() + "]");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	
+	/**
+	 * Priority class of an action
+	 */
+	public Priority getPriority(String actionName) {
+		if (iBackgroundActions != null && actionName != null && iBackgroundActions.matcher(actionName).matches())
+			return Priority.BACKGROUND;
+		return Priority.INTERACTIVE;
+	}
+	
+	/**
+	 * Execute a job asynchronously
+	 * @param actionName action name (used to determine the priority class and to record statistics)
+	 * @param job job to execute
+	 * @return false if the job has been rejected (background job and the queue is full)
+	 */
+	public boolean execute(String actionName, Runnable job) {
+		return execute(actionName, getPriority(actionName), job);
+	}
+	
+	/**
+	 * Execute a job asynchronously, using the given priority class
+	 * @return false if the job has been rejected (background job and the queue is full)
+	 */
+	public boolean execute(String actionName, Priority priority, Runnable job) {
+		ActionStatistics stats = getStatistics(actionName);
+		if (iQueueLimit > 0 && iQueueSize[priority.ordinal()].get() >= iQueueLimit) {
+			if (priority == Priority.BACKGROUND) {
+				stats.iRejected.incrementAndGet();
+				iLog.warn("Asynchronous queue is full, action " + actionName + " rejected.");
+				return false;
+			}
+			// interactive jobs are never dropped, run them in the caller thread instead
+			stats.iCallerRuns.incrementAndGet();
+			runInCallerThread(actionName, job, stats);
+			return true;
+		}
+		iQueueSize[priority.ordinal()].incrementAndGet();
+		try {
+			iExecutor.execute(new Job(actionName, priority, job, stats));
+		} catch (RejectedExecutionException e) {
+			// executor has been shut down
+			iQueueSize[priority.ordinal()].decrementAndGet();
+			stats.iRejected.incrementAndGet();
+			iLog.warn("Executor is stopped, action " + actionName + " rejected.");
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Run a job in the calling thread with the same set up and clean up as {@link Job#run()}, except that the
+	 * thread-local state of the caller (academic session, locale, an open hibernate session) is preserved.
+	 */
+	private void runInCallerThread(String actionName, Runnable job, ActionStatistics stats) {
+		Long sessionId = ApplicationProperties.getSessionId();
+		String locale = Localization.getLocale();
+		boolean hadHibSession = _RootDAO.hasCurrentThreadSession();
+		long t0 = System.nanoTime();
+		ApplicationProperties.setSessionId(iSessionId);
+		try {
+			job.run();
+		} finally {
+			stats.record(0, System.nanoTime() - t0);
+			if (!hadHibSession && _RootDAO.closeCurrentThreadSessions())
+				iLog.debug("Job " + actionName + " did not close current-thread hibernate session.");
+			ApplicationProperties.setSessionId(sessionId);
+			if (locale == null)
+				Localization.removeLocale();
+			else
+				Localization.setLocale(locale);
+			Formats.removeFormats();
+		}
+	}
+	
+	protected ActionStatistics getStatistics(String actionName) {
+		return iStatistics.computeIfAbsent(actionName == null ? "unknown" : actionName, n -> new ActionStatistics());
+	}
+	
+	/**
+	 * Number of jobs of the given priority class that are waiting to be executed
+	 */
+	public int getQueueSize(Priority priority) {
+		return iQueueSize[priority.ordinal()].get();
+	}
+	
+	/**
+	 * Number of jobs that are being executed
+	 */
+	public int getActiveCount() {
+		return iExecutor.getActiveCount();
+	}
+	
+	/**
+	 * Queue wait and execution time statistics for each action type, ordered by the action name
+	 */
+	public Map<String, ActionStatistics> getStatistics() {
+		return new TreeMap<String, ActionStatistics>(iStatistics);
+	}
+	
+	/**
+	 * Stop the executor, jobs that are waiting in the queue are dropped (jobs that are being executed are allowed to finish)
+	 */
+	public void shutdown() {
+		iExecutor.shutdown();
+		List<Runnable> waiting = new ArrayList<Runnable>();
+		iExecutor.getQueue().drainTo(waiting);
+		for (Runnable r: waiting)
+			if (r instanceof Job)
+				iQueueSize[((Job)r).iPriority.ordinal()].decrementAndGet();
+		int dropped = waiting.size();
+		if (dropped > 0)
+			iLog.info("Executor stopped, " + dropped + " waiting jobs dropped.");
+		else
+			iLog.info("Executor stopped.");
+	}
+	
+	@Override
+	public String toString() {
+		return getActiveCount() + " active, " + getQueueSize(Priority.INTERACTIVE) + " interactive and " + getQueueSize(Priority.BACKGROUND) + " background jobs waiting";
+	}
+	
+	private class Job implements Runnable, Comparable<Job> {
+		private String iName;
+		private Priority iPriority;
+		private Runnable iJob;
+		private ActionStatistics iStats;
+		private long iSequence, iCreated;
+		
+		private Job(String name, Priority priority, Runnable job, ActionStatistics stats) {
+			iName = name; iPriority = priority; iJob = job; iStats = stats;
+			iSequence = AsyncActionExecutor.this.iSequence.getAndIncrement();
+			iCreated = System.nanoTime();
+		}
+
+		@Override
+		public void run() {
+			iQueueSize[iPriority.ordinal()].decrementAndGet();
+			long t0 = System.nanoTime();
+			ApplicationProperties.setSessionId(iSessionId);
+			try {
+				iJob.run();
+			} finally {
+				iStats.record(t0 - iCreated, System.nanoTime() - t0);
+				if (_RootDAO.closeCurrentThreadSessions())
+					iLog.debug("Job " + iName + " did not close current-thread hibernate session.");
+				ApplicationProperties.setSessionId(null);
+				Localization.removeLocale();
+				Formats.removeFormats();
+			}
+		}
+
+		@Override
+		public int compareTo(Job job) {
+			int cmp = iPriority.compareTo(job.iPriority);
+			if (cmp != 0) return cmp;
+			return Long.compare(iSequence, job.iSequence);
+		}
+		
+		@Override
+		public String toString() {
+			return iName;
+		}
+	}
+	
+	/**
+	 * Number of executed, rejected and caller-run jobs of an action type, with their queue wait and execution times.
+	 */
+	public static class ActionStatistics {
+		private AtomicLong iCount = new AtomicLong(0), iRejected = new AtomicLong(0), iCallerRuns = new AtomicLong(0);
+		private AtomicLong iTotalWait = new AtomicLong(0), iMaxWait = new AtomicLong(0), iTotalTime = new AtomicLong(0), iMaxTime = new AtomicLong(0);
+		
+		protected void record(long waitNanos, long timeNanos) {
+			iCount.incrementAndGet();
+			iTotalWait.addAndGet(waitNanos);
+			iMaxWait.accumulateAndGet(waitNanos, Math::max);
+			iTotalTime.addAndGet(timeNanos);
+			iMaxTime.accumulateAndGet(timeNanos, Math::max);
+		}
+		
+		public long getCount() { return iCount.get(); }
+		public long getRejectedCount() { return iRejected.get(); }
+		public long getCallerRunsCount() { return iCallerRuns.get(); }
+		public double getAverageWaitMillis() { long count = iCount.get(); return (count == 0 ? 0.0 : iTotalWait.get() / 1000000.0 / count); }
+		public double getMaxWaitMillis() { return iMaxWait.get() / 1000000.0; }
+		public double getAverageTimeMillis() { long count = iCount.get(); return (count == 0 ? 0.0 : iTotalTime.get() / 1000000.0 / count); }
+		public double getMaxTimeMillis() { return iMaxTime.get() / 1000000.0; }
+		
+		@Override
+		public String toString() {
+			return String.format("%d executed (%d rejected, %d run by caller), wait %.1f ms on average (%.1f ms max), took %.1f ms on average (%.1f ms max)",
+					getCount(), getRejectedCount(), getCallerRunsCount(), getAverageWaitMillis(), getMaxWaitMillis(), getAverageTimeMillis(), getMaxTimeMillis());
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+
+/**
+ * Prefix index over course names and titles, used to answer {@link XCourseId#matchCourseName(String)} and
+ * {@link XCourseId#matchTitle(String)} queries without iterating over all the courses.<br>
+ * The name index contains all the strings that {@link XCourseId#matchCourseName(String)} checks the query to be a prefix of,
+ * the title index contains the title and all its suffixes that follow a space (matching the title starts with or contains
+ * a space followed by the query condition of {@link XCourseId#matchTitle(String)}).<br>
+ * The index is not synchronized, the caller is expected to use the server read / write locks.
+ *
+ * @author Tomas Muller
+ */
+public class CourseIndex {
+	private NavigableMap<String, Set<XCourseId>> iNameIndex = new TreeMap<String, Set<XCourseId>>();
+	private NavigableMap<String, Set<XCourseId>> iTitleIndex = new TreeMap<String, Set<XCourseId>>();
+
+	public CourseIndex() {}
+
+	protected Set<String> getNameKeys(XCourseId course) {
+		Set<String> keys = new HashSet<String>();
+		String name = course.getCourseName();
+		keys.add(name.toLowerCase());
+		keys.add(course.getCourseNumber().toLowerCase());
+		if (name.indexOf('-') >= 0)
+			keys.add(name.substring(name.lastIndexOf('-') + 1).trim().toLowerCase());
+		if (course.getTitle() != null) {
+			keys.add((name + " " + course.getTitle()).toLowerCase());
+			keys.add((name + " - " + course.getTitle()).toLowerCase());
+		}
+		return keys;
+	}
+
+	protected Set<String> getTitleKeys(XCourseId course) {
+		Set<String> keys = new HashSet<String>();
+		if (course.getTitle() == null) return keys;
+		String title = course.getTitle().toLowerCase();
+		keys.add(title);
+		for (int idx = title.indexOf(' '); idx >= 0; idx = title.indexOf(' ', idx + 1))
+			keys.add(title.substring(idx + 1));
+		return keys;
+	}
+
+	private static void add(Map<String, Set<XCourseId>> index, Set<String> keys, XCourseId course) {
+		for (String key: keys) {
+			Set<XCourseId> courses = index.get(key);
+			if (courses == null) {
+				courses = new HashSet<XCourseId>();
+				index.put(key, courses);
+			}
+			courses.add(course);
+		}
+	}
+
+	private static void remove(Map<String, Set<XCourseId>> index, Set<String> keys, XCourseId course) {
+		for (String key: keys) {
+			Set<XCourseId> courses = index.get(key);
+			if (courses != null) {
+				courses.remove(course);
+				if (courses.isEmpty()) index.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Add a course to the index
+	 */
+	public void add(XCourseId course) {
+		add(iNameIndex, getNameKeys(course), course);
+		add(iTitleIndex, getTitleKeys(course), course);
+	}
+
+	/**
+	 * Remove a course from the index (the course name and title must be the same as when the course was added)
+	 */
+	public void remove(XCourseId course) {
+		remove(iNameIndex, getNameKeys(course), course);
+		remove(iTitleIndex, getTitleKeys(course), course);
+	}
+
+	public void clear() {
+		iNameIndex.clear();
+		iTitleIndex.clear();
+	}
+
+	/**
+	 * All courses having a key that starts with the given prefix, in the natural ordering of {@link XCourseId}
+	 */
+	private static TreeSet<XCourseId> prefix(NavigableMap<String, Set<XCourseId>> index, String prefix) {
+		TreeSet<XCourseId> courses = new TreeSet<XCourseId>();
+		for (Map.Entry<String, Set<XCourseId>> e: index.tailMap(prefix, true).entrySet()) {
+			if (!e.getKey().startsWith(prefix)) break;
+			courses.addAll(e.getValue());
+		}
+		return courses;
+	}
+
+	/**
+	 * Same as iterating over all the courses, first adding those with {@link XCourseId#matchCourseName(String)} and then (if the limit was not reached
+	 * and the query is at least three characters long) those with {@link XCourseId#matchTitle(String)}. Since the candidates of each phase are iterated
+	 * in the order of the {@link CourseComparator}, the search stops (without calling the matcher) once the limit is reached.
+	 */
+	public SubSet<XCourseId> findCourses(String query, Integer limit, CourseMatcher matcher) {
+		SubSet<XCourseId> ret = new SubSet<XCourseId>(limit, new CourseComparator(query));
+		String queryInLowerCase = query.toLowerCase();
+		for (XCourseId c: prefix(iNameIndex, queryInLowerCase)) {
+			if (ret.isLimitReached()) return ret;
+			if (matcher == null || matcher.match(c)) ret.add(c);
+		}
+		if (!ret.isLimitReached() && queryInLowerCase.length() > 2) {
+			for (XCourseId c: prefix(iTitleIndex, queryInLowerCase)) {
+				if (ret.isLimitReached()) return ret;
+				if (c.matchCourseName(queryInLowerCase)) continue;
+				if (matcher == null || matcher.match(c)) ret.add(c);
+			}
+		}
+		return ret;
+	}
+
+	public int size() {
+		return iNameIndex.size() + iTitleIndex.size();
+	}
+}
@@ -75,6 +75,11 @@ public class DatabaseServer extends AbstractLockingServer {
 		setReady(true);
 	}
 
+	@Override
+	protected void writeSnapshot() {
+		// there is nothing to snapshot, all the data are in the database
+	}
+
 	@Override
 	public Collection<XCourseId> findCourses(String query, Integer limit, CourseMatcher matcher) {
 		if (matcher != null) matcher.setServer(this);
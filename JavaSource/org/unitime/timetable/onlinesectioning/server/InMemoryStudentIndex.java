@@ -0,0 +1,154 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.unitime.timetable.onlinesectioning.match.StudentIndex;
+import org.unitime.timetable.onlinesectioning.model.XAreaClassificationMajor;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+
+/**
+ * In-memory implementation of the {@link StudentIndex}, maintained by the server when students are updated or removed.
+ * The keys of each student are remembered, so that a student can be re-indexed even when the {@link XStudent} instance
+ * has been changed in place.<br>
+ * The index is not synchronized, the caller is expected to use the server read / write locks.
+ * 
+ * @author Tomas Muller
+ */
+public class InMemoryStudentIndex implements StudentIndex {
+	private Map<String, Map<String, Set<Long>>> iIndex = new HashMap<String, Map<String, Set<Long>>>();
+	private Map<Long, Map<String, Set<String>>> iStudentKeys = new HashMap<Long, Map<String, Set<String>>>();
+	
+	public InMemoryStudentIndex() {
+		for (String attribute: new String[] {AREA, CLASSIFICATION, MAJOR, MINOR, GROUP, ADVISOR, STATUS, STUDENT})
+			iIndex.put(attribute, new HashMap<String, Set<Long>>());
+	}
+	
+	/**
+	 * Normalize the value so that two values are equal if and only if they are equal ignoring case (the same character comparison as in {@link String#equalsIgnoreCase(String)} is used).
+	 */
+	public static String key(String value) {
+		if (value == null) return null;
+		char[] chars = new char[value.length()];
+		for (int i = 0; i < value.length(); i++)
+			chars[i] = Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+		return new String(chars);
+	}
+	
+	private static void add(Map<String, Set<String>> keys, String attribute, String value) {
+		if (value == null) return;
+		Set<String> values = keys.get(attribute);
+		if (values == null) {
+			values = new HashSet<String>();
+			keys.put(attribute, values);
+		}
+		values.add(key(value));
+	}
+	
+	protected Map<String, Set<String>> getKeys(XStudent student) {
+		Map<String, Set<String>> keys = new HashMap<String, Set<String>>();
+		if (student.getMajors() != null)
+			for (XAreaClassificationMajor acm: student.getMajors()) {
+				add(keys, AREA, acm.getArea());
+				add(keys, CLASSIFICATION, acm.getClassification());
+				add(keys, MAJOR, acm.getMajor());
+			}
+		if (student.getMinors() != null)
+			for (XAreaClassificationMajor acm: student.getMinors()) {
+				add(keys, AREA, acm.getArea());
+				add(keys, MINOR, acm.getMajor());
+			}
+		if (student.getGroups() != null)
+			for (XStudent.XGroup group: student.getGroups())
+				add(keys, GROUP, group.getAbbreviation());
+		if (student.getAdvisors() != null)
+			for (XStudent.XAdvisor advisor: student.getAdvisors())
+				add(keys, ADVISOR, advisor.getExternalId());
+		add(keys, STATUS, student.getStatus() == null ? NO_STATUS : student.getStatus());
+		add(keys, STUDENT, student.getExternalId());
+		if (student.getName() != null) {
+			add(keys, STUDENT, student.getName());
+			for (String token: student.getName().split(" |,"))
+				add(keys, STUDENT, token);
+		}
+		return keys;
+	}
+	
+	/**
+	 * Add or update a student
+	 */
+	public void update(XStudent student) {
+		remove(student.getStudentId());
+		Map<String, Set<String>> keys = getKeys(student);
+		for (Map.Entry<String, Set<String>> e: keys.entrySet()) {
+			Map<String, Set<Long>> index = iIndex.get(e.getKey());
+			for (String key: e.getValue()) {
+				Set<Long> studentIds = index.get(key);
+				if (studentIds == null) {
+					studentIds = new HashSet<Long>();
+					index.put(key, studentIds);
+				}
+				studentIds.add(student.getStudentId());
+			}
+		}
+		iStudentKeys.put(student.getStudentId(), keys);
+	}
+	
+	/**
+	 * Remove a student
+	 */
+	public void remove(Long studentId) {
+		Map<String, Set<String>> keys = iStudentKeys.remove(studentId);
+		if (keys == null) return;
+		for (Map.Entry<String, Set<String>> e: keys.entrySet()) {
+			Map<String, Set<Long>> index = iIndex.get(e.getKey());
+			for (String key: e.getValue()) {
+				Set<Long> studentIds = index.get(key);
+				if (studentIds != null) {
+					studentIds.remove(studentId);
+					if (studentIds.isEmpty()) index.remove(key);
+				}
+			}
+		}
+	}
+	
+	public void clear() {
+		for (Map<String, Set<Long>> index: iIndex.values())
+			index.clear();
+		iStudentKeys.clear();
+	}
+	
+	public int size() {
+		return iStudentKeys.size();
+	}
+
+	@Override
+	public Set<Long> getStudentIds(String attribute, String value) {
+		Map<String, Set<Long>> index = iIndex.get(attribute);
+		if (index == null) return null;
+		Set<Long> studentIds = index.get(key(value));
+		return (studentIds == null ? Collections.<Long>emptySet() : Collections.unmodifiableSet(studentIds));
+	}
+}
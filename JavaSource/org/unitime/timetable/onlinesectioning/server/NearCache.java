@@ -0,0 +1,183 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.infinispan.Cache;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryInvalidated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
+
+/**
+ * Local (per-node) near-cache in front of an Infinispan cache.<br>
+ * Values read from the underlying cache are kept in a local map and evicted again when the entry is created,
+ * modified, removed or invalidated in the underlying cache (on any node of the cluster). A clustered listener is
+ * used for distributed caches, so that the near-cache is invalidated also on the nodes that do not own the entry.<br>
+ * Values are only stored when no invalidation happened while they were being read, so a concurrent update cannot
+ * leave a stale value behind. Null values are not cached. When the near-cache grows over the maximal size, it is
+ * cleared.
+ *
+ * @author Tomas Muller
+ */
+public class NearCache<K, V> {
+	private Cache<K, V> iCache;
+	private int iMaxSize;
+	private Map<K, V> iLocal = new ConcurrentHashMap<K, V>();
+	private AtomicLong iVersion = new AtomicLong(0);
+	private AtomicLong iHits = new AtomicLong(0), iMisses = new AtomicLong(0);
+	private Object iListener;
+
+	public NearCache(Cache<K, V> cache, int maxSize) {
+		iCache = cache;
+		iMaxSize = maxSize;
+		if (isEnabled()) {
+			if (cache.getCacheConfiguration().clustering().cacheMode().isDistributed())
+				iListener = new ClusteredInvalidationListener();
+			else
+				iListener = new InvalidationListener();
+			cache.addListener(iListener);
+		}
+	}
+
+	public boolean isEnabled() { return iMaxSize > 0; }
+
+	public Cache<K, V> getCache() { return iCache; }
+
+	/**
+	 * Return value for the given key, use the near-cache unless bypass is set (e.g., when inside of a transaction)
+	 */
+	public V get(K key, boolean bypass) {
+		if (key == null) return null;
+		if (bypass || !isEnabled()) return iCache.get(key);
+		V value = iLocal.get(key);
+		if (value != null) {
+			iHits.incrementAndGet();
+			return value;
+		}
+		iMisses.incrementAndGet();
+		long version = iVersion.get();
+		value = iCache.get(key);
+		store(key, value, version);
+		return value;
+	}
+
+	/**
+	 * Return values for the given keys (keys that have no value are not included), all the keys that are not in the near-cache
+	 * are retrieved from the underlying cache using a single {@link org.infinispan.AdvancedCache#getAll(Set)} call.
+	 */
+	public Map<K, V> getAll(Collection<K> keys, boolean bypass) {
+		Map<K, V> ret = new HashMap<K, V>();
+		Set<K> missing = new HashSet<K>();
+		for (K key: keys) {
+			if (key == null) continue;
+			V value = (bypass || !isEnabled() ? null : iLocal.get(key));
+			if (value != null) {
+				iHits.incrementAndGet();
+				ret.put(key, value);
+			} else {
+				missing.add(key);
+			}
+		}
+		if (!missing.isEmpty()) {
+			if (isEnabled() && !bypass) iMisses.addAndGet(missing.size());
+			long version = iVersion.get();
+			Map<K, V> values = iCache.getAdvancedCache().getAll(missing);
+			for (Map.Entry<K, V> e: values.entrySet()) {
+				if (e.getValue() == null) continue;
+				ret.put(e.getKey(), e.getValue());
+				if (!bypass) store(e.getKey(), e.getValue(), version);
+			}
+		}
+		return ret;
+	}
+
+	private void store(K key, V value, long version) {
+		if (value == null || !isEnabled()) return;
+		if (iLocal.size() >= iMaxSize) clear();
+		iLocal.put(key, value);
+		// something was invalidated while the value was being read -> do not trust it
+		if (iVersion.get() != version) iLocal.remove(key);
+	}
+
+	public void invalidate(K key) {
+		if (!isEnabled()) return;
+		iVersion.incrementAndGet();
+		iLocal.remove(key);
+	}
+
+	/**
+	 * Clear the near-cache of this node only, a cluster-wide clear is to be propagated by the caller
+	 * (see {@link ReplicatedServer#clearAll()}), as {@link Cache#clear()} does not fire any entry events
+	 */
+	public void clear() {
+		iVersion.incrementAndGet();
+		iLocal.clear();
+	}
+
+	public void dispose() {
+		if (iListener != null) {
+			iCache.removeListener(iListener);
+			iListener = null;
+		}
+		clear();
+	}
+
+	public int size() { return iLocal.size(); }
+	public long getHits() { return iHits.get(); }
+	public long getMisses() { return iMisses.get(); }
+
+	@Override
+	public String toString() {
+		long hits = iHits.get(), misses = iMisses.get();
+		return String.format("%d entries, %d hits, %d misses (%.1f%% hit ratio)",
+				size(), hits, misses, (hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses)));
+	}
+
+	@Listener
+	public class InvalidationListener {
+		@CacheEntryCreated
+		@CacheEntryModified
+		@CacheEntryRemoved
+		@CacheEntryInvalidated
+		public void changed(CacheEntryEvent<K, V> event) {
+			invalidate(event.getKey());
+		}
+	}
+
+	@Listener(clustered = true)
+	public class ClusteredInvalidationListener {
+		@CacheEntryCreated
+		@CacheEntryModified
+		@CacheEntryRemoved
+		public void changed(CacheEntryEvent<K, V> event) {
+			invalidate(event.getKey());
+		}
+	}
+}
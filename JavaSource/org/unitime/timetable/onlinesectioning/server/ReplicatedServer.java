@@ -44,9 +44,15 @@ import org.infinispan.distexec.DistributedCallable;
 import org.infinispan.distexec.DistributedExecutorService;
 import org.infinispan.jmx.CacheJmxRegistration;
 import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
 import org.infinispan.transaction.LockingMode;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.shared.CourseRequestInterface;
 import org.unitime.timetable.gwt.shared.SectioningException;
+import org.unitime.timetable.onlinesectioning.ConcurrentMultiLock;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
 import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
@@ -77,6 +83,12 @@ public class ReplicatedServer extends AbstractServer {
 	private Cache<Long, XExpectations> iExpectations;
 	private Cache<Long, Boolean> iOfferingLocks;
 	private Cache<String, Set<Long>> iInstructedOfferings; 
+	private ConcurrentMultiLock.Statistics iLockStatistics = new ConcurrentMultiLock.Statistics();
+	private NearCache<Long, XCourseId> iCourseForIdNear;
+	private NearCache<Long, XOffering> iOfferingTableNear;
+	private NearCache<Long, XExpectations> iExpectationsNear;
+	private Object iNearCacheClearListener;
+	private static final String sNearCacheGeneration = "NearCache.Generation";
 
 	public ReplicatedServer(OnlineSectioningServerContext context) throws SectioningException {
 		super(context);
@@ -106,10 +118,20 @@ public class ReplicatedServer extends AbstractServer {
 		iExpectations = getCache("Expectations");
 		iOfferingLocks = getCache("OfferingLocks");
 		iInstructedOfferings = getCache("InstructedOfferings");
+		
+		int nearCacheSize = ApplicationProperty.OnlineSchedulingServerNearCacheSize.intValue();
+		iCourseForIdNear = new NearCache<Long, XCourseId>(iCourseForId, nearCacheSize);
+		iOfferingTableNear = new NearCache<Long, XOffering>(iOfferingTable, nearCacheSize);
+		iExpectationsNear = new NearCache<Long, XExpectations>(iExpectations, nearCacheSize);
 
 		Map<String, Object> original = new HashMap<String, Object>(iProperties);
 		iProperties = getCache("Config");
 		if (iProperties.isEmpty()) iProperties.putAll(original);
+		if (nearCacheSize > 0) {
+			Cache<String, Object> config = (Cache<String, Object>)iProperties;
+			iNearCacheClearListener = (config.getCacheConfiguration().clustering().cacheMode().isDistributed() ? new ClusteredNearCacheClearListener() : new NearCacheClearListener());
+			config.addListener(iNearCacheClearListener);
+		}
 
 		if (isOptimisticLocking())
 			iLog.info("Using optimistic locking.");
@@ -128,9 +150,32 @@ public class ReplicatedServer extends AbstractServer {
 			jmx.unregisterCacheMBean();
 	}
 	
+	/**
+	 * Wait time statistics of the student / offering / request locks
+	 */
+	public ConcurrentMultiLock.Statistics getLockStatistics() {
+		return iLockStatistics;
+	}
+	
+	/**
+	 * Near-cache statistics (offerings, courses, expectations)
+	 */
+	public String getNearCacheStatistics() {
+		return "offerings: " + iOfferingTableNear + ", courses: " + iCourseForIdNear + ", expectations: " + iExpectationsNear;
+	}
+	
 	@Override
 	public void unload() {
+		iLog.info("Lock statistics: " + iLockStatistics);
+		iLog.info("Near-cache statistics: " + getNearCacheStatistics());
 		super.unload();
+		if (iNearCacheClearListener != null) {
+			((Cache<String, Object>)iProperties).removeListener(iNearCacheClearListener);
+			iNearCacheClearListener = null;
+		}
+		iCourseForIdNear.dispose();
+		iOfferingTableNear.dispose();
+		iExpectationsNear.dispose();
 		removeCache(iCourseForId);
 		removeCache(iCourseForName);
 		removeCache(iStudentTable);
@@ -265,7 +310,7 @@ public class ReplicatedServer extends AbstractServer {
 	public XCourse getCourse(Long courseId) {
 		Lock lock = readLock();
 		try {
-			return toCourse(iCourseForId.get(courseId));
+			return toCourse(iCourseForIdNear.get(courseId, inTransaction()));
 		} finally {
 			lock.release();
 		}
@@ -285,7 +330,17 @@ public class ReplicatedServer extends AbstractServer {
 	public XOffering getOffering(Long offeringId) {
 		Lock lock = readLock();
 		try {
-			return iOfferingTable.get(offeringId);
+			return iOfferingTableNear.get(offeringId, inTransaction());
+		} finally {
+			lock.release();
+		}
+	}
+	
+	@Override
+	public Map<Long, XOffering> getOfferings(Collection<Long> offeringIds) {
+		Lock lock = readLock();
+		try {
+			return iOfferingTableNear.getAll(offeringIds, inTransaction());
 		} finally {
 			lock.release();
 		}
@@ -306,18 +361,33 @@ public class ReplicatedServer extends AbstractServer {
 	public XExpectations getExpectations(Long offeringId) {
 		Lock lock = readLock();
 		try {
-			XExpectations expectations = iExpectations.get(offeringId);
+			XExpectations expectations = iExpectationsNear.get(offeringId, inTransaction());
 			return expectations == null ? new XExpectations(offeringId) : expectations;
 		} finally {
 			lock.release();
 		}
 	}
+	
+	@Override
+	public Map<Long, XExpectations> getExpectations(Collection<Long> offeringIds) {
+		Lock lock = readLock();
+		try {
+			Map<Long, XExpectations> expectations = iExpectationsNear.getAll(offeringIds, inTransaction());
+			for (Long offeringId: offeringIds)
+				if (!expectations.containsKey(offeringId))
+					expectations.put(offeringId, new XExpectations(offeringId));
+			return expectations;
+		} finally {
+			lock.release();
+		}
+	}
 
 	@Override
 	public void update(XExpectations expectations) {
 		Lock lock = writeLock();
 		try {
 			iExpectations.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(expectations.getOfferingId(), expectations);
+			iExpectationsNear.invalidate(expectations.getOfferingId());
 		} finally {
 			lock.release();
 		}
@@ -395,6 +465,7 @@ public class ReplicatedServer extends AbstractServer {
 		try {
 			for (XCourse course: offering.getCourses()) {
 				iCourseForId.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(course.getCourseId());
+				iCourseForIdNear.invalidate(course.getCourseId());
 				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
 				if (courses != null) {
 					courses.remove(course);
@@ -407,8 +478,11 @@ public class ReplicatedServer extends AbstractServer {
 				}
 			}
 			iOfferingTable.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(offering.getOfferingId());
-			if (removeExpectations)
+			iOfferingTableNear.invalidate(offering.getOfferingId());
+			if (removeExpectations) {
 				iExpectations.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(offering.getOfferingId());
+				iExpectationsNear.invalidate(offering.getOfferingId());
+			}
 			for (String externalId: offering.getInstructorExternalIds()) {
 				Set<Long> offeringIds = iInstructedOfferings.get(externalId);
 				if (offeringIds != null) {
@@ -430,8 +504,10 @@ public class ReplicatedServer extends AbstractServer {
 				remove(oldOffering, false);
 			
 			iOfferingTable.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(offering.getOfferingId(), offering);
+			iOfferingTableNear.invalidate(offering.getOfferingId());
 			for (XCourse course: offering.getCourses()) {
 				iCourseForId.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getCourseId(), new XCourseId(course));
+				iCourseForIdNear.invalidate(course.getCourseId());
 				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
 				if (courses == null) {
 					courses = new TreeSet<XCourseId>();
@@ -468,10 +544,44 @@ public class ReplicatedServer extends AbstractServer {
 			iCourseForName.clear();
 			iOfferingRequests.clear();
 			iInstructedOfferings.clear();
+			// cache clear does not notify the entry listeners, change the near-cache generation instead (see NearCacheClearListener)
+			clearNearCaches();
+			Long generation = (Long)iProperties.get(sNearCacheGeneration);
+			iProperties.put(sNearCacheGeneration, generation == null ? 1l : generation + 1l);
 		} finally {
 			lock.release();
 		}
 	}
+	
+	protected void clearNearCaches() {
+		iCourseForIdNear.clear();
+		iOfferingTableNear.clear();
+		iExpectationsNear.clear();
+	}
+	
+	/**
+	 * Clear the near-caches of this node when the near-cache generation is changed in the config cache,
+	 * which happens when all the data are cleared by {@link ReplicatedServer#clearAll()} on any node of the cluster
+	 */
+	@Listener
+	public class NearCacheClearListener {
+		@CacheEntryCreated
+		@CacheEntryModified
+		public void changed(CacheEntryEvent<String, Object> event) {
+			if (sNearCacheGeneration.equals(event.getKey()))
+				clearNearCaches();
+		}
+	}
+	
+	@Listener(clustered = true)
+	public class ClusteredNearCacheClearListener {
+		@CacheEntryCreated
+		@CacheEntryModified
+		public void changed(CacheEntryEvent<String, Object> event) {
+			if (sNearCacheGeneration.equals(event.getKey()))
+				clearNearCaches();
+		}
+	}
 
 	@Override
 	public void clearAllStudents() {
@@ -762,9 +872,13 @@ public class ReplicatedServer extends AbstractServer {
 					}
 			}
 			
+			long t0 = System.nanoTime();
+			boolean contended = false;
 			while (!iOfferingLocks.getAdvancedCache().withFlags(Flag.FAIL_SILENTLY).lock(ids)) {
 				iLog.info("Failed to lock a student " + studentId + ", retrying...");
+				contended = true;
 			}
+			iLockStatistics.record(System.nanoTime() - t0, contended);
 			
 			return lock;
 		} catch (Exception e) {
@@ -807,9 +921,13 @@ public class ReplicatedServer extends AbstractServer {
 				}
 			}
 			
+			long t0 = System.nanoTime();
+			boolean contended = false;
 			while (!iOfferingLocks.getAdvancedCache().withFlags(Flag.FAIL_SILENTLY).lock(ids)) {
 				iLog.info("Failed to lock an offering " + offeringId + ", retrying...");
+				contended = true;
 			}
+			iLockStatistics.record(System.nanoTime() - t0, contended);
 			
 			return lock;
 		} catch (Exception e) {
@@ -876,9 +994,13 @@ public class ReplicatedServer extends AbstractServer {
 				}				
 			}
 			
+			long t0 = System.nanoTime();
+			boolean contended = false;
 			while (!iOfferingLocks.getAdvancedCache().withFlags(Flag.FAIL_SILENTLY).lock(ids)) {
 				iLog.info("Failed to lock a request for student " + request.getStudentId() + ", retrying...");
+				contended = true;
 			}
+			iLockStatistics.record(System.nanoTime() - t0, contended);
 
 			return lock;
 		} catch (Exception e) {
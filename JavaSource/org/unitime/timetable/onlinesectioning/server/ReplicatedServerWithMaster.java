@@ -246,6 +246,16 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 			lock.release();
 		}
 	}
+	
+	@Override
+	public Map<Long, XOffering> getOfferings(Collection<Long> offeringIds) {
+		Lock lock = readLock();
+		try {
+			return iOfferingTable.getAdvancedCache().getAll(new HashSet<Long>(offeringIds));
+		} finally {
+			lock.release();
+		}
+	}
 
 	@Override
 	public Collection<XCourseRequest> getRequests(Long offeringId) {
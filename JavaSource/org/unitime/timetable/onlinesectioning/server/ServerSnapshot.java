@@ -0,0 +1,345 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
+import org.unitime.timetable.onlinesectioning.match.AnyCourseMatcher;
+import org.unitime.timetable.onlinesectioning.match.AnyStudentMatcher;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.model.XStudentId;
+import org.unitime.timetable.util.Constants;
+
+/**
+ * Binary snapshot of the online sectioning server data (offerings, students with their requests, and expectations),
+ * written using the {@link java.io.Externalizable} methods of the X* model classes.<br>
+ * The snapshot is written when the server is unloaded and read back (instead of {@link org.unitime.timetable.onlinesectioning.updates.ReloadAllData})
+ * when the server is loaded again. The snapshot header contains the time stamp of the last processed student sectioning queue record, which
+ * is restored as the Updater.LastTimeStamp property so that all the changes that were made since are replayed by the updater.
+ * A snapshot is only used when it was written by the same UniTime version, for the same academic session, and it is not older
+ * than {@link ApplicationProperty#OnlineSchedulingServerSnapshotMaxAge}.<br>
+ * A snapshot can be only loaded once: it is renamed when the load starts and deleted afterwards, so that a server that was not
+ * unloaded cleanly (e.g., after a crash or a master fail-over) is reloaded from the database. The snapshot also records the state
+ * of the database when it was written (see {@link DatabaseState}) and it is not used when the database has changed since.
+ *
+ * @author Tomas Muller
+ */
+public class ServerSnapshot {
+	private static Log sLog = LogFactory.getLog(ServerSnapshot.class);
+	private static final int sMagic = 0x55545353; // UTSS
+	private static final int sFormatVersion = 2;
+	private static final long sMapRegionSize = 64 * 1024 * 1024;
+
+	public static boolean isEnabled() {
+		return ApplicationProperty.OnlineSchedulingServerSnapshot.isTrue();
+	}
+
+	public static File getSnapshotFile(AcademicSessionInfo session) {
+		return new File(ApplicationProperties.getSnapshotFolder(), "sectioning-" + session.getUniqueId() + ".snapshot");
+	}
+
+	/**
+	 * Write snapshot of the server into the snapshot file. The data are first written into a temporary file, which
+	 * replaces the existing snapshot once done (so that there is never a half-written snapshot in place).
+	 */
+	public static void write(OnlineSectioningServer server) throws IOException {
+		long t0 = System.currentTimeMillis();
+		File file = getSnapshotFile(server.getAcademicSession());
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		int nrOfferings = 0, nrStudents = 0;
+		DatabaseState state = null;
+		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
+		try {
+			state = new DatabaseState(hibSession, server.getAcademicSession().getUniqueId());
+		} finally {
+			hibSession.close();
+		}
+		Lock lock = server.readLock();
+		try {
+			Set<Long> offeringIds = new TreeSet<Long>();
+			for (XCourseId course: server.findCourses(new AnyCourseMatcher()))
+				offeringIds.add(course.getOfferingId());
+			List<XOffering> offerings = new ArrayList<XOffering>(offeringIds.size());
+			for (Long offeringId: offeringIds) {
+				XOffering offering = server.getOffering(offeringId);
+				if (offering != null) offerings.add(offering);
+			}
+			List<XStudent> students = new ArrayList<XStudent>();
+			for (XStudentId id: server.findStudents(new AnyStudentMatcher())) {
+				XStudent student = (id instanceof XStudent ? (XStudent)id : server.getStudent(id.getStudentId()));
+				if (student != null) students.add(student);
+			}
+
+			ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1024 * 1024));
+			try {
+				out.writeInt(sMagic);
+				out.writeInt(sFormatVersion);
+				out.writeUTF(Constants.getVersion());
+				out.writeLong(server.getAcademicSession().getUniqueId());
+				out.writeLong(System.currentTimeMillis());
+				Date lastTimeStamp = server.getProperty("Updater.LastTimeStamp", null);
+				out.writeLong(lastTimeStamp == null ? 0l : lastTimeStamp.getTime());
+				state.writeExternal(out);
+
+				out.writeInt(offerings.size());
+				for (XOffering offering: offerings) {
+					offering.writeExternal(out);
+					server.getExpectations(offering.getOfferingId()).writeExternal(out);
+					out.reset();
+				}
+				nrOfferings = offerings.size();
+				out.writeInt(students.size());
+				for (XStudent student: students) {
+					student.writeExternal(out);
+					out.reset();
+				}
+				nrStudents = students.size();
+				out.writeInt(sMagic);
+				out.flush();
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		} finally {
+			lock.release();
+		}
+		if (file.exists() && !file.delete())
+			throw new IOException("Failed to delete " + file);
+		if (!temp.renameTo(file))
+			throw new IOException("Failed to rename " + temp + " to " + file);
+		sLog.info("Snapshot of " + server.getAcademicSession() + " with " + nrOfferings + " offerings and " + nrStudents + " students written to " + file +
+				" (" + (file.length() / 1024) + " kB, " + (System.currentTimeMillis() - t0) + " ms).");
+	}
+
+	/**
+	 * Load the server from the snapshot file. Returns false (without changing the server) when there is no usable snapshot.
+	 * The caller is expected to hold the {@link OnlineSectioningServer#lockAll()} lock.
+	 * The snapshot file is renamed before it is read and deleted afterwards, so it is never loaded twice.
+	 */
+	public static boolean load(OnlineSectioningServer server, OnlineSectioningHelper helper) throws IOException, ClassNotFoundException {
+		File file = getSnapshotFile(server.getAcademicSession());
+		File loading = new File(file.getParentFile(), file.getName() + ".loading");
+		if (loading.exists() && !loading.delete())
+			helper.warn("Failed to delete " + loading + ".");
+		if (!file.exists()) {
+			helper.info("No snapshot found for " + server.getAcademicSession() + ".");
+			return false;
+		}
+		if (!file.renameTo(loading)) {
+			helper.warn("Failed to rename " + file + " to " + loading + ", the snapshot will not be used.");
+			return false;
+		}
+		long t0 = System.currentTimeMillis();
+		RandomAccessFile raf = new RandomAccessFile(loading, "r");
+		try {
+			ObjectInputStream in = new ObjectInputStream(new MappedInputStream(raf.getChannel()));
+			if (in.readInt() != sMagic || in.readInt() != sFormatVersion) {
+				helper.warn("Snapshot " + file + " is not valid.");
+				return false;
+			}
+			String version = in.readUTF();
+			if (!Constants.getVersion().equals(version)) {
+				helper.info("Snapshot " + file + " was created by a different version (" + version + ").");
+				return false;
+			}
+			if (in.readLong() != server.getAcademicSession().getUniqueId()) {
+				helper.warn("Snapshot " + file + " belongs to a different academic session.");
+				return false;
+			}
+			Date created = new Date(in.readLong());
+			int maxAge = ApplicationProperty.OnlineSchedulingServerSnapshotMaxAge.intValue();
+			if (maxAge > 0 && System.currentTimeMillis() - created.getTime() > 3600000l * maxAge) {
+				helper.info("Snapshot " + file + " is too old (created " + created + ").");
+				return false;
+			}
+			Date lastTimeStamp = new Date(in.readLong());
+			DatabaseState snapshotState = new DatabaseState(in);
+			DatabaseState databaseState = new DatabaseState(helper.getHibSession(), server.getAcademicSession().getUniqueId());
+			if (!snapshotState.equals(databaseState)) {
+				helper.info("Snapshot " + file + " does not match the database (snapshot: " + snapshotState + ", database: " + databaseState + ").");
+				return false;
+			}
+
+			server.clearAll();
+			int nrOfferings = in.readInt();
+			for (int i = 0; i < nrOfferings; i++) {
+				server.update(new XOffering(in));
+				server.update(new XExpectations(in));
+			}
+			int nrStudents = in.readInt();
+			for (int i = 0; i < nrStudents; i++)
+				server.update(new XStudent(in), true);
+			if (in.readInt() != sMagic)
+				throw new IOException("Snapshot " + file + " is not complete.");
+
+			// replay all the changes that were made after the snapshot was taken
+			server.setProperty("Updater.LastTimeStamp", lastTimeStamp);
+			helper.info("Loaded " + nrOfferings + " offerings and " + nrStudents + " students from snapshot " + file + " created " + created +
+					" in " + (System.currentTimeMillis() - t0) + " ms, changes after " + lastTimeStamp + " will be replayed.");
+			return true;
+		} finally {
+			raf.close();
+			if (!loading.delete()) {
+				helper.warn("Failed to delete " + loading + ".");
+				loading.deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * State of the database at the time the snapshot was taken: the number of offerings and students of the academic session,
+	 * and the number and the last time stamp of course demands and class enrollments. A snapshot is only used when it matches the current database state.
+	 */
+	static class DatabaseState {
+		private long iNrOfferings, iNrStudents, iNrDemands, iNrEnrollments;
+		private long iLastDemand, iLastEnrollment;
+
+		DatabaseState(org.hibernate.Session hibSession, Long sessionId) {
+			iNrOfferings = ((Number)hibSession.createQuery(
+					"select count(distinct io.uniqueId) from InstructionalOffering io inner join io.courseOfferings co " +
+					"where io.session.uniqueId = :sessionId and io.notOffered = false and co.subjectArea.department.allowStudentScheduling = true")
+					.setLong("sessionId", sessionId).uniqueResult()).longValue();
+			iNrStudents = ((Number)hibSession.createQuery(
+					"select count(s) from Student s where s.session.uniqueId = :sessionId")
+					.setLong("sessionId", sessionId).uniqueResult()).longValue();
+			Object[] demands = (Object[])hibSession.createQuery(
+					"select count(cd), max(cd.timestamp) from CourseDemand cd where cd.student.session.uniqueId = :sessionId")
+					.setLong("sessionId", sessionId).uniqueResult();
+			iNrDemands = ((Number)demands[0]).longValue();
+			iLastDemand = (demands[1] == null ? 0l : ((Date)demands[1]).getTime());
+			Object[] enrollments = (Object[])hibSession.createQuery(
+					"select count(e), max(e.timestamp) from StudentClassEnrollment e where e.student.session.uniqueId = :sessionId")
+					.setLong("sessionId", sessionId).uniqueResult();
+			iNrEnrollments = ((Number)enrollments[0]).longValue();
+			iLastEnrollment = (enrollments[1] == null ? 0l : ((Date)enrollments[1]).getTime());
+		}
+
+		DatabaseState(ObjectInput in) throws IOException {
+			iNrOfferings = in.readLong();
+			iNrStudents = in.readLong();
+			iNrDemands = in.readLong();
+			iLastDemand = in.readLong();
+			iNrEnrollments = in.readLong();
+			iLastEnrollment = in.readLong();
+		}
+
+		void writeExternal(ObjectOutput out) throws IOException {
+			out.writeLong(iNrOfferings);
+			out.writeLong(iNrStudents);
+			out.writeLong(iNrDemands);
+			out.writeLong(iLastDemand);
+			out.writeLong(iNrEnrollments);
+			out.writeLong(iLastEnrollment);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == null || !(o instanceof DatabaseState)) return false;
+			DatabaseState s = (DatabaseState)o;
+			return iNrOfferings == s.iNrOfferings && iNrStudents == s.iNrStudents &&
+					iNrDemands == s.iNrDemands && iLastDemand == s.iLastDemand &&
+					iNrEnrollments == s.iNrEnrollments && iLastEnrollment == s.iLastEnrollment;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.valueOf(iNrOfferings ^ iNrStudents ^ iNrDemands ^ iLastDemand ^ iNrEnrollments ^ iLastEnrollment).hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return iNrOfferings + " offerings, " + iNrStudents + " students, " + iNrDemands + " course demands (last " + new Date(iLastDemand) + "), " +
+					iNrEnrollments + " enrollments (last " + new Date(iLastEnrollment) + ")";
+		}
+	}
+
+	/**
+	 * Input stream over a memory mapped file. The file is mapped in regions of {@link ServerSnapshot#sMapRegionSize} bytes,
+	 * so that the snapshot can be larger than the 2GB limit of a single {@link MappedByteBuffer}.
+	 */
+	private static class MappedInputStream extends InputStream {
+		private FileChannel iChannel;
+		private MappedByteBuffer iBuffer = null;
+		private long iPosition = 0;
+
+		MappedInputStream(FileChannel channel) {
+			iChannel = channel;
+		}
+
+		private boolean ensure() throws IOException {
+			if (iBuffer != null && iBuffer.hasRemaining()) return true;
+			if (iPosition >= iChannel.size()) return false;
+			long size = Math.min(sMapRegionSize, iChannel.size() - iPosition);
+			iBuffer = iChannel.map(FileChannel.MapMode.READ_ONLY, iPosition, size);
+			iPosition += size;
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!ensure()) return -1;
+			return iBuffer.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) return 0;
+			if (!ensure()) return -1;
+			int n = Math.min(len, iBuffer.remaining());
+			iBuffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (iBuffer == null ? 0 : iBuffer.remaining());
+		}
+	}
+}
@@ -427,7 +427,16 @@ public class ComputeSuggestionsAction extends FindAssignmentAction {
 		if (maxOverExpected >= 0.0)
 			model.addGlobalConstraint(new MaxOverExpectedConstraint(maxOverExpected));
 		
-		if (server.getConfig().getPropertyBoolean("StudentWeights.MultiCriteria", true)) {
+		int nrThreads = server.getConfig().getPropertyInt("Suggestions.NrThreads", 1);
+		if (nrThreads > 1) {
+			suggestionBaB = new ParallelSuggestionsBranchAndBound(
+					model.getProperties(), student, assignment,
+					requiredSectionsForCourse, requiredFreeTimes, preferredSectionsForCourse,
+					selectedRequest, selectedSection, filter, maxOverExpected,
+					server.getConfig().getPropertyBoolean("StudentWeights.MultiCriteria", true),
+					server.getConfig().getPropertyBoolean("StudentWeights.PriorityWeighting", true),
+					nrThreads);
+		} else if (server.getConfig().getPropertyBoolean("StudentWeights.MultiCriteria", true)) {
 			suggestionBaB = new MultiCriteriaBranchAndBoundSuggestions(
 					model.getProperties(), student, assignment,
 					requiredSectionsForCourse, requiredFreeTimes, preferredSectionsForCourse,
@@ -443,13 +452,19 @@ public class ComputeSuggestionsAction extends FindAssignmentAction {
 				(server.getConfig().getPropertyBoolean("StudentWeights.PriorityWeighting", true) ? "priority" : "equal") + " weighting model" +
 				" with " + server.getConfig().getPropertyInt("Suggestions.Timeout", 5000) +" ms time limit" +
 				(maxOverExpected < 0 ? "" : ", maximal over-expected of " + maxOverExpected) +
-				" and maximal depth of " + server.getConfig().getPropertyInt("Suggestions.MaxDepth", 4) + ".");
+				" and maximal depth of " + server.getConfig().getPropertyInt("Suggestions.MaxDepth", 4) +
+				(nrThreads > 1 ? " using " + nrThreads + " threads" : "") + ".");
 
 		TreeSet<SuggestionsBranchAndBound.Suggestion> suggestions = suggestionBaB.computeSuggestions();
 		iValue = (suggestions.isEmpty() ? 0.0 : - suggestions.first().getValue());
         
 		long t3 = System.currentTimeMillis();
 		helper.debug("  -- suggestion B&B took "+suggestionBaB.getTime()+"ms"+(suggestionBaB.isTimeoutReached()?", timeout reached":""));
+		if (suggestionBaB instanceof ParallelSuggestionsBranchAndBound) {
+			ParallelSuggestionsBranchAndBound parallel = (ParallelSuggestionsBranchAndBound)suggestionBaB;
+			helper.debug("  -- explored " + parallel.getNrExploredChunks() + " of " + parallel.getNrChunks() + " parts of the search space");
+			action.addOptionBuilder().setKey("Suggestions Explored").setValue(String.format("%.1f%%", 100.0 * parallel.getExplored()));
+		}
 
 		for (SuggestionsBranchAndBound.Suggestion suggestion : suggestions) {
 			ClassAssignmentInterface ca = convert(server, assignment, suggestion.getEnrollments(), requiredSectionsForCourse, requiredFreeTimes, true, model.getStudentQuality(), enrolled); 
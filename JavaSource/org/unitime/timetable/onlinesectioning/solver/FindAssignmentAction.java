@@ -95,6 +95,7 @@ import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.CourseDeadlines;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
 import org.unitime.timetable.onlinesectioning.basic.GetAssignment;
+import org.unitime.timetable.onlinesectioning.solver.OfferingCloneCache.CachedOffering;
 import org.unitime.timetable.onlinesectioning.model.XConfig;
 import org.unitime.timetable.onlinesectioning.model.XCourse;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
@@ -224,10 +225,15 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 				}
 				OnlineSectioningLog.Enrollment.Builder enrollment = OnlineSectioningLog.Enrollment.newBuilder();
 				enrollment.setType(OnlineSectioningLog.Enrollment.EnrollmentType.STORED);
+				Set<Long> enrolledOfferingIds = new HashSet<Long>();
+				for (XRequest oldRequest: original.getRequests())
+					if (oldRequest instanceof XCourseRequest && ((XCourseRequest)oldRequest).getEnrollment() != null)
+						enrolledOfferingIds.add(((XCourseRequest)oldRequest).getEnrollment().getOfferingId());
+				Map<Long, XOffering> enrolledOfferings = server.getOfferings(enrolledOfferingIds);
 				for (XRequest oldRequest: original.getRequests()) {
 					if (oldRequest instanceof XCourseRequest && ((XCourseRequest)oldRequest).getEnrollment() != null) {
 						XCourseRequest cr = (XCourseRequest)oldRequest;
-						XOffering offering = server.getOffering(cr.getEnrollment().getOfferingId());
+						XOffering offering = enrolledOfferings.get(cr.getEnrollment().getOfferingId());
 						for (XSection section: offering.getSections(cr.getEnrollment()))
 							enrollment.addSection(OnlineSectioningHelper.toProto(section, cr.getEnrollment()));
 					}
@@ -271,12 +277,9 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 			}
 			if (student.getExternalId() != null && !student.getExternalId().isEmpty()) {
 				Collection<Long> offeringIds = server.getInstructedOfferings(student.getExternalId());
-				if (offeringIds != null)
-					for (Long offeringId: offeringIds) {
-						XOffering offering = server.getOffering(offeringId);
-						if (offering != null)
-							offering.fillInUnavailabilities(student);
-					}
+				if (offeringIds != null && !offeringIds.isEmpty())
+					for (XOffering offering: server.getOfferings(offeringIds).values())
+						offering.fillInUnavailabilities(student);
 			}
 			if (getRequest().areTimeConflictsAllowed() || getRequest().areSpaceConflictsAllowed() || getRequest().areLinkedConflictsAllowed() || getSpecialRegistration() != null) {
 				// Experimental: provide student with a blank override that allows for overlaps as well as over-limit
@@ -606,6 +609,15 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 	
 	@SuppressWarnings("unchecked")
 	public static Course clone(XOffering offering, XEnrollments enrollments, Long courseId, long studentId, XStudent originalStudent, Map<Long, Section> sections, OnlineSectioningServer server, StudentSectioningModel model, boolean hasAssignment, boolean checkDeadlines, Integer currentDateIndex, boolean onlineOnlyFilter) {
+		return clone(new CachedOffering(offering, enrollments.getEnrollments()), courseId, studentId, originalStudent, sections, server, model, hasAssignment, checkDeadlines, currentDateIndex, onlineOnlyFilter);
+	}
+	
+	/**
+	 * Clone the given offering into the online sectioning model. Only the student specific part is computed here,
+	 * the enrollment counts, section times and rooms, etc. are taken from the (possibly cached) {@link CachedOffering}.
+	 */
+	public static Course clone(CachedOffering cached, Long courseId, long studentId, XStudent originalStudent, Map<Long, Section> sections, OnlineSectioningServer server, StudentSectioningModel model, boolean hasAssignment, boolean checkDeadlines, Integer currentDateIndex, boolean onlineOnlyFilter) {
+		XOffering offering = cached.getOffering();
 		Offering clonedOffering = new Offering(offering.getOfferingId(), offering.getName());
 		clonedOffering.setModel(model);
 		XExpectations expectations = server.getExpectations(offering.getOfferingId());
@@ -613,11 +625,9 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 		int courseLimit = course.getLimit();
 		boolean courseEnrolled = false;
 		if (courseLimit >= 0) {
-			courseLimit -= enrollments.countEnrollmentsForCourse(courseId);
+			courseLimit -= cached.countEnrollmentsForCourse(courseId);
 			if (courseLimit < 0) courseLimit = 0;
-			for (XEnrollment enrollment: enrollments.getEnrollmentsForCourse(courseId)) {
-				if (enrollment.getStudentId().equals(studentId)) { courseLimit++; courseEnrolled = true; break; }
-			}
+			if (cached.getEnrollmentForCourse(courseId, studentId) != null) { courseLimit++; courseEnrolled = true; }
 		}
 		Course clonedCourse = new Course(courseId, course.getSubjectArea(), course.getCourseNumber(), clonedOffering, courseLimit, course.getProjected());
 		clonedCourse.setNote(course.getNote());
@@ -629,11 +639,9 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 		Hashtable<Long, Subpart> subparts = new Hashtable<Long, Subpart>();
 		for (XConfig config: offering.getConfigs()) {
 			int configLimit = config.getLimit();
-			int configEnrl = enrollments.countEnrollmentsForConfig(config.getConfigId());
+			int configEnrl = cached.countEnrollmentsForConfig(config.getConfigId());
 			boolean configStudent = false;
-			if (studentId >= 0)
-				for (XEnrollment enrollment: enrollments.getEnrollmentsForConfig(config.getConfigId()))
-					if (enrollment.getStudentId().equals(studentId)) { configEnrl--; configStudent = true; break; }
+			if (studentId >= 0 && cached.isEnrolledInConfig(config.getConfigId(), studentId)) { configEnrl--; configStudent = true; }
 			if (configLimit >= 0) {
 				// limited configuration, deduct enrollments
 				configLimit -= configEnrl;
@@ -656,26 +664,18 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 				subparts.put(subpart.getSubpartId(), clonedSubpart);
 				for (XSection section: subpart.getSections()) {
 					int limit = section.getLimit();
-					int enrl = enrollments.countEnrollmentsForSection(section.getSectionId());
+					int enrl = cached.countEnrollmentsForSection(section.getSectionId());
 					boolean student = false;
-					if (studentId >= 0)
-						for (XEnrollment enrollment: enrollments.getEnrollmentsForSection(section.getSectionId()))
-							if (enrollment.getStudentId().equals(studentId)) { enrl--; student = true; break; }
+					if (studentId >= 0 && cached.isEnrolledInSection(section.getSectionId(), studentId)) { enrl--; student = true; }
 					if (limit >= 0) {
 						// limited section, deduct enrollments
 						limit -= enrl;
 						if (limit < 0) limit = 0; // over-enrolled, but not unlimited
 						if (student && limit == 0) limit = 1; // allow enrolled student in
 					}
-                    List<RoomLocation> rooms = new ArrayList<RoomLocation>();
-                    for (XRoom r: section.getRooms())
-                    	rooms.add(new RoomLocation(r.getUniqueId(), r.getName(), null, 0, 0, r.getX(), r.getY(), r.getIgnoreTooFar(), null));
                     Placement placement = section.getTime() == null ? null : new Placement(
                     		new Lecture(section.getSectionId(), null, section.getSubpartId(), section.getName(), new ArrayList<TimeLocation>(), new ArrayList<RoomLocation>(), section.getNrRooms(), null, section.getLimit(), section.getLimit(), 1.0),
-                    		new TimeLocation(section.getTime().getDays(), section.getTime().getSlot(), section.getTime().getLength(), 0, 0.0,
-                    				section.getTime().getDatePatternId(), section.getTime().getDatePatternName(), section.getTime().getWeeks(),
-                    				section.getTime().getBreakTime()),
-                    		rooms);
+                    		cached.getTime(section.getSectionId()), cached.getRooms(section.getSectionId()));
 					OnlineSection clonedSection = new OnlineSection(section.getSectionId(), limit,
 							section.getName(course.getCourseId()), clonedSubpart, placement, section.toInstructors(),
 							(section.getParentId() == null ? null : sections.get(section.getParentId())));
@@ -692,11 +692,8 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 						clonedSection.setEnabled(false);
 					if (section.getTime() != null && currentDateIndex != null && !(server instanceof StudentSolver))
 						clonedSection.setPast(section.getTime().isPast(currentDateIndex, server.getAcademicSession()));
-					for (XDistribution distribution: offering.getDistributions())
-						if (distribution.getDistributionType() == XDistributionType.IngoreConflicts && distribution.hasSection(section.getSectionId()))
-							for (Long id: distribution.getSectionIds())
-								if (!id.equals(section.getSectionId()))
-									clonedSection.addIgnoreConflictWith(id);
+					for (Long id: cached.getIgnoreConflictsWith(section.getSectionId()))
+						clonedSection.addIgnoreConflictWith(id);
 			        if (limit > 0) {
 			        	double available = Math.round(clonedSection.getSpaceExpected() - limit);
 						clonedSection.setPenalty(available / section.getLimit());
@@ -709,11 +706,9 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 		for (XReservation reservation: offering.getReservations()) {
 			int reservationLimit = (int)Math.round(reservation.getLimit());
 			if (reservationLimit >= 0) {
-				reservationLimit -= enrollments.countEnrollmentsForReservation(reservation.getReservationId());
+				reservationLimit -= cached.countEnrollmentsForReservation(reservation.getReservationId());
 				if (reservationLimit < 0) reservationLimit = 0;
-				for (XEnrollment enrollment: enrollments.getEnrollmentsForReservation(reservation.getReservationId())) {
-					if (enrollment.getStudentId().equals(studentId)) { reservationLimit++; break; }
-				}
+				if (cached.isEnrolledInReservation(reservation.getReservationId(), studentId)) reservationLimit++;
 				if (reservationLimit <= 0 && !(reservation.mustBeUsed() & !reservation.isExpired())) continue;
 			}
 			boolean applicable = originalStudent != null && reservation.isApplicable(originalStudent, course);
@@ -721,8 +716,7 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 				applicable = ((XCourseReservation)reservation).getCourseId().equals(courseId);
 			if (reservation instanceof XDummyReservation) {
 				// Ignore by reservation only flag (dummy reservation) when the student is already enrolled in the course
-				for (XEnrollment enrollment: enrollments.getEnrollmentsForCourse(courseId))
-					if (enrollment.getStudentId().equals(studentId)) { applicable = true; break; }
+				if (cached.getEnrollmentForCourse(courseId, studentId) != null) applicable = true;
 			}
 			if (applicable && reservation.mustBeUsed() && (reservation.isOverride() || !reservation.isExpired())) hasMustUse = true;
 			if (!applicable && reservation.isExpired()) continue;
@@ -809,24 +803,18 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 			}
 		}
 		// There are reservations >> allow user to keep the current enrollment by providing a dummy reservation for it
-		if (clonedOffering.hasReservations() && hasAssignment)
-			for (XEnrollment enrollment: enrollments.getEnrollmentsForCourse(courseId))
-				if (enrollment.getStudentId().equals(studentId)) {
-					Reservation clonedReservation = new OnlineReservation(XReservationType.Dummy.ordinal(), -2l, clonedOffering, 1000, false, 1, true, hasMustUse, false, true, true);
-					clonedReservation.addConfig(configs.get(enrollment.getConfigId()));
-					for (Long sectionId: enrollment.getSectionIds())
-						clonedReservation.addSection(sections.get(sectionId));
-					break;
-				}
-		if (clonedOffering.hasRestrictions() && hasAssignment) {
-			for (XEnrollment enrollment: enrollments.getEnrollmentsForCourse(courseId))
-				if (enrollment.getStudentId().equals(studentId)) {
-					IndividualRestriction clonnerRestriction = new IndividualRestriction(-2l, clonedOffering, studentId);
-					clonnerRestriction.addConfig(configs.get(enrollment.getConfigId()));
-					for (Long sectionId: enrollment.getSectionIds())
-						clonnerRestriction.addSection(sections.get(sectionId));
-					break;
-				}
+		XEnrollment enrollment = (hasAssignment ? cached.getEnrollmentForCourse(courseId, studentId) : null);
+		if (clonedOffering.hasReservations() && enrollment != null) {
+			Reservation clonedReservation = new OnlineReservation(XReservationType.Dummy.ordinal(), -2l, clonedOffering, 1000, false, 1, true, hasMustUse, false, true, true);
+			clonedReservation.addConfig(configs.get(enrollment.getConfigId()));
+			for (Long sectionId: enrollment.getSectionIds())
+				clonedReservation.addSection(sections.get(sectionId));
+		}
+		if (clonedOffering.hasRestrictions() && enrollment != null) {
+			IndividualRestriction clonnerRestriction = new IndividualRestriction(-2l, clonedOffering, studentId);
+			clonnerRestriction.addConfig(configs.get(enrollment.getConfigId()));
+			for (Long sectionId: enrollment.getSectionIds())
+				clonnerRestriction.addSection(sections.get(sectionId));
 		}
 		return clonedCourse;
 	}
@@ -862,7 +850,7 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 					XOffering offering = null;
 					if (courseInfo != null) offering = server.getOffering(courseInfo.getOfferingId());
 					if (offering != null) {
-						Course course = clone(offering, server.getEnrollments(offering.getOfferingId()), courseInfo.getCourseId(), student.getId(), originalStudent, classTable, server, model, hasAssignment, checkDeadline, currentDateIndex, onlineOnlyFilter);
+						Course course = clone(OfferingCloneCache.getCachedOffering(server, offering), courseInfo.getCourseId(), student.getId(), originalStudent, classTable, server, model, hasAssignment, checkDeadline, currentDateIndex, onlineOnlyFilter);
 						cr.add(course);
 						if (rc.hasSelectedIntructionalMethods()) {
 							for (Config config: course.getOffering().getConfigs()) {
@@ -0,0 +1,300 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.solver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cpsolver.coursett.model.RoomLocation;
+import org.cpsolver.coursett.model.TimeLocation;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+import org.unitime.timetable.onlinesectioning.model.XConfig;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XDistribution;
+import org.unitime.timetable.onlinesectioning.model.XDistributionType;
+import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XEnrollments;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XRoom;
+import org.unitime.timetable.onlinesectioning.model.XSection;
+import org.unitime.timetable.onlinesectioning.model.XSubpart;
+import org.unitime.timetable.onlinesectioning.server.InMemoryServer;
+
+/**
+ * Per-server cache of the student independent part of {@link FindAssignmentAction#clone(CachedOffering, Long, long, org.unitime.timetable.onlinesectioning.model.XStudent, Map, OnlineSectioningServer, org.cpsolver.studentsct.StudentSectioningModel, boolean, boolean, Integer, boolean)}:
+ * enrollment counts of the course, configurations, sections and reservations of an offering, enrollments of each student,
+ * time and room locations of the sections and the ignore conflicts distributions.<br>
+ * A cached offering is only used while the server returns the same {@link XOffering} instance (an updated offering is always
+ * a new instance) and while the enrollments of the offering have the same stamp (computed from the student, course, configuration,
+ * reservation and section ids of all the enrollments). The stamp is computed directly from {@link OnlineSectioningServer#getRequests(Long)},
+ * which is much cheaper than building the {@link XEnrollments}.<br>
+ * The cache is only used by the {@link InMemoryServer}, which is the only server that keeps returning the same offering instances
+ * (the replicated and the database servers create a new instance on each read, so the cache would never be hit).<br>
+ * The size of the cache is set by the FindAssignment.OfferingCacheSize solver parameter (0 disables the cache), when the cache grows
+ * over the maximal size, it is cleared.
+ *
+ * @author Tomas Muller
+ */
+public class OfferingCloneCache {
+	private static Map<OnlineSectioningServer, OfferingCloneCache> sCaches = Collections.synchronizedMap(new WeakHashMap<OnlineSectioningServer, OfferingCloneCache>());
+	private Map<Long, CachedOffering> iOfferings = new ConcurrentHashMap<Long, CachedOffering>();
+	private AtomicLong iHits = new AtomicLong(0), iMisses = new AtomicLong(0);
+	
+	private OfferingCloneCache() {}
+	
+	/**
+	 * Cache of the given server
+	 */
+	public static OfferingCloneCache getInstance(OnlineSectioningServer server) {
+		synchronized (sCaches) {
+			OfferingCloneCache cache = sCaches.get(server);
+			if (cache == null) {
+				cache = new OfferingCloneCache();
+				sCaches.put(server, cache);
+			}
+			return cache;
+		}
+	}
+	
+	/**
+	 * Cached offering data of the given offering, the data are recomputed when the offering or its enrollments have changed
+	 */
+	public static CachedOffering getCachedOffering(OnlineSectioningServer server, XOffering offering) {
+		int maxSize = server.getConfig().getPropertyInt("FindAssignment.OfferingCacheSize", 1000);
+		if (maxSize <= 0 || !(server instanceof InMemoryServer))
+			return new CachedOffering(offering, server.getEnrollments(offering.getOfferingId()).getEnrollments());
+		return getInstance(server).get(offering, server.getRequests(offering.getOfferingId()), maxSize);
+	}
+	
+	protected CachedOffering get(XOffering offering, Collection<XCourseRequest> requests, int maxSize) {
+		List<XEnrollment> enrollments = new ArrayList<XEnrollment>();
+		long stamp = 0;
+		if (requests != null)
+			for (XCourseRequest request: requests) {
+				XEnrollment enrollment = request.getEnrollment();
+				if (enrollment != null && enrollment.getOfferingId().equals(offering.getOfferingId())) {
+					enrollments.add(enrollment);
+					stamp += stamp(enrollment);
+				}
+			}
+		CachedOffering cached = iOfferings.get(offering.getOfferingId());
+		if (cached != null && cached.getOffering() == offering && cached.getStamp() == stamp && cached.getNrEnrollments() == enrollments.size()) {
+			iHits.incrementAndGet();
+			return cached;
+		}
+		iMisses.incrementAndGet();
+		cached = new CachedOffering(offering, enrollments, stamp);
+		if (iOfferings.size() >= maxSize) iOfferings.clear();
+		iOfferings.put(offering.getOfferingId(), cached);
+		return cached;
+	}
+	
+	public void invalidate(Long offeringId) {
+		iOfferings.remove(offeringId);
+	}
+	
+	public void clear() {
+		iOfferings.clear();
+	}
+	
+	public int size() { return iOfferings.size(); }
+	public long getHits() { return iHits.get(); }
+	public long getMisses() { return iMisses.get(); }
+	
+	@Override
+	public String toString() {
+		long hits = iHits.get(), misses = iMisses.get();
+		return String.format("%d offerings, %d hits, %d misses (%.1f%% hit ratio)",
+				size(), hits, misses, (hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses)));
+	}
+	
+	private static long mix(long h) {
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdl;
+		h ^= (h >>> 33);
+		h *= 0xc4ceb9fe1a85ec53l;
+		h ^= (h >>> 33);
+		return h;
+	}
+	
+	/**
+	 * Hash of an enrollment, the stamp of an offering is the sum of the hashes of its enrollments (so it does not depend on the order of the requests)
+	 */
+	private static long stamp(XEnrollment enrollment) {
+		long h = mix(enrollment.getStudentId());
+		h = mix(h + enrollment.getCourseId());
+		h = mix(h + enrollment.getConfigId());
+		h = mix(h + (enrollment.getReservation() == null ? -1l : enrollment.getReservation().getReservationId()));
+		long sections = 0;
+		for (Long sectionId: enrollment.getSectionIds())
+			sections += mix(sectionId);
+		return mix(h + sections);
+	}
+	
+	/**
+	 * Student independent data of an offering, as needed to clone the offering into the online sectioning model.
+	 * Instances are immutable and shared between threads.
+	 */
+	public static class CachedOffering {
+		private XOffering iOffering;
+		private long iStamp;
+		private int iNrEnrollments;
+		private Map<Long, Integer> iCourseEnrl = new HashMap<Long, Integer>();
+		private Map<Long, Integer> iConfigEnrl = new HashMap<Long, Integer>();
+		private Map<Long, Integer> iSectionEnrl = new HashMap<Long, Integer>();
+		private Map<Long, Integer> iReservationEnrl = new HashMap<Long, Integer>();
+		private Map<Long, List<XEnrollment>> iStudentEnrl = new HashMap<Long, List<XEnrollment>>();
+		private Map<Long, TimeLocation> iTimes = new HashMap<Long, TimeLocation>();
+		private Map<Long, List<RoomLocation>> iRooms = new HashMap<Long, List<RoomLocation>>();
+		private Map<Long, Set<Long>> iIgnoreConflicts = new HashMap<Long, Set<Long>>();
+		
+		public CachedOffering(XOffering offering, Collection<XEnrollment> enrollments) {
+			this(offering, enrollments, 0);
+		}
+		
+		protected CachedOffering(XOffering offering, Collection<XEnrollment> enrollments, long stamp) {
+			iOffering = offering;
+			iStamp = stamp;
+			iNrEnrollments = enrollments.size();
+			for (XEnrollment enrollment: enrollments) {
+				inc(iCourseEnrl, enrollment.getCourseId());
+				inc(iConfigEnrl, enrollment.getConfigId());
+				if (enrollment.getReservation() != null)
+					inc(iReservationEnrl, enrollment.getReservation().getReservationId());
+				for (Long sectionId: enrollment.getSectionIds())
+					inc(iSectionEnrl, sectionId);
+				List<XEnrollment> studentEnrl = iStudentEnrl.get(enrollment.getStudentId());
+				if (studentEnrl == null) {
+					studentEnrl = new ArrayList<XEnrollment>(1);
+					iStudentEnrl.put(enrollment.getStudentId(), studentEnrl);
+				}
+				studentEnrl.add(enrollment);
+			}
+			for (XConfig config: offering.getConfigs())
+				for (XSubpart subpart: config.getSubparts())
+					for (XSection section: subpart.getSections()) {
+						if (section.getTime() != null) {
+							iTimes.put(section.getSectionId(), new TimeLocation(section.getTime().getDays(), section.getTime().getSlot(), section.getTime().getLength(), 0, 0.0,
+									section.getTime().getDatePatternId(), section.getTime().getDatePatternName(), section.getTime().getWeeks(),
+									section.getTime().getBreakTime()));
+						}
+						List<RoomLocation> rooms = new ArrayList<RoomLocation>();
+						for (XRoom r: section.getRooms())
+							rooms.add(new RoomLocation(r.getUniqueId(), r.getName(), null, 0, 0, r.getX(), r.getY(), r.getIgnoreTooFar(), null));
+						iRooms.put(section.getSectionId(), rooms);
+					}
+			for (XDistribution distribution: offering.getDistributions())
+				if (distribution.getDistributionType() == XDistributionType.IngoreConflicts)
+					for (Long sectionId: distribution.getSectionIds()) {
+						Set<Long> ignore = iIgnoreConflicts.get(sectionId);
+						if (ignore == null) {
+							ignore = new HashSet<Long>();
+							iIgnoreConflicts.put(sectionId, ignore);
+						}
+						for (Long id: distribution.getSectionIds())
+							if (!id.equals(sectionId)) ignore.add(id);
+					}
+		}
+		
+		private static void inc(Map<Long, Integer> counts, Long id) {
+			Integer count = counts.get(id);
+			counts.put(id, count == null ? 1 : count + 1);
+		}
+		
+		private static int count(Map<Long, Integer> counts, Long id) {
+			Integer count = counts.get(id);
+			return count == null ? 0 : count;
+		}
+		
+		public XOffering getOffering() { return iOffering; }
+		public long getStamp() { return iStamp; }
+		public int getNrEnrollments() { return iNrEnrollments; }
+		
+		public int countEnrollmentsForCourse(Long courseId) { return count(iCourseEnrl, courseId); }
+		public int countEnrollmentsForConfig(Long configId) { return count(iConfigEnrl, configId); }
+		public int countEnrollmentsForSection(Long sectionId) { return count(iSectionEnrl, sectionId); }
+		public int countEnrollmentsForReservation(Long reservationId) { return count(iReservationEnrl, reservationId); }
+		
+		/**
+		 * Enrollments of the given student in the offering
+		 */
+		public List<XEnrollment> getEnrollmentsForStudent(Long studentId) {
+			List<XEnrollment> enrollments = iStudentEnrl.get(studentId);
+			return enrollments == null ? Collections.<XEnrollment>emptyList() : enrollments;
+		}
+		
+		/**
+		 * Enrollment of the given student in the given course, null if the student is not enrolled in the course
+		 */
+		public XEnrollment getEnrollmentForCourse(Long courseId, Long studentId) {
+			for (XEnrollment enrollment: getEnrollmentsForStudent(studentId))
+				if (enrollment.getCourseId().equals(courseId)) return enrollment;
+			return null;
+		}
+		
+		public boolean isEnrolledInConfig(Long configId, Long studentId) {
+			for (XEnrollment enrollment: getEnrollmentsForStudent(studentId))
+				if (enrollment.getConfigId().equals(configId)) return true;
+			return false;
+		}
+		
+		public boolean isEnrolledInSection(Long sectionId, Long studentId) {
+			for (XEnrollment enrollment: getEnrollmentsForStudent(studentId))
+				if (enrollment.getSectionIds().contains(sectionId)) return true;
+			return false;
+		}
+		
+		public boolean isEnrolledInReservation(Long reservationId, Long studentId) {
+			for (XEnrollment enrollment: getEnrollmentsForStudent(studentId))
+				if (enrollment.getReservation() != null && enrollment.getReservation().getReservationId().equals(reservationId)) return true;
+			return false;
+		}
+		
+		/**
+		 * Time location of the section, null if the section is arranged hours
+		 */
+		public TimeLocation getTime(Long sectionId) { return iTimes.get(sectionId); }
+		
+		/**
+		 * Room locations of the section (the returned list must not be modified)
+		 */
+		public List<RoomLocation> getRooms(Long sectionId) {
+			List<RoomLocation> rooms = iRooms.get(sectionId);
+			return rooms == null ? new ArrayList<RoomLocation>() : rooms;
+		}
+		
+		/**
+		 * Ids of the sections with which the given section has an ignore conflicts distribution
+		 */
+		public Set<Long> getIgnoreConflictsWith(Long sectionId) {
+			Set<Long> ignore = iIgnoreConflicts.get(sectionId);
+			return ignore == null ? Collections.<Long>emptySet() : ignore;
+		}
+	}
+}
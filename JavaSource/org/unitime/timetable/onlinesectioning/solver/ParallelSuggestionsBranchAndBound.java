@@ -0,0 +1,402 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.solver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.assignment.AssignmentMap;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+import org.cpsolver.studentsct.model.CourseRequest;
+import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.FreeTimeRequest;
+import org.cpsolver.studentsct.model.Request;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Student;
+import org.cpsolver.studentsct.online.OnlineSectioningModel;
+import org.cpsolver.studentsct.online.selection.EqualWeightCriterion;
+import org.cpsolver.studentsct.online.selection.MultiCriteriaBranchAndBoundSelection.SelectionCriterion;
+import org.cpsolver.studentsct.online.selection.OnlineSectioningCriterion;
+import org.cpsolver.studentsct.online.selection.SuggestionsBranchAndBound;
+import org.unitime.localization.impl.Localization;
+
+/**
+ * Parallel version of the {@link SuggestionsBranchAndBound} (and the MultiCriteriaBranchAndBoundSuggestions).<br>
+ * The possible enrollments of the selected request (the top level of the search) are split into chunks that are
+ * handed out, best first, to the given number of workers (one running in the calling thread, the others in a shared
+ * thread pool). Each worker runs the original depth-limited search restricted to the claimed chunk on its own copy
+ * of the assignment, and merges the suggestions it found into the shared result as soon as the chunk is explored.
+ * The shared result is also used as a bound: once it is full, a branch that leaves more requests unassigned than
+ * the worst of the best suggestions found so far is not explored. All the workers stop at the same time limit
+ * (Suggestions.Timeout), returning the best suggestions found until then together with the part of the search
+ * space that has been fully explored (see {@link ParallelSuggestionsBranchAndBound#getExplored()}).
+ *
+ * @author Tomas Muller
+ */
+public class ParallelSuggestionsBranchAndBound extends SuggestionsBranchAndBound {
+	private static Log sLog = LogFactory.getLog(ParallelSuggestionsBranchAndBound.class);
+	private static ExecutorService sExecutor = null;
+	private static final int sChunksPerThread = 4;
+
+	private DataProperties iWorkerProperties;
+	private Student iStudent;
+	private Assignment<Request, Enrollment> iAssignment;
+	private Hashtable<CourseRequest, Set<Section>> iRequiredSections;
+	private Set<FreeTimeRequest> iRequiredFreeTimes;
+	private Hashtable<CourseRequest, Set<Section>> iPreferredSections;
+	private Request iSelectedRequest;
+	private Section iSelectedSection;
+	private SuggestionFilter iFilter;
+	private boolean iMultiCriteria, iPriorityWeighting;
+	private int iNrThreads;
+	private long iTimeout;
+	private int iMaxSuggestions;
+
+	private TreeSet<Suggestion> iSuggestions = new TreeSet<Suggestion>();
+	private volatile int iWorstNrUnassigned = Integer.MAX_VALUE;
+	private AtomicInteger iNextChunk = new AtomicInteger(0);
+	private AtomicInteger iNrExplored = new AtomicInteger(0);
+	private volatile int iNrChunks = 0;
+	private volatile boolean iTimeoutReached = false, iStop = false;
+	private long iT0, iT1, iDeadline;
+
+	public ParallelSuggestionsBranchAndBound(DataProperties properties, Student student,
+			Assignment<Request, Enrollment> assignment, Hashtable<CourseRequest, Set<Section>> requiredSections,
+			Set<FreeTimeRequest> requiredFreeTimes, Hashtable<CourseRequest, Set<Section>> preferredSections,
+			Request selectedRequest, Section selectedSection, SuggestionFilter filter, double maxSectionsWithPenalty,
+			boolean multiCriteria, boolean priorityWeighting, int nrThreads) {
+		super(properties, student, assignment, requiredSections, requiredFreeTimes, preferredSections, selectedRequest, selectedSection, filter, maxSectionsWithPenalty);
+		iStudent = student;
+		iAssignment = assignment;
+		iRequiredSections = requiredSections;
+		iRequiredFreeTimes = requiredFreeTimes;
+		iPreferredSections = preferredSections;
+		iSelectedRequest = selectedRequest;
+		iSelectedSection = selectedSection;
+		iFilter = filter;
+		iMultiCriteria = multiCriteria;
+		iPriorityWeighting = priorityWeighting;
+		iNrThreads = Math.max(1, nrThreads);
+		iTimeout = properties.getPropertyLong("Suggestions.Timeout", 5000);
+		iMaxSuggestions = properties.getPropertyInt("Suggestions.MaxSuggestions", 20);
+		// the time limit is shared by all the workers, each worker runs the search once for each claimed chunk
+		iWorkerProperties = new DataProperties(properties);
+		iWorkerProperties.setProperty("Suggestions.Timeout", "0");
+	}
+
+	/**
+	 * Shared thread pool of the workers, the calling thread is always used as one of the workers
+	 */
+	protected static synchronized ExecutorService getExecutor() {
+		if (sExecutor == null) {
+			int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60l, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				private AtomicInteger iNextId = new AtomicInteger(1);
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Suggestions-" + iNextId.getAndIncrement());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+			sExecutor = executor;
+		}
+		return sExecutor;
+	}
+
+	@Override
+	public TreeSet<Suggestion> computeSuggestions() {
+		iT0 = System.currentTimeMillis();
+		iDeadline = (iTimeout > 0 ? iT0 + iTimeout : Long.MAX_VALUE);
+		iTimeoutReached = false; iStop = false;
+		iSuggestions.clear();
+		iWorstNrUnassigned = Integer.MAX_VALUE;
+		iNextChunk.set(0);
+		iNrExplored.set(0);
+		iNrChunks = 0;
+
+		// the assignment copies must be created before the first worker starts changing the assignment
+		List<Worker> workers = new ArrayList<Worker>(iNrThreads);
+		workers.add(new Worker(iAssignment));
+		for (int i = 1; i < iNrThreads; i++)
+			workers.add(new Worker(new AssignmentMap<Request, Enrollment>(iAssignment)));
+
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 1; i < workers.size(); i++)
+			futures.add(getExecutor().submit(workers.get(i)));
+		try {
+			workers.get(0).run();
+		} catch (RuntimeException e) {
+			iStop = true;
+			throw e;
+		} finally {
+			for (int i = 1; i < workers.size(); i++) {
+				Future<?> future = futures.get(i - 1);
+				// workers that have not started yet have nothing left to do
+				if (workers.get(i).start()) {
+					future.cancel(false);
+					continue;
+				}
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					iStop = true;
+				} catch (ExecutionException e) {
+					sLog.warn("Suggestions worker failed: " + e.getCause().getMessage(), e.getCause());
+				}
+			}
+			iT1 = System.currentTimeMillis();
+		}
+		return iSuggestions;
+	}
+
+	@Override
+	public long getTime() {
+		return iT1 - iT0;
+	}
+
+	@Override
+	public boolean isTimeoutReached() {
+		return iTimeoutReached;
+	}
+
+	/**
+	 * Number of parts (chunks of the possible enrollments of the selected request) the search space was split into
+	 */
+	public int getNrChunks() {
+		return iNrChunks;
+	}
+
+	/**
+	 * Number of chunks that have been fully explored
+	 */
+	public int getNrExploredChunks() {
+		return iNrExplored.get();
+	}
+
+	/**
+	 * Fraction of the search space (chunks of the possible enrollments of the selected request) that has been fully explored
+	 */
+	public double getExplored() {
+		if (iNrChunks == 0) return (iTimeoutReached ? 0.0 : 1.0);
+		return ((double)iNrExplored.get()) / iNrChunks;
+	}
+
+	public int getNrThreads() {
+		return iNrThreads;
+	}
+
+	protected boolean isStopped() {
+		if (!iTimeoutReached && System.currentTimeMillis() > iDeadline)
+			iTimeoutReached = true;
+		return iTimeoutReached || iStop;
+	}
+
+	/**
+	 * Section of the selected subpart (or a subpart of the same instructional type in a different configuration)
+	 * of the given suggestion, see {@link Suggestion#sameSelectedSection()}
+	 */
+	protected Section getSelectedEnrollment(Suggestion suggestion) {
+		if (iSelectedSection == null) return null;
+		Enrollment enrollment = suggestion.getEnrollments()[iStudent.getRequests().indexOf(iSelectedRequest)];
+		if (enrollment == null || enrollment.getAssignments() == null) return null;
+		for (Section section: enrollment.getSections()) {
+			if (section.getSubpart().getId() == iSelectedSection.getSubpart().getId()) return section;
+			if (section.getSubpart().getConfig().getId() != iSelectedSection.getSubpart().getConfig().getId() &&
+					section.getSubpart().getInstructionalType().equals(iSelectedSection.getSubpart().getInstructionalType())) return section;
+		}
+		return null;
+	}
+
+	/**
+	 * Same as {@link Suggestion#sameSelectedSection()}, but comparing two suggestions instead of a suggestion and the current assignment
+	 */
+	protected boolean sameSelectedSection(Suggestion x, Suggestion s) {
+		Section xs = getSelectedEnrollment(x);
+		if (xs == null) return false;
+		Section ss = getSelectedEnrollment(s);
+		if (ss == null) return false;
+		if (xs.equals(ss)) return true;
+		return !ToolBox.equals(xs.getTime(), iSelectedSection.getTime()) && iSelectedSection.getSubpart().getSections().size() > iMaxSuggestions &&
+				ToolBox.equals(ss.getTime(), xs.getTime());
+	}
+
+	/**
+	 * Merge suggestions of a worker into the shared result. Must be called by the thread that owns the suggestions,
+	 * as the comparison of two suggestions depends on the assignment of the first one.
+	 */
+	protected void merge(Collection<Suggestion> suggestions, int nrMatched) {
+		synchronized (iSuggestions) {
+			suggestions: for (Suggestion s: suggestions) {
+				if (iSuggestions.size() >= iMaxSuggestions && s.compareTo(iSuggestions.last()) >= 0) continue;
+				if (nrMatched != 1) {
+					for (Iterator<Suggestion> i = iSuggestions.iterator(); i.hasNext(); ) {
+						Suggestion x = i.next();
+						if (sameSelectedSection(x, s)) {
+							if (s.compareTo(x) >= 0) continue suggestions;
+							i.remove();
+						}
+					}
+				}
+				iSuggestions.add(s);
+				if (iSuggestions.size() > iMaxSuggestions)
+					iSuggestions.pollLast();
+			}
+			if (iSuggestions.size() >= iMaxSuggestions)
+				iWorstNrUnassigned = iSuggestions.last().getNrUnassigned();
+		}
+	}
+
+	/**
+	 * Suggestions found so far (a copy)
+	 */
+	public List<Suggestion> getSuggestions() {
+		synchronized (iSuggestions) {
+			return new ArrayList<Suggestion>(iSuggestions);
+		}
+	}
+
+	/**
+	 * A worker: the original branch and bound search, restricted to the enrollments of the selected request of the claimed chunk
+	 */
+	protected class Worker extends SuggestionsBranchAndBound implements Runnable {
+		private Assignment<Request, Enrollment> iWorkerAssignment;
+		private List<List<Enrollment>> iChunks = null;
+		private int iChunk = -1;
+		private boolean iInterrupted = false;
+		private String iLocale;
+		private AtomicBoolean iStarted = new AtomicBoolean(false);
+
+		protected Worker(Assignment<Request, Enrollment> assignment) {
+			super(iWorkerProperties, iStudent, assignment, iRequiredSections, iRequiredFreeTimes, iPreferredSections, iSelectedRequest, iSelectedSection, iFilter, ParallelSuggestionsBranchAndBound.this.iMaxSectionsWithPenalty);
+			iWorkerAssignment = assignment;
+			if (iMultiCriteria) {
+				OnlineSectioningModel model = (OnlineSectioningModel)iSelectedRequest.getModel();
+				if (iPriorityWeighting)
+					iComparator = new OnlineSectioningCriterion(iStudent, model, assignment, iPreferredSections);
+				else
+					iComparator = new EqualWeightCriterion(iStudent, model, assignment, iPreferredSections);
+			}
+			iLocale = Localization.getLocale();
+		}
+
+		/**
+		 * Mark the worker as started, returns false if it has been started already
+		 */
+		protected boolean start() {
+			return iStarted.compareAndSet(false, true);
+		}
+
+		@Override
+		public void run() {
+			if (!start()) return;
+			String locale = Localization.getLocale();
+			Localization.setLocale(iLocale);
+			try {
+				while (!isStopped()) {
+					iChunk = -1; iInterrupted = false;
+					TreeSet<Suggestion> suggestions = computeSuggestions();
+					if (iChunk < 0 || iChunks == null || iChunk >= iChunks.size()) break;
+					merge(suggestions, getNrMatched());
+					if (!iInterrupted) iNrExplored.incrementAndGet();
+				}
+			} finally {
+				Localization.setLocale(locale);
+			}
+		}
+
+		@Override
+		protected List<Enrollment> values(Request request) {
+			List<Enrollment> values = super.values(request);
+			if (!request.equals(iSelectedRequest)) return values;
+			if (iChunks == null) {
+				// the values are sorted the same way in all the workers, so are the chunks
+				int chunkSize = Math.max(1, (int)Math.ceil(((double)values.size()) / (sChunksPerThread * iNrThreads)));
+				iChunks = new ArrayList<List<Enrollment>>();
+				for (int i = 0; i < values.size(); i += chunkSize)
+					iChunks.add(values.subList(i, Math.min(i + chunkSize, values.size())));
+				iNrChunks = iChunks.size();
+			}
+			if (iChunk < 0)
+				iChunk = iNextChunk.getAndIncrement();
+			if (iChunk >= iChunks.size()) return Collections.emptyList();
+			return iChunks.get(iChunk);
+		}
+
+		@Override
+		protected boolean canContinue(ArrayList<Request> requests2resolve, int idx, int depth) {
+			if (isStopped()) {
+				iInterrupted = true;
+				return false;
+			}
+			return super.canContinue(requests2resolve, idx, depth);
+		}
+
+		@Override
+		protected boolean canContinueEvaluation() {
+			if (isStopped()) {
+				iInterrupted = true;
+				return false;
+			}
+			return super.canContinueEvaluation();
+		}
+
+		@Override
+		protected boolean checkBound(ArrayList<Request> requests2resolve, int idx, int depth, Enrollment value, Set<Enrollment> conflicts) {
+			if (!super.checkBound(requests2resolve, idx, depth, value, conflicts)) return false;
+			int worst = iWorstNrUnassigned;
+			if (worst == Integer.MAX_VALUE) return true;
+			// requests before idx keep their assignment in the whole branch, so this is a lower bound on the number of unassigned requests
+			int nrUnassigned = (value.getAssignments() == null || value.getAssignments().isEmpty() ? 1 : 0);
+			for (int i = 0; i < idx; i++) {
+				Enrollment e = iWorkerAssignment.getValue(requests2resolve.get(i));
+				if (e != null && (e.getAssignments() == null || e.getAssignments().isEmpty())) nrUnassigned ++;
+			}
+			return nrUnassigned <= worst;
+		}
+
+		@Override
+		protected int compare(Assignment<Request, Enrollment> assignment, Suggestion s1, Suggestion s2) {
+			if (iMultiCriteria)
+				return ((SelectionCriterion)iComparator).compare(assignment, s1.getEnrollments(), s2.getEnrollments());
+			return super.compare(assignment, s1, s2);
+		}
+	}
+}
@@ -57,6 +57,8 @@ import org.unitime.timetable.onlinesectioning.OnlineSectioningAction;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.match.AbstractStudentMatcher;
+import org.unitime.timetable.onlinesectioning.match.IndexedStudentMatcher;
+import org.unitime.timetable.onlinesectioning.match.StudentIndex;
 import org.unitime.timetable.onlinesectioning.model.XAdvisorRequest;
 import org.unitime.timetable.onlinesectioning.model.XAreaClassificationMajor;
 import org.unitime.timetable.onlinesectioning.model.XConfig;
@@ -791,7 +793,7 @@ public class FindStudentInfoAction implements OnlineSectioningAction<List<Studen
 		return "find-student-infos";
 	}
 	
-	public static class FindStudentInfoMatcher extends AbstractStudentMatcher {
+	public static class FindStudentInfoMatcher extends AbstractStudentMatcher implements IndexedStudentMatcher {
 		private static final long serialVersionUID = 1L;
 		protected Query iQuery;
 		protected String iDefaultSectioningStatus;
@@ -812,6 +814,72 @@ public class FindStudentInfoAction implements OnlineSectioningAction<List<Studen
 			XStudent student = (id instanceof XStudent ? (XStudent)id : getServer().getStudent(id.getStudentId()));
 			return student != null && iQuery.match(new StudentMatcher(student, iDefaultSectioningStatus, getServer(), isMyStudent(student)));
 		}
+		
+		@Override
+		public Set<Long> getCandidates(StudentIndex index) {
+			return getCandidates(iQuery.getQuery(), index);
+		}
+		
+		/**
+		 * Candidate students for a query term: intersection of the indexed terms of a conjunction, union of a disjunction
+		 * (when all the terms are indexed), null when no index applies.
+		 */
+		protected Set<Long> getCandidates(Query.Term term, StudentIndex index) {
+			if (term instanceof Query.AndTerm) {
+				Set<Long> ret = null;
+				for (Query.Term t: ((Query.AndTerm)term).getTerms()) {
+					Set<Long> candidates = getCandidates(t, index);
+					if (candidates == null) continue;
+					if (ret == null)
+						ret = new HashSet<Long>(candidates);
+					else
+						ret.retainAll(candidates);
+					if (ret.isEmpty()) break;
+				}
+				return ret;
+			} else if (term instanceof Query.OrTerm) {
+				if (((Query.OrTerm)term).getTerms().isEmpty()) return null;
+				Set<Long> ret = new HashSet<Long>();
+				for (Query.Term t: ((Query.OrTerm)term).getTerms()) {
+					Set<Long> candidates = getCandidates(t, index);
+					if (candidates == null) return null;
+					ret.addAll(candidates);
+				}
+				return ret;
+			} else if (term instanceof Query.AtomTerm) {
+				String attr = ((Query.AtomTerm)term).getAttribute();
+				String body = ((Query.AtomTerm)term).getBody();
+				if ("area".equals(attr)) {
+					return index.getStudentIds(StudentIndex.AREA, body);
+				} else if ("clasf".equals(attr) || "classification".equals(attr)) {
+					return index.getStudentIds(StudentIndex.CLASSIFICATION, body);
+				} else if ("major".equals(attr)) {
+					return index.getStudentIds(StudentIndex.MAJOR, body);
+				} else if ("minor".equals(attr)) {
+					return index.getStudentIds(StudentIndex.MINOR, body);
+				} else if ("group".equals(attr)) {
+					return index.getStudentIds(StudentIndex.GROUP, body);
+				} else if ("advisor".equals(attr)) {
+					return index.getStudentIds(StudentIndex.ADVISOR, body);
+				} else if ("student".equals(attr)) {
+					return index.getStudentIds(StudentIndex.STUDENT, body);
+				} else if ("status".equals(attr)) {
+					if ("default".equalsIgnoreCase(body) || "Not Set".equalsIgnoreCase(body))
+						return index.getStudentIds(StudentIndex.STATUS, StudentIndex.NO_STATUS);
+					Set<Long> ret = index.getStudentIds(StudentIndex.STATUS, body);
+					if (ret != null && body.equalsIgnoreCase(iDefaultSectioningStatus)) {
+						Set<Long> noStatus = index.getStudentIds(StudentIndex.STATUS, StudentIndex.NO_STATUS);
+						if (noStatus == null) return null;
+						ret = new HashSet<Long>(ret); ret.addAll(noStatus);
+					}
+					return ret;
+				} else if ("mode".equals(attr)) {
+					if ("My Students".equalsIgnoreCase(body) || "My Advised".equalsIgnoreCase(body) || "My Not Advised".equalsIgnoreCase(body))
+						return (iMyStudents == null ? new HashSet<Long>() : iMyStudents);
+				}
+			}
+			return null;
+		}
 	}
 	
 	public static String getStudentSchedulingPreference(XStudent student, OnlineSectioningServer server, OnlineSectioningHelper helper) {
@@ -51,15 +51,18 @@ public class FindAssignmentsTest extends OnlineSectioningTestFwk {
 			operations.add(new Operation() {
 				@Override
 				public double execute(OnlineSectioningServer s) {
-					CourseRequestInterface request = s.execute(createAction(GetRequest.class).forStudent(studentId), user());
+					CourseRequestInterface request = FindAssignmentsTest.this.execute(s, createAction(GetRequest.class).forStudent(studentId));
 					if (request != null && !request.getCourses().isEmpty()) {
 						FindAssignmentAction action = s.createAction(FindAssignmentAction.class).forRequest(request).withAssignment(new ArrayList<ClassAssignmentInterface.ClassAssignment>()); 
-						List<ClassAssignmentInterface> ret = s.execute(action, user());
+						List<ClassAssignmentInterface> ret = FindAssignmentsTest.this.execute(s, action);
 						return ret == null || ret.isEmpty() ? 0.0 : ret.get(0).getValue();
 					} else {
 						return 1.0;
 					}
 				}
+				
+				@Override
+				public String name() { return "find-assignments"; }
 			});
 		}
 		
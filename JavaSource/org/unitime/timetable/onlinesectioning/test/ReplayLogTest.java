@@ -317,7 +317,7 @@ public class ReplayLogTest extends OnlineSectioningTestFwk {
 		private <E> E executeAction(OnlineSectioningAction<E> action) {
 			E ret = null;
 			try {
-				ret = iServer.execute(action, user());
+				ret = ReplayLogTest.this.execute(iServer, action);
 				iGood ++;
 			} catch (SectioningException e) {
 				for (String ok: sOkErrors)
@@ -370,6 +370,9 @@ public class ReplayLogTest extends OnlineSectioningTestFwk {
 			return nrActions == 0 ? 1.0 : ((double) iGood) / nrActions;
 		}
 		
+		@Override
+		public String name() { return "replay"; }
+		
 	}
 	
 	public static void main(String args[]) {
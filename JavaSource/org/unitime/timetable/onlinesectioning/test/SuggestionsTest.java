@@ -55,18 +55,21 @@ public class SuggestionsTest extends OnlineSectioningTestFwk {
 			operations.add(new Operation() {
 				@Override
 				public double execute(OnlineSectioningServer s) {
-					CourseRequestInterface request = s.execute(createAction(GetRequest.class).forStudent(studentId), user());
+					CourseRequestInterface request = SuggestionsTest.this.execute(s, createAction(GetRequest.class).forStudent(studentId));
 					if (request == null || request.getCourses().isEmpty()) return 1.0;
-					ClassAssignmentInterface assignment = getServer().execute(createAction(GetAssignment.class).forStudent(studentId), user());
+					ClassAssignmentInterface assignment = SuggestionsTest.this.execute(s, createAction(GetAssignment.class).forStudent(studentId));
 					if (assignment == null) return 1.0;
 					List<ClassAssignmentInterface.ClassAssignment> classes = new ArrayList<ClassAssignmentInterface.ClassAssignment>();
 					for (ClassAssignmentInterface.CourseAssignment course: assignment.getCourseAssignments())
 						classes.addAll(course.getClassAssignments());
 					if (classes.isEmpty()) return 1.0;
 					ComputeSuggestionsAction action = createAction(ComputeSuggestionsAction.class).forRequest(request).withAssignment(classes).withSelection(ToolBox.random(classes));
-					s.execute(action, user());
+					SuggestionsTest.this.execute(s, action);
 					return action.value();
 				}
+				
+				@Override
+				public String name() { return "suggestions"; }
 			});
 		}
 		
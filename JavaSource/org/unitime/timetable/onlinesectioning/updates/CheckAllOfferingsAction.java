@@ -19,13 +19,22 @@
 */
 package org.unitime.timetable.onlinesectioning.updates;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.gwt.resources.StudentSectioningMessages;
 import org.unitime.timetable.gwt.shared.SectioningException;
+import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
@@ -41,12 +50,17 @@ import org.unitime.timetable.onlinesectioning.server.CheckMaster.Master;
 import org.unitime.timetable.onlinesectioning.solver.SectioningRequest.ReschedulingReason;
 
 /**
+ * Check all offerings of the academic session. By default, all the offerings are checked while the whole server is locked.
+ * When CheckAllOfferings.Parallel is enabled, the offerings are checked by CheckAllOfferings.NrThreads worker threads instead,
+ * each offering (and its enrolled students) being locked only while it is being checked.
+ * 
  * @author Tomas Muller
  */
 @CheckMaster(Master.REQUIRED)
 public class CheckAllOfferingsAction extends CheckOfferingAction{
 	private static final long serialVersionUID = 1L;
 	private static StudentSectioningMessages MSG = Localization.create(StudentSectioningMessages.class);
+	private static Log sLog = LogFactory.getLog(CheckAllOfferingsAction.class);
 	
 	@Override
 	public Boolean execute(OnlineSectioningServer server, OnlineSectioningHelper helper) {
@@ -67,13 +81,18 @@ public class CheckAllOfferingsAction extends CheckOfferingAction{
 		
 		helper.info("Checking all offerings for " + server.getAcademicSession() + "...");
 		Set<Long> recheck = new HashSet<Long>();
-		Lock lock = server.lockAll();
-		try {
-			for (Long offeringId: offeringIds) {
-				checkOffering(server, helper, server.getOffering(offeringId), recheck);
+		int nrThreads = server.getConfig().getPropertyInt("CheckAllOfferings.NrThreads", Runtime.getRuntime().availableProcessors());
+		if (server.getConfig().getPropertyBoolean("CheckAllOfferings.Parallel", false) && nrThreads > 1 && offeringIds.size() > 1) {
+			checkOfferingsInParallel(server, helper, offeringIds, recheck, nrThreads);
+		} else {
+			Lock lock = server.lockAll();
+			try {
+				for (Long offeringId: offeringIds) {
+					checkOffering(server, helper, server.getOffering(offeringId), recheck);
+				}
+			} finally {
+				lock.release();
 			}
-		} finally {
-			lock.release();
 		}
 		
 		if (!recheck.isEmpty()) {
@@ -85,6 +104,78 @@ public class CheckAllOfferingsAction extends CheckOfferingAction{
 		return true;
 	}
 	
+	protected void checkOfferingsInParallel(final OnlineSectioningServer server, final OnlineSectioningHelper helper, List<Long> offeringIds, Set<Long> recheck, int nrThreads) {
+		final Set<Long> recheckOfferingIds = Collections.synchronizedSet(recheck);
+		final int total = offeringIds.size();
+		final int progressStep = Math.max(1, total / 10);
+		final AtomicInteger checked = new AtomicInteger(0);
+		final AtomicLong checkTime = new AtomicLong(0), maxTime = new AtomicLong(0);
+		long t0 = System.currentTimeMillis();
+		helper.info("Using " + nrThreads + " threads, locking one offering at a time.");
+		List<Worker> workers = new ArrayList<Worker>();
+		Iterator<Long> iterator = offeringIds.iterator();
+		for (int i = 0; i < nrThreads; i++)
+			workers.add(new Worker(i, server.getAcademicSession().getUniqueId(), iterator, helper) {
+				@Override
+				protected void process(Long offeringId) {
+					long t1 = System.currentTimeMillis();
+					try {
+						checkOffering(server, getHelper(), offeringId, recheckOfferingIds);
+					} catch (Exception e) {
+						synchronized (helper) {
+							helper.fatal("Unable to check offering " + offeringId + ", reason: " + e.getMessage(), e);
+						}
+					}
+					long time = System.currentTimeMillis() - t1;
+					checkTime.addAndGet(time);
+					maxTime.accumulateAndGet(time, Math::max);
+					int done = checked.incrementAndGet();
+					synchronized (helper) {
+						if (helper.isDebugEnabled())
+							helper.debug("Offering " + offeringId + " checked in " + time + " ms.");
+						if (done % progressStep == 0 && done < total)
+							helper.info("Checked " + done + " of " + total + " offerings (" + (100 * done / total) + "%)...");
+					}
+				}
+			});
+		for (Worker worker: workers) worker.start();
+		for (Worker worker: workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+			}
+		}
+		// the workers have their own logs, add them to the log of the action
+		for (Worker worker: workers)
+			helper.mergeLog(worker.getHelper());
+		helper.info("Checked " + checked.get() + " offerings in " + (System.currentTimeMillis() - t0) + " ms (" +
+				String.format("%.1f", ((double)checkTime.get()) / Math.max(1, checked.get())) + " ms per offering on average, " + maxTime.get() + " ms max).");
+	}
+	
+	protected void checkOffering(OnlineSectioningServer server, OnlineSectioningHelper helper, Long offeringId, Set<Long> recheck) throws Exception {
+		// offering is locked -> assuming that the offering will get checked when it is unlocked
+		if (server.isOfferingLocked(offeringId)) return;
+		
+		// skip non-existing offerings and offerings that do not wait-list
+		XOffering offering = server.getOffering(offeringId);
+		if (offering == null || !offering.isWaitList()) return;
+		
+		// lock the offering and its students, re-read the offering as it may have changed in the meantime
+		Lock lock = server.lockOffering(offeringId, null, name());
+		try {
+			helper.beginTransaction();
+			try {
+				checkOffering(server, helper, server.getOffering(offeringId), recheck);
+				helper.commitTransaction();
+			} catch (Exception e) {
+				helper.rollbackTransaction();
+				throw e;
+			}
+		} finally {
+			lock.release();
+		}
+	}
+	
 	@Override
 	public ReschedulingReason check(OnlineSectioningServer server, XStudent student, XOffering offering, XCourseRequest request) {
 		if (request.getEnrollment() == null) return null;
@@ -126,4 +217,46 @@ public class CheckAllOfferingsAction extends CheckOfferingAction{
 					return ReschedulingReason.CLASS_CANCELLED;
 		return null;
 	}
+	
+	protected static abstract class Worker extends Thread {
+		private Iterator<Long> iOfferingIds;
+		private Long iSessionId;
+		private OnlineSectioningHelper iHelper;
+		
+		public Worker(int index, Long sessionId, Iterator<Long> offeringIds, OnlineSectioningHelper parent) {
+			setName("CheckOfferings-" + (1 + index));
+			iSessionId = sessionId;
+			iOfferingIds = offeringIds;
+			iHelper = new OnlineSectioningHelper(parent, false);
+		}
+		
+		/**
+		 * Helper of this worker, with its own log (protobuf builders are not thread-safe)
+		 */
+		protected OnlineSectioningHelper getHelper() { return iHelper; }
+		
+		protected abstract void process(Long offeringId);
+		
+		@Override
+	    public void run() {
+			try {
+				ApplicationProperties.setSessionId(iSessionId);
+				while (true) {
+					Long offeringId = null;
+					synchronized (iOfferingIds) {
+						if (!iOfferingIds.hasNext()) break;
+						offeringId = iOfferingIds.next();
+					}
+					try {
+						process(offeringId);
+					} catch (Exception e) {
+						sLog.warn("Failed to check offering " + offeringId + ": " + e.getMessage(), e);
+					}
+				}
+			} finally {
+				ApplicationProperties.setSessionId(null);
+				_RootDAO.closeCurrentThreadSessions();
+			}
+		}
+	}
 }
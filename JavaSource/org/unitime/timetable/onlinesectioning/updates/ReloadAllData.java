@@ -23,6 +23,7 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -47,6 +48,7 @@ import org.unitime.timetable.model.DistributionPref;
 import org.unitime.timetable.model.InstructionalOffering;
 import org.unitime.timetable.model.PreferenceLevel;
 import org.unitime.timetable.model.SchedulingSubpart;
+import org.unitime.timetable.model.StudentSectioningQueue;
 import org.unitime.timetable.model.WaitList;
 import org.unitime.timetable.model.comparators.ClassComparator;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningAction;
@@ -67,6 +69,7 @@ import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.model.XSubpart;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster.Master;
+import org.unitime.timetable.onlinesectioning.server.ServerSnapshot;
 import org.unitime.timetable.solver.TimetableDatabaseLoader;
 
 /**
@@ -76,6 +79,18 @@ import org.unitime.timetable.solver.TimetableDatabaseLoader;
 public class ReloadAllData implements OnlineSectioningAction<Boolean> {
 	private static final long serialVersionUID = 1L;
 	private static StudentSectioningMessages MSG = Localization.create(StudentSectioningMessages.class);
+	private boolean iUseSnapshot = false;
+	
+	/**
+	 * Load the server from the {@link ServerSnapshot} when there is a usable one (only the changes made after the
+	 * snapshot are then reloaded by the updater)
+	 */
+	public ReloadAllData useSnapshot(boolean useSnapshot) {
+		iUseSnapshot = useSnapshot;
+		return this;
+	}
+	
+	public boolean isUseSnapshot() { return iUseSnapshot; }
 
 	@Override
 	public Boolean execute(final OnlineSectioningServer server, OnlineSectioningHelper helper) {
@@ -89,11 +104,24 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
 
 		Lock lock = server.lockAll();
 		try {
+			if (isUseSnapshot()) {
+				try {
+					if (ServerSnapshot.load(server, helper)) return true;
+				} catch (Exception e) {
+					helper.warn("Failed to load snapshot: " + e.getMessage(), e);
+				}
+			}
 			helper.beginTransaction();
 			try {
 				helper.info("Updating course infos and the student sectining model for session " + server.getAcademicSession());
 				long t0 = System.currentTimeMillis();
 				server.clearAll();
+				
+				if (isUseSnapshot() && server.getProperty("Updater.LastTimeStamp", null) == null) {
+					// remember the last queue record, so that a snapshot taken later knows which changes are not included
+					Date lastTimeStamp = StudentSectioningQueue.getLastTimeStamp(helper.getHibSession(), server.getAcademicSession().getUniqueId());
+					server.setProperty("Updater.LastTimeStamp", lastTimeStamp == null ? new Date(0) : lastTimeStamp);
+				}
 
 				Map<Long, List<XDistribution>> distributions = new Hashtable<Long, List<XDistribution>>();
 		    	List<DistributionPref> distPrefs = helper.getHibSession().createQuery(
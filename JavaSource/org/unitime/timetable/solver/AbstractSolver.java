@@ -22,8 +22,14 @@ package org.unitime.timetable.solver;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.Date;
@@ -33,6 +39,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -80,6 +88,7 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
     private Map<String,String> iBestSolutionInfoBeforePassivation = null;
     private File iPassivationFolder = null;
     private String iPassivationPuid = null;
+    private long iLastBackupTime = 0, iLastBackupSize = 0, iLastRestoreTime = 0, iLastRestoreSize = 0;
     protected Thread iWorkThread = null;
     
     public AbstractSolver(DataProperties properties, SolverDisposeListener disposeListener) {
@@ -413,6 +422,13 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
     		}
     }
     
+    /**
+     * Backup file of the given solver, compressed (.backup.xml.gz) or not (.backup.xml)
+     */
+    protected File getBackupFile(File folder, String puid, boolean compressed) {
+    	return new File(folder, getType().getPrefix() + puid + (compressed ? BackupFileFilter.sGzExtension : BackupFileFilter.sXmlExtension));
+    }
+    
     @Override
     public boolean backup(File folder, String puid) {
         folder.mkdirs();
@@ -420,24 +436,40 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
         Lock lock = currentSolution().getLock().readLock();
         lock.lock();
         try {
-            File outXmlFile = new File(folder, getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
+        	boolean compressed = ApplicationProperty.SolverPassivationCompressed.isTrue();
+            File outXmlFile = getBackupFile(folder, puid, compressed);
+            // write into a temporary file first, so that the previous backup is kept when the backup fails
+            File tempFile = new File(folder, outXmlFile.getName() + ".tmp");
             try {
-                FileOutputStream fos = null;
+            	long t0 = System.currentTimeMillis();
+                OutputStream out = null;
                 try {
-                    fos = new FileOutputStream(outXmlFile);
+                    out = new FileOutputStream(tempFile);
+                    if (compressed) out = new GZIPOutputStream(out, 65536);
                     Document document = createCurrentSolutionBackup(false, false);
                     saveProperties(document);
-                    (new XMLWriter(fos,OutputFormat.createPrettyPrint())).write(document);
-                    fos.flush(); fos.close(); fos=null;
+                    (new XMLWriter(out, compressed ? OutputFormat.createCompactFormat() : OutputFormat.createPrettyPrint())).write(document);
+                    out.flush(); out.close(); out=null;
                 } finally {
                     try {
-                        if (fos!=null) fos.close();
+                        if (out!=null) out.close();
                     } catch (IOException e) {}
                 }
+                try {
+                	Files.move(tempFile.toPath(), outXmlFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                	Files.move(tempFile.toPath(), outXmlFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                // the backup has been written, only now remove the (older) backup of the other format
+                File otherFile = getBackupFile(folder, puid, !compressed);
+                if (otherFile.exists()) otherFile.delete();
+                iLastBackupTime = System.currentTimeMillis() - t0;
+                iLastBackupSize = outXmlFile.length();
+                sLog.debug(" -- backup of " + puid + " took " + iLastBackupTime + " ms, " + iLastBackupSize + " bytes written to " + outXmlFile.getName());
                 return true;
             } catch (Exception e) {
                 sLog.error(e.getMessage(),e);
-                if (outXmlFile.exists()) outXmlFile.delete();
+                if (tempFile.exists()) tempFile.delete();
             }
         } finally {
         	lock.unlock();
@@ -452,17 +484,48 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
     
     protected abstract void restureCurrentSolutionFromBackup(Document document);
     
+    /**
+     * Read a backup file, compressed or not (based on the file extension)
+     */
+    protected Document readBackup(File file) throws IOException, DocumentException {
+    	InputStream in = new FileInputStream(file);
+        try {
+            if (file.getName().endsWith(BackupFileFilter.sGzExtension)) in = new GZIPInputStream(in, 65536);
+            return (new SAXReader()).read(in);
+        } finally {
+        	in.close();
+        }
+    }
+    
     @Override
     public boolean restore(File folder, String puid, boolean removeFiles) {
         sLog.debug("restore(folder="+folder+","+puid+")");
-        File inXmlFile = new File(folder,getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
+        // prefer the compressed backup, fall back to the other format when the preferred file cannot be read (e.g., it is truncated)
+        List<File> backupFiles = new ArrayList<File>();
+        for (boolean compressed: new boolean[] {true, false}) {
+        	File file = getBackupFile(folder, puid, compressed);
+        	if (file.exists()) backupFiles.add(file);
+        }
         
         M model = null;
         try {
             if (isRunning()) stopSolver();
             disposeNoInherit(false);
 
-            Document document = (new SAXReader()).read(inXmlFile);
+            long t0 = System.currentTimeMillis();
+            Document document = null;
+            File inXmlFile = null;
+            for (File file: backupFiles) {
+            	try {
+            		document = readBackup(file);
+            		inXmlFile = file;
+            		break;
+            	} catch (Exception e) {
+            		sLog.warn("Failed to read backup " + file.getName() + ": " + e.getMessage(), e);
+            	}
+            }
+            if (document == null)
+            	throw new IOException("No readable backup of " + puid + " found in " + folder + ".");
             readProperties(document);
             
             model = createModel(getProperties());
@@ -472,9 +535,13 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
 
             restureCurrentSolutionFromBackup(document);
             Progress.getInstance(model).setStatus(MSG.statusReady());
+            iLastRestoreTime = System.currentTimeMillis() - t0;
+            iLastRestoreSize = inXmlFile.length();
+            sLog.debug(" -- restore of " + puid + " took " + iLastRestoreTime + " ms, " + iLastRestoreSize + " bytes read from " + inXmlFile.getName());
             
             if (removeFiles) {
-                inXmlFile.delete();
+            	for (File file: backupFiles)
+            		file.delete();
             }
             
             return true;
@@ -540,7 +607,9 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
 
         System.gc();
         sLog.debug(" -- memory usage before activation:"+org.unitime.commons.Debug.getMem());
-        restore(iPassivationFolder, iPassivationPuid, true);
+        long t0 = System.currentTimeMillis();
+        if (restore(iPassivationFolder, iPassivationPuid, true))
+        	sLog.info("Solver " + iPassivationPuid + " activated in " + (System.currentTimeMillis() - t0) + " ms (" + iLastRestoreSize + " bytes read in " + iLastRestoreTime + " ms).");
         System.gc();
         sLog.debug(" -- memory usage after activation:"+org.unitime.commons.Debug.getMem());
         
@@ -564,7 +633,9 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
         
         iPassivationFolder = folder;
         iPassivationPuid = puid;
-        backup(iPassivationFolder, iPassivationPuid);
+        long t0 = System.currentTimeMillis();
+        if (backup(iPassivationFolder, iPassivationPuid))
+        	sLog.info("Solver " + puid + " passivated in " + (System.currentTimeMillis() - t0) + " ms (" + iLastBackupSize + " bytes written in " + iLastBackupTime + " ms).");
 
         disposeNoInherit(false);
         
@@ -583,6 +654,15 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
         return passivate(folder, puid);
     }
     
+    /** Time in milliseconds the last backup (passivation) took */
+    public long getLastBackupTime() { return iLastBackupTime; }
+    /** Size in bytes of the last backup (passivation) file */
+    public long getLastBackupSize() { return iLastBackupSize; }
+    /** Time in milliseconds the last restore (activation) took */
+    public long getLastRestoreTime() { return iLastRestoreTime; }
+    /** Size in bytes of the last restored (activated) file */
+    public long getLastRestoreSize() { return iLastRestoreSize; }
+    
     @Override
     public Date getLastUsed() {
         return new Date(iLastTimeStamp);
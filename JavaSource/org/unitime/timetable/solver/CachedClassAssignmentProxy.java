@@ -33,6 +33,10 @@ import org.unitime.timetable.solver.ui.AssignmentPreferenceInfo;
 
 
 /**
+ * Class assignment proxy that caches the assignments and assignment infos of the underlying proxy for the
+ * duration of a request. When an assignment version is provided (see {@link SolverProxy#getAssignmentVersion()}),
+ * the cached values are also shared with other requests through the {@link ClassAssignmentCache}.
+ *
  * @author Tomas Muller
  */
 public class CachedClassAssignmentProxy implements ClassAssignmentProxy {
@@ -40,48 +44,95 @@ public class CachedClassAssignmentProxy implements ClassAssignmentProxy {
 	private ClassAssignmentProxy iProxy;
 	private Hashtable iAssignmentTable = new Hashtable();
 	private Hashtable iAssignmentInfoTable = new Hashtable();
+	private String iVersion = null;
+	private ClassAssignmentCache iSharedCache = null;
 	
 	public CachedClassAssignmentProxy(ClassAssignmentProxy proxy) {
 		iProxy = proxy;
 	}
 	
-	public Assignment getAssignment(Long classId) {
+	public CachedClassAssignmentProxy(ClassAssignmentProxy proxy, String version) {
+		this(proxy);
+		if (version != null) {
+			ClassAssignmentCache cache = ClassAssignmentCache.getInstance();
+			if (cache.isEnabled()) {
+				iVersion = version;
+				iSharedCache = cache;
+			}
+		}
+	}
+	
+	private Object getCachedAssignment(Long classId) {
 		Object cached = iAssignmentTable.get(classId);
+		if (cached == null && iSharedCache != null) {
+			ClassAssignmentCache.Entry entry = iSharedCache.getAssignment(iVersion, classId);
+			if (entry != null) {
+				cached = (entry.getAssignment() == null ? sNULL : entry.getAssignment());
+				iAssignmentTable.put(classId, cached);
+			}
+		}
+		return cached;
+	}
+	
+	private void putAssignment(Long classId, Assignment assignment) {
+		iAssignmentTable.put(classId, (assignment==null?sNULL:assignment));
+		if (iSharedCache != null) iSharedCache.putAssignment(iVersion, classId, assignment);
+	}
+	
+	private Object getCachedAssignmentInfo(Long classId) {
+		Object cached = iAssignmentInfoTable.get(classId);
+		if (cached == null && iSharedCache != null) {
+			ClassAssignmentCache.Entry entry = iSharedCache.getAssignmentInfo(iVersion, classId);
+			if (entry != null) {
+				cached = (entry.getInfo() == null ? sNULL : entry.getInfo());
+				iAssignmentInfoTable.put(classId, cached);
+			}
+		}
+		return cached;
+	}
+	
+	private void putAssignmentInfo(Long classId, AssignmentPreferenceInfo info) {
+		iAssignmentInfoTable.put(classId, (info==null?sNULL:info));
+		if (iSharedCache != null) iSharedCache.putAssignmentInfo(iVersion, classId, info);
+	}
+	
+	public Assignment getAssignment(Long classId) {
+		Object cached = getCachedAssignment(classId);
 		if (cached!=null) {
 			return (sNULL.equals(cached)?null:(Assignment)cached);
 		}
 		Assignment assignment = iProxy.getAssignment(classId);
-		iAssignmentTable.put(classId, (assignment==null?sNULL:assignment));
+		putAssignment(classId, assignment);
 		return assignment;
 	}
 	
 	public Assignment getAssignment(Class_ clazz) {
-		Object cached = iAssignmentTable.get(clazz.getUniqueId());
+		Object cached = getCachedAssignment(clazz.getUniqueId());
 		if (cached!=null) {
 			return (sNULL.equals(cached)?null:(Assignment)cached);
 		}
 		Assignment assignment = iProxy.getAssignment(clazz);
-		iAssignmentTable.put(clazz.getUniqueId(), (assignment==null?sNULL:assignment));
+		putAssignment(clazz.getUniqueId(), assignment);
 		return assignment;
 	}
 	
 	public AssignmentPreferenceInfo getAssignmentInfo(Long classId) {
-		Object cached = iAssignmentInfoTable.get(classId);
+		Object cached = getCachedAssignmentInfo(classId);
 		if (cached!=null) {
 			return (sNULL.equals(cached)?null:(AssignmentPreferenceInfo)cached);
 		}
 		AssignmentPreferenceInfo info = iProxy.getAssignmentInfo(classId);
-		iAssignmentInfoTable.put(classId, (info==null?sNULL:info));
+		putAssignmentInfo(classId, info);
 		return info;
 	}
 	
 	public AssignmentPreferenceInfo getAssignmentInfo(Class_ clazz) {
-		Object cached = iAssignmentInfoTable.get(clazz.getUniqueId());
+		Object cached = getCachedAssignmentInfo(clazz.getUniqueId());
 		if (cached!=null) {
 			return (sNULL.equals(cached)?null:(AssignmentPreferenceInfo)cached);
 		}
 		AssignmentPreferenceInfo info = iProxy.getAssignmentInfo(clazz);
-		iAssignmentInfoTable.put(clazz.getUniqueId(), (info==null?sNULL:info));
+		putAssignmentInfo(clazz.getUniqueId(), info);
 		return info;
 	}
 	
@@ -92,20 +143,21 @@ public class CachedClassAssignmentProxy implements ClassAssignmentProxy {
 			Object classOrClassId = i.next();
 			if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
 			Long classId = (classOrClassId instanceof Class_ ? ((Class_)classOrClassId).getUniqueId() : (Long)classOrClassId);
-			Object cached = iAssignmentTable.get(classId);
+			Object cached = getCachedAssignment(classId);
 			if (cached!=null) {
 				if (!sNULL.equals(cached)) assignments.put(classId, cached);
 			} else {
 				unknown.add(classOrClassId);
 			}
 		}
+		if (unknown.isEmpty()) return assignments;
 		Hashtable newAssignments = iProxy.getAssignmentTable(unknown);
 		for (Enumeration e=unknown.elements();e.hasMoreElements();) {
 			Object classOrClassId = e.nextElement();
 			if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
 			Long classId = (classOrClassId instanceof Class_ ? ((Class_)classOrClassId).getUniqueId() : (Long)classOrClassId);
 			Assignment assignment = (Assignment) newAssignments.get(classId);
-			iAssignmentTable.put(classId, (assignment==null?sNULL:assignment));
+			putAssignment(classId, assignment);
 			if (assignment!=null)
 				assignments.put(classId, assignment);
 		}
@@ -119,39 +171,33 @@ public class CachedClassAssignmentProxy implements ClassAssignmentProxy {
 			Object classOrClassId = i.next();
 			if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
 			Long classId = (classOrClassId instanceof Class_ ? ((Class_)classOrClassId).getUniqueId() : (Long)classOrClassId);
-			Object cached = iAssignmentInfoTable.get(classId);
+			Object cached = getCachedAssignmentInfo(classId);
 			if (cached!=null) {
 				if (!sNULL.equals(cached)) infos.put(classId, cached);
 			} else {
 				unknown.add(classOrClassId);
 			}
 		}
+		if (unknown.isEmpty()) return infos;
 		Hashtable newInfos = iProxy.getAssignmentInfoTable(unknown);
 		for (Enumeration e=unknown.elements();e.hasMoreElements();) {
 			Object classOrClassId = e.nextElement();
 			if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
 			Long classId = (classOrClassId instanceof Class_ ? ((Class_)classOrClassId).getUniqueId() : (Long)classOrClassId);
 			AssignmentPreferenceInfo info = (AssignmentPreferenceInfo) newInfos.get(classId);
-			iAssignmentInfoTable.put(classId, (info==null?sNULL:info));
+			putAssignmentInfo(classId, info);
 			if (info!=null)
 				infos.put(classId, info);
 		}
 		return infos;
 	}
 	
+	/**
+	 * Pre-fetch assignments and assignment infos of the given classes, only the classes that are not cached yet are retrieved from the underlying proxy
+	 */
 	public void setCache(Collection classesOrClassIds) {
-		Vector classesOrClassIdsVect = (classesOrClassIds instanceof Vector ? (Vector)classesOrClassIds : new Vector(classesOrClassIds));
-		Hashtable newAssignments = iProxy.getAssignmentTable(classesOrClassIdsVect);
-		Hashtable newInfos = iProxy.getAssignmentInfoTable(classesOrClassIdsVect);
-		for (Enumeration e=classesOrClassIdsVect.elements();e.hasMoreElements();) {
-			Object classOrClassId = e.nextElement();
-			if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
-			Long classId = (classOrClassId instanceof Class_ ? ((Class_)classOrClassId).getUniqueId() : (Long)classOrClassId);
-			Assignment assignment = (Assignment) newAssignments.get(classId);
-			iAssignmentTable.put(classId, (assignment==null?sNULL:assignment));
-			AssignmentPreferenceInfo info = (AssignmentPreferenceInfo) newInfos.get(classId);
-			iAssignmentInfoTable.put(classId, (info==null?sNULL:info));
-		}
+		getAssignmentTable(classesOrClassIds);
+		getAssignmentInfoTable(classesOrClassIds);
 	}
 	
 	@Override
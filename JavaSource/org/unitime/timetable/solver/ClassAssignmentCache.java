@@ -0,0 +1,277 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.Synchronization;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.Transaction;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.Assignment;
+import org.unitime.timetable.model.DepartmentalInstructor;
+import org.unitime.timetable.model.Location;
+import org.unitime.timetable.model.dao.DatePatternDAO;
+import org.unitime.timetable.model.dao.DepartmentalInstructorDAO;
+import org.unitime.timetable.model.dao.LocationDAO;
+import org.unitime.timetable.model.dao.TimePatternDAO;
+import org.unitime.timetable.solver.ui.AssignmentPreferenceInfo;
+
+/**
+ * Size-bounded (least recently used) cache of class assignments and assignment preference infos, shared
+ * between the {@link CachedClassAssignmentProxy} instances of all the requests. The entries are keyed by the
+ * assignment version of a solver (see {@link SolverProxy#getAssignmentVersion()}) and the class id, so a change
+ * of the solver assignment makes the older entries unreachable (they are eventually evicted).
+ * Since the committed assignments (that a solver may return for classes outside of its problem) can change
+ * independently of the solver, the cache is also cleared whenever a solution is committed or uncommitted.<br>
+ * The cache does not hold any hibernate entities: an assignment is stored as a {@link CachedAssignment} (ids and names only)
+ * and a new {@link Assignment} is created from it in the hibernate session of the requesting thread.
+ *
+ * @author Tomas Muller
+ */
+public class ClassAssignmentCache {
+	private static Log sLog = LogFactory.getLog(ClassAssignmentCache.class);
+	private static ClassAssignmentCache sInstance = null;
+	private Map<Key, Entry> iCache;
+	private int iMaxSize;
+	private AtomicLong iHits = new AtomicLong(0), iMisses = new AtomicLong(0), iEvictions = new AtomicLong(0), iInvalidations = new AtomicLong(0);
+	
+	private ClassAssignmentCache(int maxSize) {
+		iMaxSize = maxSize;
+		iCache = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, ClassAssignmentCache.Entry> eldest) {
+				if (size() > iMaxSize) {
+					iEvictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	public static synchronized ClassAssignmentCache getInstance() {
+		if (sInstance == null)
+			sInstance = new ClassAssignmentCache(ApplicationProperty.SolverClassAssignmentCacheSize.intValue());
+		return sInstance;
+	}
+	
+	/**
+	 * Is the shared cache enabled (its size is positive)
+	 */
+	public boolean isEnabled() {
+		return iMaxSize > 0;
+	}
+	
+	protected synchronized Entry get(String version, Long classId, boolean info) {
+		Entry entry = iCache.get(new Key(version, classId));
+		if (entry != null && (info ? entry.hasInfo() : entry.hasAssignment())) {
+			iHits.incrementAndGet();
+			return entry;
+		}
+		iMisses.incrementAndGet();
+		return null;
+	}
+	
+	/**
+	 * Cached assignment of the given class
+	 * @return null if not cached, {@link Entry#getAssignment()} is null when the class is known not to be assigned
+	 */
+	public Entry getAssignment(String version, Long classId) {
+		return get(version, classId, false);
+	}
+	
+	/**
+	 * Cached assignment preference info of the given class
+	 * @return null if not cached, {@link Entry#getInfo()} is null when the class is known not to be assigned
+	 */
+	public Entry getAssignmentInfo(String version, Long classId) {
+		return get(version, classId, true);
+	}
+	
+	protected synchronized Entry entry(String version, Long classId) {
+		Key key = new Key(version, classId);
+		Entry entry = iCache.get(key);
+		if (entry == null) {
+			entry = new Entry();
+			iCache.put(key, entry);
+		}
+		return entry;
+	}
+	
+	public void putAssignment(String version, Long classId, Assignment assignment) {
+		// persistent assignments (of a committed solution) are not shared, they may change independently of the solver
+		if (assignment != null && assignment.getUniqueId() != null) return;
+		CachedAssignment cached = (assignment == null ? null : new CachedAssignment(assignment));
+		synchronized (this) {
+			Entry entry = entry(version, classId);
+			entry.iAssignment = cached; entry.iHasAssignment = true;
+		}
+	}
+	
+	public synchronized void putAssignmentInfo(String version, Long classId, AssignmentPreferenceInfo info) {
+		Entry entry = entry(version, classId);
+		entry.iInfo = info; entry.iHasInfo = true;
+	}
+	
+	/**
+	 * Remove all the cached entries, called when a solution is committed or uncommitted
+	 */
+	public synchronized void invalidateAll() {
+		iCache.clear();
+		iInvalidations.incrementAndGet();
+		if (sLog.isDebugEnabled()) sLog.debug("Cache cleared: " + this);
+	}
+	
+	/**
+	 * Remove all the cached entries now and, when called within a transaction, once more after the transaction is completed
+	 * (so that the entries that were cached by a concurrent request before the changes were committed are not kept)
+	 */
+	public void invalidateAll(org.hibernate.Session hibSession) {
+		invalidateAll();
+		Transaction tx = hibSession.getTransaction();
+		if (tx != null && tx.isActive()) {
+			tx.registerSynchronization(new Synchronization() {
+				@Override
+				public void beforeCompletion() {}
+				
+				@Override
+				public void afterCompletion(int status) {
+					invalidateAll();
+				}
+			});
+		}
+	}
+	
+	public synchronized int size() { return iCache.size(); }
+	public long getHits() { return iHits.get(); }
+	public long getMisses() { return iMisses.get(); }
+	public long getEvictions() { return iEvictions.get(); }
+	public long getInvalidations() { return iInvalidations.get(); }
+	
+	public double getHitRatio() {
+		long hits = iHits.get(), total = hits + iMisses.get();
+		return (total == 0 ? 0.0 : ((double)hits) / total);
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%d entries, %d hits, %d misses (%.1f%% hit ratio), %d evictions, %d invalidations",
+				size(), getHits(), getMisses(), 100.0 * getHitRatio(), getEvictions(), getInvalidations());
+	}
+	
+	private static class Key {
+		private String iVersion;
+		private Long iClassId;
+		
+		private Key(String version, Long classId) {
+			iVersion = version; iClassId = classId;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * iVersion.hashCode() + iClassId.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (o == null || !(o instanceof Key)) return false;
+			Key k = (Key)o;
+			return iVersion.equals(k.iVersion) && iClassId.equals(k.iClassId);
+		}
+	}
+	
+	public static class Entry {
+		private CachedAssignment iAssignment = null;
+		private AssignmentPreferenceInfo iInfo = null;
+		private boolean iHasAssignment = false, iHasInfo = false;
+		
+		private boolean hasAssignment() { return iHasAssignment; }
+		private boolean hasInfo() { return iHasInfo; }
+		
+		/**
+		 * New assignment, using the hibernate session of the current thread for the date pattern, time pattern, rooms, and instructors
+		 */
+		public Assignment getAssignment() { return iAssignment == null ? null : iAssignment.toAssignment(); }
+		public AssignmentPreferenceInfo getInfo() { return iInfo; }
+	}
+	
+	/**
+	 * Session-free copy of a (not persistent) solver assignment, entities are replaced by their ids
+	 */
+	private static class CachedAssignment {
+		private String iClassName;
+		private Integer iDays, iStartSlot;
+		private int iSlotsPerMtg, iBreakTime;
+		private Long iDatePatternId, iTimePatternId;
+		private List<Long> iRoomIds = new ArrayList<Long>();
+		private List<Long> iInstructorIds = new ArrayList<Long>();
+		
+		private CachedAssignment(Assignment assignment) {
+			iClassName = assignment.getClassName();
+			iDays = assignment.getDays();
+			iStartSlot = assignment.getStartSlot();
+			iSlotsPerMtg = assignment.getSlotPerMtg();
+			iBreakTime = assignment.getBreakTime();
+			iDatePatternId = (assignment.getDatePattern() == null ? null : assignment.getDatePattern().getUniqueId());
+			iTimePatternId = (assignment.getTimePattern() == null ? null : assignment.getTimePattern().getUniqueId());
+			if (assignment.getRooms() != null)
+				for (Location room: assignment.getRooms())
+					iRoomIds.add(room.getUniqueId());
+			if (assignment.getInstructors() != null)
+				for (DepartmentalInstructor instructor: assignment.getInstructors())
+					iInstructorIds.add(instructor.getUniqueId());
+		}
+		
+		private Assignment toAssignment() {
+			Assignment assignment = new Assignment();
+			assignment.setClassName(iClassName);
+			assignment.setDays(iDays);
+			assignment.setStartSlot(iStartSlot);
+			assignment.setSlotsPerMtg(iSlotsPerMtg);
+			assignment.setBreakTime(iBreakTime);
+			if (iDatePatternId != null)
+				assignment.setDatePattern(DatePatternDAO.getInstance().get(iDatePatternId));
+			if (iTimePatternId != null)
+				assignment.setTimePattern(TimePatternDAO.getInstance().get(iTimePatternId));
+			HashSet<Location> rooms = new HashSet<Location>();
+			for (Long roomId: iRoomIds) {
+				Location room = LocationDAO.getInstance().get(roomId);
+				if (room != null) rooms.add(room);
+			}
+			assignment.setRooms(rooms);
+			HashSet<DepartmentalInstructor> instructors = new HashSet<DepartmentalInstructor>();
+			for (Long instructorId: iInstructorIds) {
+				DepartmentalInstructor instructor = DepartmentalInstructorDAO.getInstance().get(instructorId);
+				if (instructor != null) instructors.add(instructor);
+			}
+			assignment.setInstructors(instructors);
+			return assignment;
+		}
+	}
+}
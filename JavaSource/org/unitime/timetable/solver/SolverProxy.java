@@ -95,4 +95,11 @@ public interface SolverProxy extends ClassAssignmentProxy, CommonSolverInterface
 	public SuggestionsInterface.Suggestions computeSuggestions(SuggestionsContext context, SuggestionsInterface.ComputeSuggestionsRequest request);
 	public List<SuggestionsInterface.ClassAssignmentDetails> computeConfTable(SuggestionsContext context, SuggestionsInterface.ComputeConflictTableRequest request);
 	public Map<String, Collection<Entity>> loadSuggestionFilter(Long classId);
+	
+	/**
+	 * Identifier of the current state of the solver assignment, it changes whenever the assignment may have changed
+	 * (e.g., the problem is (re)loaded or restored, a class is assigned, the solver was started or the best solution restored).
+	 * @return null when the solver is working (the assignment is changing or not yet loaded)
+	 */
+	public String getAssignmentVersion();
 }
@@ -36,6 +36,10 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -229,6 +233,7 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     private boolean iWeakenDistributions = false;
     private boolean iSoftInstructorConstraints = false;
     private boolean iAllowProhibitedRooms = false;
+    private int iNrThreads = 1;
     
     private org.unitime.timetable.gwt.server.Query iOnlineOnlyStudentQuery = null;
     private String iOnlineOnlyInstructionalModeRegExp;
@@ -271,6 +276,7 @@ public class TimetableDatabaseLoader extends TimetableLoader {
         iInteractiveMode = getModel().getProperties().getPropertyBoolean("General.InteractiveMode", iInteractiveMode);
         iAssignSingleton = getModel().getProperties().getPropertyBoolean("General.AssignSingleton", iAssignSingleton);
         iMaxRoomCombinations = getModel().getProperties().getPropertyInt("General.MaxRoomCombinations", iMaxRoomCombinations);
+        iNrThreads = getModel().getProperties().getPropertyInt("Load.NrThreads", iNrThreads);
         
         iFewerSeatsDisouraged = getModel().getProperties().getPropertyDouble("Global.FewerSeatsDisouraged", iFewerSeatsDisouraged);
         iFewerSeatsStronglyDisouraged = getModel().getProperties().getPropertyDouble("Global.FewerSeatsStronglyDisouraged", iFewerSeatsStronglyDisouraged);
@@ -3518,28 +3524,19 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     	
     	if (!iPreEnrollments.isEmpty()) {
         	setPhase(MSG.phaseCheckingLoadedEnrollments(), iPreEnrollments.size());
-        	for (Map.Entry<Student, Set<Lecture>> entry: iPreEnrollments.entrySet()) {
+        	// the comparison does not change the model (it may run in parallel), the differences are reported in the order of the students
+        	final List<Map.Entry<Student, Set<Lecture>>> preEnrollments = new ArrayList<Map.Entry<Student, Set<Lecture>>>(iPreEnrollments.entrySet());
+        	List<List<Lecture[]>> differences = parallel(preEnrollments, entry -> checkLoadedEnrollments(entry.getKey(), entry.getValue()));
+        	for (int idx = 0; idx < preEnrollments.size(); idx++) {
         		incProgress();
-        		Student student = entry.getKey();
-        		Set<Lecture> lectures = entry.getValue();
-        		for (Lecture lecture: lectures) {
-        			if (!lecture.students().contains(student)) {
-        				iProgress.message(msglevel("studentNotEnrolled", Progress.MSGLEVEL_WARN), MSG.warnStudentShouldBeInClass(student.getId(), getClassLabel(lecture)));
-        			}
-        		}
-        		for (Lecture lecture: student.getLectures()) {
-        			if (!lectures.contains(lecture)) {
-        				Lecture instead = null;
-        				if (lecture.sameStudentsLectures() != null) {
-            				for (Lecture other: lecture.sameStudentsLectures()) {
-            					if (lectures.contains(other)) instead = other;
-            				}
-        				}
-        				if (instead != null)
-            				iProgress.message(msglevel("studentEnrolled", Progress.MSGLEVEL_WARN), MSG.warnStudentShouldNotBeInClassShouldBeInOther(student.getId(), getClassLabel(lecture), getClassLabel(instead)));
-        				else
-            				iProgress.message(msglevel("studentEnrolled", Progress.MSGLEVEL_INFO), MSG.warnStudentShouldNotBeInClass(student.getId(), getClassLabel(lecture)));
-        			}
+        		Student student = preEnrollments.get(idx).getKey();
+        		for (Lecture[] difference: differences.get(idx)) {
+        			if (difference.length == 1)
+        				iProgress.message(msglevel("studentNotEnrolled", Progress.MSGLEVEL_WARN), MSG.warnStudentShouldBeInClass(student.getId(), getClassLabel(difference[0])));
+        			else if (difference[1] != null)
+        				iProgress.message(msglevel("studentEnrolled", Progress.MSGLEVEL_WARN), MSG.warnStudentShouldNotBeInClassShouldBeInOther(student.getId(), getClassLabel(difference[0]), getClassLabel(difference[1])));
+        			else
+        				iProgress.message(msglevel("studentEnrolled", Progress.MSGLEVEL_INFO), MSG.warnStudentShouldNotBeInClass(student.getId(), getClassLabel(difference[0])));
         		}
         	}
     	}
@@ -3550,6 +3547,7 @@ public class TimetableDatabaseLoader extends TimetableLoader {
         if (iLoadStudentInstructorConflicts)
         	loadInstructorStudentConflicts(hibSession);
 
+        // joint enrollments stay sequential: JenrlConstraint.incJenrl updates the assignment context of the constraint and the model criteria
         setPhase(MSG.phaseComputingJenrl(),iStudents.size());
         Hashtable jenrls = new Hashtable();
         for (Iterator i1=iStudents.values().iterator();i1.hasNext();) {
@@ -3686,7 +3684,17 @@ public class TimetableDatabaseLoader extends TimetableLoader {
 		*/
 		
 		setPhase(MSG.phaseCheckingForInconsistencies(), getModel().variables().size());
-		for (Lecture lecture: getModel().variables()) {
+		final List<Lecture> lectures = new ArrayList<Lecture>(getModel().variables());
+		// compute the domains and the singleton placements first, so that the (possibly parallel) conflict checks do not change the model
+		final Map<Lecture, Placement> singletons = new HashMap<Lecture, Placement>();
+		for (Lecture lecture: lectures) {
+			lecture.values(getAssignment());
+			if (lecture.isSingleton())
+				singletons.put(lecture, new Placement(lecture, lecture.timeLocations().get(0), lecture.roomLocations()));
+		}
+		List<List<String[]>> conflicts = parallel(lectures, lecture -> checkInstructorAndRoomConflicts(lecture, lectures, singletons));
+		for (int idx = 0; idx < lectures.size(); idx++) {
+			Lecture lecture = lectures.get(idx);
 			
 			incProgress();
     		for (Iterator i=lecture.students().iterator();i.hasNext();) {
@@ -3695,44 +3703,12 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     				iProgress.message(msglevel("badStudentEnrollment", Progress.MSGLEVEL_INFO), MSG.warnBadStudentEnrollment(s.getId(), getClassLabel(lecture)));
     		}
     		
-    		//check same instructor constraint
-    		if (!lecture.values(getAssignment()).isEmpty() && lecture.timeLocations().size()==1 && !lecture.getInstructorConstraints().isEmpty()) {
-        		other: for (Lecture other: getModel().variables()) {
-        			if (other.values(getAssignment()).isEmpty() || other.timeLocations().size()!=1 || lecture.getClassId().compareTo(other.getClassId())<=0) continue;
-        			Placement p1 = lecture.values(getAssignment()).get(0);
-        			Placement p2 = other.values(getAssignment()).get(0);
-        			if (!other.getInstructorConstraints().isEmpty()) {
-        	           	for (InstructorConstraint ic: lecture.getInstructorConstraints()) {
-        	           		if (!other.getInstructorConstraints().contains(ic)) continue;
-        	           		if (p1.canShareRooms(p2)) {
-        	           			if (lecture.getNrRooms() == 0 || other.getNrRooms() == 0) continue;
-        	           			if (p1.sameRooms(p2)) continue;
-        	           			for (RoomLocation r1: lecture.roomLocations())
-        	           				if (other.roomLocations().contains(r1)) continue other;
-        	           		}
-        	           		if (p1.getTimeLocation().hasIntersection(p2.getTimeLocation())) {
-        	           			iProgress.message(msglevel("reqInstructorOverlap", Progress.MSGLEVEL_WARN), MSG.warnSameInstructorTimeConflict(
-        	           					getClassLabel(lecture), p1.getLongName(iUseAmPm), getClassLabel(other), p2.getLongName(iUseAmPm)));
-        	           		} else if (ic.getDistancePreference(p1,p2)==PreferenceLevel.sIntLevelProhibited && lecture.roomLocations().size()==1 && other.roomLocations().size()==1) {
-        	           			iProgress.message(msglevel("reqInstructorBackToBack", Progress.MSGLEVEL_WARN), MSG.warnSameInstructorBackToBack(
-        	           					Math.round(Placement.getDistanceInMeters(getModel().getDistanceMetric(),p1,p2)), getClassLabel(lecture), p1.getLongName(iUseAmPm), getClassLabel(other), p2.getLongName(iUseAmPm)));
-        	           		}
-        				}
-        			}
-        		}    			
-    		}
+    		for (String[] conflict: conflicts.get(idx))
+    			iProgress.message(msglevel(conflict[0], Progress.MSGLEVEL_WARN), conflict[1]);
     		
 			if (!lecture.isSingleton()) continue;
-    		for (Lecture other: getModel().variables()) {
-    			if (!other.isSingleton() || lecture.getClassId().compareTo(other.getClassId())<=0) continue;
-    			Placement p1 = new Placement(lecture, lecture.timeLocations().get(0), lecture.roomLocations());
-    			Placement p2 = new Placement(other, other.timeLocations().get(0), other.roomLocations());
-    			if (p1.shareRooms(p2) && p1.getTimeLocation().hasIntersection(p2.getTimeLocation()) && !p1.canShareRooms(p2)) {
-    				iProgress.message(msglevel("reqRoomOverlap", Progress.MSGLEVEL_WARN), MSG.warnSameRoomTimeConflict(getClassLabel(lecture), p1.getLongName(iUseAmPm), getClassLabel(other), p2.getLongName(iUseAmPm)));
-    			}
-    		}
     		if (getAssignment().getValue(lecture)==null) {
-    			Placement placement = new Placement(lecture, lecture.timeLocations().get(0), lecture.roomLocations());
+    			Placement placement = singletons.get(lecture);
     			if (!placement.isValid()) {
     				String reason = "";
     	           	for (InstructorConstraint ic: lecture.getInstructorConstraints()) {
@@ -3797,6 +3773,104 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     	}
     }
     
+    /**
+     * Differences between the loaded enrollments of a student and the initial sectioning: a class in which the student should be
+     * enrolled but is not (an array with the class), or a class in which the student should not be enrolled (an array with the class
+     * and the class with the same students that the student should attend instead, or null when there is no such class).
+     * This method does not change the model, so it can be called in parallel.
+     */
+    protected List<Lecture[]> checkLoadedEnrollments(Student student, Set<Lecture> lectures) {
+    	List<Lecture[]> differences = new ArrayList<Lecture[]>();
+		for (Lecture lecture: lectures) {
+			if (!lecture.students().contains(student))
+				differences.add(new Lecture[] {lecture});
+		}
+		for (Lecture lecture: student.getLectures()) {
+			if (!lectures.contains(lecture)) {
+				Lecture instead = null;
+				if (lecture.sameStudentsLectures() != null) {
+    				for (Lecture other: lecture.sameStudentsLectures()) {
+    					if (lectures.contains(other)) instead = other;
+    				}
+				}
+				differences.add(new Lecture[] {lecture, instead});
+			}
+		}
+		return differences;
+    }
+    
+    /**
+     * Same instructor and same room conflicts of the given lecture with the lectures that follow it (in the ordering of class ids).
+     * Returns a list of (message type, message) pairs. This method does not change the model, so it can be called in parallel.
+     */
+    protected List<String[]> checkInstructorAndRoomConflicts(Lecture lecture, List<Lecture> lectures, Map<Lecture, Placement> singletons) {
+    	List<String[]> conflicts = new ArrayList<String[]>();
+		//check same instructor constraint
+		if (!lecture.values(getAssignment()).isEmpty() && lecture.timeLocations().size()==1 && !lecture.getInstructorConstraints().isEmpty()) {
+    		other: for (Lecture other: lectures) {
+    			if (other.values(getAssignment()).isEmpty() || other.timeLocations().size()!=1 || lecture.getClassId().compareTo(other.getClassId())<=0) continue;
+    			Placement p1 = lecture.values(getAssignment()).get(0);
+    			Placement p2 = other.values(getAssignment()).get(0);
+    			if (!other.getInstructorConstraints().isEmpty()) {
+    	           	for (InstructorConstraint ic: lecture.getInstructorConstraints()) {
+    	           		if (!other.getInstructorConstraints().contains(ic)) continue;
+    	           		if (p1.canShareRooms(p2)) {
+    	           			if (lecture.getNrRooms() == 0 || other.getNrRooms() == 0) continue;
+    	           			if (p1.sameRooms(p2)) continue;
+    	           			for (RoomLocation r1: lecture.roomLocations())
+    	           				if (other.roomLocations().contains(r1)) continue other;
+    	           		}
+    	           		if (p1.getTimeLocation().hasIntersection(p2.getTimeLocation())) {
+    	           			conflicts.add(new String[] {"reqInstructorOverlap", MSG.warnSameInstructorTimeConflict(
+    	           					getClassLabel(lecture), p1.getLongName(iUseAmPm), getClassLabel(other), p2.getLongName(iUseAmPm))});
+    	           		} else if (ic.getDistancePreference(p1,p2)==PreferenceLevel.sIntLevelProhibited && lecture.roomLocations().size()==1 && other.roomLocations().size()==1) {
+    	           			conflicts.add(new String[] {"reqInstructorBackToBack", MSG.warnSameInstructorBackToBack(
+    	           					Math.round(Placement.getDistanceInMeters(getModel().getDistanceMetric(),p1,p2)), getClassLabel(lecture), p1.getLongName(iUseAmPm), getClassLabel(other), p2.getLongName(iUseAmPm))});
+    	           		}
+    				}
+    			}
+    		}    			
+		}
+		
+		//check same room constraint
+		if (lecture.isSingleton()) {
+			Placement p1 = singletons.get(lecture);
+			for (Lecture other: lectures) {
+				if (!other.isSingleton() || lecture.getClassId().compareTo(other.getClassId())<=0) continue;
+				Placement p2 = singletons.get(other);
+				if (p1.shareRooms(p2) && p1.getTimeLocation().hasIntersection(p2.getTimeLocation()) && !p1.canShareRooms(p2)) {
+					conflicts.add(new String[] {"reqRoomOverlap", MSG.warnSameRoomTimeConflict(getClassLabel(lecture), p1.getLongName(iUseAmPm), getClassLabel(other), p2.getLongName(iUseAmPm))});
+				}
+			}
+		}
+		return conflicts;
+    }
+    
+    /**
+     * Apply the given task on each of the objects, using a fork-join pool of Load.NrThreads threads (when set to more than one).
+     * The results are returned in the order of the given objects, so that they can be applied to the model in a deterministic way.
+     * The task must not change the model.
+     */
+    protected <T, R> List<R> parallel(List<T> objects, Function<T, R> task) {
+    	if (iNrThreads <= 1 || objects.size() <= 1) {
+    		List<R> ret = new ArrayList<R>(objects.size());
+    		for (T object: objects)
+    			ret.add(task.apply(object));
+    		return ret;
+    	}
+    	ForkJoinPool pool = new ForkJoinPool(iNrThreads);
+    	try {
+    		return pool.submit(() -> objects.parallelStream().map(task).collect(Collectors.toList())).get();
+    	} catch (InterruptedException e) {
+    		throw new RuntimeException(MSG.fatalLoadInterrupted(), e);
+    	} catch (ExecutionException e) {
+    		if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+    		throw new RuntimeException(e.getCause());
+    	} finally {
+    		pool.shutdown();
+    	}
+    }
+    
     public void roomAvailabilityActivate(RoomAvailabilityInterface availability, Date startTime, Date endTime) {
         try {
         	availability.activate(iSessionId, startTime, endTime, RoomAvailabilityInterface.sClassType, ApplicationProperty.RoomAvailabilitySolverWaitForSync.isTrue());
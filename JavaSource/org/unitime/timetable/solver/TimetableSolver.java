@@ -35,7 +35,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
+import java.util.UUID;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
 import org.cpsolver.coursett.TimetableXMLLoader;
@@ -130,6 +132,8 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 	private Vector<AssignmentRecord> iBestAssignmentRecords = new Vector<AssignmentRecord>();
 	private ConflictStatisticsInfo iCbsInfo = null;
 	private CommitedClassAssignmentProxy iCommitedClassAssignmentProxy;
+	private String iAssignmentVersionPrefix = UUID.randomUUID().toString() + ":";
+	private AtomicLong iAssignmentVersion = new AtomicLong(0);
 
 	public TimetableSolver(DataProperties properties, SolverDisposeListener solverDisposeListener) {
 		super(properties, solverDisposeListener);
@@ -195,6 +199,7 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 		TimetableXMLLoader loader = new TimetableXMLLoader((TimetableModel)currentSolution().getModel(), currentSolution().getAssignment());
 		loader.load(currentSolution(), document);
 		iAssignmentRecords.clear(); iBestAssignmentRecords.clear();
+		assignmentChanged();
 		Element assignmentRecords = document.getRootElement().element("assignmentRecords");
 		if (assignmentRecords!=null) {
 			for (Iterator i=assignmentRecords.elementIterator("record");i.hasNext();) {
@@ -216,6 +221,41 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 	@Override
 	protected void beforeStart() {
 		iCbsInfo = null;
+		assignmentChanged();
+	}
+	
+	@Override
+	protected void onFinish() {
+		super.onFinish();
+		assignmentChanged();
+	}
+	
+	@Override
+	protected void onStop() {
+		super.onStop();
+		assignmentChanged();
+	}
+	
+	@Override
+	protected void afterLoad() {
+		super.afterLoad();
+		assignmentChanged();
+	}
+	
+	@Override
+	public void clear() {
+		super.clear();
+		assignmentChanged();
+	}
+	
+	protected void assignmentChanged() {
+		iAssignmentVersion.incrementAndGet();
+	}
+	
+	@Override
+	public String getAssignmentVersion() {
+		if (isWorking() || isPassivated()) return null;
+		return iAssignmentVersionPrefix + iAssignmentVersion.get();
 	}
 
 	@Override
@@ -232,6 +272,7 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 	public void restoreBest() {
 		iAssignmentRecords = new Vector(iBestAssignmentRecords);
 		currentSolution().restoreBest();
+		assignmentChanged();
 	}
 	
 	public void saveBest() {
@@ -254,6 +295,7 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
     		try {
     			((TimetableModel)currentSolution().getModel()).switchStudents(currentSolution().getAssignment(), this);
     		} finally {
+    			assignmentChanged();
     			iWorking = false;
     			Progress.getInstance(currentSolution().getModel()).setStatus(MSG.statusReady());
     		}
@@ -687,6 +729,7 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 			}
 			record.done();
 			iAssignmentRecords.addElement(record);
+			assignmentChanged();
 		} finally {
 			lock.unlock();
 		}
@@ -1501,6 +1544,7 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 			}
 			record.done();
 			iAssignmentRecords.addElement(record);
+			assignmentChanged();
 		} finally {
 			lock.unlock();
 		}
@@ -454,6 +454,19 @@ public class DummySolverServer extends AbstractSolverServer implements MessageLi
 		throw new UnsupportedOperationException();
 	}
 	
+	public void studentSectioningQueueChangedLocal(Long sessionId) {
+		// there are no online sectioning servers on this node
+	}
+	
+	@Override
+	public void studentSectioningQueueChanged(Long sessionId) {
+		try {
+			iDispatcher.callRemoteMethods(null, "studentSectioningQueueChangedLocal", new Object[] { sessionId }, new Class[] { Long.class }, SolverServerImplementation.sNoResponse);
+		} catch (Exception e) {
+			sLog.error("Failed to notify sectioning queue change: " + e.getMessage(), e);
+		}
+	}
+	
 	@Override
 	public void unloadSolver(SolverType type, String id) {
 		switch (type) {
@@ -217,6 +217,24 @@ public class OnlineStudentSchedulingContainer implements SolverContainer<OnlineS
 		}
 	}
 
+	/**
+	 * Wake up the sectioning queue updater of the given academic session (of all the academic sessions when null)
+	 */
+	public void queueChanged(Long academicSessionId) {
+		iGlobalLock.readLock().lock();
+		try {
+			if (academicSessionId == null) {
+				for (OnlineStudentSchedulingUpdater u: iUpdaters.values())
+					u.wakeUp();
+			} else {
+				OnlineStudentSchedulingUpdater u = iUpdaters.get(academicSessionId);
+				if (u != null) u.wakeUp();
+			}
+		} finally {
+			iGlobalLock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public int getUsage() {
 		iGlobalLock.readLock().lock();
@@ -19,9 +19,12 @@
 */
 package org.unitime.timetable.solver.jgroups;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -48,12 +51,23 @@ import org.unitime.timetable.onlinesectioning.updates.ReloadOfferingAction;
 import org.unitime.timetable.onlinesectioning.updates.ReloadStudent;
 
 /**
+ * Processes the student sectioning queue of an academic session (on the master server).<br>
+ * The queue is checked every {@link ApplicationProperty#OnlineSchedulingQueueUpdateInterval} seconds, or right away
+ * (after {@link ApplicationProperty#OnlineSchedulingQueueNotifyDelay} milliseconds) when the updater is notified about
+ * a new item by {@link OnlineStudentSchedulingUpdater#wakeUp()}. Consecutive student, class and offering changes
+ * made by the same user are coalesced into a single update.
+ * 
  * @author Tomas Muller
  */
 public class OnlineStudentSchedulingUpdater extends Thread {
 	private Log iLog;
 	private long iSleepTimeInSeconds = 5;
-	private boolean iRun = true;
+	private long iNotifyDelayInMillis = 500;
+	private volatile boolean iRun = true;
+	private Object iWakeUpLock = new Object();
+	private boolean iWakeUp = false;
+	private long iLastPeriodicCheck = 0;
+	private QueueStatistics iStatistics = new QueueStatistics();
 	
 	private OnlineStudentSchedulingContainer iContainer = null;
 	private AcademicSessionInfo iSession = null; 
@@ -67,6 +81,7 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 		setDaemon(true);
 		setName("Updater[" + getAcademicSession().toCompactString() + "]");
 		iSleepTimeInSeconds = ApplicationProperty.OnlineSchedulingQueueUpdateInterval.intValue();
+		iNotifyDelayInMillis = ApplicationProperty.OnlineSchedulingQueueNotifyDelay.intValue();
 		iLog = LogFactory.getLog(OnlineStudentSchedulingUpdater.class.getName() + ".updater[" + getAcademicSession().toCompactString() + "]"); 
 	}
 	
@@ -77,7 +92,7 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 				ApplicationProperties.setSessionId(getAcademicSession().getUniqueId());
 			while (iRun) {
 				try {
-					sleep(iSleepTimeInSeconds * 1000);
+					waitForUpdates();
 				} catch (InterruptedException e) {}
 				if (!iRun) break;
 				try {
@@ -86,8 +101,11 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 						if (server.isMaster()) {
 							checkForUpdates(server);
 							if (!iRun) break;
-							checkForExpiredReservations(server);
-							persistExpectedSpaces(server);
+							if (System.currentTimeMillis() - iLastPeriodicCheck >= 1000 * iSleepTimeInSeconds) {
+								iLastPeriodicCheck = System.currentTimeMillis();
+								checkForExpiredReservations(server);
+								persistExpectedSpaces(server);
+							}
 						} else if (!ApplicationProperty.OnlineSchedulingServerReplicated.isTrue()) {
 							// not master, but replication is disabled -> unload
 							try {
@@ -109,6 +127,43 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 		}
 	}
 	
+	/**
+	 * Wait until the update interval has passed or until the updater is woken up by {@link OnlineStudentSchedulingUpdater#wakeUp()}
+	 * @return true if the updater has been woken up
+	 */
+	protected boolean waitForUpdates() throws InterruptedException {
+		synchronized (iWakeUpLock) {
+			long timeout = System.currentTimeMillis() + 1000 * iSleepTimeInSeconds;
+			while (iRun && !iWakeUp) {
+				long wait = timeout - System.currentTimeMillis();
+				if (wait <= 0) break;
+				iWakeUpLock.wait(wait);
+			}
+			if (!iWakeUp) return false;
+		}
+		// give the other changes of the same burst a chance to get in, so that they can be coalesced
+		if (iRun && iNotifyDelayInMillis > 0)
+			sleep(iNotifyDelayInMillis);
+		synchronized (iWakeUpLock) {
+			iWakeUp = false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Check the queue right away (e.g., when a new item was added to the queue)
+	 */
+	public void wakeUp() {
+		synchronized (iWakeUpLock) {
+			iWakeUp = true;
+			iWakeUpLock.notifyAll();
+		}
+	}
+	
+	public QueueStatistics getStatistics() {
+		return iStatistics;
+	}
+	
 	public AcademicSessionInfo getAcademicSession() {
 		return iSession;
 	}
@@ -123,16 +178,17 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 			org.hibernate.Session hibSession = StudentSectioningQueueDAO.getInstance().createNewSession();
 			try {
 				iLastTimeStamp = server.getProperty("Updater.LastTimeStamp", iLastTimeStamp);
+				List<StudentSectioningQueue> batch = new ArrayList<StudentSectioningQueue>();
 				for (StudentSectioningQueue q: StudentSectioningQueue.getItems(hibSession, getAcademicSession().getUniqueId(), iLastTimeStamp)) {
-					try {
-						processChange(server, q);
-					} catch (Exception e) {
-						iLog.error("Update failed: " + e.getMessage(), e);
+					if (!batch.isEmpty() && !canCoalesce(batch.get(0), q)) {
+						processChanges(server, batch);
+						batch.clear();
+						if (!iRun) break;
 					}
-					if (!iRun) break;
-					iLastTimeStamp = q.getTimeStamp();
-					server.setProperty("Updater.LastTimeStamp", iLastTimeStamp);
+					batch.add(q);
 				}
+				if (iRun && !batch.isEmpty())
+					processChanges(server, batch);
 			} finally {
 				hibSession.close();
 			}
@@ -183,6 +239,75 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 		}
 	}
 	
+	/**
+	 * Process the given changes (using a single update when there is more than one change), update the last time stamp and the statistics
+	 */
+	protected void processChanges(OnlineSectioningServer server, List<StudentSectioningQueue> batch) {
+		try {
+			if (batch.size() == 1)
+				processChange(server, batch.get(0));
+			else
+				processCoalescedChange(server, batch);
+		} catch (Exception e) {
+			iLog.error("Update failed: " + e.getMessage(), e);
+		}
+		if (!iRun) return;
+		iStatistics.record(batch, System.currentTimeMillis());
+		iLastTimeStamp = batch.get(batch.size() - 1).getTimeStamp();
+		server.setProperty("Updater.LastTimeStamp", iLastTimeStamp);
+		server.setProperty("Updater.Statistics", iStatistics.toString());
+	}
+	
+	/**
+	 * Two changes can be coalesced when they are student, class, or offering changes of the same type, made by the same user
+	 */
+	protected boolean canCoalesce(StudentSectioningQueue q1, StudentSectioningQueue q2) {
+		if (!q1.getType().equals(q2.getType())) return false;
+		switch (StudentSectioningQueue.Type.values()[q1.getType()]) {
+		case STUDENT_ENROLLMENT_CHANGE:
+		case CLASS_ASSIGNMENT_CHANGE:
+		case OFFERING_CHANGE:
+			OnlineSectioningLog.Entity u1 = q1.getUser(), u2 = q2.getUser();
+			return u1.getExternalId().equals(u2.getExternalId()) && u1.getType() == u2.getType();
+		default:
+			return false;
+		}
+	}
+	
+	protected void processCoalescedChange(OnlineSectioningServer server, List<StudentSectioningQueue> batch) {
+		StudentSectioningQueue first = batch.get(0);
+		Set<Long> ids = new LinkedHashSet<Long>();
+		boolean all = false;
+		for (StudentSectioningQueue q: batch) {
+			List<Long> qIds = q.getIds();
+			if (qIds == null || qIds.isEmpty())
+				all = true;
+			else
+				ids.addAll(qIds);
+		}
+		if (iLog.isDebugEnabled())
+			iLog.debug("Coalesced " + batch.size() + " " + StudentSectioningQueue.Type.values()[first.getType()].name().toLowerCase().replace('_', ' ') + "s: " + ids);
+		switch (StudentSectioningQueue.Type.values()[first.getType()]) {
+		case STUDENT_ENROLLMENT_CHANGE:
+			if (all) {
+				iLog.info("All students changed for " + server.getAcademicSession());
+				server.execute(server.createAction(ReloadAllStudents.class), first.getUser());
+			} else {
+				server.execute(server.createAction(ReloadStudent.class).forStudents(ids), first.getUser());
+			}
+			break;
+		case CLASS_ASSIGNMENT_CHANGE:
+			server.execute(server.createAction(ClassAssignmentChanged.class).forClasses(ids), first.getUser());
+			break;
+		case OFFERING_CHANGE:
+			server.execute(server.createAction(ReloadOfferingAction.class).forOfferings(new ArrayList<Long>(ids)), first.getUser());
+			break;
+		default:
+			for (StudentSectioningQueue q: batch)
+				processChange(server, q);
+		}
+	}
+	
 	protected void processChange(OnlineSectioningServer server, StudentSectioningQueue q) {
 		switch (StudentSectioningQueue.Type.values()[q.getType()]) {
 		case SESSION_RELOAD:
@@ -234,6 +359,7 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 
 	public void stopUpdating(boolean interrupt) {
 		iRun = false;
+		wakeUp();
 		if (interrupt) {
 			interrupt();
 			try {
@@ -241,4 +367,36 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 			} catch (InterruptedException e) {}
 		}
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Queue processing statistics: number of processed changes, number of updates they were processed in (changes
+	 * can be coalesced), and the lag between a change being added to the queue and its update being finished.
+	 */
+	public static class QueueStatistics {
+		private long iChanges = 0, iUpdates = 0;
+		private long iTotalLag = 0, iMaxLag = 0, iLastLag = 0;
+		
+		public synchronized void record(List<StudentSectioningQueue> batch, long applied) {
+			iUpdates ++;
+			for (StudentSectioningQueue q: batch) {
+				long lag = Math.max(0, applied - q.getTimeStamp().getTime());
+				iChanges ++;
+				iTotalLag += lag;
+				iMaxLag = Math.max(iMaxLag, lag);
+				iLastLag = lag;
+			}
+		}
+		
+		public synchronized long getChanges() { return iChanges; }
+		public synchronized long getUpdates() { return iUpdates; }
+		public synchronized double getAverageLagSeconds() { return iChanges == 0 ? 0.0 : iTotalLag / 1000.0 / iChanges; }
+		public synchronized double getMaxLagSeconds() { return iMaxLag / 1000.0; }
+		public synchronized double getLastLagSeconds() { return iLastLag / 1000.0; }
+		
+		@Override
+		public synchronized String toString() {
+			return String.format("%d changes in %d updates, lag %.1f s on average, %.1f s max, %.1f s last",
+					iChanges, iUpdates, getAverageLagSeconds(), getMaxLagSeconds(), getLastLagSeconds());
+		}
+	}
+}
@@ -93,6 +93,8 @@ public interface SolverServer {
 	
 	public void refreshInstructorSolution(Collection<Long> solverGroupIds);
 	
+	public void studentSectioningQueueChanged(Long sessionId);
+	
 	public void setApplicationProperty(Long sessionId, String key, String value);
 	
 	public void setLoggingLevel(String name, String level);
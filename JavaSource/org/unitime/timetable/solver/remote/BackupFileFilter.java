@@ -29,6 +29,7 @@ import org.unitime.timetable.model.SolverParameterGroup.SolverType;
  */
 public class BackupFileFilter implements FileFilter {
 	public static String sXmlExtension = ".backup.xml";
+	public static String sGzExtension = ".backup.xml.gz";
 	private SolverType iType;
 	
 	public BackupFileFilter(SolverType type) {
@@ -37,7 +38,7 @@ public class BackupFileFilter implements FileFilter {
 
 	public boolean accept(File file) {
 		if (iType != null && !file.getName().startsWith(iType.getPrefix())) return false;
-		return file.getName().endsWith(sXmlExtension);
+		return file.getName().endsWith(sXmlExtension) || file.getName().endsWith(sGzExtension);
 	}
 
 	public String getUser(File file) {
@@ -45,6 +46,7 @@ public class BackupFileFilter implements FileFilter {
 			String name = file.getName();
 			if (iType != null) name = name.substring(iType.getPrefix().length());
 			if (name.endsWith(sXmlExtension)) name = name.substring(0, name.length() - sXmlExtension.length());
+			if (name.endsWith(sGzExtension)) name = name.substring(0, name.length() - sGzExtension.length());
 			return name;
 		} else {
 			return null;
@@ -44,7 +44,7 @@ public class ClassAssignmentService implements AssignmentService<ClassAssignment
 	@Override
 	public ClassAssignmentProxy getAssignment() {
 		SolverProxy solver = courseTimetablingSolverService.getSolver();
-		if (solver!=null) return new CachedClassAssignmentProxy(solver);
+		if (solver!=null) return new CachedClassAssignmentProxy(solver, solver.getAssignmentVersion());
 		
 		String solutionIdsStr = (String)sessionContext.getAttribute(SessionAttribute.SelectedSolution);
 		HashSet<Long> solutionIds = new HashSet<Long>();
@@ -259,6 +259,9 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     private Date iClassesPastDate = null;
     private int iClassesPastDateIndex = 0;
     private boolean iLoadArrangedHoursPlacements = true;
+    private boolean iBulkFetch = false;
+    private String iPhase = null;
+    private long iPhaseStart = 0;
     
     public StudentSectioningDatabaseLoader(StudentSolver solver, StudentSectioningModel model, org.cpsolver.ifs.assignment.Assignment<Request, Enrollment> assignment) {
         super(model, assignment);
@@ -422,6 +425,7 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         iUseAdvisorWaitLists = model.getProperties().getPropertyBoolean("Load.UseAdvisorWaitLists", iUseAdvisorWaitLists);
         iUseAdvisorNoSubs = model.getProperties().getPropertyBoolean("Load.UseAdvisorNoSubs", iUseAdvisorNoSubs);
         iLoadArrangedHoursPlacements = model.getProperties().getPropertyBoolean("Load.ArrangedHoursPlacements", iLoadArrangedHoursPlacements);
+        iBulkFetch = model.getProperties().getPropertyBoolean("Load.BulkFetch", iBulkFetch);
     }
     
     public void load() {
@@ -2533,6 +2537,12 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                 "io.session.uniqueId = :sessionId and io.notOffered = false and co.subjectArea.department.allowStudentScheduling = true").
                 setLong("sessionId",session.getUniqueId().longValue()).
                 setFetchSize(1000).list();
+        if (iBulkFetch) {
+        	List<String> queries = new ArrayList<String>();
+        	queries.add("select distinct c from Class_ c left join fetch c.classInstructors ci left join fetch ci.instructor i " +
+        			"where c.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId = :sessionId");
+        	bulkFetch(hibSession, "Fetching class instructors...", queries);
+        }
         setPhase("Loading course offerings...", offerings.size());
         for (InstructionalOffering io: offerings) {
         	incProgress();
@@ -2584,6 +2594,8 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                     "where s.session.uniqueId=:sessionId").
                     setLong("sessionId",session.getUniqueId().longValue()).
                     setFetchSize(1000).list();
+            if (iBulkFetch)
+            	bulkFetch(hibSession, "Fetching student requests...", getStudentBulkFetchQueries());
             if (iValidateOverrides && iValidationProvider != null) {
             	validateOverrides(hibSession, students);
             } else if (iCheckOverrideStatus && iValidationProvider != null) {
@@ -3009,9 +3021,57 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     
     protected void setPhase(String phase, long progressMax) {
     	checkTermination();
+    	long now = System.currentTimeMillis();
+    	if (iPhase != null) {
+    		String message = iPhase + " took " + new DecimalFormat("0.00").format((now - iPhaseStart) / 1000.0) + " s";
+    		if (iBulkFetch)
+    			iProgress.info(message);
+    		else
+    			iProgress.debug(message);
+    	}
+    	iPhase = phase; iPhaseStart = now;
     	iProgress.setPhase(phase, progressMax);
     }
     
+    /**
+     * Queries used by the bulk-fetch mode (Load.BulkFetch=true) to initialize the student collections that are
+     * used by {@link #loadStudent(org.hibernate.Session, org.unitime.timetable.model.Student, Hashtable, Hashtable)}.
+     * Each query fetches at most one collection level deep (except of course demands with their course requests) to
+     * avoid a cartesian product, the fetched collections are kept in the hibernate session.
+     */
+    protected List<String> getStudentBulkFetchQueries() {
+    	List<String> queries = new ArrayList<String>();
+    	queries.add("select distinct s from Student s left join fetch s.courseDemands cd left join fetch cd.courseRequests cr left join fetch cd.freeTime ft where s.session.uniqueId = :sessionId");
+    	queries.add("select distinct s from Student s left join fetch s.classEnrollments e where s.session.uniqueId = :sessionId");
+    	queries.add("select distinct cr from CourseRequest cr left join fetch cr.classWaitLists cw where cr.courseDemand.student.session.uniqueId = :sessionId");
+    	queries.add("select distinct cr from CourseRequest cr left join fetch cr.preferences p where cr.courseDemand.student.session.uniqueId = :sessionId");
+    	queries.add("select distinct s from Student s left join fetch s.groups g where s.session.uniqueId = :sessionId");
+    	if (iShortDistanceAccomodationReference != null)
+    		queries.add("select distinct s from Student s left join fetch s.accomodations a where s.session.uniqueId = :sessionId");
+    	if (iLoadStudentInfo) {
+    		queries.add("select distinct s from Student s left join fetch s.areaClasfMajors a where s.session.uniqueId = :sessionId");
+    		queries.add("select distinct s from Student s left join fetch s.areaClasfMinors a where s.session.uniqueId = :sessionId");
+    		queries.add("select distinct s from Student s left join fetch s.advisors a where s.session.uniqueId = :sessionId");
+    	}
+    	if (iUseAdvisorWaitLists || iUseAdvisorNoSubs || iCheckCriticalCourses)
+    		queries.add("select distinct s from Student s left join fetch s.advisorCourseRequests acr where s.session.uniqueId = :sessionId");
+    	return queries;
+    }
+    
+    /**
+     * Execute the given fetch queries (parameterized by the academic session id), so that the fetched entities and collections
+     * are initialized in the hibernate session before they are used, instead of being lazy-loaded one by one.
+     */
+    protected void bulkFetch(org.hibernate.Session hibSession, String phase, List<String> queries) {
+    	setPhase(phase, queries.size());
+    	for (String query: queries) {
+    		long t0 = System.currentTimeMillis();
+    		int size = hibSession.createQuery(query).setLong("sessionId", iSessionId).setFetchSize(1000).list().size();
+    		iProgress.debug("Fetched " + size + " records in " + (System.currentTimeMillis() - t0) + " ms: " + query);
+    		incProgress();
+    	}
+    }
+    
     protected void incProgress() {
     	checkTermination();
     	iProgress.incProgress();
@@ -23,12 +23,14 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
-import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.interfaces.RoomAvailabilityInterface;
@@ -49,120 +51,156 @@ import org.unitime.timetable.model.dao.LocationDAO;
  * @author Tomas Muller
  */
 public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface {
-    private Vector<CacheElement> iCache = new Vector<CacheElement>();
+    private ConcurrentMap<String, CacheElement> iCache = new ConcurrentHashMap<String, CacheElement>();
     private boolean iInstructorAvailabilityEnabled = false;
     
     public String getTimeStamp(Date startTime, Date endTime, String excludeType) {
         TimeFrame time = new TimeFrame(startTime, endTime);
-        CacheElement cache = get(time, excludeType);
+        CacheElement cache = get(null, time, excludeType);
         return (cache==null?null:cache.getTimestamp());
     }
     
     public CacheElement get(TimeFrame time, String excludeType) {
-        synchronized (iCache) {
-            for (CacheElement cache : iCache) if (cache.cover(time) && cache.exclude(excludeType)) return cache;
-        }
-        return null;
+    	return get(null, time, excludeType);
+    }
+    
+    /**
+     * Loaded cache element covering the given time frame, elements of the given session are preferred.
+     * Lookups do not lock, cache elements are only published (see {@link CacheElement#isLoaded()}) once their data are loaded.
+     */
+    public CacheElement get(Long sessionId, TimeFrame time, String excludeType) {
+    	CacheElement ret = null;
+    	for (CacheElement cache : iCache.values()) {
+    		if (!cache.isLoaded() || !cache.cover(time) || !cache.exclude(excludeType)) continue;
+    		if (sessionId == null || sessionId.equals(cache.getSessionId())) return cache;
+    		if (ret == null) ret = cache;
+    	}
+        return ret;
     }
     
+    protected static Class<? extends Event> getExcludeEventType(String excludeType) {
+        if (excludeType == null) return null;
+        if (sFinalExamType.equals(excludeType))
+            return FinalExamEvent.class;
+        else if (sMidtermExamType.equals(excludeType))
+            return MidtermExamEvent.class;
+        else if (sClassType.equals(excludeType))
+            return ClassEvent.class;
+        else
+        	return ExamEvent.class;
+    }
+    
+    protected static ExamType getExcludeExamType(String excludeType) {
+    	if (excludeType == null || sFinalExamType.equals(excludeType) || sMidtermExamType.equals(excludeType) || sClassType.equals(excludeType)) return null;
+    	return ExamType.findByReference(excludeType);
+    }
     
     public Collection<TimeBlock> getRoomAvailability(Long locationId, Date startTime, Date endTime, String excludeType) {
     	Location location = LocationDAO.getInstance().get(locationId);
         if (location == null || location.getPermanentId() == null) return null;
-        EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(location.getSession().getUniqueId()) : null);
         TimeFrame time = new TimeFrame(startTime, endTime);
-        synchronized(iCache) {
-            CacheElement cache = get(time, excludeType);
-            if (cache!=null) return cache.get(location.getPermanentId(), excludeType);
-            TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
-            Class<? extends Event> exclude = null;
-            ExamType examType = null;
-            if (excludeType!=null) {
-                if (sFinalExamType.equals(excludeType))
-                    exclude = FinalExamEvent.class;
-                else if (sMidtermExamType.equals(excludeType))
-                    exclude = MidtermExamEvent.class;
-                else if (sClassType.equals(excludeType))
-                    exclude = ClassEvent.class;
-                else {
-                	exclude = ExamEvent.class;
-                	examType = ExamType.findByReference(excludeType);
+        CacheElement cache = get(location.getSession().getUniqueId(), time, excludeType);
+        if (cache!=null) return cache.get(location.getPermanentId(), excludeType);
+        EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(location.getSession().getUniqueId()) : null);
+        return loadRoomAvailability(location.getPermanentId(), location.getSession().getUniqueId(), time, excludeType, class2eventDateMap);
+    }
+    
+    /**
+     * Load availability of a single location (given by its permanent id) from the database
+     */
+    protected static TreeSet<TimeBlock> loadRoomAvailability(Long locationPermanentId, Long sessionId, TimeFrame time, String excludeType, EventDateMapping.Class2EventDateMap class2eventDateMap) {
+        TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
+        Class<? extends Event> exclude = getExcludeEventType(excludeType);
+        ExamType examType = getExcludeExamType(excludeType);
+        for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+                "select m from Meeting m where m.locationPermanentId=:locPermId and "+
+                "m.approvalStatus = 1 and "+
+                "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
+                (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType = " + examType.getUniqueId() + ")" :
+                exclude != null ? " and m.event.class!=" + exclude.getSimpleName() : ""))
+                .setLong("locPermId", locationPermanentId)
+                .setDate("startDate", time.getStartDate())
+                .setDate("endDate", time.getEndDate())
+                .setInteger("startSlot", time.getStartSlot())
+                .setInteger("endSlot", time.getEndSlot())
+                .setCacheable(true).list()) {
+            MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
+            if (block.getStartTime() != null)
+            	ret.add(block);
+        }
+        if (sessionId != null && ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && exclude != null) {
+        	if (ClassEvent.class.isAssignableFrom(exclude)) {
+        		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+                        "select m from ClassEvent e inner join e.meetings m where m.locationPermanentId=:locPermId and "+
+                        "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot")
+                        .setLong("locPermId", locationPermanentId)
+                        .setLong("sessionId", sessionId)
+                        .setDate("startDate", time.getStartDate())
+                        .setDate("endDate", time.getEndDate())
+                        .setInteger("startSlot", time.getStartSlot())
+                        .setInteger("endSlot", time.getEndSlot())
+                        .setCacheable(true).list()) {
+                    MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
+                    if (block.getStartTime() != null)
+                    	ret.add(block);
                 }
-            }
-            for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
-                    "select m from Meeting m where m.locationPermanentId=:locPermId and "+
-                    "m.approvalStatus = 1 and "+
-                    "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                    "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
-                    (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType = " + examType.getUniqueId() + ")" :
-                    exclude != null ? " and m.event.class!=" + exclude.getSimpleName() : ""))
-                    .setLong("locPermId", location.getPermanentId())
-                    .setDate("startDate", time.getStartDate())
-                    .setDate("endDate", time.getEndDate())
-                    .setInteger("startSlot", time.getStartSlot())
-                    .setInteger("endSlot", time.getEndSlot())
-                    .setCacheable(true).list()) {
-                MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-                if (block.getStartTime() != null)
-                	ret.add(block);
-            }
-            if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && excludeType != null) {
-            	if (ClassEvent.class.isAssignableFrom(exclude)) {
-            		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
-                            "select m from ClassEvent e inner join e.meetings m where m.locationPermanentId=:locPermId and "+
-                            "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
-                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot")
-                            .setLong("locPermId", location.getPermanentId())
-                            .setLong("sessionId", location.getSession().getUniqueId())
-                            .setDate("startDate", time.getStartDate())
-                            .setDate("endDate", time.getEndDate())
-                            .setInteger("startSlot", time.getStartSlot())
-                            .setInteger("endSlot", time.getEndSlot())
-                            .setCacheable(true).list()) {
-                        MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-                        if (block.getStartTime() != null)
-                        	ret.add(block);
-                    }
-            	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-            		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
-                            "select m from " + exclude.getSimpleName() + " e inner join e.meetings m where m.locationPermanentId=:locPermId and "+
-                            "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
-                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
-                            (examType != null ? " and e.exam.examType = " + examType.getUniqueId() : ""))
-                            .setLong("locPermId", location.getPermanentId())
-                            .setLong("sessionId", location.getSession().getUniqueId())
-                            .setDate("startDate", time.getStartDate())
-                            .setDate("endDate", time.getEndDate())
-                            .setInteger("startSlot", time.getStartSlot())
-                            .setInteger("endSlot", time.getEndSlot())
-                            .setCacheable(true).list()) {
-                        MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-                        if (block.getStartTime() != null)
-                        	ret.add(block);
-                    }
-            	}
-            }
-            return ret;
+        	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
+        		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+                        "select m from " + exclude.getSimpleName() + " e inner join e.meetings m where m.locationPermanentId=:locPermId and "+
+                        "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
+                        (examType != null ? " and e.exam.examType = " + examType.getUniqueId() : ""))
+                        .setLong("locPermId", locationPermanentId)
+                        .setLong("sessionId", sessionId)
+                        .setDate("startDate", time.getStartDate())
+                        .setDate("endDate", time.getEndDate())
+                        .setInteger("startSlot", time.getStartSlot())
+                        .setInteger("endSlot", time.getEndSlot())
+                        .setCacheable(true).list()) {
+                    MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
+                    if (block.getStartTime() != null)
+                    	ret.add(block);
+                }
+        	}
         }
+        return ret;
     }
+    
     public void activate(Long sessionId, Date startTime, Date endTime, String excludeType, boolean waitForSync) {
         iInstructorAvailabilityEnabled = ApplicationProperty.RoomAvailabilityIncludeInstructors.isTrue();
         TimeFrame time = new TimeFrame(startTime, endTime);
         EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(sessionId) : null);
-        synchronized(iCache) {
-            CacheElement cache = get(time, excludeType);
-            if (cache==null) {
-                cache = new CacheElement(time, excludeType);
-                iCache.insertElementAt(cache, 0);
-            }
-            cache.update(class2eventDateMap, sessionId, iInstructorAvailabilityEnabled);
+        CacheElement cache = get(sessionId, time, excludeType);
+        if (cache == null || (sessionId != null && !sessionId.equals(cache.getSessionId())))
+        	cache = iCache.computeIfAbsent(sessionId + ":" + excludeType + ":" + time.toString(), k -> new CacheElement(time, excludeType));
+        // the data are loaded outside of any global lock; when the element is being updated by some other thread,
+        // either wait for the update to finish (and update the element again) or keep using the current data
+        if (waitForSync || !cache.isLoaded())
+        	cache.iUpdateLock.lock();
+        else if (!cache.iUpdateLock.tryLock())
+        	return;
+        try {
+        	cache.update(class2eventDateMap, sessionId, iInstructorAvailabilityEnabled);
+        } finally {
+        	cache.iUpdateLock.unlock();
         }
     }
     
+    @Override
+    public void invalidate(Collection<Long> locationPermanentIds) {
+    	if (locationPermanentIds == null || locationPermanentIds.isEmpty()) return;
+    	for (CacheElement cache: iCache.values())
+    		cache.invalidate(locationPermanentIds);
+    }
+    
     public void startService() {}
-    public void stopService() {}
+    public void stopService() {
+    	iCache.clear();
+    }
     
     public static class TimeFrame {
         private Date iStart, iEnd;
@@ -203,33 +241,30 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
 
     public static class CacheElement{
         private TimeFrame iTime;
-        private Map<Long, TreeSet<TimeBlock>> iAvailability = new HashMap<Long, TreeSet<TimeBlock>>();
-        private Map<String, TreeSet<TimeBlock>> iInstructorAvailability = new HashMap<String, TreeSet<TimeBlock>>();
-        private String iTimestamp = null;
+        private Long iSessionId = null;
+        private volatile Map<Long, TreeSet<TimeBlock>> iAvailability = new ConcurrentHashMap<Long, TreeSet<TimeBlock>>();
+        private volatile Map<String, TreeSet<TimeBlock>> iInstructorAvailability = new ConcurrentHashMap<String, TreeSet<TimeBlock>>();
+        private volatile EventDateMapping.Class2EventDateMap iClass2EventDateMap = null;
+        private Set<Long> iInvalidated = ConcurrentHashMap.newKeySet();
+        private volatile String iTimestamp = null;
         private String iExcludeType = null;
+        private ReentrantLock iUpdateLock = new ReentrantLock();
         public CacheElement(TimeFrame time, String excludeType) {
             iTime = time;
             iExcludeType = excludeType;
         }
 
+        /**
+         * Reload all the meetings of the time frame. The data are loaded into new maps that replace the current ones once
+         * loaded, so that lookups are not blocked while the meetings are being loaded.
+         */
         public void update(EventDateMapping.Class2EventDateMap class2eventDateMap, Long sessionId, boolean includeInstructors) {
-        	iAvailability.clear();
-        	iInstructorAvailability.clear();
-            Class<? extends Event> exclude = null;
-            ExamType examType = null;
-            if (iExcludeType!=null) {
-                if (sFinalExamType.equals(iExcludeType))
-                    exclude = FinalExamEvent.class;
-                else if (sMidtermExamType.equals(iExcludeType))
-                    exclude = MidtermExamEvent.class;
-                else if (sClassType.equals(iExcludeType))
-                    exclude = ClassEvent.class;
-                else {
-                	exclude = ExamEvent.class;
-                	examType = ExamType.findByReference(iExcludeType);
-                }
-            }
-            addAll(LocationDAO.getInstance().getSession().createQuery(
+        	Map<Long, TreeSet<TimeBlock>> availability = new ConcurrentHashMap<Long, TreeSet<TimeBlock>>();
+        	Map<String, TreeSet<TimeBlock>> instructorAvailability = new ConcurrentHashMap<String, TreeSet<TimeBlock>>();
+        	iInvalidated.clear();
+            Class<? extends Event> exclude = getExcludeEventType(iExcludeType);
+            ExamType examType = getExcludeExamType(iExcludeType);
+            addAll(availability, LocationDAO.getInstance().getSession().createQuery(
                     "select m from Meeting m where m.locationPermanentId!=null and "+
                     "m.approvalStatus = 1 and "+
                     "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
@@ -244,7 +279,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                     .list(), class2eventDateMap);
             if (sessionId != null && ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && exclude != null) {
             	if (ClassEvent.class.isAssignableFrom(exclude)) {
-            		addAll(LocationDAO.getInstance().getSession().createQuery(
+            		addAll(availability, LocationDAO.getInstance().getSession().createQuery(
                             "select m from ClassEvent e inner join e.meetings m where m.locationPermanentId in (select l.permanentId from Location l where l.session = :sessionId) and "+
                             "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
                             "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
@@ -256,7 +291,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                             .setInteger("endSlot", iTime.getEndSlot())
                             .setCacheable(true).list(), class2eventDateMap);
             	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-            		addAll(LocationDAO.getInstance().getSession().createQuery(
+            		addAll(availability, LocationDAO.getInstance().getSession().createQuery(
                             "select m from " + exclude.getSimpleName() + " e inner join e.meetings m where m.locationPermanentId in (select l.permanentId from Location l where l.session = :sessionId) and "+
                             "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
                             "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
@@ -271,7 +306,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
             	}
             }
             if (sessionId != null && includeInstructors) {
-            	addAllInstructors(LocationDAO.getInstance().getSession().createQuery(
+            	addAllInstructors(instructorAvailability, LocationDAO.getInstance().getSession().createQuery(
             			"select distinct m, i.externalUniqueId from Meeting m left outer join m.event.additionalContacts c, DepartmentalInstructor i where " +
                          "i.department.session.uniqueId = :sessionId and i.externalUniqueId is not null and "+
                          "(m.event.mainContact.externalUniqueId = i.externalUniqueId or c.externalUniqueId = i.externalUniqueId) and "+
@@ -288,7 +323,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                          .setCacheable(true).list(), class2eventDateMap);
             	if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && exclude != null) {
             		if (ClassEvent.class.isAssignableFrom(exclude)) {
-            			addAllInstructors(LocationDAO.getInstance().getSession().createQuery(
+            			addAllInstructors(instructorAvailability, LocationDAO.getInstance().getSession().createQuery(
                                 "select m, ci.instructor.externalUniqueId from ClassEvent e inner join e.meetings m inner join e.clazz.classInstructors ci where "+
                                 "ci.lead = true and m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
                                 "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
@@ -300,7 +335,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                                 .setInteger("endSlot", iTime.getEndSlot())
                                 .setCacheable(true).list(), class2eventDateMap);
                 	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-                		addAllInstructors(LocationDAO.getInstance().getSession().createQuery(
+                		addAllInstructors(instructorAvailability, LocationDAO.getInstance().getSession().createQuery(
                                 "select m, di.externalUniqueId from " + exclude.getSimpleName() + " e inner join e.meetings m inner join e.exam.instructors di where  "+
                                 "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
                                 "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
@@ -315,43 +350,62 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                 	}
                 }
             }
+            iAvailability = availability;
+            iInstructorAvailability = instructorAvailability;
+            iClass2EventDateMap = class2eventDateMap;
+            iSessionId = sessionId;
             iTimestamp = new Date().toString();
         }
         
-        private void add(Meeting m, EventDateMapping.Class2EventDateMap class2eventDateMap) {
-        	TreeSet<TimeBlock> blocks = iAvailability.get(m.getLocationPermanentId());
+        /**
+         * Mark the given locations as changed, their meetings will be reloaded on the next lookup
+         */
+        public void invalidate(Collection<Long> locationPermanentIds) {
+        	iInvalidated.addAll(locationPermanentIds);
+        }
+        
+        private static void add(Map<Long, TreeSet<TimeBlock>> availability, Meeting m, EventDateMapping.Class2EventDateMap class2eventDateMap) {
+        	TreeSet<TimeBlock> blocks = availability.get(m.getLocationPermanentId());
             if (blocks==null) {
-                blocks = new TreeSet(); iAvailability.put(m.getLocationPermanentId(), blocks);
+                blocks = new TreeSet(); availability.put(m.getLocationPermanentId(), blocks);
             }
             MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
             if (block.getStartTime() != null)
             	blocks.add(block);
         }
-        private void addAll(List<Meeting> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
+        private static void addAll(Map<Long, TreeSet<TimeBlock>> availability, List<Meeting> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
         	if (meetings != null)
         		for (Meeting m: meetings)
-        			add(m, class2eventDateMap);
+        			add(availability, m, class2eventDateMap);
         }
-        private void add(Meeting m, String instructorExternalId, EventDateMapping.Class2EventDateMap class2eventDateMap) {
-        	TreeSet<TimeBlock> blocks = iInstructorAvailability.get(instructorExternalId);
+        private static void add(Map<String, TreeSet<TimeBlock>> instructorAvailability, Meeting m, String instructorExternalId, EventDateMapping.Class2EventDateMap class2eventDateMap) {
+        	TreeSet<TimeBlock> blocks = instructorAvailability.get(instructorExternalId);
             if (blocks==null) {
-                blocks = new TreeSet(); iInstructorAvailability.put(instructorExternalId, blocks);
+                blocks = new TreeSet(); instructorAvailability.put(instructorExternalId, blocks);
             }
             MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
             if (block.getStartTime() != null)
             	blocks.add(block);
         }
-        private void addAllInstructors(List<Object[]> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
+        private static void addAllInstructors(Map<String, TreeSet<TimeBlock>> instructorAvailability, List<Object[]> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
         	if (meetings != null)
         		for (Object[] o: meetings) {
         			Meeting m = (Meeting)o[0];
                 	String id = (String)o[1];
-        			add(m, id, class2eventDateMap);
+        			add(instructorAvailability, m, id, class2eventDateMap);
         		}
         }
         
         public TreeSet<TimeBlock> get(Long roomPermId, String excludeType) {
-            TreeSet<TimeBlock> roomAvailability = iAvailability.get(roomPermId);
+        	Map<Long, TreeSet<TimeBlock>> availability = iAvailability;
+        	if (iInvalidated.remove(roomPermId)) {
+        		TreeSet<TimeBlock> blocks = loadRoomAvailability(roomPermId, iSessionId, iTime, iExcludeType, iClass2EventDateMap);
+        		if (blocks.isEmpty())
+        			availability.remove(roomPermId);
+        		else
+        			availability.put(roomPermId, blocks);
+        	}
+            TreeSet<TimeBlock> roomAvailability = availability.get(roomPermId);
             if (roomAvailability==null || excludeType==null || excludeType.equals(iExcludeType)) return roomAvailability;
             TreeSet<TimeBlock> ret = new TreeSet();
             for (TimeBlock block : roomAvailability) {
@@ -372,6 +426,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
             return ret;
         }
         public TimeFrame getTimeFrame() { return iTime; }
+        public Long getSessionId() { return iSessionId; }
         public String getExcludeType() { return iExcludeType; }
         public boolean exclude(String type) {
         	return (iExcludeType==null || iExcludeType.equals(type));
@@ -382,6 +437,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                     iTime.getStartSlot()<=time.getStartSlot() && 
                     time.getEndSlot()<=iTime.getEndSlot());
         }
+        public boolean isLoaded() { return iTimestamp != null; }
         public String getTimestamp() { return iTimestamp; }
         public String toString() {
             return iTime.toString();
@@ -491,94 +547,80 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
         }
         EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(instructor.getDepartment().getSession().getUniqueId()) : null);
         TimeFrame time = new TimeFrame(startTime, endTime);
-        synchronized(iCache) {
-            CacheElement cache = get(time, excludeType);
-            if (cache!=null) {
-            	Collection<TimeBlock> cached = cache.get(instructor.getExternalUniqueId(), excludeType);
-            	if (instructor.hasUnavailabilities()) {
-            		Collection<TimeBlock> ret = instructor.listUnavailableDays();
-            		if (cached != null) ret.addAll(cached);
-            		return ret;
-            	} else {
-            		return cached;
-            	}
-            }
-            TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
-            Class<? extends Event> exclude = null;
-            ExamType examType = null;
-            if (excludeType!=null) {
-                if (sFinalExamType.equals(excludeType))
-                    exclude = FinalExamEvent.class;
-                else if (sMidtermExamType.equals(excludeType))
-                    exclude = MidtermExamEvent.class;
-                else if (sClassType.equals(excludeType))
-                    exclude = ClassEvent.class;
-                else {
-                	exclude = ExamEvent.class;
-                	examType = ExamType.findByReference(excludeType);
+        CacheElement cache = get(instructor.getDepartment().getSession().getUniqueId(), time, excludeType);
+        if (cache!=null) {
+        	Collection<TimeBlock> cached = cache.get(instructor.getExternalUniqueId(), excludeType);
+        	if (instructor.hasUnavailabilities()) {
+        		Collection<TimeBlock> ret = instructor.listUnavailableDays();
+        		if (cached != null) ret.addAll(cached);
+        		return ret;
+        	} else {
+        		return cached;
+        	}
+        }
+        TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
+        Class<? extends Event> exclude = getExcludeEventType(excludeType);
+        ExamType examType = getExcludeExamType(excludeType);
+        for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+        		"select m from Meeting m left outer join m.event.additionalContacts c where " +
+        		"(m.event.mainContact.externalUniqueId = :user or c.externalUniqueId = :user) and "+
+        		"m.approvalStatus = 1 and "+
+                "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
+                (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType = " + examType.getUniqueId() + ")" :
+                	exclude != null ? " and m.event.class!=" + exclude.getSimpleName() : ""))
+                .setString("user", instructor.getExternalUniqueId())
+                .setDate("startDate", time.getStartDate())
+                .setDate("endDate", time.getEndDate())
+                .setInteger("startSlot", time.getStartSlot())
+                .setInteger("endSlot", time.getEndSlot())
+                .setCacheable(true).list()) {
+            MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
+            if (block.getStartTime() != null)
+            	ret.add(block);
+        }
+        if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && excludeType != null) {
+        	if (ClassEvent.class.isAssignableFrom(exclude)) {
+        		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+                        "select m from ClassEvent e inner join e.meetings m inner join e.clazz.classInstructors ci where "+
+                        "ci.instructor.externalUniqueId = :user and ci.lead = true and "+
+                        "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot")
+        				.setString("user", instructor.getExternalUniqueId())
+                        .setLong("sessionId", instructor.getDepartment().getSession().getUniqueId())
+                        .setDate("startDate", time.getStartDate())
+                        .setDate("endDate", time.getEndDate())
+                        .setInteger("startSlot", time.getStartSlot())
+                        .setInteger("endSlot", time.getEndSlot())
+                        .setCacheable(true).list()) {
+                    MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
+                    if (block.getStartTime() != null)
+                    	ret.add(block);
                 }
-            }
-            for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
-            		"select m from Meeting m left outer join m.event.additionalContacts c where " +
-            		"(m.event.mainContact.externalUniqueId = :user or c.externalUniqueId = :user) and "+
-            		"m.approvalStatus = 1 and "+
-                    "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                    "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
-                    (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType = " + examType.getUniqueId() + ")" :
-                    	exclude != null ? " and m.event.class!=" + exclude.getSimpleName() : ""))
-                    .setString("user", instructor.getExternalUniqueId())
-                    .setDate("startDate", time.getStartDate())
-                    .setDate("endDate", time.getEndDate())
-                    .setInteger("startSlot", time.getStartSlot())
-                    .setInteger("endSlot", time.getEndSlot())
-                    .setCacheable(true).list()) {
-                MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
-                if (block.getStartTime() != null)
-                	ret.add(block);
-            }
-            if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && excludeType != null) {
-            	if (ClassEvent.class.isAssignableFrom(exclude)) {
-            		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
-                            "select m from ClassEvent e inner join e.meetings m inner join e.clazz.classInstructors ci where "+
-                            "ci.instructor.externalUniqueId = :user and ci.lead = true and "+
-                            "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
-                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot")
-            				.setString("user", instructor.getExternalUniqueId())
-                            .setLong("sessionId", instructor.getDepartment().getSession().getUniqueId())
-                            .setDate("startDate", time.getStartDate())
-                            .setDate("endDate", time.getEndDate())
-                            .setInteger("startSlot", time.getStartSlot())
-                            .setInteger("endSlot", time.getEndSlot())
-                            .setCacheable(true).list()) {
-                        MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
-                        if (block.getStartTime() != null)
-                        	ret.add(block);
-                    }
-            	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-            		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
-                            "select m from " + exclude.getSimpleName() + " e inner join e.meetings m inner join e.exam.instructors di where  "+
-                            "di.externalUniqueId = :user and "+
-                            "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
-                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" + 
-                            (examType != null ? " and e.exam.examType = " + examType.getUniqueId() : ""))
-            				.setString("user", instructor.getExternalUniqueId())
-                            .setLong("sessionId", instructor.getDepartment().getSession().getUniqueId())
-                            .setDate("startDate", time.getStartDate())
-                            .setDate("endDate", time.getEndDate())
-                            .setInteger("startSlot", time.getStartSlot())
-                            .setInteger("endSlot", time.getEndSlot())
-                            .setCacheable(true).list()) {
-                        MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
-                        if (block.getStartTime() != null)
-                        	ret.add(block);
-                    }
-            	}
-            }
-            if (instructor.hasUnavailabilities())
-            	ret.addAll(instructor.listUnavailableDays());
-            return ret;
+        	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
+        		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+                        "select m from " + exclude.getSimpleName() + " e inner join e.meetings m inner join e.exam.instructors di where  "+
+                        "di.externalUniqueId = :user and "+
+                        "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" + 
+                        (examType != null ? " and e.exam.examType = " + examType.getUniqueId() : ""))
+        				.setString("user", instructor.getExternalUniqueId())
+                        .setLong("sessionId", instructor.getDepartment().getSession().getUniqueId())
+                        .setDate("startDate", time.getStartDate())
+                        .setDate("endDate", time.getEndDate())
+                        .setInteger("startSlot", time.getStartSlot())
+                        .setInteger("endSlot", time.getEndSlot())
+                        .setCacheable(true).list()) {
+                    MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
+                    if (block.getStartTime() != null)
+                    	ret.add(block);
+                }
+        	}
         }
+        if (instructor.hasUnavailabilities())
+        	ret.addAll(instructor.listUnavailableDays());
+        return ret;
 	}
 }
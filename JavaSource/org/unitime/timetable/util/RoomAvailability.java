@@ -19,6 +19,7 @@
 */
 package org.unitime.timetable.util;
 
+import java.util.Collection;
 import java.util.Date;
 
 import javax.servlet.http.HttpServletRequest;
@@ -56,6 +57,20 @@ public class RoomAvailability {
         }
     }
     
+    /**
+     * Notify the room availability service (if configured) that meetings of the given locations (location permanent ids) have changed
+     */
+    public static void invalidate(Collection<Long> locationPermanentIds) {
+    	RoomAvailabilityInterface ra = getInstance();
+    	if (ra != null && locationPermanentIds != null && !locationPermanentIds.isEmpty()) {
+    		try {
+    			ra.invalidate(locationPermanentIds);
+    		} catch (Exception e) {
+    			Debug.error("Failed to invalidate room availability: " + e.getMessage(), e);
+    		}
+    	}
+    }
+    
     public static void setAvailabilityWarning(HttpServletRequest request, Session acadSession, Long examType, boolean checkSolver, boolean checkAvailability) {
         if (acadSession==null || examType==null || getInstance()==null) return;
         if (checkSolver) {
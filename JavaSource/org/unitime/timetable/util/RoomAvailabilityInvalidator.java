@@ -0,0 +1,107 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.util;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.unitime.timetable.model.Meeting;
+
+/**
+ * Invalidates the cached room availability (see {@link RoomAvailability#invalidate(java.util.Collection)}) of the locations
+ * of the meetings that have been created, changed, or deleted. The listener is registered with the session factory once, when
+ * it is created, so it covers all the code paths that persist meetings (event edits, approvals, cancellations, deletions, imports).
+ * The locations are only invalidated after the transaction has been committed. Bulk HQL updates and deletes are not covered.
+ *
+ * @author Tomas Muller
+ */
+public class RoomAvailabilityInvalidator implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+	private static final long serialVersionUID = 1L;
+	
+	private RoomAvailabilityInvalidator() {}
+	
+	/**
+	 * Register the listener with the given session factory
+	 */
+	public static void register(SessionFactory factory) {
+		EventListenerRegistry registry = ((SessionFactoryImplementor)factory).getServiceRegistry().getService(EventListenerRegistry.class);
+		RoomAvailabilityInvalidator listener = new RoomAvailabilityInvalidator();
+		registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+		registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+		registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+	}
+	
+	protected void invalidate(Long... locationPermanentIds) {
+		Set<Long> ids = new HashSet<Long>();
+		for (Long id: locationPermanentIds)
+			if (id != null) ids.add(id);
+		RoomAvailability.invalidate(ids);
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		if (event.getEntity() instanceof Meeting)
+			invalidate(((Meeting)event.getEntity()).getLocationPermanentId());
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (event.getEntity() instanceof Meeting) {
+			Long oldLocationPermanentId = null;
+			if (event.getOldState() != null) {
+				// the meeting could have been moved to a different location
+				Integer index = event.getPersister().getEntityMetamodel().getPropertyIndexOrNull("locationPermanentId");
+				if (index != null) oldLocationPermanentId = (Long)event.getOldState()[index];
+			}
+			invalidate(((Meeting)event.getEntity()).getLocationPermanentId(), oldLocationPermanentId);
+		}
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		if (event.getEntity() instanceof Meeting)
+			invalidate(((Meeting)event.getEntity()).getLocationPermanentId());
+	}
+	
+	@Override
+	public void onPostInsertCommitFailed(PostInsertEvent event) {}
+
+	@Override
+	public void onPostUpdateCommitFailed(PostUpdateEvent event) {}
+
+	@Override
+	public void onPostDeleteCommitFailed(PostDeleteEvent event) {}
+
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return Meeting.class.isAssignableFrom(persister.getMappedClass());
+	}
+}
@@ -241,6 +241,55 @@ public class SessionRollForward {
 		iLog = log;
 		resetClassSuffix = ApplicationProperty.RollForwardResetClassSuffix.isTrue();
 	}
+	
+	/**
+	 * Objects that are rolled forward one by one are saved in batches: the transaction is committed every
+	 * {@link ApplicationProperty#RollForwardBatchSize} objects instead of after each object. The DAO methods
+	 * called in between join the open transaction.
+	 */
+	protected static class Batch {
+		private org.hibernate.Session iHibSession;
+		private Transaction iTransaction = null;
+		private List<Object> iEvict = new ArrayList<Object>();
+		private int iBatchSize, iCount = 0;
+		
+		public Batch(org.hibernate.Session hibSession) {
+			iHibSession = hibSession;
+			iBatchSize = ApplicationProperty.RollForwardBatchSize.intValue();
+		}
+		
+		/**
+		 * Save the given object, commit the transaction if the batch is full
+		 * @param evict objects to be evicted from the hibernate session once the batch is committed
+		 */
+		public void saveOrUpdate(Object object, Object... evict) {
+			if (iTransaction == null && (iHibSession.getTransaction() == null || !iHibSession.getTransaction().isActive()))
+				iTransaction = iHibSession.beginTransaction();
+			iHibSession.saveOrUpdate(object);
+			for (Object o: evict) iEvict.add(o);
+			if (++iCount >= iBatchSize) commit();
+		}
+		
+		public void commit() {
+			if (iTransaction != null) {
+				iTransaction.commit();
+				iTransaction = null;
+			} else {
+				iHibSession.flush();
+			}
+			for (Object o: iEvict) iHibSession.evict(o);
+			iEvict.clear();
+			iCount = 0;
+		}
+		
+		public void rollback() {
+			if (iTransaction != null && iTransaction.isActive())
+				iTransaction.rollback();
+			iTransaction = null;
+			iEvict.clear();
+			iCount = 0;
+		}
+	}
 
 	public void setSubpartLocationPrefRollForwardParameters(String subpartLocationPrefsAction){
 		if (subpartLocationPrefsAction == null || subpartLocationPrefsAction.equalsIgnoreCase(ROLL_PREFS_ACTION)){
@@ -950,6 +999,7 @@ public class SessionRollForward {
 		DatePattern toDatePattern = null;
 		DatePatternDAO dpDao = new DatePatternDAO();
 		HashMap<DatePattern, DatePattern> fromToDatePatternMap = new HashMap<DatePattern, DatePattern>();
+		Batch batch = new Batch(dpDao.getSession());
 		try {
 			for(Iterator it = fromDatePatterns.iterator(); it.hasNext();){
 				fromDatePattern = (DatePattern) it.next();
@@ -957,11 +1007,11 @@ public class SessionRollForward {
 					toDatePattern = (DatePattern) fromDatePattern.clone();
 					toDatePattern.setSession(toSession);
 					rollDatePatternOntoDepartments(fromDatePattern, toDatePattern);
-					dpDao.saveOrUpdate(toDatePattern);
-					dpDao.getSession().flush();
+					batch.saveOrUpdate(toDatePattern);
 					fromToDatePatternMap.put(fromDatePattern, toDatePattern);
 				}
 			}
+			batch.commit();
 			
 			for (DatePattern fromDp: fromToDatePatternMap.keySet()){
 				DatePattern toDp = fromToDatePatternMap.get(fromDp);
@@ -984,6 +1034,7 @@ public class SessionRollForward {
 			dpDao.getSession().flush();
 			dpDao.getSession().clear();
 		} catch (Exception e) {
+			batch.rollback();
 			String type = MSG.rollForwardDatePatterns();
 			String msg = MSG.errorRollForwardFailedAll(type.toLowerCase());
 			iLog.error(msg, e);
@@ -2153,21 +2204,21 @@ public class SessionRollForward {
 		for(String dept : rollForwardSessionForm.getRollForwardDepartmentIds()){
 			deptsToRollDataFor.add(dept);
 		}
-		
+		Batch batch = new Batch(iDao.getSession());
 		
 		try {
 			if (fromSession.getDepartments() != null){
 				String existingQuery = "select di.department.deptCode || di.externalUniqueId from DepartmentalInstructor di where di.department.session.uniqueId = :sessionId and di.externalUniqueId is not null";
-				ArrayList<String> existingInstructors = (ArrayList<String>) iDao.getSession()
+				Set<String> existingInstructors = new HashSet<String>((List<String>) iDao.getSession()
 						.createQuery(existingQuery)
 						.setLong("sessionId", toSession.getUniqueId().longValue())
-						.list();
+						.list());
 				
 				String existingNoExtIdQuery = "select di.department.deptCode || di.lastName || ',' || di.firstName || ',' || di.middleName from DepartmentalInstructor di where di.department.session.uniqueId = :sessionId and di.externalUniqueId is null";
-				ArrayList<String> existingNoExtIdInstructors = (ArrayList<String>) iDao.getSession()
+				Set<String> existingNoExtIdInstructors = new HashSet<String>((List<String>) iDao.getSession()
 						.createQuery(existingNoExtIdQuery)
 						.setLong("sessionId", toSession.getUniqueId().longValue())
-						.list();
+						.list());
 				
 				for(Department fromDepartment: fromSession.getDepartments()){
 					if (fromDepartment != null && fromDepartment.getInstructors() != null && !fromDepartment.getInstructors().isEmpty()){
@@ -2200,19 +2251,18 @@ public class SessionRollForward {
 								rollForwardRoomGroupPrefs(fromInstructor, toInstructor, toSession);
 								rollForwardTimePrefs(fromInstructor, toInstructor, toSession);
 								rollInstructorDistributionPrefs(fromInstructor, toInstructor);
-								iDao.saveOrUpdate(toInstructor);
-								iDao.getSession().flush();
-								iDao.getSession().evict(toInstructor);
-								iDao.getSession().evict(fromInstructor);
+								batch.saveOrUpdate(toInstructor, toInstructor, fromInstructor);
 							}
 						}
 					}
 				}
+				batch.commit();
 				iDao.getSession().flush();
 				iDao.getSession().clear();
 			}
 			
 		} catch (Exception e) {
+			batch.rollback();
 			String type = MSG.rollForwardInstructors();
 			String msg = MSG.errorRollForwardFailedAll(type.toLowerCase());
 			iLog.error(msg, e);
@@ -2453,6 +2503,7 @@ public class SessionRollForward {
 		TimePattern fromTimePattern = null;
 		TimePattern toTimePattern = null;
 		TimePatternDAO tpDao = new TimePatternDAO();
+		Batch batch = new Batch(tpDao.getSession());
 		try {
 			for(Iterator<TimePattern> it = fromDatePatterns.iterator(); it.hasNext();){
 				fromTimePattern = it.next();
@@ -2460,13 +2511,14 @@ public class SessionRollForward {
 					toTimePattern = (TimePattern) fromTimePattern.clone();
 					toTimePattern.setSession(toSession);
 					rollTimePatternOntoDepartments(fromTimePattern, toTimePattern);
-					tpDao.saveOrUpdate(toTimePattern);
-					tpDao.getSession().flush();
+					batch.saveOrUpdate(toTimePattern);
 				}
 			}
+			batch.commit();
 			tpDao.getSession().flush();
 			tpDao.getSession().clear();
 		} catch (Exception e) {
+			batch.rollback();
 			String type = MSG.rollForwardTimePatterns();
 			String msg = MSG.errorRollForwardFailedAll(type.toLowerCase());
 			iLog.error(msg, e);
@@ -3609,20 +3661,22 @@ public class SessionRollForward {
 		LearningManagementSystemInfo fromLms = null;
 		LearningManagementSystemInfo toLms = null;
 		LearningManagementSystemInfoDAO lmsDao = new LearningManagementSystemInfoDAO();
+		Batch batch = new Batch(lmsDao.getSession());
 		try {
 			for(Iterator it = fromLearningManagementSystems.iterator(); it.hasNext();){
 				fromLms = (LearningManagementSystemInfo) it.next();
 				if (fromLms != null){
 					toLms = (LearningManagementSystemInfo) fromLms.clone();
 					toLms.setSession(toSession);
-					lmsDao.saveOrUpdate(toLms);
-					lmsDao.getSession().flush();
+					batch.saveOrUpdate(toLms);
 				}
 			}
+			batch.commit();
 			
 			lmsDao.getSession().flush();
 			lmsDao.getSession().clear();
 		} catch (Exception e) {
+			batch.rollback();
 			String type = MSG.rollForwardLMSInfo();
 			String msg = MSG.errorRollForwardFailedAll(type.toLowerCase());
 			iLog.error(msg, e);
@@ -35,4 +35,7 @@
 </table>
 <table class="unitime-MainTable">
 	<s:property value="queryTable" escapeHtml="false"/>
+</table>
+<table class="unitime-MainTable">
+	<s:property value="rpcTable" escapeHtml="false"/>
 </table>
\ No newline at end of file